@@ -29,7 +29,9 @@ import { ref, set, onValue, off, get } from 'firebase/database';
 import { HouseholdLink } from './views/HouseholdLink';
 import { HouseholdMember, Contact } from './types';
 import { FirebaseMessaging } from '@capacitor-firebase/messaging';
-import { startFallDetection, stopFallDetection, subscribeFallDetected } from './services/fallDetection';
+import { startFallDetection, stopFallDetection, subscribeFallDetected, reportFallFalseAlarm } from './services/fallDetection';
+import { onNativeEvent, signalNativeEventsReady } from './services/nativeEvents';
+import { markStartup } from './services/appDiagnostics';
 import VoiceEmergencyDetector from './services/voiceEmergency';
 import { 
   initVolumeButtonShortcut, 
@@ -103,8 +105,9 @@ const handleModuleLevelWidgetSOS = () => {
   }
 };
 
-// Register at module level before component mounts
-window.addEventListener('widgetSOS', handleModuleLevelWidgetSOS);
+// Register at module level before component mounts, then let native flush its queue
+onNativeEvent('widgetSOS', handleModuleLevelWidgetSOS);
+signalNativeEventsReady();
 
 const App = () => {
   // Initialize Firebase Auth on app start
@@ -120,10 +123,13 @@ const App = () => {
   
   const [appStatus, setAppStatus] = useState<AppStatus>(AppStatus.IDLE);
   const appStatusRef = useRef<AppStatus>(AppStatus.IDLE);
+  // Set only for countdowns raised by the native fallDetected event (feeds the detector's false-positive stats)
+  const nativeFallWarningRef = useRef(false);
   const seniorStatusRef = useRef<SeniorStatus>(INITIAL_SENIOR_STATUS);
 
   // Connect global widget handler to component state
   useEffect(() => {
+    markStartup('sosReady');
     setAppStatusGlobal = setAppStatus;
     console.log('[Widget] Global handler connected to setAppStatus');
     // keep global status in sync for duplicate filtering
@@ -141,6 +147,7 @@ const App = () => {
   useEffect(() => {
     appStatusRef.current = appStatus;
     currentAppStatusGlobal = appStatus;
+    if (appStatus !== AppStatus.WARNING_FALL) nativeFallWarningRef.current = false;
   }, [appStatus]);
   
   // Early widget SOS listener - registers immediately on app mount
@@ -156,11 +163,11 @@ const App = () => {
       console.log('[Widget] Set app status to WARNING_SOS');
     };
     
-    window.addEventListener('widgetSOS', handleWidgetSOSEarly);
+    const unsubscribe = onNativeEvent('widgetSOS', handleWidgetSOSEarly);
     console.log('[Widget] Early event listener registered');
     
     return () => {
-      window.removeEventListener('widgetSOS', handleWidgetSOSEarly);
+      unsubscribe();
     };
   }, []);
 
@@ -226,6 +233,10 @@ const App = () => {
       backgroundReminders.setHouseholdId(targetHousehold);
       console.log('[App] Synced householdId to native:', targetHousehold);
     }
+    // Only the senior's device follows medicine edits natively
+    if (backgroundReminders.isAvailable()) {
+      backgroundReminders.setRemoteScheduleSync(role === UserRole.SENIOR);
+    }
   }, [householdId, activeHouseholdId, role]);
 
   // State for exact alarm permission warning
@@ -252,33 +263,79 @@ const App = () => {
   }, [role]);
 
 
-  // Poll Google Fit for vitals when senior is active and connected
+  // Google Fit vitals: heart rate streams live from the native plugin; steps are read when
+  // connected, whenever the app comes back to the foreground, and every minute while it is visible
   useEffect(() => {
     let cancelled = false;
-    const poll = async () => {
+    let connected = false;
+    let stopLive: (() => void) | null = null;
+
+    const readVitals = async () => {
+      const vitals = await googleFitService.getVitals();
+      if (vitals && !cancelled) {
+        setSeniorStatus(prev => ({ ...prev, steps: vitals.steps, heartRate: vitals.heartRate || prev.heartRate, lastUpdate: new Date(), }));
+      }
+    };
+
+    const refresh = async () => {
       try {
         const hasPerm = await googleFitService.hasPermissions();
+        if (cancelled) return;
+        connected = hasPerm;
         setIsFitConnected(hasPerm);
         if (!hasPerm) return;
-        const vitals = await googleFitService.getVitals();
-        if (vitals && !cancelled) {
-          setSeniorStatus(prev => ({ ...prev, steps: vitals.steps, heartRate: vitals.heartRate || prev.heartRate, lastUpdate: new Date(), }));
+        if (!stopLive) {
+          stopLive = googleFitService.startLiveHeartRate((sample) => {
+            setSeniorStatus(prev => ({ ...prev, heartRate: Math.round(sample.bpm), lastUpdate: new Date(sample.time) }));
+          }, {
+            throttleMs: 5_000,
+            // Signed out of Fit: stop until the next connect / foreground refresh
+            onError: (code) => {
+              console.warn('Live heart rate stopped:', code);
+              stopLive = null;
+              if (code === 'NOT_SIGNED_IN' && !cancelled) {
+                connected = false;
+                setIsFitConnected(false);
+              }
+            },
+          });
         }
+        await readVitals();
       } catch (e) {
-        console.warn('Google Fit poll failed', e);
+        console.warn('Google Fit refresh failed', e);
+        connected = false;
         setIsFitConnected(false);
       }
     };
 
-    const interval = setInterval(poll, 30_000);
-    // Do an initial poll
-    poll();
+    refresh();
+
+    const handleVisibility = () => {
+      if (document.visibilityState === 'visible') refresh();
+    };
+    document.addEventListener('visibilitychange', handleVisibility);
+
+    // Steps have no live stream; keep the senior tile current while the app is on screen
+    const stepsTimer = setInterval(() => {
+      if (connected && document.visibilityState === 'visible') {
+        readVitals().catch((e) => console.warn('Google Fit steps refresh failed', e));
+      }
+    }, 60_000);
 
     // Listen for immediate updates from ProfileView/connect flow
-    const handleConnected = () => setIsFitConnected(true);
+    const handleConnected = () => {
+      setIsFitConnected(true);
+      refresh();
+    };
     window.addEventListener('googleFitConnected', handleConnected);
 
-    return () => { cancelled = true; clearInterval(interval); window.removeEventListener('googleFitConnected', handleConnected); };
+    return () => {
+      cancelled = true;
+      stopLive?.();
+      clearInterval(stepsTimer);
+      document.removeEventListener('visibilitychange', handleVisibility);
+      window.removeEventListener('googleFitConnected', handleConnected);
+    };
   }, [role, householdId]);
   
   // Keep seniorStatus ref in sync
@@ -1482,6 +1539,7 @@ const App = () => {
 
         // Always show in-app countdown when native event fires
         console.log('[Fall] Setting app status to WARNING_FALL');
+        nativeFallWarningRef.current = true;
         setAppStatus(AppStatus.WARNING_FALL);
         addActivity('EMERGENCY', 'Fall Detected', 'Background detector');
       });
@@ -2451,12 +2509,12 @@ const App = () => {
         handleSOSClick();
       };
       
-      window.addEventListener('widgetSOS', handleWidgetSOS);
+      const unsubscribeWidgetSOS = onNativeEvent('widgetSOS', handleWidgetSOS);
       
       // Cleanup on unmount or role change
       return () => {
         console.log('[EmergencyShortcuts] Cleaning up...');
-        window.removeEventListener('widgetSOS', handleWidgetSOS);
+        unsubscribeWidgetSOS();
         cleanupEmergencyShortcuts();
       };
     } else if (role === UserRole.CAREGIVER || !householdId) {
@@ -2466,6 +2524,11 @@ const App = () => {
   }, [role, householdId]);
 
   const handleCancelEmergency = useCallback(() => {
+    // Voice, JS accelerometer and simulated warnings are not the native detector's to count
+    if (appStatusRef.current === AppStatus.WARNING_FALL && nativeFallWarningRef.current) {
+      reportFallFalseAlarm();
+    }
+    nativeFallWarningRef.current = false;
     setAppStatus(AppStatus.IDLE);
     setSeniorStatus(prev => ({ ...prev, status: 'Normal' }));
     addActivity('INFO', 'Emergency Cancelled', 'Marked safe by user');
@@ -3213,6 +3276,7 @@ const App = () => {
             onSignOut={handleSignOut}
             onJoinAnotherHousehold={() => setIsJoiningAnother(true)}
             householdId={householdId}
+            activeHouseholdId={activeHouseholdId || householdIds[0] || householdId}
             householdIds={householdIds}
             onSwitchHousehold={handleSwitchHousehold}
             seniors={allHouseholdSeniors}
@@ -0,0 +1,56 @@
+package com.safenest.app
+
+import android.content.Context
+import android.os.Looper
+import android.util.Log
+import com.safenest.app.diagnostics.StartupTimeline
+import com.safenest.app.reminders.MedicineReminderScheduler
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.launch
+
+/**
+ * Start-up work that does not gate the first frame or SOS readiness.
+ * Queued behind the main looper's idle handler, then run off the main thread:
+ * - Reminder scheduler (AlarmManager + reminder prefs), which the first reminder plugin
+ *   call would otherwise load on the bridge thread
+ *
+ * Only work a launch already did belongs here; Fit subscriptions and the Firebase client
+ * stay with the calls that need them.
+ */
+object DeferredInit {
+
+    private const val TAG = "DeferredInit"
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+
+    @Volatile
+    private var scheduled = false
+
+    /** Call on the main thread; runs once per process */
+    @JvmStatic
+    fun scheduleWhenIdle(context: Context) {
+        if (scheduled) return
+        scheduled = true
+        val appContext = context.applicationContext
+        Looper.myQueue().addIdleHandler {
+            scope.launch { run(appContext) }
+            false
+        }
+    }
+
+    private fun run(context: Context) {
+        StartupTimeline.begin("deferred.scheduler")
+        try {
+            val scheduler = MedicineReminderScheduler(context)
+            scheduler.canScheduleExactAlarms()
+            context.getSharedPreferences("SafeNestReminders", Context.MODE_PRIVATE).all
+        } catch (e: Exception) {
+            Log.w(TAG, "Scheduler warm-up failed: ${e.message}")
+        } finally {
+            StartupTimeline.end("deferred.scheduler")
+        }
+
+        StartupTimeline.mark(StartupTimeline.DEFERRED_INIT_DONE)
+    }
+}
@@ -1,38 +1,91 @@
 package com.safenest.app;
 
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
 import android.view.WindowManager;
 import com.getcapacitor.BridgeActivity;
+import com.safenest.app.analytics.HealthAnalyticsPlugin;
+import com.safenest.app.diagnostics.AppDiagnosticsPlugin;
+import com.safenest.app.diagnostics.StartupTimeline;
+import com.safenest.app.events.NativeEventBus;
+import com.safenest.app.events.NativeEventsPlugin;
 import com.safenest.app.falldetection.FallDetectionPlugin;
 import com.safenest.app.falldetection.FallDetectionService;
 import com.safenest.app.fit.GoogleFitPlugin;
+import com.safenest.app.location.GeofencePlugin;
+import com.safenest.app.location.LocationTrailPlugin;
 import com.safenest.app.reminders.MedicineRemindersPlugin;
+import com.safenest.app.reports.HealthReportPlugin;
 
 public class MainActivity extends BridgeActivity {
 	private static final String TAG = "MainActivity";
-	private boolean pendingWidgetSOS = false;
+	private static final long FALL_EVENT_TTL_MS = 5 * 60 * 1000L;
+	private static final long WIDGET_SOS_TTL_MS = 2 * 60 * 1000L;
 	
+	private static final long SERVICE_START_FALLBACK_MS = 2000L;
+
+	private final Handler mainHandler = new Handler(Looper.getMainLooper());
+	private boolean serviceStarted = false;
+
 	@Override
 	public void onCreate(Bundle savedInstanceState) {
+		StartupTimeline.beginLaunch(this);
+		StartupTimeline.begin("MainActivity.onCreate");
 		super.onCreate(savedInstanceState);
 		
 		Log.d(TAG, "MainActivity onCreate");
+		StartupTimeline.begin("registerPlugins");
 		registerPlugin(FallDetectionPlugin.class);
 		registerPlugin(GoogleFitPlugin.class);
 		registerPlugin(MedicineRemindersPlugin.class);
+		registerPlugin(NativeEventsPlugin.class);
+		registerPlugin(AppDiagnosticsPlugin.class);
+		registerPlugin(GeofencePlugin.class);
+		registerPlugin(LocationTrailPlugin.class);
+		registerPlugin(HealthAnalyticsPlugin.class);
+		registerPlugin(HealthReportPlugin.class);
+		StartupTimeline.end("registerPlugins");
+		StartupTimeline.mark(StartupTimeline.PLUGINS_REGISTERED);
 		
 		// Check if launched from fall detection
 		handleFallDetectionIntent(getIntent());
 		
-		// Always start fall detection service on app launch so background detection is active
-		autoStartFallDetection();
+		// Start fall detection right after the first frame so background detection is active
+		// without delaying the UI; the fallback covers launches that never draw (e.g. behind keyguard)
+		watchFirstFrame();
+		mainHandler.postDelayed(this::autoStartFallDetection, SERVICE_START_FALLBACK_MS);
+		StartupTimeline.end("MainActivity.onCreate");
+	}
+
+	private void watchFirstFrame() {
+		final View decor = getWindow().getDecorView();
+		decor.getViewTreeObserver().addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
+			private boolean seen = false;
+
+			@Override
+			public void onDraw() {
+				if (seen) return;
+				seen = true;
+				StartupTimeline.mark(StartupTimeline.FIRST_FRAME);
+				// Listeners cannot be removed from inside onDraw
+				decor.post(() -> decor.getViewTreeObserver().removeOnDrawListener(this));
+				mainHandler.postAtFrontOfQueue(MainActivity.this::autoStartFallDetection);
+				DeferredInit.scheduleWhenIdle(MainActivity.this);
+			}
+		});
 	}
 
 	private void autoStartFallDetection() {
+		if (serviceStarted) return;
+		serviceStarted = true;
+		mainHandler.removeCallbacksAndMessages(null);
+		StartupTimeline.begin("startFallDetectionService");
 		try {
 			Intent serviceIntent = new Intent(this, FallDetectionService.class);
 			if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
@@ -41,8 +94,11 @@ public class MainActivity extends BridgeActivity {
 				startService(serviceIntent);
 			}
 			Log.d(TAG, "Fall detection service started (auto-start)");
+			StartupTimeline.mark(StartupTimeline.SERVICE_STARTED);
 		} catch (Exception e) {
 			Log.e(TAG, "Error auto-starting fall detection", e);
+		} finally {
+			StartupTimeline.end("startFallDetectionService");
 		}
 	}
 
@@ -68,19 +124,13 @@ public class MainActivity extends BridgeActivity {
 				WindowManager.LayoutParams.FLAG_FULLSCREEN
 			);
 			
-			// Notify the JS side that app was launched from fall detection
-			if (getBridge() != null) {
-				Log.d(TAG, "Triggering fallDetected event to JS");
-				getBridge().triggerWindowJSEvent("fallDetected", "{}");
-			} else {
-				Log.e(TAG, "Bridge is null");
-			}
+			// Notify the JS side that app was launched from fall detection; queued until JS is ready
+			NativeEventBus.post(NativeEventBus.FALL_DETECTED, null, FALL_EVENT_TTL_MS, true);
 		}
 		
 		// Handle SOS widget trigger
 		if (intent != null && intent.getBooleanExtra("triggerSOS", false)) {
 			Log.d(TAG, "SOS triggered from widget!");
-			pendingWidgetSOS = true;
 			
 			// Turn on screen and show over lockscreen
 			getWindow().addFlags(
@@ -91,45 +141,8 @@ public class MainActivity extends BridgeActivity {
 				WindowManager.LayoutParams.FLAG_FULLSCREEN
 			);
 			
-			// Notify JS side with retry mechanism to ensure bridge is ready
-			triggerWidgetSOSWithRetry();
-		}
-	}
-	
-	private void triggerWidgetSOSWithRetry() {
-		new Thread(() -> {
-			final int delayMs = 500;     // Retry every 500ms
-			final int maxRetries = 30;   // Try for up to 15 seconds
-			
-			for (int attempt = 1; attempt <= maxRetries; attempt++) {
-				final int currentAttempt = attempt;
-				try {
-					Thread.sleep(delayMs);
-					runOnUiThread(() -> {
-						if (getBridge() != null) {
-							Log.d(TAG, "Attempt " + currentAttempt + " - Triggering widgetSOS event to JS");
-							getBridge().triggerWindowJSEvent("widgetSOS", "{}");
-						} else {
-							Log.d(TAG, "Attempt " + currentAttempt + " - Bridge not ready yet");
-						}
-					});
-				} catch (InterruptedException e) {
-					Log.e(TAG, "Widget SOS retry interrupted", e);
-					return;
-				}
-			}
-			Log.d(TAG, "Widget SOS retry loop finished");
-		}).start();
-	}
-	
-	// Call this method from JS after the widgetSOS event is received
-	@Override
-	public void onResume() {
-		super.onResume();
-		// Clear the flag on resume to prevent infinite loops
-		if (pendingWidgetSOS) {
-			Log.d(TAG, "onResume - Clearing pending widget SOS flag");
-			pendingWidgetSOS = false;
+			// Delivered once, as soon as JS signals ready (or immediately if it already has)
+			NativeEventBus.post(NativeEventBus.WIDGET_SOS, null, WIDGET_SOS_TTL_MS, true);
 		}
 	}
 }
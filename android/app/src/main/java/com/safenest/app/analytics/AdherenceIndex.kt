@@ -0,0 +1,479 @@
+package com.safenest.app.analytics
+
+import android.content.Context
+import android.util.Log
+import org.json.JSONArray
+import org.json.JSONObject
+import java.io.ByteArrayInputStream
+import java.io.DataInput
+import java.io.DataInputStream
+import java.io.DataOutput
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.util.Calendar
+import java.util.TimeZone
+
+/**
+ * Ring of per-day dose counters for one medicine (or the whole household).
+ * - [DAYS] day buckets of [FIELDS] counters; the bucket for a day is reused [DAYS] days later
+ * - 7/30/90-day window sums are kept alongside and adjusted as days enter and leave,
+ *   so reading a window never walks the buckets
+ * - Streaks close when the day rolls over: a day with doses and no skipped/missed one
+ *   extends the streak, days without doses leave it alone
+ */
+class AdherenceRing {
+
+    companion object {
+        const val DAYS = 90
+        val WINDOWS = intArrayOf(7, 30, 90)
+
+        const val TAKEN = 0
+        const val SKIPPED = 1
+        const val MISSED = 2
+        const val SNOOZED = 3
+        const val LATE_FIRST = 4 // TAKEN doses by delay bin, LATE_EDGES_MIN apart
+        val LATE_EDGES_MIN = intArrayOf(15, 30, 60, 120)
+        val FIELDS = LATE_FIRST + LATE_EDGES_MIN.size + 1
+
+        fun lateBin(delayMin: Long): Int {
+            for (i in LATE_EDGES_MIN.indices) if (delayMin < LATE_EDGES_MIN[i]) return i
+            return LATE_EDGES_MIN.size
+        }
+    }
+
+    private val days = LongArray(DAYS) { Long.MIN_VALUE }
+    private val counts = IntArray(DAYS * FIELDS)
+    private val sums = IntArray(WINDOWS.size * FIELDS)
+    var today = Long.MIN_VALUE
+        private set
+    private var streak = 0
+    var bestStreak = 0
+        private set
+
+    /** Count [n] of [field] on [day]; days older than the ring are dropped */
+    fun add(day: Long, field: Int, n: Int = 1) {
+        advance(day)
+        if (day <= today - DAYS) return
+        val slot = slotOf(day)
+        if (days[slot] != day) {
+            counts.fill(0, slot * FIELDS, (slot + 1) * FIELDS)
+            days[slot] = day
+        }
+        counts[slot * FIELDS + field] += n
+        for (w in WINDOWS.indices) {
+            if (day > today - WINDOWS[w]) sums[w * FIELDS + field] += n
+        }
+    }
+
+    /** Move "today" forward to [day], closing streaks and retiring buckets on the way */
+    fun advance(day: Long) {
+        if (today == Long.MIN_VALUE) {
+            today = day
+            return
+        }
+        if (day <= today) return
+        closeDay(today)
+        if (day - today >= DAYS) {
+            // Nothing in the ring is recent enough to matter any more
+            days.fill(Long.MIN_VALUE)
+            counts.fill(0)
+            sums.fill(0)
+            today = day
+            return
+        }
+        for (d in today + 1..day) {
+            for (w in WINDOWS.indices) {
+                val leaving = d - WINDOWS[w]
+                val slot = slotOf(leaving)
+                if (days[slot] != leaving) continue
+                for (f in 0 until FIELDS) sums[w * FIELDS + f] -= counts[slot * FIELDS + f]
+            }
+            if (d < day) closeDay(d)
+        }
+        today = day
+    }
+
+    /** Window total of [field] over the last WINDOWS[[window]] days, including today */
+    fun sum(window: Int, field: Int) = sums[window * FIELDS + field]
+
+    /** Streak including today once today has doses and none missed/skipped; 0 if today already broke it */
+    fun currentStreak(): Int {
+        val slot = slotOf(today)
+        if (today == Long.MIN_VALUE || days[slot] != today) return streak
+        val base = slot * FIELDS
+        if (counts[base + SKIPPED] + counts[base + MISSED] > 0) return 0
+        return if (counts[base + TAKEN] > 0) streak + 1 else streak
+    }
+
+    /** True when nothing was recorded in the last [DAYS] days */
+    fun isEmpty() = sums.all { it == 0 }
+
+    private fun closeDay(d: Long) {
+        val slot = slotOf(d)
+        if (days[slot] != d) return
+        val base = slot * FIELDS
+        val broken = counts[base + SKIPPED] + counts[base + MISSED]
+        if (counts[base + TAKEN] + broken == 0) return
+        streak = if (broken == 0) streak + 1 else 0
+        if (streak > bestStreak) bestStreak = streak
+    }
+
+    private fun slotOf(day: Long) = Math.floorMod(day, DAYS.toLong()).toInt()
+
+    fun write(out: DataOutput) {
+        out.writeLong(today)
+        out.writeInt(streak)
+        out.writeInt(bestStreak)
+        val live = (0 until DAYS).filter { days[it] != Long.MIN_VALUE && days[it] > today - DAYS }
+        out.writeInt(live.size)
+        for (slot in live) {
+            out.writeLong(days[slot])
+            for (f in 0 until FIELDS) out.writeInt(counts[slot * FIELDS + f])
+        }
+    }
+
+    fun read(input: DataInput, fields: Int) {
+        today = input.readLong()
+        streak = input.readInt()
+        bestStreak = input.readInt()
+        val n = input.readInt()
+        for (i in 0 until n) {
+            val day = input.readLong()
+            val slot = slotOf(day)
+            days[slot] = day
+            for (f in 0 until fields) {
+                val v = input.readInt()
+                if (f < FIELDS) counts[slot * FIELDS + f] = v
+            }
+        }
+        // Window sums are derived state; rebuild them from the buckets
+        for (slot in 0 until DAYS) {
+            val day = days[slot]
+            if (day == Long.MIN_VALUE) continue
+            for (w in WINDOWS.indices) {
+                if (day <= today - WINDOWS[w]) continue
+                for (f in 0 until FIELDS) sums[w * FIELDS + f] += counts[slot * FIELDS + f]
+            }
+        }
+    }
+}
+
+/**
+ * Rolling medication adherence fed by the reminder receivers as doses are taken,
+ * snoozed, skipped or marked missed, so compliance queries never rescan medicine logs.
+ * - One [AdherenceRing] per medicine plus one for the household, keyed by local day;
+ *   resident-scoped ids ("resident/medicine") also feed a ring for that resident
+ * - A dose counts on the day it was scheduled for; TAKEN doses are also binned by
+ *   how late they were against the scheduled HH:mm
+ * - TAKEN / SKIPPED / MISSED are a dose instance's status, keyed by (medicine, HH:mm, day):
+ *   a later status replaces the earlier one (MISSED then TAKEN counts one taken dose).
+ *   SNOOZED is counted per event.
+ * - Each event is appended to filesDir/adherence_index.jnl and replayed on load; the
+ *   snapshot (adherence_index.bin, a few KB per medicine plus the 90-day dose map) is only
+ *   rewritten every [COMPACT_EVERY] events. Snapshot and journal share a generation number,
+ *   so a crash mid-compaction never replays events twice; a torn journal tail is cut off
+ */
+class AdherenceIndex private constructor(private val file: File, private val journal: File) {
+
+    companion object {
+        private const val TAG = "AdherenceIndex"
+        private const val FORMAT_VERSION = 3
+        private const val COMPACT_EVERY = 200
+        private const val OP_RECORD = 1
+        private const val OP_REMOVE = 2
+        private const val DAY_MS = 24L * 60 * 60 * 1000
+        private const val HOUSEHOLD = ""
+        private const val RESIDENT_PREFIX = "@"
+
+        @Volatile
+        private var instance: AdherenceIndex? = null
+
+        @JvmStatic
+        fun get(context: Context): AdherenceIndex = instance ?: synchronized(this) {
+            instance ?: AdherenceIndex(File(context.filesDir, "adherence_index.bin"),
+                                       File(context.filesDir, "adherence_index.jnl"))
+                .also { it.load(); instance = it }
+        }
+
+        /** Local day number of [time] */
+        fun dayOf(time: Long): Long = Math.floorDiv(time + TimeZone.getDefault().getOffset(time), DAY_MS)
+    }
+
+    private val rings = HashMap<String, AdherenceRing>()
+
+    // "medicine|HH:mm|day" -> terminal field, plus (late bin + 1) << 8 for TAKEN doses
+    private val doses = HashMap<String, Int>()
+
+    private var generation = 0
+    private var journalEntries = 0
+
+    /**
+     * Record one dose event. [status] is TAKEN, SNOOZED, SKIPPED or MISSED; [scheduledTime]
+     * is the reminder's HH:mm.
+     */
+    @Synchronized
+    fun record(medicineId: String, scheduledTime: String?, status: String, eventTime: Long) {
+        if (!apply(medicineId, scheduledTime, status, eventTime)) return
+        append(OP_RECORD) { out ->
+            out.writeUTF(medicineId)
+            out.writeUTF(scheduledTime ?: "")
+            out.writeUTF(status)
+            out.writeLong(eventTime)
+        }
+    }
+
+    // Fold one event into the rings; false when it changed nothing (so it is not journalled)
+    private fun apply(medicineId: String, scheduledTime: String?, status: String, eventTime: Long): Boolean {
+        val field = when (status) {
+            "TAKEN" -> AdherenceRing.TAKEN
+            "SKIPPED" -> AdherenceRing.SKIPPED
+            "MISSED" -> AdherenceRing.MISSED
+            "SNOOZED" -> AdherenceRing.SNOOZED
+            else -> return false
+        }
+        val scheduled = scheduledInstant(scheduledTime, eventTime)
+        val day = dayOf(scheduled ?: eventTime)
+        val today = dayOf(eventTime)
+        val lateBin = if (field == AdherenceRing.TAKEN && scheduled != null) {
+            AdherenceRing.lateBin(((eventTime - scheduled) / 60_000L).coerceAtLeast(0L))
+        } else -1
+        val resident = medicineId.substringBefore('/', "")
+        val keys = if (resident.isEmpty()) arrayOf(medicineId, HOUSEHOLD)
+                   else arrayOf(medicineId, HOUSEHOLD, RESIDENT_PREFIX + resident)
+
+        var previous: Int? = null
+        if (field != AdherenceRing.SNOOZED) {
+            val doseKey = "$medicineId|${scheduledTime ?: ""}|$day"
+            val encoded = field or ((lateBin + 1) shl 8)
+            previous = doses.put(doseKey, encoded)
+            // The same status reported twice (notification action and app) is one dose
+            if (previous != null && previous and 0xFF == field) {
+                doses[doseKey] = previous
+                return false
+            }
+        }
+        for (key in keys) {
+            val existing = rings[key]
+            val ring = existing ?: AdherenceRing().also { rings[key] = it }
+            ring.advance(today)
+            // A ring created after the earlier status was recorded never counted it
+            if (previous != null && existing != null) {
+                ring.add(day, previous and 0xFF, -1)
+                val previousLate = (previous shr 8) - 1
+                if (previousLate >= 0) ring.add(day, AdherenceRing.LATE_FIRST + previousLate, -1)
+            }
+            ring.add(day, field)
+            if (lateBin >= 0) ring.add(day, AdherenceRing.LATE_FIRST + lateBin)
+        }
+        return true
+    }
+
+    /**
+     * Adherence for the household and every medicine, or just [medicineId]:
+     * { lateBinsMin, household: {...}, medicines: { id: {...} } } where each entry is
+     * { currentStreak, bestStreak, d7 | d30 | d90: { adherence, doses, taken, skipped, missed, snoozed, late } }
+     * With a non-empty [residentId] only that resident's medicines are listed and "household"
+     * is the resident's own total.
+     */
+    @Synchronized
+    fun snapshot(medicineId: String?, residentId: String?, now: Long): JSONObject {
+        val today = dayOf(now)
+        val scope = if (residentId.isNullOrEmpty()) null else "$residentId/"
+        val medicines = JSONObject()
+        for ((key, ring) in rings) {
+            if (key == HOUSEHOLD || key.startsWith(RESIDENT_PREFIX)) continue
+            if (medicineId != null && key != medicineId) continue
+            if (scope != null && !key.startsWith(scope)) continue
+            ring.advance(today)
+            medicines.put(key, toJson(ring))
+        }
+        val out = JSONObject()
+            .put("lateBinsMin", JSONArray(AdherenceRing.LATE_EDGES_MIN.toList()))
+            .put("medicines", medicines)
+        rings[if (scope == null) HOUSEHOLD else RESIDENT_PREFIX + residentId]?.let {
+            it.advance(today)
+            out.put("household", toJson(it))
+        }
+        return out
+    }
+
+    @Synchronized
+    fun removeMedicine(medicineId: String) {
+        if (!drop(medicineId)) return
+        append(OP_REMOVE) { it.writeUTF(medicineId) }
+    }
+
+    private fun drop(medicineId: String): Boolean {
+        val dropped = doses.keys.removeAll { it.startsWith("$medicineId|") }
+        return rings.remove(medicineId) != null || dropped
+    }
+
+    // One journal entry; the snapshot is rewritten (and the journal restarted) every COMPACT_EVERY entries
+    private fun append(op: Int, body: (DataOutputStream) -> Unit) {
+        if (journalEntries >= COMPACT_EVERY) {
+            save()
+            return
+        }
+        try {
+            val fresh = !journal.exists() || journal.length() == 0L
+            DataOutputStream(FileOutputStream(journal, true).buffered()).use { out ->
+                if (fresh) out.writeInt(generation)
+                out.writeByte(op)
+                body(out)
+            }
+            journalEntries++
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to journal adherence event, saving a snapshot instead", e)
+            save()
+        }
+    }
+
+    private fun toJson(ring: AdherenceRing): JSONObject {
+        val out = JSONObject()
+            .put("currentStreak", ring.currentStreak())
+            .put("bestStreak", ring.bestStreak)
+        for (w in AdherenceRing.WINDOWS.indices) {
+            val taken = ring.sum(w, AdherenceRing.TAKEN)
+            val doses = taken + ring.sum(w, AdherenceRing.SKIPPED) + ring.sum(w, AdherenceRing.MISSED)
+            val late = JSONArray()
+            for (b in 0..AdherenceRing.LATE_EDGES_MIN.size) late.put(ring.sum(w, AdherenceRing.LATE_FIRST + b))
+            out.put("d" + AdherenceRing.WINDOWS[w], JSONObject()
+                .put("adherence", if (doses > 0) Math.round(taken * 100.0 / doses).toInt() else JSONObject.NULL)
+                .put("doses", doses)
+                .put("taken", taken)
+                .put("skipped", ring.sum(w, AdherenceRing.SKIPPED))
+                .put("missed", ring.sum(w, AdherenceRing.MISSED))
+                .put("snoozed", ring.sum(w, AdherenceRing.SNOOZED))
+                .put("late", late))
+        }
+        return out
+    }
+
+    /** Today's (or, for a late-evening slot seen after midnight, yesterday's) HH:mm before [eventTime] */
+    private fun scheduledInstant(hhmm: String?, eventTime: Long): Long? {
+        val parts = hhmm?.split(":") ?: return null
+        if (parts.size < 2) return null
+        val hour = parts[0].trim().toIntOrNull() ?: return null
+        val minute = parts[1].trim().toIntOrNull() ?: return null
+        val cal = Calendar.getInstance().apply {
+            timeInMillis = eventTime
+            set(Calendar.HOUR_OF_DAY, hour); set(Calendar.MINUTE, minute); set(Calendar.SECOND, 0); set(Calendar.MILLISECOND, 0)
+        }
+        // Snooze and escalation stretch a dose by a few hours at most
+        if (cal.timeInMillis - eventTime > DAY_MS / 2) cal.add(Calendar.DAY_OF_YEAR, -1)
+        return cal.timeInMillis
+    }
+
+    private fun load() {
+        loadSnapshot()
+        replayJournal()
+    }
+
+    private fun loadSnapshot() {
+        if (!file.exists()) return
+        try {
+            DataInputStream(FileInputStream(file).buffered()).use { input ->
+                val version = input.readInt()
+                if (version > FORMAT_VERSION || version < 1) {
+                    Log.w(TAG, "Index format changed, starting fresh")
+                    return
+                }
+                // Versions before 3 had no journal
+                if (version >= 3) generation = input.readInt()
+                val fields = input.readInt()
+                repeat(input.readInt()) {
+                    val key = input.readUTF()
+                    rings[key] = AdherenceRing().apply { read(input, fields) }
+                }
+                // Version 1 had no dose statuses; doses from before the upgrade are not replaceable
+                if (version >= 2) {
+                    repeat(input.readInt()) { doses[input.readUTF()] = input.readInt() }
+                }
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to load adherence index, starting fresh", e)
+            rings.clear()
+            doses.clear()
+        }
+    }
+
+    // Events after the snapshot; a journal from another generation was already compacted into it
+    private fun replayJournal() {
+        if (!journal.exists()) return
+        val bytes = try {
+            journal.readBytes()
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to read adherence journal", e)
+            return
+        }
+        val input = DataInputStream(ByteArrayInputStream(bytes))
+        var good = 0
+        try {
+            if (bytes.size < 4 || input.readInt() != generation) {
+                journal.delete()
+                return
+            }
+            good = 4
+            while (input.available() > 0) {
+                when (input.readUnsignedByte()) {
+                    OP_RECORD -> apply(
+                        input.readUTF(), input.readUTF().ifEmpty { null }, input.readUTF(), input.readLong()
+                    )
+                    OP_REMOVE -> drop(input.readUTF())
+                    else -> throw IOException("unknown journal op")
+                }
+                journalEntries++
+                good = bytes.size - input.available()
+            }
+        } catch (e: IOException) {
+            // The last append was torn; keep everything before it
+            Log.w(TAG, "Adherence journal cut at byte $good of ${bytes.size}", e)
+            try {
+                RandomAccessFile(journal, "rw").use { it.setLength(good.toLong()) }
+            } catch (t: IOException) {
+                Log.e(TAG, "Failed to truncate adherence journal", t)
+            }
+        }
+    }
+
+    private fun save() {
+        val tmp = File(file.path + ".tmp")
+        try {
+            // Medicines with nothing in the last 90 days are dropped here
+            val now = dayOf(System.currentTimeMillis())
+            rings.entries.removeAll { (key, ring) -> key != HOUSEHOLD && ring.also { it.advance(now) }.isEmpty() }
+            doses.keys.removeAll { it.substringAfterLast('|').toLong() <= now - AdherenceRing.DAYS }
+            val next = generation + 1
+            DataOutputStream(FileOutputStream(tmp).buffered()).use { out ->
+                out.writeInt(FORMAT_VERSION)
+                out.writeInt(next)
+                out.writeInt(AdherenceRing.FIELDS)
+                out.writeInt(rings.size)
+                for ((key, ring) in rings) {
+                    out.writeUTF(key)
+                    ring.write(out)
+                }
+                out.writeInt(doses.size)
+                for ((key, encoded) in doses) {
+                    out.writeUTF(key)
+                    out.writeInt(encoded)
+                }
+            }
+            if (!tmp.renameTo(file)) {
+                Log.w(TAG, "Failed to replace ${file.name}")
+                return
+            }
+            // The snapshot now holds every journalled event
+            generation = next
+            journal.delete()
+            journalEntries = 0
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to save adherence index", e)
+            tmp.delete()
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package com.safenest.app.analytics
+
+import java.io.DataInput
+import java.io.DataOutput
+import java.util.Locale
+import java.util.TimeZone
+import kotlin.math.max
+import kotlin.math.min
+import kotlin.math.roundToInt
+
+data class HealthPredictionResult(
+    val type: String,
+    val severity: String,
+    val probability: Int,
+    val description: String,
+    val recommendation: String,
+    val basedOn: List<String>
+)
+
+data class HealthRiskResult(
+    val overall: Int,
+    val cardiovascular: Double,
+    val metabolic: Double,
+    val compliance: Double,
+    val trend: String
+)
+
+/**
+ * Incremental replacement for healthPredictions.ts.
+ * - One [VitalChannelState] per vital type, updated per reading; risk score and
+ *   predictions read the running state, so queries cost the same at any history length
+ * - Readings are deduplicated by a timestamp watermark per vital type (plus the ids sitting
+ *   exactly on it), so callers can resend their list and only newer readings count; a reading
+ *   entered late for one type is not shadowed by a newer reading of another
+ * - Medicine logs are upserted by id into per-day taken/total buckets; logs older than
+ *   [LOG_DAYS] days are forgotten, since only the last 7 days are scored
+ * - Per-day reading counts back the "last 3 days vs previous 4" trend check
+ * - Days are local days in [zone], the same days [AdherenceIndex] buckets doses into
+ *
+ * Detector thresholds and texts match healthPredictions.ts. Its 7-day windows become
+ * 7 whole days here.
+ */
+class HealthAnalyticsEngine(private val zone: TimeZone = TimeZone.getDefault()) {
+
+    companion object {
+        const val MINIMUM_DATA_DAYS = 15
+        const val LOG_DAYS = 8
+        private const val DAY_MS = 24L * 60 * 60 * 1000
+        private const val FORMAT_VERSION = 2
+    }
+
+    private class LogEntry(val day: Long, val taken: Boolean)
+
+    private val channels = VitalChannel.values().associateWith { VitalChannelState(it) }
+
+    private val watermarks = HashMap<String, Long>()
+    private val idsAtWatermark = HashMap<String, HashSet<String>>()
+
+    // Ring of per-day reading counts, indexed by day % LOG_DAYS
+    private val readingDays = LongArray(LOG_DAYS) { -1 }
+    private val readingCounts = IntArray(LOG_DAYS)
+
+    private val logs = HashMap<String, LogEntry>()
+    private val logDays = LongArray(LOG_DAYS) { -1 }
+    private val logTaken = IntArray(LOG_DAYS)
+    private val logTotal = IntArray(LOG_DAYS)
+
+    fun channel(channel: VitalChannel): VitalChannelState = channels.getValue(channel)
+
+    /** Newest reading time seen per vital type; readings of that type before it are not needed again */
+    fun watermarks(): Map<String, Long> = HashMap(watermarks)
+
+    /** Add a reading; false when it is a duplicate, older than its type's watermark, or of an untracked type */
+    fun addVital(id: String, type: String, time: Long, a: Double, b: Double = Double.NaN): Boolean {
+        val watermark = watermarks[type] ?: 0L
+        val ids = idsAtWatermark.getOrPut(type) { HashSet() }
+        if (time < watermark || (time == watermark && id in ids)) return false
+        val channel = VitalChannel.fromKey(type)
+        if (time > watermark) {
+            watermarks[type] = time
+            ids.clear()
+        }
+        ids.add(id)
+        if (channel == null || a.isNaN()) return false
+
+        channels.getValue(channel).push(time, a, if (b.isNaN()) 0.0 else b)
+        val day = dayOf(time)
+        val slot = Math.floorMod(day, LOG_DAYS.toLong()).toInt()
+        if (readingDays[slot] != day) {
+            readingDays[slot] = day
+            readingCounts[slot] = 0
+        }
+        readingCounts[slot]++
+        return true
+    }
+
+    /** Insert or update a medicine log (status changes like PENDING -> TAKEN replace the old entry) */
+    fun upsertLog(id: String, time: Long, status: String, now: Long) {
+        val day = dayOf(time)
+        if (day <= dayOf(now) - LOG_DAYS) return
+        logs.remove(id)?.let { old ->
+            val slot = logSlot(old.day)
+            if (logDays[slot] == old.day) {
+                logTotal[slot]--
+                if (old.taken) logTaken[slot]--
+            }
+        }
+        val entry = LogEntry(day, status == "TAKEN")
+        logs[id] = entry
+        val slot = logSlot(day)
+        if (logDays[slot] != day) {
+            if (logDays[slot] > day) return // bucket already reused by a newer day
+            logDays[slot] = day
+            logTaken[slot] = 0
+            logTotal[slot] = 0
+        }
+        logTotal[slot]++
+        if (entry.taken) logTaken[slot]++
+    }
+
+    /** Drop log ids that can no longer affect the 7-day window */
+    fun pruneLogs(now: Long) {
+        val oldest = dayOf(now) - LOG_DAYS
+        logs.values.removeAll { it.day <= oldest }
+    }
+
+    fun hasEnoughData(now: Long): Boolean {
+        val first = channels.values.filter { it.count > 0 }.minOfOrNull { it.firstTime } ?: return false
+        return (now - first) / DAY_MS >= MINIMUM_DATA_DAYS
+    }
+
+    /** Taken share of logs in the last 7 days, and how many there were */
+    fun compliance(now: Long): Pair<Double, Int> {
+        val today = dayOf(now)
+        var taken = 0
+        var total = 0
+        for (d in today - 6..today) {
+            val slot = logSlot(d)
+            if (logDays[slot] == d) {
+                taken += logTaken[slot]
+                total += logTotal[slot]
+            }
+        }
+        return (if (total > 0) taken * 100.0 / total else 100.0) to total
+    }
+
+    fun predictions(now: Long): List<HealthPredictionResult> {
+        if (!hasEnoughData(now)) return emptyList()
+        val out = ArrayList<HealthPredictionResult>()
+        hypertension()?.let { out.add(it) }
+        diabetes()?.let { out.add(it) }
+        cardiac()?.let { out.add(it) }
+        weight(now)?.let { out.add(it) }
+        infection()?.let { out.add(it) }
+        complianceImpact(now)?.let { out.add(it) }
+        val order = mapOf("high" to 3, "medium" to 2, "low" to 1)
+        return out.sortedByDescending { order[it.severity] ?: 0 }
+    }
+
+    fun riskScore(now: Long, predictions: List<HealthPredictionResult>): HealthRiskResult {
+        val bp = channel(VitalChannel.BLOOD_PRESSURE)
+        val bg = channel(VitalChannel.BLOOD_SUGAR)
+        val cardiovascular = if (bp.size > 0) (bp.windowMeanA - 120) * 2 else 0.0
+        val metabolic = if (bg.size > 0) (bg.windowMeanA - 100) * 0.5 else 0.0
+        val (rate, _) = compliance(now)
+        val cv = min(100.0, max(0.0, cardiovascular))
+        val met = min(100.0, max(0.0, metabolic))
+        val comp = 100 - rate
+        val overall = (cv * 0.4 + met * 0.3 + comp * 0.3).roundToInt()
+
+        val today = dayOf(now)
+        val last3 = readingsBetween(today - 2, today)
+        val prev4 = readingsBetween(today - 6, today - 3)
+        var trend = "stable"
+        if (last3 > 0 && prev4 > 0) {
+            if (predictions.count { it.severity == "high" } >= 2) trend = "declining"
+            else if (rate > 90 && cv < 30) trend = "improving"
+        }
+        return HealthRiskResult(overall, cv, met, comp, trend)
+    }
+
+    /** Linear projection of the channel [days] ahead from its windowed trend, null without a trend */
+    fun forecast(channel: VitalChannel, days: Double): Double? {
+        val state = channel(channel)
+        val slope = state.slopePerDay() ?: return null
+        return state.ewma + slope * days
+    }
+
+    private fun hypertension(): HealthPredictionResult? {
+        val bp = channel(VitalChannel.BLOOD_PRESSURE)
+        if (bp.count < 3 || bp.highCount < 5) return null
+        return HealthPredictionResult(
+            "hypertension", "high", min(95, 70 + bp.highCount * 5),
+            "Blood pressure consistently elevated (avg ${bp.windowMeanA.roundToInt()}/${bp.windowMeanB.roundToInt()})",
+            "Schedule doctor visit within 3 days. Monitor BP twice daily.",
+            listOf("${bp.size} BP readings", "${bp.highCount} readings >140/90")
+        )
+    }
+
+    private fun diabetes(): HealthPredictionResult? {
+        val bg = channel(VitalChannel.BLOOD_SUGAR)
+        if (bg.count < 3 || bg.highCount < 5) return null
+        return HealthPredictionResult(
+            "diabetes", "high", min(90, 65 + bg.highCount * 5),
+            "Post-meal glucose consistently high (avg ${bg.windowMeanA.roundToInt()} mg/dL)",
+            "Consult endocrinologist. Review insulin dosage and diet.",
+            listOf("${bg.size} blood sugar readings", "${bg.highCount} readings >180 mg/dL")
+        )
+    }
+
+    private fun cardiac(): HealthPredictionResult? {
+        val hr = channel(VitalChannel.HEART_RATE)
+        val abnormal = hr.highCount + hr.lowCount
+        if (hr.count < 5 || abnormal < 3) return null
+        return HealthPredictionResult(
+            "cardiac", "high", min(85, 60 + abnormal * 8),
+            "Heart rate irregularities detected (bradycardia or tachycardia)",
+            "ECG recommended within 48 hours. Monitor for dizziness or chest pain.",
+            listOf("${hr.size} heart rate readings", "$abnormal abnormal readings")
+        )
+    }
+
+    // The window holds the last 32 weights, enough for daily weigh-ins over 2 weeks
+    private fun weight(now: Long): HealthPredictionResult? {
+        val w = channel(VitalChannel.WEIGHT)
+        if (w.count < 2) return null
+        val latest = w.last
+        var oldest3d = Double.NaN
+        var count3d = 0
+        var oldest14d = Double.NaN
+        var count14d = 0
+        w.forEachInWindow { time, a, _ ->
+            if (time >= now - 3 * DAY_MS) {
+                if (count3d++ == 0) oldest3d = a
+            }
+            if (time >= now - 14 * DAY_MS) {
+                if (count14d++ == 0) oldest14d = a
+            }
+        }
+        if (count3d >= 2 && latest - oldest3d > 2) {
+            val gain = latest - oldest3d
+            return HealthPredictionResult(
+                "cardiac", "medium", 65,
+                "Rapid weight gain (+${one(gain)} kg in 3 days) - possible fluid retention",
+                "Check for ankle swelling, shortness of breath. Review medications.",
+                listOf("Weight increased from ${one(oldest3d)} to ${one(latest)} kg")
+            )
+        }
+        if (count14d >= 2 && oldest14d - latest > 5) {
+            val loss = oldest14d - latest
+            return HealthPredictionResult(
+                "malnutrition", "medium", 70,
+                "Significant weight loss (-${one(loss)} kg in 2 weeks)",
+                "Dietary assessment needed. Check for appetite loss or depression.",
+                listOf("Weight decreased from ${one(oldest14d)} to ${one(latest)} kg")
+            )
+        }
+        return null
+    }
+
+    private fun infection(): HealthPredictionResult? {
+        val t = channel(VitalChannel.TEMPERATURE)
+        if (t.count < 2 || t.highCount < 3) return null
+        return HealthPredictionResult(
+            "infection", "high", min(85, 70 + t.highCount * 5),
+            "Persistent fever detected (avg ${one(t.windowMeanA)}°F)",
+            "Possible UTI or pneumonia. Visit doctor for blood work and urinalysis.",
+            listOf("${t.size} temperature readings", "${t.highCount} readings >100.4°F")
+        )
+    }
+
+    private fun complianceImpact(now: Long): HealthPredictionResult? {
+        val (rate, total) = compliance(now)
+        if (total == 0 || rate >= 70) return null
+        val bp = channel(VitalChannel.BLOOD_PRESSURE)
+        // Systolic > 140 among the last 7 BP readings
+        var highSystolic = 0
+        bp.forEachInWindow { _, a, _ -> if (a > 140) highSystolic++ }
+        if (highSystolic < 4 && rate >= 60) return null
+        return HealthPredictionResult(
+            "medication", if (rate < 60) "high" else "medium", (100 - rate).roundToInt(),
+            "Medication adherence dropped to ${rate.roundToInt()}% (target: 90%+)",
+            "Check for medication side effects, confusion, or forgetfulness. Consider pill organizer.",
+            listOf("$total medication logs", "Only ${rate.roundToInt()}% taken")
+        )
+    }
+
+    private fun readingsBetween(fromDay: Long, toDay: Long): Int {
+        var n = 0
+        for (d in fromDay..toDay) {
+            val slot = Math.floorMod(d, LOG_DAYS.toLong()).toInt()
+            if (readingDays[slot] == d) n += readingCounts[slot]
+        }
+        return n
+    }
+
+    private fun one(v: Double) = String.format(Locale.US, "%.1f", v)
+
+    private fun logSlot(day: Long) = Math.floorMod(day, LOG_DAYS.toLong()).toInt()
+
+    private fun dayOf(time: Long) = Math.floorDiv(time + zone.getOffset(time), DAY_MS)
+
+    fun write(out: DataOutput) {
+        out.writeInt(FORMAT_VERSION)
+        out.writeInt(watermarks.size)
+        for ((type, time) in watermarks) {
+            out.writeUTF(type)
+            out.writeLong(time)
+            val ids = idsAtWatermark[type].orEmpty()
+            out.writeInt(ids.size)
+            ids.forEach { out.writeUTF(it) }
+        }
+        for (channel in VitalChannel.values()) channels.getValue(channel).write(out)
+        for (i in 0 until LOG_DAYS) {
+            out.writeLong(readingDays[i])
+            out.writeInt(readingCounts[i])
+        }
+        out.writeInt(logs.size)
+        for ((id, entry) in logs) {
+            out.writeUTF(id)
+            out.writeLong(entry.day)
+            out.writeBoolean(entry.taken)
+        }
+        for (i in 0 until LOG_DAYS) {
+            out.writeLong(logDays[i])
+            out.writeInt(logTaken[i])
+            out.writeInt(logTotal[i])
+        }
+    }
+
+    /** Restore state written by [write]; false (state left empty) on a version mismatch */
+    fun read(input: DataInput): Boolean {
+        if (input.readInt() != FORMAT_VERSION) return false
+        watermarks.clear()
+        idsAtWatermark.clear()
+        repeat(input.readInt()) {
+            val type = input.readUTF()
+            watermarks[type] = input.readLong()
+            val ids = HashSet<String>()
+            repeat(input.readInt()) { ids.add(input.readUTF()) }
+            idsAtWatermark[type] = ids
+        }
+        for (channel in VitalChannel.values()) channels.getValue(channel).read(input)
+        for (i in 0 until LOG_DAYS) {
+            readingDays[i] = input.readLong()
+            readingCounts[i] = input.readInt()
+        }
+        logs.clear()
+        repeat(input.readInt()) {
+            val id = input.readUTF()
+            logs[id] = LogEntry(input.readLong(), input.readBoolean())
+        }
+        for (i in 0 until LOG_DAYS) {
+            logDays[i] = input.readLong()
+            logTaken[i] = input.readInt()
+            logTotal[i] = input.readInt()
+        }
+        return true
+    }
+}
@@ -0,0 +1,176 @@
+package com.safenest.app.analytics
+
+import android.util.Log
+import com.getcapacitor.JSArray
+import com.getcapacitor.JSObject
+import com.getcapacitor.Plugin
+import com.getcapacitor.PluginCall
+import com.getcapacitor.PluginMethod
+import com.getcapacitor.annotation.CapacitorPlugin
+import com.safenest.app.reports.HouseholdRecords
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.launch
+import org.json.JSONArray
+
+/**
+ * JS side of the incremental [HealthAnalyticsEngine].
+ * - Every call takes the `householdId` the data belongs to; each household has its
+ *   own engine state
+ * - analyze({ householdId, vitals?, logs?, logsFrom? }): ingest new readings/logs, then resolve
+ *   { predictions, riskScore, hasEnoughData, watermarks: { type: ms } }. Vitals of a type
+ *   before that type's watermark are already counted and need not be sent again.
+ *   vitals: [{ id, type, timestamp (ms), value | { systolic, diastolic } }]
+ *   logs:   [{ id, medicineId, medicineName, scheduledTime, date (ms), status }], the last 8
+ *   days are enough; logsFrom is the cutoff they were selected with
+ *   Everything sent is also kept in [HouseholdRecords] for native reports.
+ * - getVitalStats(): running mean/stdDev/EWMA/trend/out-of-range counts per vital type
+ * - reset({ householdId? }): forget that household, or every household when omitted
+ */
+@CapacitorPlugin(name = "HealthAnalytics")
+class HealthAnalyticsPlugin : Plugin() {
+
+    companion object {
+        private const val TAG = "HealthAnalyticsPlugin"
+        private const val FORECAST_DAYS = 7.0
+    }
+
+    private val pluginScope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+
+    override fun handleOnDestroy() {
+        pluginScope.cancel()
+        super.handleOnDestroy()
+    }
+
+    @PluginMethod
+    fun analyze(call: PluginCall) {
+        val householdId = call.getString("householdId") ?: ""
+        val vitals = call.getArray("vitals") ?: JSArray()
+        val logs = call.getArray("logs") ?: JSArray()
+        pluginScope.launch {
+            try {
+                val now = System.currentTimeMillis()
+                val store = HealthAnalyticsStore.get(context, householdId)
+                val added = store.update { engine -> ingest(engine, vitals, logs, now) }
+                val records = HouseholdRecords.get(context, householdId)
+                records.putReadings(HouseholdRecords.parseReadings(vitals))
+                records.putLogs(HouseholdRecords.parseLogs(logs), call.getLong("logsFrom"))
+                val result = store.read { engine ->
+                    val predictions = engine.predictions(now)
+                    val risk = engine.riskScore(now, predictions)
+                    JSObject()
+                        .put("predictions", toJs(predictions, now))
+                        .put("riskScore", JSObject()
+                            .put("overall", risk.overall)
+                            .put("cardiovascular", risk.cardiovascular)
+                            .put("metabolic", risk.metabolic)
+                            .put("compliance", risk.compliance)
+                            .put("trend", risk.trend))
+                        .put("hasEnoughData", engine.hasEnoughData(now))
+                        .put("watermarks", JSObject().apply { engine.watermarks().forEach { (type, time) -> put(type, time) } })
+                }
+                Log.d(TAG, "analyze: $added new readings")
+                call.resolve(result.put("added", added))
+            } catch (e: Exception) {
+                Log.e(TAG, "analyze failed", e)
+                call.reject("analyze failed: " + e.message)
+            }
+        }
+    }
+
+    @PluginMethod
+    fun getVitalStats(call: PluginCall) {
+        val householdId = call.getString("householdId") ?: ""
+        pluginScope.launch {
+            val result = HealthAnalyticsStore.get(context, householdId).read { engine ->
+                val out = JSObject()
+                for (channel in VitalChannel.values()) {
+                    val s = engine.channel(channel)
+                    if (s.count == 0L) continue
+                    out.put(channel.key, JSObject()
+                        .put("count", s.count)
+                        .put("mean", s.mean)
+                        .put("stdDev", s.stdDev)
+                        .put("ewma", s.ewma)
+                        .put("last", s.last)
+                        .put("slopePerDay", s.slopePerDay())
+                        .put("forecast7d", engine.forecast(channel, FORECAST_DAYS))
+                        .put("window", s.size)
+                        .put("aboveRange", s.highCount)
+                        .put("belowRange", s.lowCount)
+                        .put("firstTime", s.firstTime)
+                        .put("lastTime", s.lastTime))
+                }
+                out
+            }
+            call.resolve(result)
+        }
+    }
+
+    @PluginMethod
+    fun reset(call: PluginCall) {
+        val householdId = call.getString("householdId")
+        pluginScope.launch {
+            if (householdId == null) {
+                HealthAnalyticsStore.resetAll(context)
+                HouseholdRecords.resetAll(context)
+            } else {
+                HealthAnalyticsStore.get(context, householdId).reset()
+                HouseholdRecords.get(context, householdId).reset()
+            }
+            call.resolve()
+        }
+    }
+
+    private fun ingest(engine: HealthAnalyticsEngine, vitals: JSONArray, logs: JSONArray, now: Long): Pair<Boolean, Int> {
+        // Oldest first, so each type's watermark only moves forward within a batch
+        val readings = (0 until vitals.length()).mapNotNull { vitals.optJSONObject(it) }
+            .sortedBy { it.optLong("timestamp") }
+        var added = 0
+        for (o in readings) {
+            val id = o.optString("id")
+            val type = o.optString("type")
+            val time = o.optLong("timestamp", 0L)
+            if (id.isEmpty() || time <= 0L) continue
+            val bp = o.optJSONObject("value")
+            val a: Double
+            val b: Double
+            if (type == VitalChannel.BLOOD_PRESSURE.key) {
+                // optDouble yields NaN, never null, for a missing key
+                a = bp?.optDouble("systolic")?.takeUnless { it.isNaN() } ?: o.optDouble("systolic")
+                b = bp?.optDouble("diastolic")?.takeUnless { it.isNaN() } ?: o.optDouble("diastolic")
+            } else {
+                a = o.optDouble("value")
+                b = Double.NaN
+            }
+            if (engine.addVital(id, type, time, a, b)) added++
+        }
+        for (i in 0 until logs.length()) {
+            val o = logs.optJSONObject(i) ?: continue
+            val id = o.optString("id")
+            val date = o.optLong("date", 0L)
+            if (id.isEmpty() || date <= 0L) continue
+            engine.upsertLog(id, date, o.optString("status"), now)
+        }
+        engine.pruneLogs(now)
+        return (added > 0 || logs.length() > 0) to added
+    }
+
+    private fun toJs(predictions: List<HealthPredictionResult>, now: Long): JSArray {
+        val out = JSArray()
+        for (p in predictions) {
+            out.put(JSObject()
+                .put("id", "pred_${now}_${p.type}")
+                .put("type", p.type)
+                .put("severity", p.severity)
+                .put("probability", p.probability)
+                .put("description", p.description)
+                .put("recommendation", p.recommendation)
+                .put("basedOn", JSONArray(p.basedOn))
+                .put("timestamp", now))
+        }
+        return out
+    }
+}
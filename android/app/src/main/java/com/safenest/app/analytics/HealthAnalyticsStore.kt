@@ -0,0 +1,97 @@
+package com.safenest.app.analytics
+
+import android.content.Context
+import android.util.Log
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+
+/**
+ * One [HealthAnalyticsEngine] per household, persisted to
+ * filesDir/health_analytics/{householdId}.bin (a few KB whatever the history length).
+ * - A caregiver switching seniors gets that household's state, never a mix of both
+ * - Only the household in use stays loaded; switching back reloads it from disk
+ * - Saved after every ingest that changed something, through a temp file so a crash
+ *   never leaves a torn state
+ */
+class HealthAnalyticsStore private constructor(private val file: File, val householdId: String) {
+
+    companion object {
+        private const val TAG = "HealthAnalyticsStore"
+        private const val DIR = "health_analytics"
+        private const val LEGACY_FILE = "health_analytics.bin" // unkeyed, owner unknown
+
+        @Volatile
+        private var instance: HealthAnalyticsStore? = null
+
+        fun get(context: Context, householdId: String): HealthAnalyticsStore {
+            instance?.let { if (it.householdId == householdId) return it }
+            return synchronized(this) {
+                instance?.takeIf { it.householdId == householdId }
+                    ?: HealthAnalyticsStore(File(dir(context), fileName(householdId)), householdId)
+                        .also { it.load(); instance = it }
+            }
+        }
+
+        /** Forget every household's state */
+        fun resetAll(context: Context) = synchronized(this) {
+            instance?.reset()
+            dir(context).listFiles()?.forEach { it.delete() }
+        }
+
+        private fun dir(context: Context): File {
+            File(context.filesDir, LEGACY_FILE).delete()
+            return File(context.filesDir, DIR).apply { mkdirs() }
+        }
+
+        private fun fileName(householdId: String) =
+            householdId.ifEmpty { "_local" }.replace(Regex("[^A-Za-z0-9_-]"), "_") + ".bin"
+    }
+
+    var engine = HealthAnalyticsEngine()
+        private set
+
+    /** Run [block] against the engine under the store lock; saves when it returns true */
+    @Synchronized
+    fun <T> update(block: (HealthAnalyticsEngine) -> Pair<Boolean, T>): T {
+        val (changed, result) = block(engine)
+        if (changed) save()
+        return result
+    }
+
+    @Synchronized
+    fun <T> read(block: (HealthAnalyticsEngine) -> T): T = block(engine)
+
+    @Synchronized
+    fun reset() {
+        engine = HealthAnalyticsEngine()
+        file.delete()
+    }
+
+    private fun load() {
+        if (!file.exists()) return
+        try {
+            DataInputStream(FileInputStream(file).buffered()).use { input ->
+                val restored = HealthAnalyticsEngine()
+                if (restored.read(input)) engine = restored
+                else Log.w(TAG, "State format changed, starting fresh")
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to load analytics state, starting fresh", e)
+            engine = HealthAnalyticsEngine()
+        }
+    }
+
+    private fun save() {
+        val tmp = File(file.path + ".tmp")
+        try {
+            DataOutputStream(FileOutputStream(tmp).buffered()).use { engine.write(it) }
+            if (!tmp.renameTo(file)) Log.w(TAG, "Failed to replace ${file.name}")
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to save analytics state", e)
+            tmp.delete()
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.safenest.app.analytics
+
+import java.io.DataInput
+import java.io.DataOutput
+import kotlin.math.abs
+import kotlin.math.sqrt
+
+/**
+ * Vital types the analytics engine tracks, with the window and out-of-range rule the
+ * risk detectors use (same thresholds as healthPredictions.ts).
+ * For blood pressure `a` is systolic and `b` diastolic; other channels only use `a`.
+ */
+enum class VitalChannel(val key: String, val window: Int) {
+    BLOOD_PRESSURE("bloodPressure", 7) {
+        override fun classify(a: Double, b: Double) = if (a > 140 || b > 90) 1 else 0
+    },
+    BLOOD_SUGAR("bloodSugar", 7) {
+        override fun classify(a: Double, b: Double) = if (a > 180) 1 else 0
+    },
+    HEART_RATE("heartRate", 10) {
+        override fun classify(a: Double, b: Double) = when {
+            a < 50 -> -1
+            a > 120 -> 1
+            else -> 0
+        }
+    },
+    TEMPERATURE("temperature", 5) {
+        override fun classify(a: Double, b: Double) = if (a > 100.4) 1 else 0
+    },
+    WEIGHT("weight", 32) {
+        override fun classify(a: Double, b: Double) = 0
+    };
+
+    /** -1 below range, 1 above, 0 normal */
+    abstract fun classify(a: Double, b: Double): Int
+
+    companion object {
+        fun fromKey(key: String?): VitalChannel? = values().firstOrNull { it.key == key }
+    }
+}
+
+/**
+ * Running state for one vital channel, O(1) per reading.
+ * - Welford mean/variance and an EWMA over the whole history
+ * - A ring of the last [VitalChannel.window] readings with window sums, out-of-range
+ *   counters and least-squares sums for the trend, all updated on push/evict
+ * - Window sums are rebuilt from the ring every [RESYNC_EVERY] pushes so add/subtract
+ *   rounding cannot drift over years of readings
+ */
+class VitalChannelState(val channel: VitalChannel) {
+
+    companion object {
+        const val EWMA_ALPHA = 0.3
+        private const val DAY_MS = 24.0 * 60 * 60 * 1000
+        private const val RESYNC_EVERY = 256
+    }
+
+    var count = 0L
+        private set
+    var mean = 0.0
+        private set
+    private var m2 = 0.0
+    var ewma = 0.0
+        private set
+    var firstTime = 0L
+        private set
+    var lastTime = 0L
+        private set
+
+    private val cap = channel.window
+    private val times = LongArray(cap)
+    private val valuesA = DoubleArray(cap)
+    private val valuesB = DoubleArray(cap)
+    private var head = 0 // next write slot
+    var size = 0
+        private set
+
+    private var sumA = 0.0
+    private var sumB = 0.0
+    var highCount = 0
+        private set
+    var lowCount = 0
+        private set
+    private var sx = 0.0
+    private var sy = 0.0
+    private var sxy = 0.0
+    private var sxx = 0.0
+    private var sinceResync = 0
+
+    val variance: Double get() = if (count > 1) m2 / (count - 1) else 0.0
+    val stdDev: Double get() = sqrt(variance)
+    val windowMeanA: Double get() = if (size > 0) sumA / size else 0.0
+    val windowMeanB: Double get() = if (size > 0) sumB / size else 0.0
+    val last: Double get() = if (size > 0) valuesA[(head - 1 + cap) % cap] else 0.0
+
+    fun push(time: Long, a: Double, b: Double) {
+        if (count == 0L) {
+            firstTime = time
+            ewma = a
+        } else {
+            ewma += EWMA_ALPHA * (a - ewma)
+        }
+        count++
+        val delta = a - mean
+        mean += delta / count
+        m2 += delta * (a - mean)
+        if (time > lastTime) lastTime = time
+        if (time < firstTime) firstTime = time
+
+        if (size == cap) evict(head) else size++
+        times[head] = time
+        valuesA[head] = a
+        valuesB[head] = b
+        include(head)
+        head = (head + 1) % cap
+
+        if (++sinceResync >= RESYNC_EVERY) resync()
+    }
+
+    /** Least-squares slope over the window, units per day; null with fewer than 3 points or no time spread */
+    fun slopePerDay(): Double? {
+        if (size < 3) return null
+        val denom = size * sxx - sx * sx
+        if (abs(denom) < 1e-9) return null
+        return (size * sxy - sx * sy) / denom
+    }
+
+    /** Visit the window oldest first as (time, a, b) */
+    inline fun forEachInWindow(visitor: (Long, Double, Double) -> Unit) {
+        for (i in 0 until size) {
+            val slot = slotAt(i)
+            visitor(timeAt(slot), aAt(slot), bAt(slot))
+        }
+    }
+
+    fun slotAt(i: Int): Int = (head - size + i + cap * 2) % cap
+    fun timeAt(slot: Int) = times[slot]
+    fun aAt(slot: Int) = valuesA[slot]
+    fun bAt(slot: Int) = valuesB[slot]
+
+    private fun x(time: Long) = (time - firstTime) / DAY_MS
+
+    private fun include(slot: Int) {
+        val a = valuesA[slot]
+        sumA += a
+        sumB += valuesB[slot]
+        when (channel.classify(a, valuesB[slot])) {
+            1 -> highCount++
+            -1 -> lowCount++
+        }
+        val x = x(times[slot])
+        sx += x; sy += a; sxy += x * a; sxx += x * x
+    }
+
+    private fun evict(slot: Int) {
+        val a = valuesA[slot]
+        sumA -= a
+        sumB -= valuesB[slot]
+        when (channel.classify(a, valuesB[slot])) {
+            1 -> highCount--
+            -1 -> lowCount--
+        }
+        val x = x(times[slot])
+        sx -= x; sy -= a; sxy -= x * a; sxx -= x * x
+    }
+
+    private fun resync() {
+        sinceResync = 0
+        sumA = 0.0; sumB = 0.0; highCount = 0; lowCount = 0
+        sx = 0.0; sy = 0.0; sxy = 0.0; sxx = 0.0
+        for (i in 0 until size) include(slotAt(i))
+    }
+
+    fun write(out: DataOutput) {
+        out.writeLong(count)
+        out.writeDouble(mean)
+        out.writeDouble(m2)
+        out.writeDouble(ewma)
+        out.writeLong(firstTime)
+        out.writeLong(lastTime)
+        out.writeInt(size)
+        for (i in 0 until size) {
+            val slot = slotAt(i)
+            out.writeLong(times[slot])
+            out.writeDouble(valuesA[slot])
+            out.writeDouble(valuesB[slot])
+        }
+    }
+
+    fun read(input: DataInput) {
+        count = input.readLong()
+        mean = input.readDouble()
+        m2 = input.readDouble()
+        ewma = input.readDouble()
+        firstTime = input.readLong()
+        lastTime = input.readLong()
+        val n = input.readInt()
+        head = 0
+        size = 0
+        for (i in 0 until n) {
+            val t = input.readLong()
+            val a = input.readDouble()
+            val b = input.readDouble()
+            if (n - i > cap) continue // window shrank since this was written
+            times[head] = t
+            valuesA[head] = a
+            valuesB[head] = b
+            head = (head + 1) % cap
+            size++
+        }
+        resync()
+    }
+}
@@ -0,0 +1,90 @@
+package com.safenest.app.diagnostics
+
+import android.util.Log
+import androidx.core.content.FileProvider
+import com.getcapacitor.JSObject
+import com.getcapacitor.Plugin
+import com.getcapacitor.PluginCall
+import com.getcapacitor.PluginMethod
+import com.getcapacitor.annotation.CapacitorPlugin
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.launch
+import java.io.File
+
+/**
+ * App-level diagnostics for JS.
+ * - getStartupTimeline({ includeHistory? }): milestones and sections of this launch
+ * - markStartup({ name }): record a JS-side milestone (e.g. "appMounted") in the timeline
+ * - getEnergyReport({ days? }): per-component CPU, wakelock and run totals per day
+ * - exportEventLog(): the reminder event log as a text file, for support / bug reports
+ */
+@CapacitorPlugin(name = "AppDiagnostics")
+class AppDiagnosticsPlugin : Plugin() {
+
+    companion object {
+        private const val TAG = "AppDiagnostics"
+    }
+
+    private val pluginScope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+
+    override fun load() {
+        super.load()
+        StartupTimeline.mark(StartupTimeline.PLUGIN_LOAD)
+    }
+
+    override fun handleOnDestroy() {
+        pluginScope.cancel()
+        super.handleOnDestroy()
+    }
+
+    @PluginMethod
+    fun getStartupTimeline(call: PluginCall) {
+        val result = StartupTimeline.toJSObject()
+        if (call.getBoolean("includeHistory", false) == true) {
+            result.put("history", StartupTimeline.history(context))
+        }
+        call.resolve(result)
+    }
+
+    @PluginMethod
+    fun markStartup(call: PluginCall) {
+        val name = call.getString("name")
+        if (name.isNullOrBlank()) {
+            call.reject("name is required")
+            return
+        }
+        StartupTimeline.mark("js." + name)
+        call.resolve()
+    }
+
+    @PluginMethod
+    fun getEnergyReport(call: PluginCall) {
+        val days = call.getInt("days", 7) ?: 7
+        call.resolve(JSObject().put("days", EnergyAccounting.report(context, days)))
+    }
+
+    @PluginMethod
+    fun exportEventLog(call: PluginCall) {
+        pluginScope.launch {
+            try {
+                val dir = File(context.cacheDir, "exports").apply { mkdirs() }
+                val file = File(dir, "event_log_${System.currentTimeMillis()}.txt")
+                val events = file.bufferedWriter().use { EventLog.export(context, it) }
+                val uri = FileProvider.getUriForFile(context, context.packageName + ".fileprovider", file)
+                call.resolve(
+                    JSObject()
+                        .put("path", file.absolutePath)
+                        .put("uri", uri.toString())
+                        .put("events", events)
+                        .put("bytes", file.length())
+                )
+            } catch (e: Exception) {
+                Log.e(TAG, "exportEventLog failed", e)
+                call.reject("exportEventLog failed: " + e.message)
+            }
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.safenest.app.diagnostics
+
+import android.content.Context
+import android.os.Debug
+import android.os.Handler
+import android.os.Looper
+import android.os.PowerManager
+import android.os.Process
+import android.os.SystemClock
+import android.util.Log
+import com.getcapacitor.JSArray
+import com.getcapacitor.JSObject
+import org.json.JSONArray
+import org.json.JSONObject
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.Locale
+
+/**
+ * Per-component view of where background battery goes.
+ * - Work is charged to a named owner ("reminderReceiver", "fallService.sensors", ...):
+ *   thread CPU time, wall time and number of runs, via [span] or [addWork] for batches
+ * - Wakelocks taken through [newWakeLock] record how long they were actually held
+ *   (a lock that hits its timeout is charged the full timeout when it expires)
+ * - Process CPU (all threads, WebView included) is sampled alongside, so the report can
+ *   show how much of it the owners account for
+ * - Totals are kept per local day for [DAYS] days in SafeNestDiagnostics
+ *
+ * A span or wakelock is charged once per receiver run, so it saves right away and a
+ * reminder that wakes a cached process is not lost when that process is reclaimed;
+ * [addWork] batches arrive every few seconds from the sensor path and only save every
+ * [SAVE_INTERVAL_MS].
+ */
+object EnergyAccounting {
+
+    private const val TAG = "EnergyAccounting"
+    private const val PREFS_NAME = "SafeNestDiagnostics"
+    private const val KEY_DAYS = "energy_days"
+    private const val DAYS = 7
+    private const val SAVE_INTERVAL_MS = 5 * 60 * 1000L
+    const val PROCESS_OWNER = "process"
+
+    // Counter layout per owner and day
+    private const val CPU_NS = 0
+    private const val WALL_NS = 1
+    private const val RUNS = 2
+    private const val WAKELOCK_MS = 3
+    private const val WAKELOCKS = 4
+    private const val FIELDS = 5
+
+    private val days = LinkedHashMap<String, HashMap<String, LongArray>>()
+    private val dayFormat = SimpleDateFormat("yyyy-MM-dd", Locale.US)
+    private var appContext: Context? = null
+    private var lastProcessCpuMs = -1L
+    private var lastSave = 0L
+    private val timeoutHandler = Handler(Looper.getMainLooper())
+
+    /** A running piece of work; [end] charges its thread CPU and wall time to the owner */
+    class Span internal constructor(private val owner: String) {
+        private val cpuStart = Debug.threadCpuTimeNanos()
+        private val wallStart = SystemClock.elapsedRealtimeNanos()
+
+        fun end() {
+            val cpu = if (cpuStart < 0) 0L else Debug.threadCpuTimeNanos() - cpuStart
+            add(owner, cpu, SystemClock.elapsedRealtimeNanos() - wallStart, 1, forceSave = true)
+        }
+    }
+
+    /**
+     * PowerManager wakelock that reports its held time to [owner].
+     * The system drops a lock at its timeout without telling us, so a timer charges the
+     * full timeout then if [release] never came (a hung delivery thread).
+     */
+    class TrackedWakeLock internal constructor(private val owner: String, private val lock: PowerManager.WakeLock) {
+        private var acquiredAt = 0L
+        private var timeoutMs = 0L
+        private val expire = Runnable { charge(timedOut = true) }
+
+        @Synchronized
+        fun acquire(timeoutMs: Long) {
+            if (lock.isHeld) return
+            this.timeoutMs = timeoutMs
+            acquiredAt = SystemClock.elapsedRealtime()
+            lock.acquire(timeoutMs)
+            timeoutHandler.postDelayed(expire, timeoutMs)
+        }
+
+        /** Release if still held; the held time is charged once, by this or the timeout */
+        fun release() {
+            timeoutHandler.removeCallbacks(expire)
+            charge(timedOut = false)
+        }
+
+        @Synchronized
+        private fun charge(timedOut: Boolean) {
+            if (acquiredAt == 0L) return
+            val held = if (timedOut) timeoutMs else (SystemClock.elapsedRealtime() - acquiredAt).coerceAtMost(timeoutMs)
+            acquiredAt = 0L
+            if (lock.isHeld) lock.release()
+            addWakeLock(owner, held)
+        }
+
+        val isHeld: Boolean get() = lock.isHeld
+    }
+
+    @JvmStatic
+    fun init(context: Context) {
+        synchronized(this) {
+            if (appContext == null) {
+                appContext = context.applicationContext
+                load()
+            }
+        }
+    }
+
+    @JvmStatic
+    fun span(context: Context, owner: String): Span {
+        init(context)
+        return Span(owner)
+    }
+
+    @JvmStatic
+    fun newWakeLock(context: Context, owner: String, levelAndFlags: Int): TrackedWakeLock {
+        init(context)
+        val pm = context.getSystemService(Context.POWER_SERVICE) as PowerManager
+        return TrackedWakeLock(owner, pm.newWakeLock(levelAndFlags, "SafeNest:$owner"))
+    }
+
+    /** Charge a batch of work measured by the caller (e.g. N sensor callbacks) */
+    @JvmStatic
+    fun addWork(owner: String, cpuNanos: Long, wallNanos: Long, runs: Long) {
+        add(owner, cpuNanos, wallNanos, runs, forceSave = false)
+    }
+
+    @Synchronized
+    private fun add(owner: String, cpuNanos: Long, wallNanos: Long, runs: Long, forceSave: Boolean) {
+        val c = counters(owner) ?: return
+        c[CPU_NS] += cpuNanos
+        c[WALL_NS] += wallNanos
+        c[RUNS] += runs
+        maybeSave(forceSave)
+    }
+
+    @Synchronized
+    private fun addWakeLock(owner: String, heldMs: Long) {
+        val c = counters(owner) ?: return
+        c[WAKELOCK_MS] += heldMs
+        c[WAKELOCKS]++
+        maybeSave(true)
+    }
+
+    /**
+     * Daily report, newest first: [{ date, processCpuMs, attributedCpuMs, wakeLockMs,
+     * owners: { name: { cpuMs, wallMs, runs, wakeLockMs, wakeLocks, cpuShare } } }]
+     */
+    @Synchronized
+    fun report(context: Context, maxDays: Int): JSArray {
+        init(context)
+        sampleProcessCpu()
+        val out = JSArray()
+        for ((date, owners) in days.entries.reversed().take(maxDays.coerceIn(1, DAYS))) {
+            val processCpuMs = (owners[PROCESS_OWNER]?.get(CPU_NS) ?: 0L) / 1_000_000
+            var attributedNs = 0L
+            var wakeLockMs = 0L
+            for ((name, c) in owners) {
+                if (name == PROCESS_OWNER) continue
+                attributedNs += c[CPU_NS]
+                wakeLockMs += c[WAKELOCK_MS]
+            }
+            val ownersJs = JSObject()
+            for ((name, c) in owners) {
+                if (name == PROCESS_OWNER) continue
+                ownersJs.put(name, JSObject()
+                    .put("cpuMs", c[CPU_NS] / 1_000_000)
+                    .put("wallMs", c[WALL_NS] / 1_000_000)
+                    .put("runs", c[RUNS])
+                    .put("wakeLockMs", c[WAKELOCK_MS])
+                    .put("wakeLocks", c[WAKELOCKS])
+                    .put("cpuShare", if (processCpuMs > 0) c[CPU_NS] / 1_000_000.0 / processCpuMs else 0.0))
+            }
+            out.put(JSObject()
+                .put("date", date)
+                .put("processCpuMs", processCpuMs)
+                .put("attributedCpuMs", attributedNs / 1_000_000)
+                .put("wakeLockMs", wakeLockMs)
+                .put("owners", ownersJs))
+        }
+        return out
+    }
+
+    /** Today's totals as a flat map for the sync layer */
+    @Synchronized
+    fun compactSnapshot(): Map<String, Any> {
+        sampleProcessCpu()
+        val out = HashMap<String, Any>()
+        days[dayFormat.format(Date())]?.forEach { (name, c) ->
+            val key = name.replace('.', '_') // RTDB keys cannot hold dots
+            out[key + "_cpuMs"] = c[CPU_NS] / 1_000_000
+            if (c[WAKELOCK_MS] > 0) out[key + "_wlMs"] = c[WAKELOCK_MS]
+        }
+        out["timestamp"] = System.currentTimeMillis()
+        return out
+    }
+
+    private fun counters(owner: String): LongArray? {
+        if (appContext == null) return null
+        val date = dayFormat.format(Date())
+        val today = days.getOrPut(date) { HashMap() }
+        while (days.size > DAYS) days.remove(days.keys.first())
+        return today.getOrPut(owner) { LongArray(FIELDS) }
+    }
+
+    // Process CPU since the last sample goes to today; a new process starts from its own 0
+    private fun sampleProcessCpu() {
+        val cpuMs = Process.getElapsedCpuTime()
+        val delta = if (lastProcessCpuMs < 0) cpuMs else cpuMs - lastProcessCpuMs
+        lastProcessCpuMs = cpuMs
+        if (delta > 0) counters(PROCESS_OWNER)?.let { it[CPU_NS] += delta * 1_000_000 }
+    }
+
+    private fun maybeSave(force: Boolean) {
+        val now = SystemClock.elapsedRealtime()
+        if (!force && now - lastSave < SAVE_INTERVAL_MS) return
+        lastSave = now
+        sampleProcessCpu()
+        val context = appContext ?: return
+        try {
+            val json = JSONObject()
+            for ((date, owners) in days) {
+                val day = JSONObject()
+                for ((name, c) in owners) day.put(name, JSONArray(c.toList()))
+                json.put(date, day)
+            }
+            context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .edit().putString(KEY_DAYS, json.toString()).apply()
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to save energy accounting", e)
+        }
+    }
+
+    private fun load() {
+        val context = appContext ?: return
+        try {
+            val raw = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).getString(KEY_DAYS, null) ?: return
+            val json = JSONObject(raw)
+            val dates = json.keys().asSequence().sorted().toList().takeLast(DAYS)
+            for (date in dates) {
+                val day = json.getJSONObject(date)
+                val owners = HashMap<String, LongArray>()
+                for (name in day.keys()) {
+                    val values = day.getJSONArray(name)
+                    owners[name] = LongArray(FIELDS) { if (it < values.length()) values.optLong(it) else 0L }
+                }
+                days[date] = owners
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to load energy accounting, starting fresh", e)
+            days.clear()
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.safenest.app.diagnostics
+
+import android.content.Context
+import android.util.Log
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.EOFException
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.Writer
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.Locale
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * Structured on-device event log for the reminder paths, kept after logcat has rolled over.
+ * - [log] writes a fixed-size binary record (time, event id, up to 4 numeric args) into a
+ *   lock-free ring: one atomic increment to claim a slot, plain array stores, one
+ *   volatile publish. No strings are built on the hot path
+ * - Strings (medicine ids) go in as a hash via [text]; each distinct string is kept once
+ *   in a dictionary, HH:mm times via [hhmm]
+ * - [flush] appends records not yet on disk to filesDir/event_log/events.bin, rotating to
+ *   events.1.bin past [MAX_FILE_BYTES], so at most 2 files are kept
+ * - Records are only turned into text by [export], using each event's arg spec
+ *
+ * Readers skip a slot that was overwritten while they read it, so a record lost to a
+ * wrapped ring (more than [CAPACITY] events between flushes) is dropped, never torn.
+ * [flush] stops at the first slot still being written, so a concurrent [log] is never skipped.
+ */
+object EventLog {
+
+    private const val TAG = "EventLog"
+    private const val CAPACITY = 1024 // power of two
+    private const val MASK = CAPACITY - 1L
+    private const val ARGS = 4
+    private const val STRIDE = 2 + ARGS // time, id, args
+    private const val MAX_FILE_BYTES = 256 * 1024L
+    private const val MAX_DICTIONARY = 1024
+    private const val FILE_MAGIC = 0x534E4556 // "SNEV"
+    private const val TYPE_EVENT: Byte = 1
+    private const val TYPE_TEXT: Byte = 2
+
+    // Event ids. The spec lists arg names with a kind: s = text, h = HH:mm, t = epoch ms, b = boolean, n = number
+    const val REMINDER_SCHEDULED = 1
+    const val REMINDER_CANCELLED = 2
+    const val REMINDER_FIRED = 3
+    const val REMINDER_NOTIFIED = 4
+    const val REMINDER_SPOKEN = 5
+    const val ACTION_RECEIVED = 6
+    const val SNOOZE_SCHEDULED = 7
+    const val FOLLOW_UP = 8
+    const val FOLLOW_UP_SCHEDULED = 9
+    const val MARKED_TAKEN = 10
+    const val MARKED_MISSED = 11
+    const val CAREGIVER_ALERT = 12
+    const val FIREBASE_WRITTEN = 13
+    const val ESCALATIONS_CANCELLED = 14
+    const val BOOT_RESCHEDULED = 15
+    const val SLOT_ARMED = 16
+    const val SLOT_FIRED = 17
+    const val SCHEDULE_SYNCED = 18
+    const val SYNC_ATTACHED = 19
+    const val SYNC_DETACHED = 20
+
+    // Values for the numeric "mode", "action", "stage" and "kind" args
+    const val MODE_EXACT = 0
+    const val MODE_EXACT_DOZE = 1
+    const val MODE_EXACT_LEGACY = 2
+    const val ACTION_TAKEN = 0
+    const val ACTION_SNOOZE = 1
+    const val ACTION_SKIP = 2
+    const val STAGE_ALREADY_TAKEN = -1
+    const val STAGE_MISSED = -2
+    const val KIND_ALERT = 0
+    const val KIND_MISSED_LOG = 1
+
+    private val EVENTS = mapOf(
+        REMINDER_SCHEDULED to ("reminder.scheduled" to "medicine:s time:h trigger:t mode:n"),
+        REMINDER_CANCELLED to ("reminder.cancelled" to "medicine:s time:h"),
+        REMINDER_FIRED to ("reminder.fired" to "medicine:s time:h critical:b lateMs:n"),
+        REMINDER_NOTIFIED to ("reminder.notified" to "medicine:s time:h posted:b"),
+        REMINDER_SPOKEN to ("reminder.spoken" to "critical:b"),
+        ACTION_RECEIVED to ("action.received" to "medicine:s time:h action:n"),
+        SNOOZE_SCHEDULED to ("snooze.scheduled" to "medicine:s time:h trigger:t"),
+        FOLLOW_UP to ("followup.check" to "medicine:s time:h stage:n"),
+        FOLLOW_UP_SCHEDULED to ("followup.scheduled" to "medicine:s time:h stage:n delayMin:n"),
+        MARKED_TAKEN to ("dose.taken" to "medicine:s time:h"),
+        MARKED_MISSED to ("dose.missed" to "medicine:s time:h"),
+        CAREGIVER_ALERT to ("caregiver.alert" to "medicine:s time:h critical:b"),
+        FIREBASE_WRITTEN to ("firebase.written" to "medicine:s kind:n"),
+        ESCALATIONS_CANCELLED to ("escalations.cancelled" to "medicine:s time:h"),
+        BOOT_RESCHEDULED to ("boot.rescheduled" to "count:n slots:n"),
+        SLOT_ARMED to ("slot.armed" to "time:h trigger:t mode:n"),
+        SLOT_FIRED to ("slot.fired" to "time:h doses:n lateMs:n"),
+        SCHEDULE_SYNCED to ("schedule.synced" to "medicine:s added:n removed:n"),
+        SYNC_ATTACHED to ("sync.attached" to "listeners:n"),
+        SYNC_DETACHED to ("sync.detached" to "listeners:n")
+    )
+
+    private val cursor = AtomicLong()
+    private val published = AtomicLongArray(CAPACITY)
+    private val records = LongArray(CAPACITY * STRIDE)
+    private val dictionary = ConcurrentHashMap<Int, String>()
+    private val pendingText = ConcurrentLinkedQueue<Int>()
+    private var flushed = 0L
+
+    init {
+        for (i in 0 until CAPACITY) published.set(i, -1L)
+    }
+
+    /** Record one event; unused args are 0 */
+    @JvmStatic
+    @JvmOverloads
+    fun log(event: Int, a0: Long = 0L, a1: Long = 0L, a2: Long = 0L, a3: Long = 0L) {
+        val seq = cursor.getAndIncrement()
+        val slot = (seq and MASK).toInt()
+        published.set(slot, -1L) // claimed, not readable until published again
+        val base = slot * STRIDE
+        records[base] = System.currentTimeMillis()
+        records[base + 1] = event.toLong()
+        records[base + 2] = a0
+        records[base + 3] = a1
+        records[base + 4] = a2
+        records[base + 5] = a3
+        published.set(slot, seq)
+    }
+
+    /** A string arg: its hash goes in the record, the string itself into the dictionary once */
+    @JvmStatic
+    fun text(value: String?): Long {
+        if (value == null) return 0L
+        val hash = value.hashCode()
+        if (dictionary.size < MAX_DICTIONARY && dictionary.putIfAbsent(hash, value) == null) pendingText.add(hash)
+        return hash.toLong()
+    }
+
+    /** "HH:mm" as minutes after midnight, -1 when unparseable */
+    @JvmStatic
+    fun hhmm(value: String?): Long {
+        val colon = value?.indexOf(':') ?: return -1L
+        if (colon <= 0) return -1L
+        val h = value.substring(0, colon).toIntOrNull() ?: return -1L
+        val m = value.substring(colon + 1).take(2).toIntOrNull() ?: return -1L
+        return h * 60L + m
+    }
+
+    @JvmStatic
+    fun bool(value: Boolean): Long = if (value) 1L else 0L
+
+    /** Append records not yet on disk; cheap when nothing was logged since the last flush */
+    @JvmStatic
+    @Synchronized
+    fun flush(context: Context) {
+        val end = cursor.get()
+        if (end == flushed && pendingText.isEmpty()) return
+        val dir = File(context.applicationContext.filesDir, "event_log").apply { mkdirs() }
+        val file = File(dir, "events.bin")
+        try {
+            var fresh = !file.exists()
+            if (!fresh && file.length() > MAX_FILE_BYTES) {
+                File(dir, "events.1.bin").delete()
+                file.renameTo(File(dir, "events.1.bin"))
+                fresh = true
+            }
+            DataOutputStream(FileOutputStream(file, true).buffered()).use { out ->
+                if (fresh) {
+                    out.writeInt(FILE_MAGIC)
+                    // Each file carries the whole dictionary so it can be read on its own
+                    pendingText.clear()
+                    for ((hash, value) in dictionary) writeText(out, hash, value)
+                }
+                while (true) {
+                    val hash = pendingText.poll() ?: break
+                    dictionary[hash]?.let { writeText(out, hash, it) }
+                }
+                val buf = LongArray(STRIDE)
+                var seq = maxOf(flushed, end - CAPACITY)
+                while (seq < end) {
+                    // Claimed but not yet published: stop here and pick it up on the next flush
+                    if (published.get((seq and MASK).toInt()) < seq) break
+                    if (read(seq, buf)) {
+                        out.writeByte(TYPE_EVENT.toInt())
+                        out.writeLong(buf[0])
+                        out.writeShort(buf[1].toInt())
+                        for (i in 0 until ARGS) out.writeLong(buf[2 + i])
+                    }
+                    seq++
+                }
+                flushed = seq
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to flush event log", e)
+        }
+    }
+
+    /** Flush, then write every stored event as one text line, oldest first; returns the count */
+    @JvmStatic
+    fun export(context: Context, writer: Writer): Int {
+        flush(context)
+        val dir = File(context.applicationContext.filesDir, "event_log")
+        val names = HashMap<Int, String>(dictionary)
+        val timeFormat = SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US)
+        var count = 0
+        synchronized(this) {
+            for (file in listOf(File(dir, "events.1.bin"), File(dir, "events.bin"))) {
+                if (!file.exists()) continue
+                try {
+                    DataInputStream(FileInputStream(file).buffered()).use { input ->
+                        if (input.readInt() != FILE_MAGIC) return@use
+                        val args = LongArray(ARGS)
+                        while (true) {
+                            val type = try { input.readByte() } catch (e: EOFException) { break }
+                            if (type == TYPE_TEXT) {
+                                names[input.readInt()] = input.readUTF()
+                                continue
+                            }
+                            val time = input.readLong()
+                            val id = input.readShort().toInt()
+                            for (i in 0 until ARGS) args[i] = input.readLong()
+                            writer.write(format(timeFormat, time, id, args, names))
+                            writer.write("\n")
+                            count++
+                        }
+                    }
+                } catch (e: Exception) {
+                    Log.e(TAG, "Failed to read ${file.name}", e)
+                }
+            }
+        }
+        return count
+    }
+
+    // Seqlock-style read: valid only if the slot still holds [seq] after copying it out
+    private fun read(seq: Long, out: LongArray): Boolean {
+        val slot = (seq and MASK).toInt()
+        if (published.get(slot) != seq) return false
+        System.arraycopy(records, slot * STRIDE, out, 0, STRIDE)
+        return published.get(slot) == seq
+    }
+
+    private fun writeText(out: DataOutputStream, hash: Int, value: String) {
+        out.writeByte(TYPE_TEXT.toInt())
+        out.writeInt(hash)
+        out.writeUTF(value)
+    }
+
+    private fun format(timeFormat: SimpleDateFormat, time: Long, id: Int, args: LongArray, names: Map<Int, String>): String {
+        val (name, spec) = EVENTS[id] ?: ("event.$id" to "")
+        val sb = StringBuilder(timeFormat.format(Date(time))).append(' ').append(name)
+        if (spec.isEmpty()) return sb.toString()
+        spec.split(' ').forEachIndexed { i, field ->
+            if (i >= ARGS) return@forEachIndexed
+            val arg = field.substringBefore(':')
+            val v = args[i]
+            sb.append(' ').append(arg).append('=')
+            when (field.substringAfter(':')) {
+                "s" -> sb.append(names[v.toInt()] ?: "#" + Integer.toHexString(v.toInt()))
+                "h" -> if (v < 0) sb.append('?') else sb.append(String.format(Locale.US, "%02d:%02d", v / 60, v % 60))
+                "t" -> sb.append(timeFormat.format(Date(v)))
+                "b" -> sb.append(v != 0L)
+                else -> sb.append(v)
+            }
+        }
+        return sb.toString()
+    }
+}
@@ -0,0 +1,142 @@
+package com.safenest.app.diagnostics
+
+import android.content.Context
+import android.os.Build
+import android.os.Process
+import android.os.SystemClock
+import android.os.Trace
+import android.util.Log
+import com.getcapacitor.JSArray
+import com.getcapacitor.JSObject
+import org.json.JSONArray
+import org.json.JSONObject
+
+/**
+ * Startup timeline for one app launch.
+ * - Milestones ([mark]) are milliseconds since process start (or since the Activity was
+ *   created on a warm start); only the first mark of each name counts
+ * - Sections ([begin]/[end]) are also emitted as android.os.Trace sections, so they line
+ *   up with system traces (Perfetto / systrace)
+ * - The finished launch is logged as one "StartupTimeline" line and the last
+ *   [HISTORY_SIZE] launches are kept in SafeNestDiagnostics for comparison
+ */
+object StartupTimeline {
+
+    private const val TAG = "StartupTimeline"
+    private const val PREFS_NAME = "SafeNestDiagnostics"
+    private const val KEY_HISTORY = "startup_history"
+    private const val HISTORY_SIZE = 20
+    private const val COLD_START_WINDOW_MS = 10_000L
+
+    const val ACTIVITY_CREATE = "activityCreate"
+    const val PLUGINS_REGISTERED = "pluginsRegistered"
+    const val PLUGIN_LOAD = "pluginLoad"
+    const val FIRST_FRAME = "firstFrame"
+    const val SERVICE_STARTED = "serviceStarted"
+    const val BRIDGE_READY = "bridgeReady"
+    const val FIRST_JS_EVENT = "firstJsEvent"
+    const val DEFERRED_INIT_DONE = "deferredInitDone"
+
+    // Milestones that complete a launch record
+    private val REQUIRED = listOf(FIRST_FRAME, SERVICE_STARTED, BRIDGE_READY)
+
+    private val marks = LinkedHashMap<String, Long>()
+    private val sections = LinkedHashMap<String, Long>()
+    private val openSections = HashMap<String, Long>()
+    private var origin = 0L
+    private var coldStart = true
+    private var launchStartedAt = 0L
+    private var recorded = false
+    private var appContext: Context? = null
+
+    /** Start a launch record; call first thing in Activity.onCreate */
+    @JvmStatic
+    @Synchronized
+    fun beginLaunch(context: Context) {
+        appContext = context.applicationContext
+        val now = SystemClock.elapsedRealtime()
+        // The first Activity of a fresh process is a cold start; measure from process start then.
+        // A process already kept alive by the service or a receiver counts as warm.
+        val processStart = if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) Process.getStartElapsedRealtime() else now
+        coldStart = launchStartedAt == 0L && now - processStart < COLD_START_WINDOW_MS
+        origin = if (coldStart) processStart else now
+        launchStartedAt = System.currentTimeMillis()
+        marks.clear()
+        sections.clear()
+        openSections.clear()
+        recorded = false
+        mark(ACTIVITY_CREATE)
+    }
+
+    @JvmStatic
+    @Synchronized
+    fun mark(name: String) {
+        if (origin == 0L || marks.containsKey(name)) return
+        marks[name] = SystemClock.elapsedRealtime() - origin
+        maybeRecord()
+    }
+
+    @JvmStatic
+    @Synchronized
+    fun begin(section: String) {
+        Trace.beginSection(section)
+        openSections[section] = SystemClock.elapsedRealtime()
+    }
+
+    /** Must be called on the same thread as the matching [begin] (Trace sections nest per thread) */
+    @JvmStatic
+    @Synchronized
+    fun end(section: String) {
+        Trace.endSection()
+        val started = openSections.remove(section) ?: return
+        sections[section] = (sections[section] ?: 0L) + SystemClock.elapsedRealtime() - started
+    }
+
+    @Synchronized
+    fun toJSObject(): JSObject {
+        val m = JSObject()
+        marks.forEach { (k, v) -> m.put(k, v) }
+        val s = JSObject()
+        sections.forEach { (k, v) -> s.put(k, v) }
+        return JSObject().apply {
+            put("launchedAt", launchStartedAt)
+            put("coldStart", coldStart)
+            put("complete", recorded)
+            put("marks", m)
+            put("sections", s)
+        }
+    }
+
+    /** Previous launches, newest last */
+    fun history(context: Context): JSArray {
+        val raw = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).getString(KEY_HISTORY, "[]")
+        return try {
+            JSArray(raw)
+        } catch (e: Exception) {
+            JSArray()
+        }
+    }
+
+    private fun maybeRecord() {
+        if (recorded || !REQUIRED.all { marks.containsKey(it) }) return
+        recorded = true
+        val summary = marks.entries.joinToString(" ") { "${it.key}=${it.value}ms" }
+        Log.i(TAG, (if (coldStart) "cold " else "warm ") + summary)
+
+        val ctx = appContext ?: return
+        try {
+            val prefs = ctx.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+            val old = JSONArray(prefs.getString(KEY_HISTORY, "[]"))
+            val entry = JSONObject()
+                .put("launchedAt", launchStartedAt)
+                .put("coldStart", coldStart)
+                .put("marks", JSONObject(marks as Map<*, *>))
+            val updated = JSONArray()
+            for (i in maxOf(0, old.length() - HISTORY_SIZE + 1) until old.length()) updated.put(old.get(i))
+            updated.put(entry)
+            prefs.edit().putString(KEY_HISTORY, updated.toString()).apply()
+        } catch (e: Exception) {
+            Log.w(TAG, "Failed to store startup history: ${e.message}")
+        }
+    }
+}
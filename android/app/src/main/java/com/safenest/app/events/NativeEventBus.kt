@@ -0,0 +1,138 @@
+package com.safenest.app.events
+
+import android.os.SystemClock
+import android.util.Log
+import com.getcapacitor.Bridge
+import com.getcapacitor.JSArray
+import com.getcapacitor.JSObject
+import com.safenest.app.diagnostics.StartupTimeline
+import java.util.UUID
+
+/**
+ * Native → JS event queue.
+ * - Events get an id and a time-to-live and are buffered until JS calls NativeEvents.ready()
+ * - Each event is dispatched once per page load and stays queued until JS acks it (a reload
+ *   re-delivers); whatever is due goes out as ONE "nativeEvent" window event carrying
+ *   { events: [{ eventId, type, payload }] }, so a backlog flushed on ready() crosses the
+ *   bridge in a single evaluateJavascript call
+ * - Stale events expire instead of popping an emergency screen long after the fact
+ * - [post] with coalesce = true drops an event when one of the same type is still pending
+ */
+object NativeEventBus {
+
+    private const val TAG = "NativeEventBus"
+    const val WINDOW_EVENT = "nativeEvent"
+
+    const val FALL_DETECTED = "fallDetected"
+    const val WIDGET_SOS = "widgetSOS"
+    const val GEOFENCE = "geofence"
+
+    private class PendingEvent(
+        val id: String,
+        val type: String,
+        val payload: JSObject,
+        val expiresAt: Long // elapsedRealtime
+    ) {
+        var dispatched = false
+    }
+
+    private val pending = ArrayList<PendingEvent>()
+    private var bridge: Bridge? = null
+    private var ready = false
+
+    /** Queue an event; returns its id, or null when coalesced into an already pending one */
+    @JvmStatic
+    @JvmOverloads
+    fun post(type: String, payload: JSObject?, ttlMs: Long, coalesce: Boolean = false): String? {
+        val toSend: PendingEvent
+        synchronized(this) {
+            expire()
+            if (coalesce && pending.any { it.type == type }) {
+                Log.d(TAG, "post: $type already pending, coalesced")
+                return null
+            }
+            toSend = PendingEvent(UUID.randomUUID().toString(), type, payload ?: JSObject(), SystemClock.elapsedRealtime() + ttlMs)
+            pending.add(toSend)
+            if (!ready || bridge == null) {
+                Log.d(TAG, "post: $type queued until the bridge is ready (${pending.size} pending)")
+                return toSend.id
+            }
+        }
+        dispatch(listOf(toSend))
+        return toSend.id
+    }
+
+    /** Called by the plugin when the bridge is (re)created; JS is not listening yet */
+    @Synchronized
+    fun attach(bridge: Bridge) {
+        this.bridge = bridge
+        ready = false
+    }
+
+    @Synchronized
+    fun detach(bridge: Bridge) {
+        if (this.bridge === bridge) {
+            this.bridge = null
+            ready = false
+        }
+    }
+
+    /** JS listener installed: deliver everything still pending, once for this page */
+    fun markReady(): Int {
+        val toSend: List<PendingEvent>
+        synchronized(this) {
+            ready = true
+            expire()
+            pending.forEach { it.dispatched = false }
+            toSend = ArrayList(pending)
+        }
+        dispatch(toSend)
+        return toSend.size
+    }
+
+    /** JS handled these events; they will not be delivered again. Returns how many were pending */
+    @Synchronized
+    fun ack(eventIds: Collection<String>): Int {
+        val before = pending.size
+        pending.removeAll { it.id in eventIds }
+        return before - pending.size
+    }
+
+    @Synchronized
+    fun pendingCount(): Int {
+        expire()
+        return pending.size
+    }
+
+    private fun dispatch(events: List<PendingEvent>) {
+        val target = synchronized(this) { bridge } ?: return
+        val batch = JSArray()
+        synchronized(this) {
+            for (event in events) {
+                if (event.dispatched) continue
+                event.dispatched = true
+                batch.put(JSObject().apply {
+                    put("eventId", event.id)
+                    put("type", event.type)
+                    put("payload", event.payload)
+                })
+            }
+        }
+        if (batch.length() == 0) return
+        target.triggerWindowJSEvent(WINDOW_EVENT, JSObject().put("events", batch).toString())
+        // Handed to the bridge: that is the latency being measured, whether or not JS acks
+        StartupTimeline.mark(StartupTimeline.FIRST_JS_EVENT)
+    }
+
+    private fun expire() {
+        val now = SystemClock.elapsedRealtime()
+        val it = pending.iterator()
+        while (it.hasNext()) {
+            val event = it.next()
+            if (event.expiresAt <= now) {
+                Log.w(TAG, "Dropping expired ${event.type} ${event.id}")
+                it.remove()
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.safenest.app.events
+
+import com.getcapacitor.JSObject
+import com.getcapacitor.Plugin
+import com.getcapacitor.PluginCall
+import com.getcapacitor.PluginMethod
+import com.getcapacitor.annotation.CapacitorPlugin
+import com.safenest.app.diagnostics.StartupTimeline
+
+/**
+ * JS side of the [NativeEventBus].
+ * - ready(): call once the "nativeEvent" listener is installed; flushes the queue
+ * - ack({ eventIds }): the events were handled and must not be delivered again
+ */
+@CapacitorPlugin(name = "NativeEvents")
+class NativeEventsPlugin : Plugin() {
+
+    override fun load() {
+        super.load()
+        NativeEventBus.attach(bridge)
+    }
+
+    override fun handleOnDestroy() {
+        NativeEventBus.detach(bridge)
+        super.handleOnDestroy()
+    }
+
+    @PluginMethod
+    fun ready(call: PluginCall) {
+        StartupTimeline.mark(StartupTimeline.BRIDGE_READY)
+        val delivered = NativeEventBus.markReady()
+        call.resolve(JSObject().put("delivered", delivered))
+    }
+
+    @PluginMethod
+    fun ack(call: PluginCall) {
+        val ids = try {
+            call.getArray("eventIds")?.toList<String>()
+        } catch (e: Exception) {
+            null
+        }
+        if (ids.isNullOrEmpty()) {
+            call.reject("eventIds is required")
+            return
+        }
+        call.resolve(JSObject().put("acked", NativeEventBus.ack(ids)))
+    }
+}
@@ -6,10 +6,20 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.os.Build;
 
+import com.safenest.app.location.GeofenceMonitor;
+import com.safenest.app.location.GeofenceService;
+
 public class BootReceiver extends BroadcastReceiver {
     @Override
     public void onReceive(Context context, Intent intent) {
         if (Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction())) {
+            // Safe-zone monitoring runs in its own service; from boot the location type
+            // needs "Allow all the time" access
+            if (GeofenceMonitor.canRun(context)
+                    && GeofenceMonitor.hasBackgroundPermission(context)) {
+                GeofenceService.start(context);
+            }
+
             // Respect the user's toggle persisted by the plugin.
             final String prefsName = "safenest_prefs";
             final String key = "fall_detection_enabled";
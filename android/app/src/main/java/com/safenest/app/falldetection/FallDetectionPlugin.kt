@@ -1,11 +1,13 @@
 package com.safenest.app.falldetection
 
 import android.content.Intent
-import com.getcapacitor.Bridge
+import com.getcapacitor.JSObject
 import com.getcapacitor.Plugin
 import com.getcapacitor.PluginCall
 import com.getcapacitor.PluginMethod
 import com.getcapacitor.annotation.CapacitorPlugin
+import com.safenest.app.sensors.InactivityMonitor
+import com.safenest.app.telemetry.TelemetrySync
 
 @CapacitorPlugin(name = "FallDetection")
 class FallDetectionPlugin : Plugin() {
@@ -26,21 +28,35 @@ class FallDetectionPlugin : Plugin() {
         call.resolve()
     }
 
-    companion object {
-        private var bridgeRef: Bridge? = null
+    /** Detector health: callback/drop rates over the last `windowMinutes` (default 15), CPU cost, false positives */
+    @PluginMethod
+    fun getStats(call: PluginCall) {
+        val window = call.getInt("windowMinutes", 15) ?: 15
+        call.resolve(FallDetectionStats.snapshot(window))
+    }
 
-        fun notifyFallToJs() {
-            bridgeRef?.triggerWindowJSEvent("fallDetected", "{}")
-        }
+    /** Called by JS when the user cancels the fall countdown (counted as a false positive) */
+    @PluginMethod
+    fun reportFalseAlarm(call: PluginCall) {
+        FallDetectionStats.recordCancelled()
+        call.resolve()
     }
 
-    override fun load() {
-        super.load()
-        bridgeRef = bridge
+    /** Last phone movement seen by the service: { lastMovementAt (ms, 0 = never), inactiveMs, monitoring } */
+    @PluginMethod
+    fun getInactivity(call: PluginCall) {
+        val last = InactivityMonitor.lastMovementAt(context)
+        call.resolve(JSObject()
+            .put("lastMovementAt", last)
+            .put("inactiveMs", if (last > 0L) System.currentTimeMillis() - last else 0L)
+            .put("monitoring", InactivityMonitor.isMonitoring))
     }
 
-    override fun handleOnDestroy() {
-        bridgeRef = null
-        super.handleOnDestroy()
+    /** Opt in/out of periodic compact snapshots to the sync layer */
+    @PluginMethod
+    fun setStatsSync(call: PluginCall) {
+        val enabled = call.getBoolean("enabled", false) ?: false
+        TelemetrySync.setEnabled(context, enabled)
+        call.resolve(JSObject().put("enabled", enabled))
     }
 }
\ No newline at end of file
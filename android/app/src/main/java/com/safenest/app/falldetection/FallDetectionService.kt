@@ -5,22 +5,37 @@ import android.app.NotificationManager
 import android.app.Service
 import android.content.Context
 import android.content.Intent
+import android.content.SharedPreferences
+import android.content.pm.ServiceInfo
 import android.hardware.Sensor
 import android.hardware.SensorEvent
 import android.hardware.SensorEventListener
 import android.hardware.SensorManager
+import android.os.Debug
+import android.os.Handler
 import android.os.IBinder
+import android.os.Looper
 import android.os.SharedMemory
+import android.os.SystemClock
 import androidx.core.app.NotificationCompat
+import androidx.core.app.ServiceCompat
+import com.safenest.app.diagnostics.EnergyAccounting
+import com.safenest.app.events.NativeEventBus
+import com.safenest.app.fit.PhoneStepCounter
+import com.safenest.app.reminders.RemoteScheduleSync
+import com.safenest.app.sensors.InactivityMonitor
+import com.safenest.app.sensors.SensorHub
+import com.safenest.app.telemetry.TelemetrySync
+import com.safenest.app.widget.WidgetUpdater
 import kotlin.math.sqrt
 import kotlin.math.abs
 
 // Enhanced fall detection with sensor fusion (accelerometer + gyroscope + pressure)
-class FallDetectionService : Service(), SensorEventListener {
-    private lateinit var sensorManager: SensorManager
-    private var accelSensor: Sensor? = null
-    private var gyroSensor: Sensor? = null
-    private var pressureSensor: Sensor? = null
+class FallDetectionService : Service(), SensorEventListener,
+    SharedPreferences.OnSharedPreferenceChangeListener {
+
+    private lateinit var settingsPrefs: SharedPreferences
+    private lateinit var calibrator: ThresholdCalibrator
 
     // Sensitivity levels: LOW, MEDIUM, HIGH
     private var sensitivityLevel = "MEDIUM"
@@ -29,6 +44,8 @@ class FallDetectionService : Service(), SensorEventListener {
     private var impactThreshold = 22.0f // m/s^2
     private var rotationThreshold = 200.0f // degrees/second
     private var inactivityWindowMs = 2500L
+    private var lastCalibrationCheck = 0L
+    private val calibrationCheckIntervalMs = 60_000L
 
     // Sensor data buffers
     private val accelBuffer = FloatArray(3)
@@ -37,43 +54,116 @@ class FallDetectionService : Service(), SensorEventListener {
     private var pressureDropped = false
 
     private var lastImpactTime = 0L
+    // Last accelerometer threshold crossing; a crossing after a quiet window starts a new impact
+    private var lastAccelImpactTime = 0L
     private var lastFallTime = 0L
     private val fallCooldownMs = 5000L // 5 second cooldown between falls
+    private val fallEventTtlMs = 5 * 60 * 1000L // a countdown for an older fall is no longer useful
+
+    // Telemetry: last event timestamp (ns) per sensor to spot gaps, and the sync timer
+    private val lastEventNanos = LongArray(3)
+    private val expectedIntervalNanos = longArrayOf(20_000_000L, 20_000_000L, 200_000_000L)
+    private val statsHandler = Handler(Looper.getMainLooper())
+    private val statsSyncIntervalMs = 30 * 60 * 1000L
+    private var batchCpuNanos = 0L
+    private var batchWallNanos = 0L
+    private var batchSamples = 0L
+    private val energyBatchSize = 500 // ~5 s of accelerometer + gyroscope
+    private val statsSyncRunnable = object : Runnable {
+        override fun run() {
+            TelemetrySync.upload(this@FallDetectionService, "fallDetection", FallDetectionStats.compactSnapshot())
+            TelemetrySync.upload(this@FallDetectionService, "energy", EnergyAccounting.compactSnapshot())
+            statsHandler.postDelayed(this, statsSyncIntervalMs)
+        }
+    }
 
     override fun onCreate() {
         super.onCreate()
-        sensorManager = getSystemService(Context.SENSOR_SERVICE) as SensorManager
-        
-        // Get all sensors
-        accelSensor = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER)
-        gyroSensor = sensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE)
-        pressureSensor = sensorManager.getDefaultSensor(Sensor.TYPE_PRESSURE)
-
-        // Load sensitivity preference
+        // Load sensitivity preference and keep following it while running
+        calibrator = ThresholdCalibrator(this)
+        settingsPrefs = getSharedPreferences("safenest_settings", Context.MODE_PRIVATE)
+        settingsPrefs.registerOnSharedPreferenceChangeListener(this)
         loadSensitivityLevel()
         
         startForegroundWithNotification()
         
-        // Register all available sensors
-        accelSensor?.also {
-            sensorManager.registerListener(this, it, SensorManager.SENSOR_DELAY_GAME)
-        }
-        gyroSensor?.also {
-            sensorManager.registerListener(this, it, SensorManager.SENSOR_DELAY_GAME)
-        }
-        pressureSensor?.also {
-            sensorManager.registerListener(this, it, SensorManager.SENSOR_DELAY_NORMAL)
-        }
+        // Subscribe to all available sensors through the shared hub, which this service owns
+        SensorHub.subscribe(Sensor.TYPE_ACCELEROMETER, SensorManager.SENSOR_DELAY_GAME, this)
+        SensorHub.subscribe(Sensor.TYPE_GYROSCOPE, SensorManager.SENSOR_DELAY_GAME, this)
+        SensorHub.subscribe(Sensor.TYPE_PRESSURE, SensorManager.SENSOR_DELAY_NORMAL, this)
+        PhoneStepCounter.attach(this)
+        InactivityMonitor.attach(this)
+        SensorHub.start(this)
+        // Caregiver edits to medicines reach the alarms without opening the app
+        RemoteScheduleSync.attach(this)
+
+        FallDetectionStats.markStarted()
+        EnergyAccounting.init(this)
+        WidgetUpdater.setMonitoring(this, true)
+        statsHandler.postDelayed(statsSyncRunnable, statsSyncIntervalMs)
     }
 
     override fun onDestroy() {
-        sensorManager.unregisterListener(this)
+        SensorHub.unsubscribeAll(this)
+        PhoneStepCounter.detach()
+        InactivityMonitor.detach()
+        SensorHub.stop()
+        RemoteScheduleSync.detach()
+        statsHandler.removeCallbacks(statsSyncRunnable)
+        FallDetectionStats.markStopped()
+        flushEnergyBatch()
+        WidgetUpdater.setMonitoring(this, false)
+        settingsPrefs.unregisterOnSharedPreferenceChangeListener(this)
+        calibrator.persist()
         super.onDestroy()
     }
 
+    override fun onSharedPreferenceChanged(prefs: SharedPreferences?, key: String?) {
+        if (key == null || key == "fall_detection_sensitivity") {
+            loadSensitivityLevel()
+        }
+    }
+
     override fun onBind(intent: Intent?): IBinder? = null
 
     override fun onSensorChanged(event: SensorEvent) {
+        val cpuStart = Debug.threadCpuTimeNanos()
+        val wallStart = SystemClock.elapsedRealtimeNanos()
+        processSample(event)
+        recordSampleStats(event, cpuStart, wallStart)
+    }
+
+    private fun recordSampleStats(event: SensorEvent, cpuStart: Long, wallStart: Long) {
+        val index = when (event.sensor.type) {
+            Sensor.TYPE_ACCELEROMETER -> FallDetectionStats.SENSOR_ACCEL
+            Sensor.TYPE_GYROSCOPE -> FallDetectionStats.SENSOR_GYRO
+            Sensor.TYPE_PRESSURE -> FallDetectionStats.SENSOR_PRESSURE
+            else -> return
+        }
+        // Treat gaps well beyond the requested rate as dropped samples
+        val previous = lastEventNanos[index]
+        lastEventNanos[index] = event.timestamp
+        val expected = expectedIntervalNanos[index]
+        val gap = event.timestamp - previous
+        val dropped = if (previous != 0L && gap > expected * 5 / 2) gap / expected - 1 else 0L
+        val cpuNanos = if (cpuStart < 0) 0L else Debug.threadCpuTimeNanos() - cpuStart
+        FallDetectionStats.recordSample(index, dropped, cpuNanos)
+
+        // Energy accounting takes sensor work in batches, not per callback
+        batchCpuNanos += cpuNanos
+        batchWallNanos += SystemClock.elapsedRealtimeNanos() - wallStart
+        if (++batchSamples >= energyBatchSize) flushEnergyBatch()
+    }
+
+    private fun flushEnergyBatch() {
+        if (batchSamples == 0L) return
+        EnergyAccounting.addWork("fallService.sensors", batchCpuNanos, batchWallNanos, batchSamples)
+        batchCpuNanos = 0L
+        batchWallNanos = 0L
+        batchSamples = 0L
+    }
+
+    private fun processSample(event: SensorEvent) {
         when (event.sensor.type) {
             Sensor.TYPE_ACCELEROMETER -> {
                 accelBuffer[0] = event.values[0]
@@ -88,7 +178,15 @@ class FallDetectionService : Service(), SensorEventListener {
                 )
 
                 val now = System.currentTimeMillis()
+                calibrator.add(accelMag, now)
+                if (now - lastCalibrationCheck >= calibrationCheckIntervalMs) {
+                    lastCalibrationCheck = now
+                    applyThresholds()
+                }
+
                 if (accelMag > impactThreshold) {
+                    if (now - lastAccelImpactTime > inactivityWindowMs) FallDetectionStats.recordImpact()
+                    lastAccelImpactTime = now
                     lastImpactTime = now
                 }
 
@@ -101,8 +199,9 @@ class FallDetectionService : Service(), SensorEventListener {
                     if (shouldTriggerFall()) {
                         lastImpactTime = 0L
                         lastFallTime = now
+                        FallDetectionStats.recordTrigger()
                         notifyFall()
-                        FallDetectionPlugin.notifyFallToJs()
+                        NativeEventBus.post(NativeEventBus.FALL_DETECTED, null, fallEventTtlMs, coalesce = true)
                     }
                 }
             }
@@ -158,18 +257,23 @@ class FallDetectionService : Service(), SensorEventListener {
     }
     
     private fun loadSensitivityLevel() {
-        val prefs = getSharedPreferences("safenest_settings", Context.MODE_PRIVATE)
-        sensitivityLevel = prefs.getString("fall_detection_sensitivity", "MEDIUM") ?: "MEDIUM"
-        
-        // Update thresholds based on sensitivity
-        impactThreshold = when (sensitivityLevel) {
+        sensitivityLevel = settingsPrefs.getString("fall_detection_sensitivity", "MEDIUM") ?: "MEDIUM"
+        applyThresholds()
+    }
+
+    // Prefer the wearer's learned threshold; fall back to the preset until enough data exists
+    private fun applyThresholds() {
+        val preset = when (sensitivityLevel) {
             "HIGH" -> 15.0f // Very sensitive
             "MEDIUM" -> 22.0f // Standard
             "LOW" -> 35.0f // Less sensitive
             else -> 22.0f
         }
+        impactThreshold = calibrator.personalImpactThreshold(sensitivityLevel, preset) ?: preset
     }
 
+    // Always declare the explicit type: with none, API 34+ claims every manifest type.
+    // Geofencing runs in its own location-type GeofenceService.
     private fun startForegroundWithNotification() {
         val channelId = "fall_detection_service"
         val nm = getSystemService(Context.NOTIFICATION_SERVICE) as NotificationManager
@@ -188,7 +292,7 @@ class FallDetectionService : Service(), SensorEventListener {
             .setOngoing(true)
             .build()
 
-        startForeground(42, notification)
+        ServiceCompat.startForeground(this, 42, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_HEALTH)
     }
 
     private fun notifyFall() {
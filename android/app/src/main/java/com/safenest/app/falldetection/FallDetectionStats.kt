@@ -0,0 +1,174 @@
+package com.safenest.app.falldetection
+
+import android.os.SystemClock
+import com.getcapacitor.JSObject
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * Process-wide, lock-free counters for the fall detector.
+ * - Written from the sensor thread, read from the plugin thread without locking
+ * - Per-minute ring slots give windowed rates for the last hour
+ * - Detector CPU time is kept as a fixed-bucket histogram
+ */
+object FallDetectionStats {
+
+    const val SENSOR_ACCEL = 0
+    const val SENSOR_GYRO = 1
+    const val SENSOR_PRESSURE = 2
+    private val SENSOR_NAMES = arrayOf("accelerometer", "gyroscope", "pressure")
+
+    // Upper bounds in microseconds; the final bucket catches everything slower
+    private val CPU_BUCKETS_US = longArrayOf(10, 25, 50, 100, 250, 500, 1_000, 5_000)
+
+    private const val SLOTS = 60
+    private const val SLOT_MS = 60_000L
+
+    private val samples = AtomicLongArray(3)
+    private val dropped = AtomicLongArray(3)
+    private val lastSampleAt = AtomicLongArray(3) // elapsedRealtime of last callback
+    private val impacts = AtomicLong()
+    private val triggers = AtomicLong()
+    private val cancelledTriggers = AtomicLong()
+    private val detectorCpuNanos = AtomicLong()
+    private val cpuHistogram = AtomicLongArray(CPU_BUCKETS_US.size + 1)
+    private val startedAt = AtomicLong()
+
+    // Ring of one-minute slots: stamp holds the minute number the slot currently represents
+    private val slotStamp = AtomicLongArray(SLOTS)
+    private val slotCallbacks = AtomicLongArray(SLOTS)
+    private val slotDropped = AtomicLongArray(SLOTS)
+    private val slotTriggers = AtomicLongArray(SLOTS)
+
+    fun markStarted() {
+        startedAt.set(SystemClock.elapsedRealtime())
+    }
+
+    fun markStopped() {
+        startedAt.set(0L)
+    }
+
+    fun recordSample(sensor: Int, droppedSinceLast: Long, cpuNanos: Long) {
+        val now = SystemClock.elapsedRealtime()
+        samples.incrementAndGet(sensor)
+        lastSampleAt.set(sensor, now)
+        detectorCpuNanos.addAndGet(cpuNanos)
+        cpuHistogram.incrementAndGet(cpuBucket(cpuNanos / 1_000))
+        val slot = slotFor(now)
+        slotCallbacks.incrementAndGet(slot)
+        if (droppedSinceLast > 0) {
+            dropped.addAndGet(sensor, droppedSinceLast)
+            slotDropped.addAndGet(slot, droppedSinceLast)
+        }
+    }
+
+    fun recordImpact() {
+        impacts.incrementAndGet()
+    }
+
+    fun recordTrigger() {
+        triggers.incrementAndGet()
+        slotTriggers.incrementAndGet(slotFor(SystemClock.elapsedRealtime()))
+    }
+
+    /** The user dismissed the fall countdown, i.e. a false positive */
+    fun recordCancelled() {
+        cancelledTriggers.incrementAndGet()
+    }
+
+    /** Full snapshot for getStats(); rates are per minute over the requested window */
+    fun snapshot(windowMinutes: Int): JSObject {
+        val now = SystemClock.elapsedRealtime()
+        val window = windowMinutes.coerceIn(1, SLOTS)
+        val (callbacks, droppedInWindow, triggersInWindow) = windowTotals(now, window)
+
+        val sensors = JSObject()
+        for (i in SENSOR_NAMES.indices) {
+            val last = lastSampleAt.get(i)
+            sensors.put(SENSOR_NAMES[i], JSObject().apply {
+                put("samples", samples.get(i))
+                put("dropped", dropped.get(i))
+                put("msSinceLastSample", if (last == 0L) null else now - last)
+            })
+        }
+
+        val histogram = JSObject()
+        for (i in 0 until cpuHistogram.length()) {
+            val label = if (i < CPU_BUCKETS_US.size) "le${CPU_BUCKETS_US[i]}us" else "gt${CPU_BUCKETS_US.last()}us"
+            histogram.put(label, cpuHistogram.get(i))
+        }
+
+        val totalSamples = (0 until 3).sumOf { samples.get(it) }
+        val triggerCount = triggers.get()
+        val started = startedAt.get()
+        return JSObject().apply {
+            put("running", started != 0L)
+            put("uptimeMs", if (started == 0L) 0L else now - started)
+            put("windowMinutes", window)
+            put("callbacksPerMinute", callbacks.toDouble() / window)
+            put("droppedPerMinute", droppedInWindow.toDouble() / window)
+            put("triggersPerHour", triggersInWindow * 60.0 / window)
+            put("sensors", sensors)
+            put("impacts", impacts.get())
+            put("triggers", triggerCount)
+            put("cancelledTriggers", cancelledTriggers.get())
+            put("falsePositiveRate", if (triggerCount == 0L) 0.0 else cancelledTriggers.get().toDouble() / triggerCount)
+            put("detectorCpuMs", detectorCpuNanos.get() / 1_000_000.0)
+            put("detectorCpuUsPerSample", if (totalSamples == 0L) 0.0 else detectorCpuNanos.get() / 1_000.0 / totalSamples)
+            put("detectorCpuHistogram", histogram)
+        }
+    }
+
+    /** Small, flat map for the sync layer; keeps fleet-wide storage cheap */
+    fun compactSnapshot(): Map<String, Any> {
+        val now = SystemClock.elapsedRealtime()
+        val (callbacks, droppedInWindow, _) = windowTotals(now, SLOTS)
+        val totalSamples = (0 until 3).sumOf { samples.get(it) }
+        return mapOf(
+            "cbPerMin" to callbacks / SLOTS,
+            "dropPerMin" to droppedInWindow / SLOTS,
+            "triggers" to triggers.get(),
+            "cancelled" to cancelledTriggers.get(),
+            "cpuUsPerSample" to if (totalSamples == 0L) 0L else detectorCpuNanos.get() / 1_000 / totalSamples,
+            "msSinceAccel" to lastSampleAt.get(SENSOR_ACCEL).let { if (it == 0L) -1L else now - it },
+            "timestamp" to System.currentTimeMillis()
+        )
+    }
+
+    private fun windowTotals(now: Long, window: Int): Triple<Long, Long, Long> {
+        val currentMinute = now / SLOT_MS
+        var callbacks = 0L
+        var droppedTotal = 0L
+        var triggerTotal = 0L
+        for (i in 0 until SLOTS) {
+            val minute = slotStamp.get(i)
+            if (minute > currentMinute - window && minute <= currentMinute) {
+                callbacks += slotCallbacks.get(i)
+                droppedTotal += slotDropped.get(i)
+                triggerTotal += slotTriggers.get(i)
+            }
+        }
+        return Triple(callbacks, droppedTotal, triggerTotal)
+    }
+
+    // Claims the slot for the current minute, clearing whatever the previous hour left in it.
+    // A racing writer may lose a single increment at the minute boundary, which is acceptable.
+    private fun slotFor(now: Long): Int {
+        val minute = now / SLOT_MS
+        val slot = (minute % SLOTS).toInt()
+        val stamp = slotStamp.get(slot)
+        if (stamp != minute && slotStamp.compareAndSet(slot, stamp, minute)) {
+            slotCallbacks.set(slot, 0)
+            slotDropped.set(slot, 0)
+            slotTriggers.set(slot, 0)
+        }
+        return slot
+    }
+
+    private fun cpuBucket(micros: Long): Int {
+        for (i in CPU_BUCKETS_US.indices) {
+            if (micros <= CPU_BUCKETS_US[i]) return i
+        }
+        return CPU_BUCKETS_US.size
+    }
+}
@@ -0,0 +1,132 @@
+package com.safenest.app.falldetection
+
+import kotlin.math.roundToInt
+
+/**
+ * Streaming quantile estimator using the P² algorithm (Jain & Chlamtac, 1985).
+ * - Keeps five markers, so memory stays constant however many samples are added
+ * - O(1) per sample, no allocation after construction
+ * - State can be encoded to a short string and restored after a service restart
+ */
+class P2QuantileEstimator(val quantile: Double) {
+
+    private val heights = DoubleArray(5)
+    private val positions = IntArray(5)
+    private val desired = DoubleArray(5)
+    private val increments = doubleArrayOf(0.0, quantile / 2, quantile, (1 + quantile) / 2, 1.0)
+
+    var count = 0L
+        private set
+
+    fun add(x: Double) {
+        if (count < 5) {
+            heights[count.toInt()] = x
+            count++
+            if (count == 5L) initMarkers()
+            return
+        }
+        count++
+
+        // Find the cell containing x, widening the extreme markers if needed
+        val k = when {
+            x < heights[0] -> { heights[0] = x; 0 }
+            x >= heights[4] -> { heights[4] = x; 3 }
+            else -> {
+                var i = 1
+                while (x >= heights[i]) i++
+                i - 1
+            }
+        }
+        for (i in k + 1 until 5) positions[i]++
+        for (i in 0 until 5) desired[i] += increments[i]
+
+        // Nudge the three middle markers towards their desired positions
+        for (i in 1..3) {
+            val d = desired[i] - positions[i]
+            if ((d >= 1 && positions[i + 1] - positions[i] > 1) ||
+                (d <= -1 && positions[i - 1] - positions[i] < -1)) {
+                val s = if (d >= 0) 1 else -1
+                val candidate = parabolic(i, s)
+                heights[i] = if (heights[i - 1] < candidate && candidate < heights[i + 1]) {
+                    candidate
+                } else {
+                    linear(i, s)
+                }
+                positions[i] += s
+            }
+        }
+    }
+
+    /** Current estimate, or NaN when no samples have been seen */
+    fun value(): Double {
+        if (count == 0L) return Double.NaN
+        if (count < 5) {
+            val sorted = heights.copyOf(count.toInt()).sorted()
+            return sorted[((count - 1) * quantile).roundToInt()]
+        }
+        return heights[2]
+    }
+
+    fun reset() {
+        count = 0L
+        heights.fill(0.0)
+        positions.fill(0)
+        desired.fill(0.0)
+    }
+
+    /** Compact textual form: count|h0..h4|p0..p4|d0..d4 */
+    fun encode(): String = buildString {
+        append(count)
+        append('|').append(heights.joinToString(","))
+        append('|').append(positions.joinToString(","))
+        append('|').append(desired.joinToString(","))
+    }
+
+    private fun initMarkers() {
+        heights.sort()
+        for (i in 0 until 5) positions[i] = i
+        desired[0] = 0.0
+        desired[1] = 2 * quantile
+        desired[2] = 4 * quantile
+        desired[3] = 2 + 2 * quantile
+        desired[4] = 4.0
+    }
+
+    private fun parabolic(i: Int, s: Int): Double {
+        val nPrev = positions[i - 1].toDouble()
+        val nCur = positions[i].toDouble()
+        val nNext = positions[i + 1].toDouble()
+        return heights[i] + s / (nNext - nPrev) * (
+            (nCur - nPrev + s) * (heights[i + 1] - heights[i]) / (nNext - nCur) +
+            (nNext - nCur - s) * (heights[i] - heights[i - 1]) / (nCur - nPrev)
+        )
+    }
+
+    private fun linear(i: Int, s: Int): Double =
+        heights[i] + s * (heights[i + s] - heights[i]) / (positions[i + s] - positions[i])
+
+    companion object {
+        /** Restores an estimator from [encode] output; returns a fresh one if the text is unusable */
+        fun decode(quantile: Double, text: String?): P2QuantileEstimator {
+            val estimator = P2QuantileEstimator(quantile)
+            if (text.isNullOrEmpty()) return estimator
+            try {
+                val parts = text.split('|')
+                if (parts.size != 4) return estimator
+                val h = parts[1].split(',').map { it.toDouble() }
+                val p = parts[2].split(',').map { it.toInt() }
+                val d = parts[3].split(',').map { it.toDouble() }
+                if (h.size != 5 || p.size != 5 || d.size != 5) return estimator
+                for (i in 0 until 5) {
+                    estimator.heights[i] = h[i]
+                    estimator.positions[i] = p[i]
+                    estimator.desired[i] = d[i]
+                }
+                estimator.count = parts[0].toLong()
+            } catch (e: NumberFormatException) {
+                estimator.reset()
+            }
+            return estimator
+        }
+    }
+}
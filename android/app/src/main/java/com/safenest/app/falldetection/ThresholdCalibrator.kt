@@ -0,0 +1,127 @@
+package com.safenest.app.falldetection
+
+import android.content.Context
+import android.content.SharedPreferences
+import java.util.Calendar
+
+/**
+ * Learns a personal impact threshold from the wearer's own acceleration magnitudes.
+ * - Tracks the daily 99.9th percentile with a constant-memory P² sketch
+ * - Folds each finished day into an exponentially weighted baseline; a day's peak is clipped
+ *   against the baseline first, so one unusual day (a dropped phone) barely moves it
+ * - Never returns more than the sensitivity's preset: learning only makes detection more sensitive
+ * - Persists its state periodically so a service restart does not lose the day
+ */
+class ThresholdCalibrator(context: Context) {
+
+    companion object {
+        private const val PREFS_NAME = "fall_detection_calibration"
+        private const val KEY_DAY_START = "day_start"
+        private const val KEY_DAILY_P999 = "daily_p999"
+        private const val KEY_DAILY_P50 = "daily_p50"
+        private const val KEY_BASELINE_P999 = "baseline_p999"
+        private const val KEY_BASELINE_DAYS = "baseline_days"
+
+        private const val PERSIST_INTERVAL_MS = 10 * 60 * 1000L
+        private const val MIN_SAMPLES_TODAY = 30_000L // ~10 minutes of movement at SENSOR_DELAY_GAME
+        private const val BASELINE_ALPHA = 0.3f
+        // A day's peak counts for at most this multiple of the baseline
+        private const val MAX_DAY_RATIO = 1.25f
+
+        // Safety rails: never drop below a gentle sit-down or above a hard fall
+        private const val MIN_THRESHOLD = 12.0f
+        private const val MAX_THRESHOLD = 40.0f
+    }
+
+    private val prefs: SharedPreferences =
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+
+    private var dayStart = prefs.getLong(KEY_DAY_START, 0L)
+    private var nextDayStart = 0L
+    private var lastPersist = 0L
+
+    private val dailyP999 = P2QuantileEstimator.decode(0.999, prefs.getString(KEY_DAILY_P999, null))
+    private val dailyP50 = P2QuantileEstimator.decode(0.5, prefs.getString(KEY_DAILY_P50, null))
+
+    private var baselineP999 = prefs.getFloat(KEY_BASELINE_P999, 0f)
+    private var baselineDays = prefs.getInt(KEY_BASELINE_DAYS, 0)
+
+    init {
+        rollOverIfNeeded(System.currentTimeMillis())
+    }
+
+    /** Feed one accelerometer magnitude (m/s²). Cheap enough to call for every sample. */
+    fun add(magnitude: Float, now: Long) {
+        if (now >= nextDayStart) rollOverIfNeeded(now)
+        dailyP999.add(magnitude.toDouble())
+        dailyP50.add(magnitude.toDouble())
+        if (now - lastPersist >= PERSIST_INTERVAL_MS) persist(now)
+    }
+
+    /**
+     * Personal impact threshold for the given sensitivity, capped at its [preset], or null
+     * while there is not enough history yet (callers should keep using the preset value).
+     */
+    fun personalImpactThreshold(sensitivity: String, preset: Float): Float? {
+        val activityPeak = currentActivityPeak() ?: return null
+        val margin = when (sensitivity) {
+            "HIGH" -> 1.15f
+            "LOW" -> 1.6f
+            else -> 1.35f
+        }
+        return (activityPeak * margin).coerceIn(MIN_THRESHOLD, minOf(MAX_THRESHOLD, preset))
+    }
+
+    /** Typical resting magnitude today (≈ gravity when the phone is still), or NaN */
+    fun dailyMedian(): Double = dailyP50.value()
+
+    fun sampleCount(): Long = dailyP999.count
+
+    fun persist(now: Long = System.currentTimeMillis()) {
+        lastPersist = now
+        prefs.edit()
+            .putLong(KEY_DAY_START, dayStart)
+            .putString(KEY_DAILY_P999, dailyP999.encode())
+            .putString(KEY_DAILY_P50, dailyP50.encode())
+            .putFloat(KEY_BASELINE_P999, baselineP999)
+            .putInt(KEY_BASELINE_DAYS, baselineDays)
+            .apply()
+    }
+
+    private fun currentActivityPeak(): Float? {
+        val today = if (dailyP999.count >= MIN_SAMPLES_TODAY) dailyP999.value().toFloat() else null
+        return when {
+            baselineDays == 0 -> today
+            today == null -> baselineP999
+            else -> blend(today)
+        }
+    }
+
+    // EWMA step with the day's peak clipped, so an outlier day raises the baseline by at most 7.5%
+    private fun blend(dayPeak: Float): Float =
+        baselineP999 * (1 - BASELINE_ALPHA) + minOf(dayPeak, baselineP999 * MAX_DAY_RATIO) * BASELINE_ALPHA
+
+    private fun rollOverIfNeeded(now: Long) {
+        val todayStart = startOfDay(now)
+        if (dayStart != todayStart) {
+            if (dailyP999.count >= MIN_SAMPLES_TODAY) {
+                val finished = dailyP999.value().toFloat()
+                baselineP999 = if (baselineDays == 0) finished else blend(finished)
+                baselineDays++
+            }
+            dailyP999.reset()
+            dailyP50.reset()
+            dayStart = todayStart
+            persist(now)
+        }
+        nextDayStart = Calendar.getInstance().apply {
+            timeInMillis = todayStart
+            add(Calendar.DAY_OF_MONTH, 1)
+        }.timeInMillis
+    }
+
+    private fun startOfDay(now: Long): Long = Calendar.getInstance().apply {
+        timeInMillis = now
+        set(Calendar.HOUR_OF_DAY, 0); set(Calendar.MINUTE, 0); set(Calendar.SECOND, 0); set(Calendar.MILLISECOND, 0)
+    }.timeInMillis
+}
@@ -4,18 +4,24 @@ import android.content.Context
 import android.util.Log
 import com.google.android.gms.auth.api.signin.GoogleSignIn
 import com.google.android.gms.fitness.Fitness
-import com.google.android.gms.fitness.data.DataPoint
-import com.google.android.gms.fitness.data.DataSet
-import com.google.android.gms.fitness.data.DataSource
 import com.google.android.gms.fitness.data.DataType
 import com.google.android.gms.fitness.data.Field
 import com.google.android.gms.fitness.request.DataReadRequest
 import com.google.android.gms.fitness.request.DataUpdateRequest
 import com.google.android.gms.fitness.request.OnDataPointListener
+import com.google.android.gms.fitness.request.SensorRequest
 import com.google.android.gms.fitness.request.SessionInsertRequest
 import com.google.android.gms.tasks.Tasks
 import com.safenest.app.fit.PhoneStepCounter
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Deferred
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.async
+import kotlinx.coroutines.channels.awaitClose
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.callbackFlow
 import kotlinx.coroutines.tasks.await
 import kotlinx.coroutines.withContext
 import java.util.Calendar
@@ -27,12 +33,27 @@ import java.util.*
  * Phone-side repository that reads (and can insert) data to Google Fit on behalf of the app.
  * - Uses coroutines + tasks.await()
  * - All methods are suspend and fail gracefully with logged errors
+ * - getVitalsSnapshot() reads all vitals concurrently and serves a shared TTL cache
+ * - Fallback [VitalsSource] when Health Connect is not available
  * - Replace package name placeholders above if needed
  */
-class FitRepository(private val context: Context) {
+class FitRepository(private val context: Context) : VitalsSource {
 
     companion object {
         private const val TAG = "FitRepository"
+        const val SNAPSHOT_TTL_MS = 15_000L
+
+        // Shared across instances so every caller in the process sees one snapshot
+        private val snapshotLock = Any()
+        private val fetchScope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+        @Volatile private var snapshot: Vitals? = null
+        @Volatile private var snapshotAt = 0L
+        private var inFlight: Deferred<Vitals>? = null
+
+        /** Drop the cached snapshot, e.g. after new data was inserted */
+        fun invalidateSnapshot() {
+            snapshotAt = 0L
+        }
     }
 
     // Declare the FitnessOptions expected by your app (match your Sign-In flow)
@@ -43,10 +64,45 @@ class FitRepository(private val context: Context) {
         .addDataType(DataType.TYPE_DISTANCE_DELTA, com.google.android.gms.fitness.FitnessOptions.ACCESS_READ)
         .build()
 
-    private fun getAccount() = GoogleSignIn.getAccountForExtension(context, fitnessOptions)
+    @Volatile
+    private var cachedAccount: com.google.android.gms.auth.api.signin.GoogleSignInAccount? = null
+
+    // Resolve once; re-resolve only while permissions are still missing (e.g. right after sign-in)
+    private fun getAccount(): com.google.android.gms.auth.api.signin.GoogleSignInAccount {
+        cachedAccount?.let { if (GoogleSignIn.hasPermissions(it, fitnessOptions)) return it }
+        return GoogleSignIn.getAccountForExtension(context, fitnessOptions).also { cachedAccount = it }
+    }
+
+    override val id = "googleFit"
+
+    /**
+     * All vitals in one snapshot, at most [maxAgeMs] old.
+     * The four reads run concurrently; simultaneous callers share one in-flight fetch.
+     */
+    override suspend fun getVitalsSnapshot(maxAgeMs: Long): Vitals {
+        val cached = snapshot
+        if (cached != null && System.currentTimeMillis() - snapshotAt <= maxAgeMs) return cached
+
+        val fetch = synchronized(snapshotLock) {
+            inFlight?.takeIf { it.isActive } ?: fetchScope.async { fetchVitals() }.also { inFlight = it }
+        }
+        return fetch.await()
+    }
+
+    private suspend fun fetchVitals(): Vitals = coroutineScope {
+        val steps = async { getTodaySteps() }
+        val hr = async { getLatestHeartRate() }
+        val calories = async { getCaloriesToday() }
+        val distance = async { getDistanceToday() }
+        Vitals(steps.await(), hr.await(), calories.await(), distance.await()).also {
+            snapshot = it
+            snapshotAt = System.currentTimeMillis()
+            VitalsTimeSeriesStore.get(context).record(it, snapshotAt)
+        }
+    }
 
     /** Request subscriptions so Fit keeps collecting server-side when available. Non-blocking. */
-    suspend fun ensureSubscriptions() = withContext(Dispatchers.IO) {
+    override suspend fun ensureSubscriptions(): Unit = withContext(Dispatchers.IO) {
         try {
             val acct = getAccount()
             if (!GoogleSignIn.hasPermissions(acct, fitnessOptions)) {
@@ -101,6 +157,9 @@ class FitRepository(private val context: Context) {
 
     /** Reads latest heart rate value in the last N minutes (returns null if none) */
     suspend fun getLatestHeartRate(windowMinutes: Long = 30): Float? = withContext(Dispatchers.IO) {
+        // A live sample (from an active LiveHeartRateMonitor) makes the history read unnecessary
+        LiveHeartRateMonitor.latest(maxAgeMs = 60_000)?.let { return@withContext it.bpm }
+
         try {
             val acct = getAccount()
             if (!GoogleSignIn.hasPermissions(acct, fitnessOptions)) throw NotSignedInException()
@@ -127,6 +186,37 @@ class FitRepository(private val context: Context) {
         }
     }
 
+    /**
+     * Live heart rate from Fit's Sensors API (e.g. a paired watch), as a cold Flow.
+     * The listener is registered on collection and removed when the collector goes away.
+     */
+    fun heartRateUpdates(samplingSeconds: Long = 5): Flow<HeartRateSample> = callbackFlow {
+        val acct = getAccount()
+        if (!GoogleSignIn.hasPermissions(acct, fitnessOptions)) throw NotSignedInException()
+
+        val listener = OnDataPointListener { point ->
+            trySend(
+                HeartRateSample(
+                    point.getValue(Field.FIELD_BPM).asFloat(),
+                    point.getEndTime(TimeUnit.MILLISECONDS).takeIf { it > 0 } ?: System.currentTimeMillis(),
+                    HeartRateSample.SOURCE_FIT_SENSORS
+                )
+            )
+        }
+        val client = Fitness.getSensorsClient(context, acct)
+        val request = SensorRequest.Builder()
+            .setDataType(DataType.TYPE_HEART_RATE_BPM)
+            .setSamplingRate(samplingSeconds, TimeUnit.SECONDS)
+            .build()
+        client.add(request, listener).await()
+        Log.d(TAG, "heartRateUpdates: listener registered")
+
+        awaitClose {
+            client.remove(listener)
+            Log.d(TAG, "heartRateUpdates: listener removed")
+        }
+    }
+
     /** Reads calories burned today */
     suspend fun getCaloriesToday(): Float = withContext(Dispatchers.IO) {
         try {
@@ -163,35 +253,36 @@ class FitRepository(private val context: Context) {
         }
     }
 
+    /**
+     * Batch-insert samples received from a companion watch into Google Fit history.
+     * See [WatchSampleIngestor] for dedupe, chunking and resumable progress.
+     */
+    suspend fun insertWatchSamples(samples: List<WatchSample>): WatchIngestResult = withContext(Dispatchers.IO) {
+        val acct = getAccount()
+        if (!GoogleSignIn.hasPermissions(acct, fitnessOptions)) {
+            Log.w(TAG, "insertWatchSamples: not signed in")
+            throw NotSignedInException()
+        }
+        WatchSampleIngestor(context, Fitness.getHistoryClient(context, acct)).ingest(samples)
+    }
+
     /** Helper to insert steps received from a companion (watch) into Google Fit history */
-    suspend fun insertStepsFromWatch(steps: Int, startTimeMs: Long, endTimeMs: Long) = withContext(Dispatchers.IO) {
-        try {
-            val acct = getAccount()
-            if (!GoogleSignIn.hasPermissions(acct, fitnessOptions)) throw NotSignedInException()
+    suspend fun insertStepsFromWatch(steps: Int, startTimeMs: Long, endTimeMs: Long) {
+        insertWatchSamples(listOf(WatchSample(WatchSampleType.STEPS, startTimeMs, endTimeMs, steps.toDouble())))
+    }
 
-            val dataSource = DataSource.Builder()
-                .setAppPackageName(context)
-                .setDataType(DataType.TYPE_STEP_COUNT_DELTA)
-                .setType(DataSource.TYPE_RAW)
-                .setStreamName("safenest_steps_from_watch")
-                .build()
+    /** Steps per local hour in [startMs, endMs) from the on-device ledger (no sensor access) */
+    fun getHourlySteps(startMs: Long, endMs: Long): IntArray =
+        StepLedger.get(context).hourlySteps(startMs, endMs)
 
-            val dp = DataPoint.builder(dataSource)
-                .setTimeInterval(startTimeMs, endTimeMs, TimeUnit.MILLISECONDS)
-                .setField(Field.FIELD_STEPS, steps)
-                .build()
+    /** Daily step totals for the last [days] days, oldest first, from the on-device ledger */
+    fun getDailySteps(days: Int): IntArray = StepLedger.get(context).dailyTotals(days)
 
-            val dataSet = DataSet.builder(dataSource).add(dp).build()
+    /** Rolling 7-day step totals for the last [weeks] weeks, oldest first, from the on-device ledger */
+    fun getWeeklySteps(weeks: Int): IntArray = StepLedger.get(context).weeklyTotals(weeks)
 
-            Fitness.getHistoryClient(context, acct).insertData(dataSet).await()
-            Log.d(TAG, "insertStepsFromWatch: inserted $steps steps")
-        } catch (e: NotSignedInException) {
-            Log.w(TAG, "insertStepsFromWatch: not signed in")
-            throw e
-        } catch (e: Exception) {
-            Log.e(TAG, "insertStepsFromWatch error", e)
-        }
-    }
+    /** Total phone steps in [startMs, endMs) from the on-device ledger */
+    fun getStepsInRange(startMs: Long, endMs: Long): Int = StepLedger.get(context).rangeSteps(startMs, endMs)
 
     private fun startOfDayMillis(): Long {
         val cal = Calendar.getInstance().apply {
@@ -200,18 +291,5 @@ class FitRepository(private val context: Context) {
         return cal.timeInMillis
     }
 
-    // Blocking wrapper for callers from Java (plugins) to request subscriptions synchronously
-    fun ensureSubscriptionsBlocking() {
-        kotlinx.coroutines.runBlocking {
-            ensureSubscriptions()
-        }
-    }
-
-    // Blocking wrappers for simple reads to be used by Java plugins
-    fun getTodayStepsBlocking(): Int = kotlinx.coroutines.runBlocking { getTodaySteps() }
-    fun getLatestHeartRateBlocking(windowMinutes: Long = 30): Float? = kotlinx.coroutines.runBlocking { getLatestHeartRate(windowMinutes) }
-    fun getCaloriesTodayBlocking(): Float = kotlinx.coroutines.runBlocking { getCaloriesToday() }
-    fun getDistanceTodayBlocking(): Float = kotlinx.coroutines.runBlocking { getDistanceToday() }
-
     class NotSignedInException : Exception("Google account not signed in or permissions missing")
 }
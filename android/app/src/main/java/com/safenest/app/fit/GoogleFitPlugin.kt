@@ -0,0 +1,345 @@
+package com.safenest.app.fit
+
+import android.util.Log
+import androidx.activity.result.ActivityResultLauncher
+import com.getcapacitor.JSArray
+import com.getcapacitor.JSObject
+import com.getcapacitor.Plugin
+import com.getcapacitor.PluginCall
+import com.getcapacitor.PluginMethod
+import com.getcapacitor.annotation.CapacitorPlugin
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.TimeoutCancellationException
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.flow.filterNotNull
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import kotlinx.coroutines.withTimeout
+
+/**
+ * GoogleFitPlugin
+ * - Holds one FitRepository and a plugin-scoped coroutine scope
+ * - getVitals() reads from the runtime-selected VitalsSource (Health Connect, else Google Fit)
+ * - getHealthConnectStatus() / requestHealthConnectPermissions(): Health Connect's own
+ *   permission screen via its activity-result contract
+ * - Resolves PluginCalls asynchronously so the shared plugin thread is never parked
+ *   on Fit round trips (other plugins' calls no longer queue behind it)
+ * - Live heart rate is pushed as throttled "heartRate" events instead of being polled
+ * - Every call accepts an optional `timeoutMs`; pending calls are rejected when the
+ *   WebView goes away
+ */
+@CapacitorPlugin(name = "GoogleFit")
+class GoogleFitPlugin : Plugin() {
+
+    companion object {
+        private const val TAG = "GoogleFitPlugin"
+        private const val REQUEST_CODE = 1001 // Internal request code for permissions
+        private const val DEFAULT_TIMEOUT_MS = 15_000L
+    }
+
+    private lateinit var repo: FitRepository
+    private val pluginScope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+
+    // Live heart-rate forwarding; paused while the activity is in the background
+    @Volatile private var liveJob: Job? = null
+    private var liveThrottleMs = 0L
+    @Volatile private var liveWanted = false
+
+    private var healthConnectLauncher: ActivityResultLauncher<Set<String>>? = null
+    private var healthConnectCall: PluginCall? = null
+
+    override fun load() {
+        super.load()
+        repo = FitRepository(context)
+        // Registered through the registry directly: the activity may already be past onCreate
+        try {
+            healthConnectLauncher = activity.activityResultRegistry.register(
+                "safenest_health_connect", HealthConnectVitalsSource.permissionContract()
+            ) { granted -> onHealthConnectResult(granted) }
+        } catch (e: Exception) {
+            Log.w(TAG, "Health Connect permission contract unavailable", e)
+        }
+    }
+
+    override fun handleOnPause() {
+        super.handleOnPause()
+        liveJob?.cancel()
+        liveJob = null
+    }
+
+    override fun handleOnResume() {
+        super.handleOnResume()
+        if (liveWanted && liveJob == null) startLiveJob()
+    }
+
+    override fun handleOnDestroy() {
+        liveWanted = false
+        healthConnectLauncher?.unregister()
+        healthConnectCall?.reject("requestHealthConnectPermissions cancelled", "CANCELLED")
+        healthConnectCall = null
+        pluginScope.cancel()
+        super.handleOnDestroy()
+    }
+
+    @PluginMethod
+    fun hasPermissions(call: PluginCall) {
+        try {
+            val ok = FitSignInHandler(context).hasPermissions()
+            call.resolve(JSObject().put("hasPermissions", ok))
+        } catch (e: Exception) {
+            Log.e(TAG, "hasPermissions error", e)
+            call.reject("hasPermissions error: " + e.message)
+        }
+    }
+
+    @PluginMethod
+    override fun requestPermissions(call: PluginCall) {
+        try {
+            FitSignInHandler(context).requestPermissions(activity, REQUEST_CODE)
+
+            // We resolve immediately; client should call hasPermissions() after user completes flow
+            call.resolve(JSObject().put("started", true))
+        } catch (e: Exception) {
+            Log.e(TAG, "requestPermissions error", e)
+            call.reject("requestPermissions error: " + e.message)
+        }
+    }
+
+    @PluginMethod
+    fun getHealthConnectStatus(call: PluginCall) {
+        launchCall(call, "getHealthConnectStatus") {
+            JSObject().apply {
+                put("status", HealthConnectVitalsSource.sdkStatus(context))
+                put("granted", HealthConnectVitalsSource.isAvailable(context))
+            }
+        }
+    }
+
+    /** Resolves { status, granted } once the user leaves Health Connect's permission screen */
+    @PluginMethod
+    fun requestHealthConnectPermissions(call: PluginCall) {
+        val status = HealthConnectVitalsSource.sdkStatus(context)
+        val launcher = healthConnectLauncher
+        if (status != "available" || launcher == null) {
+            call.resolve(JSObject().put("status", status).put("granted", false))
+            return
+        }
+        if (healthConnectCall != null) {
+            call.reject("A Health Connect permission request is already showing", "BUSY")
+            return
+        }
+        healthConnectCall = call
+        try {
+            launcher.launch(HealthConnectVitalsSource.PERMISSIONS)
+        } catch (e: Exception) {
+            healthConnectCall = null
+            Log.e(TAG, "requestHealthConnectPermissions error", e)
+            call.reject("requestHealthConnectPermissions error: " + e.message)
+        }
+    }
+
+    private fun onHealthConnectResult(granted: Set<String>) {
+        val call = healthConnectCall ?: return
+        healthConnectCall = null
+        val ok = granted.containsAll(HealthConnectVitalsSource.PERMISSIONS)
+        if (ok) VitalsSources.invalidate()
+        call.resolve(JSObject().put("status", "available").put("granted", ok))
+    }
+
+    @PluginMethod
+    fun ensureSubscriptions(call: PluginCall) {
+        launchCall(call, "ensureSubscriptions") {
+            repo.ensureSubscriptions()
+            null
+        }
+    }
+
+    @PluginMethod
+    fun getVitals(call: PluginCall) {
+        launchCall(call, "getVitals") {
+            val source = VitalsSources.select(context)
+            val vitals = source.getVitalsSnapshot()
+            JSObject().apply {
+                put("source", source.id)
+                put("steps", vitals.steps)
+                put("heartRate", vitals.heartRate?.toDouble())
+                put("calories", vitals.calories.toDouble())
+                put("distanceMeters", vitals.distanceMeters.toDouble())
+            }
+        }
+    }
+
+    /**
+     * Phone step history from the on-device ledger (never touches the sensor)
+     * Call from JS: GoogleFit.getStepHistory({ granularity: 'hour' | 'day' | 'week', start?, end?, count? })
+     * Hourly ranges are clamped to the ledger's retained window; the served start comes back as `start`
+     */
+    @PluginMethod
+    fun getStepHistory(call: PluginCall) {
+        launchCall(call, "getStepHistory") {
+            val granularity = call.getString("granularity", "day") ?: "day"
+            var servedStart: Long? = null
+            val values = when (granularity) {
+                "hour" -> {
+                    val end = call.getLong("end", System.currentTimeMillis()) ?: System.currentTimeMillis()
+                    val start = call.getLong("start", end - 24L * 60 * 60 * 1000) ?: (end - 24L * 60 * 60 * 1000)
+                    if (end < start) throw IllegalArgumentException("end is before start")
+                    servedStart = StepLedger.clampStart(start, end)
+                    repo.getHourlySteps(start, end)
+                }
+                "week" -> repo.getWeeklySteps(call.getInt("count", 4) ?: 4)
+                else -> repo.getDailySteps(call.getInt("count", 7) ?: 7)
+            }
+
+            val series = JSArray()
+            values.forEach { series.put(it) }
+            JSObject().apply {
+                put("granularity", granularity)
+                put("values", series)
+                servedStart?.let { put("start", it) }
+            }
+        }
+    }
+
+    /**
+     * Downsampled vitals history from the on-device time-series store
+     * Call from JS: GoogleFit.queryVitalsSeries({ metric: 'heartRate' | 'steps' | 'calories' | 'distance', start?, end?, maxPoints? })
+     * Returns columns { tier, t: [], v: [], min: [], max: [] } sized for charting
+     */
+    @PluginMethod
+    fun queryVitalsSeries(call: PluginCall) {
+        launchCall(call, "queryVitalsSeries") {
+            val metric = VitalMetric.fromKey(call.getString("metric"))
+                ?: throw IllegalArgumentException("unknown metric " + call.getString("metric"))
+            val end = call.getLong("end", System.currentTimeMillis()) ?: System.currentTimeMillis()
+            val start = call.getLong("start", end - 24L * 60 * 60 * 1000) ?: (end - 24L * 60 * 60 * 1000)
+            val maxPoints = call.getInt("maxPoints", 200) ?: 200
+            val (tier, points) = withContext(Dispatchers.IO) {
+                VitalsTimeSeriesStore.get(context).query(metric, start, end, maxPoints)
+            }
+
+            val t = JSArray()
+            val v = JSArray()
+            val min = JSArray()
+            val max = JSArray()
+            for (p in points) {
+                t.put(p.time)
+                v.put(p.value)
+                min.put(p.min)
+                max.put(p.max)
+            }
+            JSObject().apply {
+                put("metric", metric.key)
+                put("tier", tier.name.lowercase())
+                put("t", t)
+                put("v", v)
+                put("min", min)
+                put("max", max)
+            }
+        }
+    }
+
+    /**
+     * Batch-insert watch samples into Google Fit
+     * Call from JS: GoogleFit.insertWatchSamples({ samples: [{ type: 'steps' | 'heartRate' | 'calories' | 'distance', start, end, value }] })
+     * Resolves { inserted, duplicates, failedChunks }; resending the same batch is safe
+     */
+    @PluginMethod
+    fun insertWatchSamples(call: PluginCall) {
+        launchCall(call, "insertWatchSamples") {
+            val array = call.getArray("samples") ?: throw IllegalArgumentException("samples is required")
+            val samples = ArrayList<WatchSample>(array.length())
+            for (i in 0 until array.length()) {
+                val o = array.optJSONObject(i) ?: continue
+                val type = WatchSampleType.fromKey(o.optString("type")) ?: continue
+                val end = o.optLong("end", o.optLong("start"))
+                samples.add(WatchSample(type, o.optLong("start", end), end, o.optDouble("value", -1.0)))
+            }
+            val result = repo.insertWatchSamples(samples)
+            JSObject().apply {
+                put("inserted", result.inserted)
+                put("duplicates", result.duplicates)
+                put("failedChunks", result.failedChunks)
+            }
+        }
+    }
+
+    /**
+     * Stream live heart rate to JS as "heartRate" events, at most one per throttleMs
+     * Call from JS: GoogleFit.startLiveHeartRate({ throttleMs? }) and
+     * GoogleFit.addListener('heartRate', ({ bpm, time, source }) => ...)
+     * A stream that cannot continue (not signed in) ends with one "heartRateError" event ({ code })
+     */
+    @PluginMethod
+    fun startLiveHeartRate(call: PluginCall) {
+        liveThrottleMs = (call.getLong("throttleMs", 5_000L) ?: 5_000L).coerceAtLeast(1_000L)
+        liveWanted = true
+        liveJob?.cancel()
+        startLiveJob()
+        call.resolve(JSObject().put("started", true))
+    }
+
+    @PluginMethod
+    fun stopLiveHeartRate(call: PluginCall) {
+        liveWanted = false
+        liveJob?.cancel()
+        liveJob = null
+        call.resolve()
+    }
+
+    private fun startLiveJob() {
+        var lastSentAt = 0L
+        liveJob = pluginScope.launch {
+            val updates = LiveHeartRateMonitor.updates(context)
+            // A stream that stopped for good is reported once and not resumed on the next onResume
+            val live = this
+            launch {
+                val reason = LiveHeartRateMonitor.failure.filterNotNull().first()
+                liveWanted = false
+                notifyListeners("heartRateError", JSObject().put("code", reason))
+                if (liveJob === live.coroutineContext[Job]) liveJob = null
+                live.cancel()
+            }
+            updates.collect { sample ->
+                val now = System.currentTimeMillis()
+                if (now - lastSentAt < liveThrottleMs) return@collect
+                lastSentAt = now
+                notifyListeners("heartRate", JSObject().apply {
+                    put("bpm", sample.bpm.toDouble())
+                    put("time", sample.timeMs)
+                    put("source", sample.source)
+                })
+            }
+        }
+    }
+
+    /**
+     * Runs [block] in the plugin scope and settles the call exactly once:
+     * resolve on success, reject with TIMEOUT / CANCELLED / NOT_SIGNED_IN / error otherwise.
+     */
+    private fun launchCall(call: PluginCall, name: String, block: suspend () -> JSObject?) {
+        val timeoutMs = call.getLong("timeoutMs", DEFAULT_TIMEOUT_MS) ?: DEFAULT_TIMEOUT_MS
+        pluginScope.launch {
+            try {
+                val result = withTimeout(timeoutMs) { block() }
+                if (result != null) call.resolve(result) else call.resolve()
+            } catch (e: TimeoutCancellationException) {
+                Log.w(TAG, "$name timed out after ${timeoutMs}ms")
+                call.reject("$name timed out", "TIMEOUT")
+            } catch (e: CancellationException) {
+                call.reject("$name cancelled", "CANCELLED")
+                throw e
+            } catch (e: FitRepository.NotSignedInException) {
+                call.reject("$name error: " + e.message, "NOT_SIGNED_IN")
+            } catch (e: Exception) {
+                Log.e(TAG, "$name error", e)
+                call.reject("$name error: " + e.message)
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.safenest.app.fit
+
+import android.content.Context
+import android.os.Build
+import android.util.Log
+import androidx.activity.result.contract.ActivityResultContract
+import androidx.health.connect.client.HealthConnectClient
+import androidx.health.connect.client.PermissionController
+import androidx.health.connect.client.changes.DeletionChange
+import androidx.health.connect.client.changes.UpsertionChange
+import androidx.health.connect.client.permission.HealthPermission
+import androidx.health.connect.client.records.DistanceRecord
+import androidx.health.connect.client.records.HeartRateRecord
+import androidx.health.connect.client.records.Record
+import androidx.health.connect.client.records.StepsRecord
+import androidx.health.connect.client.records.TotalCaloriesBurnedRecord
+import androidx.health.connect.client.request.AggregateRequest
+import androidx.health.connect.client.request.ChangesTokenRequest
+import androidx.health.connect.client.request.ReadRecordsRequest
+import androidx.health.connect.client.time.TimeRangeFilter
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.withContext
+import java.time.Instant
+import java.time.LocalDate
+import java.time.ZoneId
+import kotlin.reflect.KClass
+
+/**
+ * Vitals from Health Connect, pulled incrementally with change tokens.
+ * - The first sync seeds today and yesterday with a full read; later syncs only fetch
+ *   records added, updated or deleted since the stored token
+ * - Token and merged state live in SharedPreferences (SafeNestHealthConnect)
+ * - Steps, calories and distance come from Health Connect's aggregate API, which
+ *   de-duplicates overlapping apps and devices by data-origin priority; summing raw
+ *   records would double-count a phone and a watch. The change feed decides when to
+ *   re-aggregate and supplies the latest heart rate
+ * - Health Connect does its own collection, so there is nothing to subscribe to
+ * - Permissions are requested with [permissionContract] (GoogleFitPlugin.requestHealthConnectPermissions)
+ */
+class HealthConnectVitalsSource(private val context: Context) : VitalsSource {
+
+    companion object {
+        private const val TAG = "HealthConnectVitals"
+        private const val PREFS_NAME = "SafeNestHealthConnect"
+        private const val KEY_TOKEN = "changes_token"
+        private const val KEY_STATE = "vitals_state"
+
+        private val RECORD_TYPES: Set<KClass<out Record>> = setOf(
+            StepsRecord::class,
+            TotalCaloriesBurnedRecord::class,
+            DistanceRecord::class,
+            HeartRateRecord::class
+        )
+
+        val PERMISSIONS: Set<String> = RECORD_TYPES.map { HealthPermission.getReadPermission(it) }.toSet()
+
+        /** "available", "updateRequired" (provider needs installing or updating) or "unavailable" */
+        fun sdkStatus(context: Context): String {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) return "unavailable"
+            return when (HealthConnectClient.getSdkStatus(context)) {
+                HealthConnectClient.SDK_AVAILABLE -> "available"
+                HealthConnectClient.SDK_UNAVAILABLE_PROVIDER_UPDATE_REQUIRED -> "updateRequired"
+                else -> "unavailable"
+            }
+        }
+
+        /** Launches Health Connect's own permission screen; the result is the granted set */
+        fun permissionContract(): ActivityResultContract<Set<String>, Set<String>> =
+            PermissionController.createRequestPermissionResultContract()
+
+        /** Health Connect installed, supported on this OS and all read permissions granted */
+        suspend fun isAvailable(context: Context): Boolean {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) return false // client library needs API 26
+            return try {
+                if (HealthConnectClient.getSdkStatus(context) != HealthConnectClient.SDK_AVAILABLE) return false
+                val granted = HealthConnectClient.getOrCreate(context).permissionController.getGrantedPermissions()
+                granted.containsAll(PERMISSIONS)
+            } catch (e: Exception) {
+                Log.w(TAG, "Health Connect availability check failed: ${e.message}")
+                false
+            }
+        }
+    }
+
+    override val id = "healthConnect"
+
+    private val client by lazy { HealthConnectClient.getOrCreate(context) }
+    private val sync by lazy { IncrementalVitalsSync(ClientFeed(), PrefsSyncStore()) }
+    private val syncLock = Mutex()
+
+    @Volatile private var snapshot: Vitals? = null
+    @Volatile private var snapshotAt = 0L
+    private var totals: Vitals? = null
+    private var totalsDay: LocalDate? = null
+
+    override suspend fun ensureSubscriptions() {}
+
+    override suspend fun getVitalsSnapshot(maxAgeMs: Long): Vitals = withContext(Dispatchers.IO) {
+        snapshot?.let { if (System.currentTimeMillis() - snapshotAt <= maxAgeMs) return@withContext it }
+
+        // Simultaneous callers wait for one sync and then reuse its result
+        syncLock.withLock {
+            snapshot?.let { if (System.currentTimeMillis() - snapshotAt <= maxAgeMs) return@withLock it }
+            val now = System.currentTimeMillis()
+            val synced = sync.sync(now)
+            if (sync.lastChangeCount < 0) Log.i(TAG, "Seeded vitals from a full read")
+            val day = LocalDate.now()
+            // Nothing new since the last aggregate (and still the same day): reuse it
+            if (sync.lastChangeCount != 0 || totalsDay != day || totals == null) {
+                totals = aggregateDay(day, now) ?: synced
+                totalsDay = day
+            }
+            val merged = totals!!.copy(heartRate = synced.heartRate)
+            snapshot = merged
+            snapshotAt = now
+            VitalsTimeSeriesStore.get(context).record(merged, now)
+            merged
+        }
+    }
+
+    // Totals since local midnight, de-duplicated across data origins by Health Connect
+    private suspend fun aggregateDay(day: LocalDate, now: Long): Vitals? = try {
+        val result = client.aggregate(
+            AggregateRequest(
+                metrics = setOf(StepsRecord.COUNT_TOTAL, TotalCaloriesBurnedRecord.ENERGY_TOTAL, DistanceRecord.DISTANCE_TOTAL),
+                timeRangeFilter = TimeRangeFilter.between(day.atStartOfDay(ZoneId.systemDefault()).toInstant(), Instant.ofEpochMilli(now))
+            )
+        )
+        Vitals(
+            steps = (result[StepsRecord.COUNT_TOTAL] ?: 0L).toInt(),
+            heartRate = null,
+            calories = (result[TotalCaloriesBurnedRecord.ENERGY_TOTAL]?.inKilocalories ?: 0.0).toFloat(),
+            distanceMeters = (result[DistanceRecord.DISTANCE_TOTAL]?.inMeters ?: 0.0).toFloat()
+        )
+    } catch (e: Exception) {
+        // Fall back to the record-summed totals rather than reporting nothing
+        Log.w(TAG, "Health Connect aggregate failed: ${e.message}")
+        null
+    }
+
+    private inner class ClientFeed : VitalsChangeFeed {
+
+        override suspend fun newToken(): String =
+            client.getChangesToken(ChangesTokenRequest(recordTypes = RECORD_TYPES))
+
+        override suspend fun changesSince(token: String): VitalsChangesPage {
+            val response = client.getChanges(token)
+            val changes = response.changes.mapNotNull { change ->
+                when (change) {
+                    is UpsertionChange -> toUpsert(change.record)
+                    is DeletionChange -> VitalsChange.Delete(change.recordId)
+                    else -> null
+                }
+            }
+            return VitalsChangesPage(changes, response.nextChangesToken, response.hasMore, response.changesTokenExpired)
+        }
+
+        override suspend fun readSince(startMs: Long): List<VitalsChange.Upsert> {
+            val result = ArrayList<VitalsChange.Upsert>()
+            for (type in RECORD_TYPES) {
+                var pageToken: String? = null
+                do {
+                    val response = client.readRecords(
+                        ReadRecordsRequest(
+                            recordType = type,
+                            timeRangeFilter = TimeRangeFilter.after(Instant.ofEpochMilli(startMs)),
+                            pageToken = pageToken
+                        )
+                    )
+                    response.records.mapNotNullTo(result) { toUpsert(it) }
+                    pageToken = response.pageToken
+                } while (pageToken != null)
+            }
+            return result
+        }
+
+        private fun toUpsert(record: Record): VitalsChange.Upsert? = when (record) {
+            is StepsRecord -> VitalsChange.Upsert(
+                record.metadata.id, VitalsRecordKind.STEPS,
+                record.startTime.toEpochMilli(), record.endTime.toEpochMilli(), record.count.toDouble()
+            )
+            is TotalCaloriesBurnedRecord -> VitalsChange.Upsert(
+                record.metadata.id, VitalsRecordKind.CALORIES,
+                record.startTime.toEpochMilli(), record.endTime.toEpochMilli(), record.energy.inKilocalories
+            )
+            is DistanceRecord -> VitalsChange.Upsert(
+                record.metadata.id, VitalsRecordKind.DISTANCE,
+                record.startTime.toEpochMilli(), record.endTime.toEpochMilli(), record.distance.inMeters
+            )
+            is HeartRateRecord -> record.samples.maxByOrNull { it.time }?.let { sample ->
+                VitalsChange.Upsert(
+                    record.metadata.id, VitalsRecordKind.HEART_RATE,
+                    record.startTime.toEpochMilli(), sample.time.toEpochMilli(), sample.beatsPerMinute.toDouble()
+                )
+            }
+            else -> null
+        }
+    }
+
+    private inner class PrefsSyncStore : VitalsSyncStore {
+        private val prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+
+        override fun load(): Pair<String, String>? {
+            val token = prefs.getString(KEY_TOKEN, null) ?: return null
+            return token to (prefs.getString(KEY_STATE, "") ?: "")
+        }
+
+        override fun save(token: String, state: String) {
+            prefs.edit().putString(KEY_TOKEN, token).putString(KEY_STATE, state).apply()
+        }
+    }
+}
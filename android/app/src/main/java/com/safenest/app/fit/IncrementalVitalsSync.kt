@@ -0,0 +1,206 @@
+package com.safenest.app.fit
+
+import java.util.TimeZone
+import java.util.concurrent.TimeUnit
+
+// Plain-Kotlin core of the incremental vitals sync: no Android or org.json types,
+// so the change-token path runs in JVM unit tests against a fake feed.
+
+enum class VitalsRecordKind { STEPS, CALORIES, DISTANCE, HEART_RATE }
+
+/** One change from the backing store, already reduced to what the vitals need */
+sealed class VitalsChange {
+    /**
+     * A record was inserted or updated. [value] is steps, kcal or meters for interval
+     * records; for heart rate it is the newest sample's bpm, taken at [endMs].
+     */
+    data class Upsert(
+        val id: String,
+        val kind: VitalsRecordKind,
+        val startMs: Long,
+        val endMs: Long,
+        val value: Double
+    ) : VitalsChange()
+
+    data class Delete(val id: String) : VitalsChange()
+}
+
+class VitalsChangesPage(
+    val changes: List<VitalsChange>,
+    val nextToken: String,
+    val hasMore: Boolean,
+    val tokenExpired: Boolean = false
+)
+
+/** Source of change tokens and deltas (Health Connect in the app, a fake in tests) */
+interface VitalsChangeFeed {
+    /** A token positioned at "now" */
+    suspend fun newToken(): String
+
+    suspend fun changesSince(token: String): VitalsChangesPage
+
+    /** Full read used to seed local state when there is no valid token */
+    suspend fun readSince(startMs: Long): List<VitalsChange.Upsert>
+}
+
+/** Persists the change token together with the state it describes */
+interface VitalsSyncStore {
+    fun load(): Pair<String, String>? // token, encoded state
+
+    fun save(token: String, state: String)
+}
+
+/**
+ * Local vitals state built from record deltas.
+ * - Keeps each record's contribution by id, so an update replaces and a delete subtracts
+ * - Running totals per local day are adjusted in place; nothing is re-summed on read
+ * - Only today and yesterday are retained
+ */
+class IncrementalVitalsState(private val zone: TimeZone = TimeZone.getDefault()) {
+
+    companion object {
+        private val DAY_MS = TimeUnit.DAYS.toMillis(1)
+        private const val TOTAL_KINDS = 3 // STEPS, CALORIES, DISTANCE
+    }
+
+    private val records = HashMap<String, VitalsChange.Upsert>()
+    private val dayTotals = HashMap<Long, DoubleArray>()
+
+    val size: Int get() = records.size
+
+    fun apply(change: VitalsChange) {
+        when (change) {
+            is VitalsChange.Upsert -> {
+                records.put(change.id, change)?.let { contribute(it, -1.0) }
+                contribute(change, 1.0)
+            }
+            is VitalsChange.Delete -> records.remove(change.id)?.let { contribute(it, -1.0) }
+        }
+    }
+
+    fun clear() {
+        records.clear()
+        dayTotals.clear()
+    }
+
+    /** Drop records that ended before yesterday */
+    fun prune(now: Long) {
+        val keepFrom = dayOf(now) - 1
+        records.values.removeAll { dayOf(it.endMs) < keepFrom }
+        dayTotals.keys.removeAll { it < keepFrom }
+    }
+
+    fun snapshot(now: Long, heartRateWindowMs: Long): Vitals {
+        val totals = dayTotals[dayOf(now)] ?: DoubleArray(TOTAL_KINDS)
+        val latestHeartRate = records.values
+            .filter { it.kind == VitalsRecordKind.HEART_RATE && it.endMs >= now - heartRateWindowMs && it.endMs <= now }
+            .maxByOrNull { it.endMs }
+        return Vitals(
+            steps = totals[VitalsRecordKind.STEPS.ordinal].toInt(),
+            heartRate = latestHeartRate?.value?.toFloat(),
+            calories = totals[VitalsRecordKind.CALORIES.ordinal].toFloat(),
+            distanceMeters = totals[VitalsRecordKind.DISTANCE.ordinal].toFloat()
+        )
+    }
+
+    /** Midnight (local) of the day before [now]; the window a fresh seed has to read */
+    fun seedStart(now: Long): Long {
+        val yesterday = dayOf(now) - 1
+        val approx = yesterday * DAY_MS
+        return approx - zone.getOffset(approx)
+    }
+
+    /** One record per line: id, kind, start, end, value (tab separated) */
+    fun encode(): String {
+        val sb = StringBuilder(records.size * 64)
+        for (r in records.values) {
+            sb.append(r.id).append('\t').append(r.kind.name).append('\t')
+                .append(r.startMs).append('\t').append(r.endMs).append('\t').append(r.value).append('\n')
+        }
+        return sb.toString()
+    }
+
+    fun decode(text: String) {
+        clear()
+        for (line in text.lineSequence()) {
+            val parts = line.split('\t')
+            if (parts.size != 5) continue
+            val kind = runCatching { VitalsRecordKind.valueOf(parts[1]) }.getOrNull() ?: continue
+            val start = parts[2].toLongOrNull() ?: continue
+            val end = parts[3].toLongOrNull() ?: continue
+            val value = parts[4].toDoubleOrNull() ?: continue
+            apply(VitalsChange.Upsert(parts[0], kind, start, end, value))
+        }
+    }
+
+    // Interval records count towards the local day they started in
+    private fun contribute(record: VitalsChange.Upsert, sign: Double) {
+        if (record.kind == VitalsRecordKind.HEART_RATE) return
+        val totals = dayTotals.getOrPut(dayOf(record.startMs)) { DoubleArray(TOTAL_KINDS) }
+        totals[record.kind.ordinal] += sign * record.value
+    }
+
+    private fun dayOf(t: Long) = (t + zone.getOffset(t)) / DAY_MS
+}
+
+/**
+ * Pulls only the changes since the stored token and merges them into [state].
+ * - No token (first run, cleared data) or an expired token: re-seed from a full read
+ * - The new token is taken before the seed read, so records written meanwhile are
+ *   delivered again as changes (upserts are idempotent)
+ * - Token and state are saved together after every successful sync
+ */
+class IncrementalVitalsSync(
+    private val feed: VitalsChangeFeed,
+    private val store: VitalsSyncStore,
+    private val state: IncrementalVitalsState = IncrementalVitalsState()
+) {
+
+    private var token: String? = null
+    private var loaded = false
+
+    /** Changes merged by the last sync, or -1 when it had to re-seed */
+    var lastChangeCount = 0
+        private set
+
+    suspend fun sync(now: Long = System.currentTimeMillis(), heartRateWindowMs: Long = TimeUnit.MINUTES.toMillis(30)): Vitals {
+        if (!loaded) {
+            store.load()?.let { (savedToken, savedState) ->
+                state.decode(savedState)
+                token = savedToken
+            }
+            loaded = true
+        }
+
+        val current = token
+        if (current == null || !pullChanges(current)) seed(now)
+
+        state.prune(now)
+        token?.let { store.save(it, state.encode()) }
+        return state.snapshot(now, heartRateWindowMs)
+    }
+
+    // Returns false when the token has expired and the caller must re-seed
+    private suspend fun pullChanges(start: String): Boolean {
+        var next = start
+        var merged = 0
+        do {
+            val page = feed.changesSince(next)
+            if (page.tokenExpired) return false
+            page.changes.forEach(state::apply)
+            merged += page.changes.size
+            next = page.nextToken
+        } while (page.hasMore)
+        token = next
+        lastChangeCount = merged
+        return true
+    }
+
+    private suspend fun seed(now: Long) {
+        val fresh = feed.newToken()
+        state.clear()
+        feed.readSince(state.seedStart(now)).forEach(state::apply)
+        token = fresh
+        lastChangeCount = -1
+    }
+}
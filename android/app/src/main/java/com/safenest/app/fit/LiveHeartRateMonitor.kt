@@ -0,0 +1,137 @@
+package com.safenest.app.fit
+
+import android.Manifest
+import android.content.Context
+import android.content.pm.PackageManager
+import android.hardware.Sensor
+import android.hardware.SensorEvent
+import android.hardware.SensorEventListener
+import android.hardware.SensorManager
+import android.util.Log
+import androidx.core.content.ContextCompat
+import com.safenest.app.sensors.SensorHub
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.channels.awaitClose
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.SharedFlow
+import kotlinx.coroutines.flow.SharingStarted
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.callbackFlow
+import kotlinx.coroutines.flow.catch
+import kotlinx.coroutines.flow.onEach
+import kotlinx.coroutines.flow.retryWhen
+import kotlinx.coroutines.flow.shareIn
+
+/** One live heart-rate reading */
+data class HeartRateSample(val bpm: Float, val timeMs: Long, val source: String) {
+    companion object {
+        const val SOURCE_BODY_SENSOR = "bodySensor"
+        const val SOURCE_FIT_SENSORS = "fitSensors"
+    }
+}
+
+/**
+ * Live heart rate as a shared Flow.
+ * - Uses the device's own TYPE_HEART_RATE sensor when it has one and BODY_SENSORS is
+ *   granted (through the SensorHub while the fall service runs it), else Fit's SensorsClient
+ * - Sensor listeners exist only while someone collects; they are released 5 s after the
+ *   last collector leaves, so screen rotations do not re-register
+ * - Every sample is appended to the vitals time series
+ * - A failing source is re-subscribed with backoff (up to [MAX_RETRY_MS]) instead of ending
+ *   the shared stream for every collector
+ * - Not being signed in to Fit is not retried: the stream stops and [failure] reports it,
+ *   and the next updates() call (e.g. after sign-in) builds a fresh stream
+ */
+object LiveHeartRateMonitor {
+
+    private const val TAG = "LiveHeartRate"
+    private const val STOP_TIMEOUT_MS = 5_000L
+    private const val SENSOR_PERIOD_US = 1_000_000 // the heart-rate sensor reports ~1 Hz at most
+    private const val FIRST_RETRY_MS = 2_000L
+    private const val MAX_RETRY_MS = 60_000L
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+
+    const val FAILURE_NOT_SIGNED_IN = "NOT_SIGNED_IN"
+
+    @Volatile private var shared: SharedFlow<HeartRateSample>? = null
+    @Volatile private var last: HeartRateSample? = null
+
+    private val failureState = MutableStateFlow<String?>(null)
+
+    /** Why the current stream stopped for good, or null while it is live or retrying */
+    val failure: StateFlow<String?> = failureState
+
+    /** Hot stream of samples; collecting it starts the sensor, cancelling stops it */
+    fun updates(context: Context): SharedFlow<HeartRateSample> = shared ?: synchronized(this) {
+        shared ?: build(context.applicationContext).also { shared = it }
+    }
+
+    /** Most recent sample if it is at most [maxAgeMs] old and a collector is active */
+    fun latest(maxAgeMs: Long): HeartRateSample? {
+        val sample = last ?: return null
+        val active = (shared?.subscriptionCount?.value ?: 0) > 0
+        return sample.takeIf { active && System.currentTimeMillis() - it.timeMs <= maxAgeMs }
+    }
+
+    private fun build(context: Context): SharedFlow<HeartRateSample> {
+        failureState.value = null
+        val store = VitalsTimeSeriesStore.get(context)
+        val upstream = if (canUseBodySensor(context)) bodySensorUpdates(context) else FitRepository(context).heartRateUpdates()
+        return upstream
+            .onEach {
+                last = it
+                store.append(VitalMetric.HEART_RATE, it.timeMs, it.bpm.toDouble())
+            }
+            .retryWhen { cause, attempt ->
+                // Retrying cannot sign the user in
+                if (cause is FitRepository.NotSignedInException) return@retryWhen false
+                val backoff = (FIRST_RETRY_MS shl attempt.coerceAtMost(5).toInt()).coerceAtMost(MAX_RETRY_MS)
+                Log.w(TAG, "Live heart rate failed (${cause.message}), retrying in ${backoff}ms")
+                delay(backoff)
+                true
+            }
+            .catch { cause ->
+                Log.w(TAG, "Live heart rate stopped: not signed in to Google Fit")
+                synchronized(this@LiveHeartRateMonitor) { shared = null }
+                failureState.value = FAILURE_NOT_SIGNED_IN
+            }
+            .shareIn(scope, SharingStarted.WhileSubscribed(STOP_TIMEOUT_MS), replay = 1)
+    }
+
+    private fun canUseBodySensor(context: Context): Boolean =
+        SensorHub.hasSensor(context, Sensor.TYPE_HEART_RATE) &&
+            ContextCompat.checkSelfPermission(context, Manifest.permission.BODY_SENSORS) == PackageManager.PERMISSION_GRANTED
+
+    private fun bodySensorUpdates(context: Context): Flow<HeartRateSample> = callbackFlow {
+        val listener = object : SensorEventListener {
+            override fun onSensorChanged(event: SensorEvent) {
+                val bpm = event.values.firstOrNull() ?: return
+                // 0 bpm and unreliable readings mean the sensor has no skin contact
+                if (bpm <= 0f || event.accuracy == SensorManager.SENSOR_STATUS_UNRELIABLE) return
+                trySend(HeartRateSample(bpm, System.currentTimeMillis(), HeartRateSample.SOURCE_BODY_SENSOR))
+            }
+
+            override fun onAccuracyChanged(sensor: Sensor?, accuracy: Int) {}
+        }
+
+        // Share the hub's registration while the fall service runs it; otherwise register directly
+        val viaHub = SensorHub.isRunning
+        val sm = context.getSystemService(Context.SENSOR_SERVICE) as SensorManager
+        if (viaHub) {
+            SensorHub.subscribe(Sensor.TYPE_HEART_RATE, SENSOR_PERIOD_US, listener)
+        } else {
+            sm.registerListener(listener, sm.getDefaultSensor(Sensor.TYPE_HEART_RATE), SENSOR_PERIOD_US)
+        }
+        Log.d(TAG, "Body sensor listener registered (hub=$viaHub)")
+
+        awaitClose {
+            if (viaHub) SensorHub.unsubscribe(Sensor.TYPE_HEART_RATE, listener) else sm.unregisterListener(listener)
+            Log.d(TAG, "Body sensor listener released")
+        }
+    }
+}
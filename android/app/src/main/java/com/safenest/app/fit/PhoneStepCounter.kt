@@ -6,45 +6,91 @@ import android.hardware.SensorEvent
 import android.hardware.SensorEventListener
 import android.hardware.SensorManager
 import android.util.Log
-import java.text.SimpleDateFormat
-import java.util.Date
-import java.util.Locale
+import com.safenest.app.sensors.SensorHub
 import java.util.concurrent.CountDownLatch
 import java.util.concurrent.TimeUnit
 
 /**
  * Lightweight phone step counter helper using TYPE_STEP_COUNTER.
- * - Captures cumulative steps since boot and normalizes to today's total using an offset.
- * - Returns null if sensor unavailable or no reading received within timeout.
+ * - Feeds cumulative readings into the [StepLedger], which handles day boundaries and
+ *   counter resets after reboot.
+ * - While the SensorHub is running the step tracker is subscribed with batched delivery
+ *   (steps sit in the sensor FIFO for up to [BATCH_LATENCY_US]), and reads are served from
+ *   the ledger without touching the sensor; a read asks the FIFO to flush for the next one.
+ * - Only with the hub stopped (fall detection off) does a read fall back to a one-shot
+ *   registration; returns null if the sensor is unavailable and the ledger has nothing recorded.
  */
 object PhoneStepCounter {
 
     private const val TAG = "PhoneStepCounter"
-    private const val PREFS_NAME = "phone_steps"
-    private const val KEY_BASE_DATE = "base_date"
-    private const val KEY_BASE_OFFSET = "base_offset"
 
-    private val dateFormat = SimpleDateFormat("yyyyMMdd", Locale.US)
+    private const val SERIES_INTERVAL_MS = 60_000L
+    private const val BATCH_LATENCY_US = 60_000_000
+
+    @Volatile
+    private var appContext: Context? = null
+    @Volatile
+    private var attached = false
+    private var lastSeriesAt = 0L
+
+    // Step tracker subscriber: records every reading so hourly buckets stay accurate,
+    // and samples today's total into the vitals time series at most once a minute
+    private val tracker = object : SensorEventListener {
+        override fun onSensorChanged(event: SensorEvent) {
+            val ctx = appContext ?: return
+            if (event.values.isEmpty()) return
+            val ledger = StepLedger.get(ctx)
+            ledger.record(event.values[0])
+            val now = System.currentTimeMillis()
+            if (now - lastSeriesAt >= SERIES_INTERVAL_MS) {
+                lastSeriesAt = now
+                VitalsTimeSeriesStore.get(ctx).append(VitalMetric.STEPS, now, ledger.todaySteps(now).toDouble())
+            }
+        }
+
+        override fun onAccuracyChanged(sensor: Sensor?, accuracy: Int) {}
+    }
+
+    /** Subscribe the step tracker to the SensorHub (called by the foreground service) */
+    fun attach(context: Context) {
+        appContext = context.applicationContext
+        SensorHub.subscribe(Sensor.TYPE_STEP_COUNTER, SensorManager.SENSOR_DELAY_NORMAL, tracker, BATCH_LATENCY_US)
+        attached = true
+    }
+
+    fun detach() {
+        attached = false
+        SensorHub.unsubscribe(Sensor.TYPE_STEP_COUNTER, tracker)
+        appContext?.let {
+            StepLedger.get(it).flush()
+            VitalsTimeSeriesStore.get(it).flush()
+        }
+    }
 
     fun getTodaySteps(context: Context): Int? {
+        val ledger = StepLedger.get(context)
+
+        // The tracker keeps the ledger current; a still phone simply has no new steps to deliver.
+        // Only a ledger that has never seen the counter (first run) needs a one-shot read
+        if (attached && SensorHub.isRunning && ledger.hasBaseline()) {
+            SensorHub.requestFlush()
+            return ledger.todaySteps()
+        }
+
+        val cumulativeSteps = readOnce(context)
+        if (cumulativeSteps != null) {
+            ledger.record(cumulativeSteps)
+        } else if (!ledger.hasBaseline()) {
+            return null
+        }
+        return ledger.todaySteps()
+    }
+
+    private fun readOnce(context: Context): Float? {
         val sensorManager = context.getSystemService(Context.SENSOR_SERVICE) as? SensorManager
             ?: return null
         val stepCounter = sensorManager.getDefaultSensor(Sensor.TYPE_STEP_COUNTER) ?: return null
 
-        val prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
-        val todayKey = dateFormat.format(Date())
-        val savedDate = prefs.getString(KEY_BASE_DATE, null)
-        var baseOffset = prefs.getFloat(KEY_BASE_OFFSET, 0f)
-
-        // Reset offset at day change
-        if (savedDate == null || savedDate != todayKey) {
-            baseOffset = 0f
-            prefs.edit()
-                .putString(KEY_BASE_DATE, todayKey)
-                .putFloat(KEY_BASE_OFFSET, baseOffset)
-                .apply()
-        }
-
         val latch = CountDownLatch(1)
         var cumulative: Float? = null
 
@@ -68,19 +114,6 @@ object PhoneStepCounter {
         } finally {
             sensorManager.unregisterListener(listener)
         }
-
-        val cumulativeSteps = cumulative ?: return null
-
-        // Initialize base offset on first reading
-        if (baseOffset == 0f) {
-            baseOffset = cumulativeSteps
-            prefs.edit()
-                .putString(KEY_BASE_DATE, todayKey)
-                .putFloat(KEY_BASE_OFFSET, baseOffset)
-                .apply()
-        }
-
-        val todaySteps = (cumulativeSteps - baseOffset).toInt().coerceAtLeast(0)
-        return todaySteps
+        return cumulative
     }
-}
\ No newline at end of file
+}
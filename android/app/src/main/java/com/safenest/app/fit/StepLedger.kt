@@ -0,0 +1,215 @@
+package com.safenest.app.fit
+
+import android.content.Context
+import android.provider.Settings
+import android.util.AtomicFile
+import android.util.Log
+import java.io.File
+import java.nio.ByteBuffer
+import java.util.TimeZone
+import java.util.concurrent.TimeUnit
+
+/**
+ * Reboot-safe ledger of phone steps.
+ * - Turns cumulative TYPE_STEP_COUNTER readings into deltas; a smaller reading or a new
+ *   boot count means the counter was reset, so the new reading itself is the delta
+ * - Stores hourly buckets (8 weeks) and daily rollups (400 days) in one fixed-size file
+ * - Weekly totals are rolled up from the daily buckets on read
+ * - Range queries never touch the sensor
+ *
+ * Buckets are keyed by local-time hour/day numbers, so half-hour time zones line up
+ * with the user's clock.
+ */
+class StepLedger private constructor(private val file: AtomicFile) {
+
+    companion object {
+        private const val TAG = "StepLedger"
+        private const val FILE_NAME = "step_ledger.bin"
+        private const val MAGIC = 0x53544550 // "STEP"
+        private const val VERSION = 1
+
+        const val HOURS = 24 * 7 * 8
+        const val DAYS = 400
+        private const val HEADER_BYTES = 40
+        private const val FILE_BYTES = HEADER_BYTES + (HOURS + DAYS) * 4
+
+        private const val PERSIST_INTERVAL_MS = 30_000L
+        private val HOUR_MS = TimeUnit.HOURS.toMillis(1)
+        private val DAY_MS = TimeUnit.DAYS.toMillis(1)
+
+        /** Earliest start hourlySteps() serves for a range ending at [endMs]; older hours are gone */
+        fun clampStart(startMs: Long, endMs: Long): Long = maxOf(startMs, endMs - HOURS * HOUR_MS)
+
+        @Volatile
+        private var instance: StepLedger? = null
+
+        fun get(context: Context): StepLedger = instance ?: synchronized(this) {
+            instance ?: StepLedger(AtomicFile(File(context.filesDir, FILE_NAME))).also {
+                it.load(context.applicationContext)
+                instance = it
+            }
+        }
+    }
+
+    private lateinit var appContext: Context
+    private var lastCounter = -1L     // last cumulative reading, -1 = no baseline yet
+    private var bootCount = -1        // Settings.Global.BOOT_COUNT at lastCounter
+    private var lastHour = 0L         // newest local hour number held in the hourly ring
+    private var lastDay = 0L          // newest local day number held in the daily ring
+    private val hourly = IntArray(HOURS)
+    private val daily = IntArray(DAYS)
+    private var dirty = false
+    private var lastPersist = 0L
+
+    /** Feed a cumulative step counter reading */
+    @Synchronized
+    fun record(cumulative: Float, now: Long = System.currentTimeMillis()) {
+        val counter = cumulative.toLong()
+        val currentBoot = currentBootCount()
+        val delta = when {
+            lastCounter < 0 -> 0L
+            currentBoot != bootCount || counter < lastCounter -> counter // counter reset by reboot
+            else -> counter - lastCounter
+        }
+        lastCounter = counter
+        bootCount = currentBoot
+
+        advanceTo(now)
+        if (delta > 0) {
+            val steps = delta.coerceAtMost(Int.MAX_VALUE.toLong()).toInt()
+            hourly[(hourOf(now) % HOURS).toInt()] += steps
+            daily[(dayOf(now) % DAYS).toInt()] += steps
+        }
+        dirty = true
+        if (now - lastPersist >= PERSIST_INTERVAL_MS) persist(now)
+    }
+
+    /** True once at least one reading has been recorded */
+    @Synchronized
+    fun hasBaseline(): Boolean = lastCounter >= 0
+
+    @Synchronized
+    fun todaySteps(now: Long = System.currentTimeMillis()): Int = dailyAt(dayOf(now))
+
+    /**
+     * Steps per local hour for [startMs, endMs), oldest first
+     * - The start is clamped to the retained window (see [clampStart]), so at most ~HOURS values
+     * - Throws IllegalArgumentException when endMs < startMs
+     */
+    @Synchronized
+    fun hourlySteps(startMs: Long, endMs: Long): IntArray {
+        require(endMs >= startMs) { "end ($endMs) is before start ($startMs)" }
+        val first = hourOf(clampStart(startMs, endMs))
+        val last = hourOf(endMs - 1)
+        if (last < first) return IntArray(0)
+        return IntArray((last - first + 1).toInt()) { hourlyAt(first + it) }
+    }
+
+    /** Daily totals for the [days] local days ending today, oldest first */
+    @Synchronized
+    fun dailyTotals(days: Int, now: Long = System.currentTimeMillis()): IntArray {
+        val today = dayOf(now)
+        val count = days.coerceIn(0, DAYS)
+        return IntArray(count) { dailyAt(today - (count - 1) + it) }
+    }
+
+    /** Rolling 7-day totals for the [weeks] weeks ending today, oldest first */
+    @Synchronized
+    fun weeklyTotals(weeks: Int, now: Long = System.currentTimeMillis()): IntArray {
+        val count = weeks.coerceIn(0, DAYS / 7)
+        val days = dailyTotals(count * 7, now)
+        return IntArray(count) { w -> (0 until 7).sumOf { days[w * 7 + it] } }
+    }
+
+    /** Total steps in [startMs, endMs), using hourly resolution where available */
+    @Synchronized
+    fun rangeSteps(startMs: Long, endMs: Long): Int =
+        if (endMs <= startMs) 0 else hourlySteps(startMs, endMs).sum()
+
+    @Synchronized
+    fun flush() {
+        if (dirty) persist(System.currentTimeMillis())
+    }
+
+    private fun hourlyAt(hour: Long): Int =
+        if (hour > lastHour || hour <= lastHour - HOURS) 0 else hourly[(hour % HOURS).toInt()]
+
+    private fun dailyAt(day: Long): Int =
+        if (day > lastDay || day <= lastDay - DAYS) 0 else daily[(day % DAYS).toInt()]
+
+    // Clear ring slots that are about to be reused for newer hours/days
+    private fun advanceTo(now: Long) {
+        val hour = hourOf(now)
+        if (hour > lastHour) {
+            val clear = (hour - lastHour).coerceAtMost(HOURS.toLong())
+            for (i in 0 until clear) hourly[((hour - i) % HOURS).toInt()] = 0
+            lastHour = hour
+        }
+        val day = dayOf(now)
+        if (day > lastDay) {
+            val clear = (day - lastDay).coerceAtMost(DAYS.toLong())
+            for (i in 0 until clear) daily[((day - i) % DAYS).toInt()] = 0
+            lastDay = day
+        }
+    }
+
+    private fun localMillis(t: Long) = t + TimeZone.getDefault().getOffset(t)
+    private fun hourOf(t: Long) = localMillis(t) / HOUR_MS
+    private fun dayOf(t: Long) = localMillis(t) / DAY_MS
+
+    private fun currentBootCount(): Int =
+        Settings.Global.getInt(appContext.contentResolver, Settings.Global.BOOT_COUNT, -1)
+
+    private fun load(context: Context) {
+        appContext = context
+        try {
+            val bytes = file.readFully()
+            if (bytes.size != FILE_BYTES) return
+            val buf = ByteBuffer.wrap(bytes)
+            if (buf.int != MAGIC || buf.int != VERSION) return
+            lastCounter = buf.long
+            bootCount = buf.int
+            lastHour = buf.long
+            lastDay = buf.long
+            buf.position(HEADER_BYTES)
+            for (i in 0 until HOURS) hourly[i] = buf.int
+            for (i in 0 until DAYS) daily[i] = buf.int
+        } catch (e: java.io.FileNotFoundException) {
+            migrateLegacyOffset(context)
+        } catch (e: Exception) {
+            Log.w(TAG, "Step ledger unreadable, starting fresh: ${e.message}")
+        }
+    }
+
+    // Carry the old single-offset baseline forward so today's count survives the upgrade
+    private fun migrateLegacyOffset(context: Context) {
+        val prefs = context.getSharedPreferences("phone_steps", Context.MODE_PRIVATE)
+        val today = java.text.SimpleDateFormat("yyyyMMdd", java.util.Locale.US).format(java.util.Date())
+        val offset = prefs.getFloat("base_offset", 0f)
+        if (prefs.getString("base_date", null) == today && offset > 0f) {
+            lastCounter = offset.toLong()
+            bootCount = currentBootCount()
+        }
+    }
+
+    private fun persist(now: Long) {
+        lastPersist = now
+        val buf = ByteBuffer.allocate(FILE_BYTES)
+        buf.putInt(MAGIC).putInt(VERSION)
+        buf.putLong(lastCounter).putInt(bootCount).putLong(lastHour).putLong(lastDay)
+        buf.position(HEADER_BYTES)
+        for (v in hourly) buf.putInt(v)
+        for (v in daily) buf.putInt(v)
+
+        var out: java.io.FileOutputStream? = null
+        try {
+            out = file.startWrite()
+            out.write(buf.array())
+            file.finishWrite(out)
+            dirty = false
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to persist step ledger", e)
+            if (out != null) file.failWrite(out)
+        }
+    }
+}
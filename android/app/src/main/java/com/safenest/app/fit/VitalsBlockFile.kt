@@ -0,0 +1,195 @@
+package com.safenest.app.fit
+
+import com.safenest.app.storage.VarintCodec
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.EOFException
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.util.zip.CRC32
+import kotlin.math.roundToLong
+
+/**
+ * One metric/tier file of framed, columnar point blocks.
+ * - Frame: [int length][long firstTime][long lastTime][int crc32][length bytes of columns];
+ *   the checksum covers both times and the columns
+ * - [recover] cuts the file back to its last intact frame, so a block torn by a crash or a
+ *   full disk costs that block only, not everything appended after it
+ * - Columns (time, value, min, max, count) are delta/varint encoded by [encode] / [decode]
+ *
+ * Plain JVM I/O: callers log and decide what a failure means.
+ */
+internal class VitalsBlockFile(val file: File) {
+
+    companion object {
+        private const val FILE_MAGIC = 0x56545332 // "VTS2"
+        const val HEADER_BYTES = 4 + 8 + 8 + 4
+        // 128 points of five varint columns stay far below this; anything bigger is garbage
+        private const val MAX_BLOCK_BYTES = 64 * 1024
+
+        fun encode(points: List<VitalPoint>, scale: Int): ByteArray {
+            val out = ByteArrayOutputStream(points.size * 6)
+            VarintCodec.writeVarint(out, points.size.toLong())
+            var prevTime = 0L
+            for (p in points) { VarintCodec.writeSigned(out, p.time - prevTime); prevTime = p.time }
+            var prevValue = 0L
+            for (p in points) {
+                val v = (p.value * scale).roundToLong()
+                VarintCodec.writeSigned(out, v - prevValue); prevValue = v
+            }
+            for (p in points) VarintCodec.writeSigned(out, (p.value * scale).roundToLong() - (p.min * scale).roundToLong())
+            for (p in points) VarintCodec.writeSigned(out, (p.max * scale).roundToLong() - (p.value * scale).roundToLong())
+            for (p in points) VarintCodec.writeVarint(out, p.count.toLong())
+            return out.toByteArray()
+        }
+
+        fun decode(bytes: ByteArray, scale: Int, visitor: (VitalPoint) -> Unit) {
+            val reader = VarintCodec.Reader(bytes)
+            val n = reader.varint().toInt()
+            val times = LongArray(n)
+            val values = LongArray(n)
+            val mins = LongArray(n)
+            val maxs = LongArray(n)
+            var acc = 0L
+            for (i in 0 until n) { acc += reader.signed(); times[i] = acc }
+            acc = 0L
+            for (i in 0 until n) { acc += reader.signed(); values[i] = acc }
+            for (i in 0 until n) mins[i] = values[i] - reader.signed()
+            for (i in 0 until n) maxs[i] = values[i] + reader.signed()
+            val s = scale.toDouble()
+            for (i in 0 until n) {
+                visitor(VitalPoint(times[i], values[i] / s, mins[i] / s, maxs[i] / s, reader.varint().toInt()))
+            }
+        }
+
+        private fun checksum(first: Long, last: Long, bytes: ByteArray): Int {
+            val crc = CRC32()
+            for (shift in 56 downTo 0 step 8) crc.update((first shr shift).toInt())
+            for (shift in 56 downTo 0 step 8) crc.update((last shr shift).toInt())
+            crc.update(bytes)
+            return crc.value.toInt()
+        }
+    }
+
+    /**
+     * Drop a torn or corrupt tail, and the whole file if it is not in this format.
+     * Returns the number of bytes cut off.
+     */
+    @Throws(IOException::class)
+    fun recover(): Long {
+        if (!file.exists()) return 0L
+        val size = file.length()
+        var good = 0L
+        DataInputStream(FileInputStream(file).buffered()).use { input ->
+            val magic = try { input.readInt() } catch (e: EOFException) { -1 }
+            if (magic == FILE_MAGIC) {
+                good = 4L
+                while (good < size) {
+                    val frame = readFrame(input) ?: break
+                    if (checksum(frame.first, frame.last, frame.bytes) != frame.crc) break
+                    good += HEADER_BYTES + frame.bytes.size
+                }
+            }
+        }
+        if (good < size) {
+            RandomAccessFile(file, "rw").use { it.setLength(good) }
+        }
+        return size - good
+    }
+
+    /** Append one block; the first block of an empty file also writes the format tag */
+    @Throws(IOException::class)
+    fun append(first: Long, last: Long, encoded: ByteArray) {
+        val fresh = !file.exists() || file.length() == 0L
+        DataOutputStream(FileOutputStream(file, true).buffered()).use { out ->
+            if (fresh) out.writeInt(FILE_MAGIC)
+            writeFrame(out, first, last, encoded)
+        }
+    }
+
+    /**
+     * Hand every block that may overlap [start, end] to [visitor], skipping the others
+     * without reading their columns.
+     */
+    @Throws(IOException::class)
+    fun scan(start: Long, end: Long, visitor: (ByteArray) -> Unit) {
+        if (!file.exists()) return
+        DataInputStream(FileInputStream(file).buffered()).use { input ->
+            if (readMagic(input) != FILE_MAGIC) return
+            while (true) {
+                val length = try { input.readInt() } catch (e: EOFException) { break }
+                val first = input.readLong()
+                val last = input.readLong()
+                input.readInt()
+                if (length !in 0..MAX_BLOCK_BYTES) throw IOException("bad block length $length")
+                if (last < start || first > end) {
+                    input.skipBytes(length)
+                    continue
+                }
+                val bytes = ByteArray(length)
+                input.readFully(bytes)
+                visitor(bytes)
+            }
+        }
+    }
+
+    /** Rewrite the file without blocks that ended before [cutoff]; returns how many were dropped */
+    @Throws(IOException::class)
+    fun compact(cutoff: Long): Int {
+        if (!file.exists()) return 0
+        val tmp = File(file.path + ".tmp")
+        var dropped = 0
+        try {
+            DataInputStream(FileInputStream(file).buffered()).use { input ->
+                if (readMagic(input) != FILE_MAGIC) return 0
+                DataOutputStream(FileOutputStream(tmp).buffered()).use { out ->
+                    out.writeInt(FILE_MAGIC)
+                    while (true) {
+                        val frame = readFrame(input) ?: break
+                        if (frame.last < cutoff) {
+                            dropped++
+                            continue
+                        }
+                        writeFrame(out, frame.first, frame.last, frame.bytes)
+                    }
+                }
+            }
+            if (dropped > 0 && !tmp.renameTo(file)) throw IOException("Failed to replace ${file.name}")
+        } finally {
+            tmp.delete()
+        }
+        return dropped
+    }
+
+    private class Frame(val first: Long, val last: Long, val crc: Int, val bytes: ByteArray)
+
+    private fun readMagic(input: DataInputStream): Int =
+        try { input.readInt() } catch (e: EOFException) { -1 }
+
+    // Null at a clean end of file or where a frame is cut short or implausible
+    private fun readFrame(input: DataInputStream): Frame? = try {
+        val length = input.readInt()
+        val first = input.readLong()
+        val last = input.readLong()
+        val crc = input.readInt()
+        if (length !in 0..MAX_BLOCK_BYTES || last < first) {
+            null
+        } else {
+            Frame(first, last, crc, ByteArray(length).also { input.readFully(it) })
+        }
+    } catch (e: EOFException) {
+        null
+    }
+
+    private fun writeFrame(out: DataOutputStream, first: Long, last: Long, encoded: ByteArray) {
+        out.writeInt(encoded.size)
+        out.writeLong(first)
+        out.writeLong(last)
+        out.writeInt(checksum(first, last, encoded))
+        out.write(encoded)
+    }
+}
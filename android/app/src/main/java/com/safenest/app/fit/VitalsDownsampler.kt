@@ -0,0 +1,109 @@
+package com.safenest.app.fit
+
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.util.TimeZone
+
+/**
+ * Open 1 min / 1 h / 1 day buckets per metric, fed by raw samples.
+ * - Buckets follow local time in [zone], so a day bucket runs from local midnight
+ * - A sample past a bucket's end closes it; the closed point is handed to the caller
+ * - A late sample for an already closed bucket is dropped from the downsampled tiers
+ */
+internal class VitalsDownsampler(private val zone: TimeZone = TimeZone.getDefault()) {
+
+    class Bucket(var start: Long = -1L) {
+        var sum = 0.0
+        var min = Double.MAX_VALUE
+        var max = -Double.MAX_VALUE
+        var last = 0.0
+        var count = 0
+
+        fun add(value: Double, lo: Double = value, hi: Double = value, samples: Int = 1) {
+            sum += value * samples
+            if (lo < min) min = lo
+            if (hi > max) max = hi
+            last = value
+            count += samples
+        }
+
+        fun toPoint(cumulative: Boolean) =
+            VitalPoint(start, if (cumulative) last else sum / count, min, max, count)
+
+        fun reset(newStart: Long) {
+            start = newStart; sum = 0.0; min = Double.MAX_VALUE; max = -Double.MAX_VALUE; last = 0.0; count = 0
+        }
+    }
+
+    companion object {
+        /** Merge points into at most [budget] equal-width buckets, weighting averages by sample count */
+        fun rebucket(points: List<VitalPoint>, start: Long, end: Long, budget: Int, cumulative: Boolean): List<VitalPoint> {
+            if (points.size <= budget) return points
+            val width = ((end - start) / budget).coerceAtLeast(1)
+            val result = ArrayList<VitalPoint>(budget)
+            val bucket = Bucket()
+            for (p in points) {
+                val bucketStart = start + ((p.time - start) / width) * width
+                if (bucket.start != bucketStart) {
+                    if (bucket.count > 0) result.add(bucket.toPoint(cumulative))
+                    bucket.reset(bucketStart)
+                }
+                bucket.add(p.value, p.min, p.max, p.count)
+            }
+            if (bucket.count > 0) result.add(bucket.toPoint(cumulative))
+            return result
+        }
+    }
+
+    private val open = HashMap<String, Bucket>()
+
+    /** Feed one raw sample; [closed] gets every bucket it closes, finest tier first */
+    fun add(metric: VitalMetric, time: Long, value: Double, closed: (VitalTier, VitalPoint) -> Unit) {
+        for (tier in VitalTier.values()) {
+            if (tier == VitalTier.RAW) continue
+            val bucketStart = alignedStart(time, tier)
+            val bucket = open.getOrPut(key(metric, tier)) { Bucket() }
+            if (bucket.start != bucketStart) {
+                if (bucketStart < bucket.start) continue // late sample for a closed bucket
+                if (bucket.count > 0) closed(tier, bucket.toPoint(metric.cumulative))
+                bucket.reset(bucketStart)
+            }
+            bucket.add(value)
+        }
+    }
+
+    /** The bucket still filling for [metric] in [tier], if it has samples */
+    fun openPoint(metric: VitalMetric, tier: VitalTier): VitalPoint? =
+        open[key(metric, tier)]?.takeIf { it.count > 0 }?.toPoint(metric.cumulative)
+
+    fun write(out: DataOutputStream) {
+        val live = open.filterValues { it.count > 0 }
+        out.writeInt(live.size)
+        for ((key, b) in live) {
+            out.writeUTF(key)
+            out.writeLong(b.start); out.writeDouble(b.sum); out.writeDouble(b.min)
+            out.writeDouble(b.max); out.writeDouble(b.last); out.writeInt(b.count)
+        }
+    }
+
+    fun read(input: DataInputStream) {
+        open.clear()
+        repeat(input.readInt()) {
+            val key = input.readUTF()
+            open[key] = Bucket(input.readLong()).apply {
+                sum = input.readDouble(); min = input.readDouble(); max = input.readDouble()
+                last = input.readDouble(); count = input.readInt()
+            }
+        }
+    }
+
+    fun clear() = open.clear()
+
+    // Local-time aligned: offset the epoch time so minute/hour/day edges fall on the local clock
+    private fun alignedStart(time: Long, tier: VitalTier): Long {
+        val offset = zone.getOffset(time)
+        return time - Math.floorMod(time + offset, tier.bucketMs)
+    }
+
+    private fun key(metric: VitalMetric, tier: VitalTier) = metric.key + "_" + tier.name.lowercase()
+}
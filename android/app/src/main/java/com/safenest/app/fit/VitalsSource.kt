@@ -0,0 +1,53 @@
+package com.safenest.app.fit
+
+import android.content.Context
+import android.util.Log
+
+/**
+ * Where vitals come from. Implemented by the Health Connect source (incremental change
+ * tokens) and by [FitRepository] (Google Fit History API, full-window reads).
+ */
+interface VitalsSource {
+    /** Short identifier reported to JS, e.g. "healthConnect" or "googleFit" */
+    val id: String
+
+    suspend fun ensureSubscriptions()
+
+    suspend fun getVitalsSnapshot(maxAgeMs: Long = FitRepository.SNAPSHOT_TTL_MS): Vitals
+}
+
+/**
+ * Picks the vitals source at runtime.
+ * - Health Connect when it is installed and all read permissions are granted
+ * - Google Fit otherwise
+ * The decision is re-checked at most once a minute so a later permission grant is picked up.
+ */
+object VitalsSources {
+
+    private const val TAG = "VitalsSources"
+    private const val RECHECK_INTERVAL_MS = 60_000L
+
+    @Volatile private var selected: VitalsSource? = null
+    @Volatile private var selectedAt = 0L
+
+    /** Re-check on the next select(), e.g. right after a permission grant */
+    fun invalidate() {
+        selectedAt = 0L
+    }
+
+    suspend fun select(context: Context): VitalsSource {
+        val current = selected
+        if (current != null && System.currentTimeMillis() - selectedAt < RECHECK_INTERVAL_MS) return current
+
+        val appContext = context.applicationContext
+        val source = if (HealthConnectVitalsSource.isAvailable(appContext)) {
+            current as? HealthConnectVitalsSource ?: HealthConnectVitalsSource(appContext)
+        } else {
+            current as? FitRepository ?: FitRepository(appContext)
+        }
+        if (source !== current) Log.i(TAG, "Vitals source: ${source.id}")
+        selected = source
+        selectedAt = System.currentTimeMillis()
+        return source
+    }
+}
@@ -0,0 +1,236 @@
+package com.safenest.app.fit
+
+import android.content.Context
+import android.os.Handler
+import android.os.HandlerThread
+import android.util.Log
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.util.concurrent.TimeUnit
+
+/** Vital signs kept in the local time-series store */
+enum class VitalMetric(val key: String, val scale: Int, val cumulative: Boolean) {
+    HEART_RATE("heartRate", 10, false),
+    STEPS("steps", 1, true),        // today's running total
+    CALORIES("calories", 10, true), // today's running total
+    DISTANCE("distance", 10, true); // today's running total, meters
+
+    companion object {
+        fun fromKey(key: String?): VitalMetric? = values().firstOrNull { it.key == key }
+    }
+}
+
+/** Downsampling tiers: bucket width and how long each tier is kept */
+enum class VitalTier(val bucketMs: Long, val retentionMs: Long) {
+    RAW(0L, TimeUnit.DAYS.toMillis(2)),
+    MINUTE(TimeUnit.MINUTES.toMillis(1), TimeUnit.DAYS.toMillis(14)),
+    HOUR(TimeUnit.HOURS.toMillis(1), TimeUnit.DAYS.toMillis(180)),
+    DAY(TimeUnit.DAYS.toMillis(1), TimeUnit.DAYS.toMillis(5 * 365));
+}
+
+/**
+ * One stored point. For downsampled tiers [value] is the bucket average (gauges) or
+ * the last running total (cumulative metrics), with min/max/count over the bucket.
+ */
+data class VitalPoint(val time: Long, val value: Double, val min: Double, val max: Double, val count: Int)
+
+/**
+ * On-device time-series store for vitals.
+ * - Every raw sample also feeds open 1 min / 1 h / 1 day buckets ([VitalsDownsampler]), so all
+ *   tiers stay current; buckets follow local time, so a day bucket runs from local midnight
+ * - Pending points and open buckets are written at most [FLUSH_DELAY_MS] after they change
+ *   (closed hour/day buckets right away), so a process kill loses little
+ * - Points are written in checksummed columnar blocks ([VitalsBlockFile]) whose header lets
+ *   range scans skip blocks cheaply; a torn last block is cut off the first time a file is used
+ * - Each tier has its own retention; expired blocks are dropped by compaction
+ * - Range queries pick the coarsest-needed tier and re-bucket to the requested size
+ *
+ * Layout: filesDir/vitals_ts/{metric}_{tier}.blk (see [VitalsBlockFile]);
+ *   open buckets in filesDir/vitals_ts/open.state
+ */
+class VitalsTimeSeriesStore private constructor(private val dir: File) {
+
+    companion object {
+        private const val TAG = "VitalsTimeSeries"
+        private const val BLOCK_POINTS = 128
+        private val COMPACT_INTERVAL_MS = TimeUnit.HOURS.toMillis(1)
+        private val FLUSH_DELAY_MS = TimeUnit.MINUTES.toMillis(5)
+        private const val OPEN_STATE_FILE = "open.state"
+
+        @Volatile
+        private var instance: VitalsTimeSeriesStore? = null
+
+        fun get(context: Context): VitalsTimeSeriesStore = instance ?: synchronized(this) {
+            instance ?: VitalsTimeSeriesStore(File(context.filesDir, "vitals_ts").apply { mkdirs() })
+                .also { instance = it }
+        }
+    }
+
+    private val pending = HashMap<String, MutableList<VitalPoint>>()
+    private val downsampler = VitalsDownsampler()
+    private val files = HashMap<String, VitalsBlockFile>()
+    private val lastCompaction = HashMap<String, Long>()
+    private val flushHandler by lazy { Handler(HandlerThread(TAG).apply { start() }.looper) }
+    private val flushRunnable = Runnable { flush() }
+    private var flushScheduled = false
+
+    init {
+        restoreOpenBuckets()
+    }
+
+    /** Append a raw sample; downsampled tiers are updated incrementally */
+    @Synchronized
+    fun append(metric: VitalMetric, time: Long, value: Double) {
+        addPoint(metric, VitalTier.RAW, VitalPoint(time, value, value, value, 1))
+        downsampler.add(metric, time, value) { tier, point ->
+            addPoint(metric, tier, point)
+            // Coarse buckets close rarely; write them now rather than on the timer
+            if (tier != VitalTier.MINUTE) writePending(metric, tier)
+        }
+        scheduleFlush()
+    }
+
+    /** Record one vitals snapshot; a missing heart rate is simply skipped */
+    @Synchronized
+    fun record(vitals: Vitals, time: Long = System.currentTimeMillis()) {
+        append(VitalMetric.STEPS, time, vitals.steps.toDouble())
+        vitals.heartRate?.let { append(VitalMetric.HEART_RATE, time, it.toDouble()) }
+        append(VitalMetric.CALORIES, time, vitals.calories.toDouble())
+        append(VitalMetric.DISTANCE, time, vitals.distanceMeters.toDouble())
+    }
+
+    /** Write all pending points to disk and snapshot the open buckets */
+    @Synchronized
+    fun flush() {
+        flushScheduled = false
+        flushHandler.removeCallbacks(flushRunnable)
+        for (metric in VitalMetric.values()) {
+            for (tier in VitalTier.values()) writePending(metric, tier)
+        }
+        persistOpenBuckets()
+    }
+
+    private fun scheduleFlush() {
+        if (flushScheduled) return
+        flushScheduled = true
+        flushHandler.postDelayed(flushRunnable, FLUSH_DELAY_MS)
+    }
+
+    private fun persistOpenBuckets() {
+        val file = File(dir, OPEN_STATE_FILE)
+        val tmp = File(dir, "$OPEN_STATE_FILE.tmp")
+        try {
+            DataOutputStream(FileOutputStream(tmp).buffered()).use { downsampler.write(it) }
+            tmp.renameTo(file)
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to persist open buckets", e)
+            tmp.delete()
+        }
+    }
+
+    private fun restoreOpenBuckets() {
+        val file = File(dir, OPEN_STATE_FILE)
+        if (!file.exists()) return
+        try {
+            DataInputStream(FileInputStream(file).buffered()).use { downsampler.read(it) }
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to restore open buckets", e)
+            downsampler.clear()
+        }
+    }
+
+    /**
+     * Points in [start, end] sized for a chart: at most [maxPoints], from the finest tier
+     * that covers the range without exceeding the budget.
+     */
+    @Synchronized
+    fun query(metric: VitalMetric, start: Long, end: Long, maxPoints: Int): Pair<VitalTier, List<VitalPoint>> {
+        val now = System.currentTimeMillis()
+        val budget = maxPoints.coerceAtLeast(1)
+        val span = (end - start).coerceAtLeast(1)
+        val tier = VitalTier.values().firstOrNull { t ->
+            t != VitalTier.RAW && span / t.bucketMs <= budget && now - t.retentionMs <= start
+        } ?: VitalTier.DAY
+        val useRaw = now - VitalTier.RAW.retentionMs <= start && span <= VitalTier.MINUTE.bucketMs * budget &&
+            countRaw(metric, start, end) <= budget
+        val chosen = if (useRaw) VitalTier.RAW else tier
+
+        val points = ArrayList<VitalPoint>()
+        scan(metric, chosen, start, end) { points.add(it) }
+        if (chosen != VitalTier.RAW) {
+            downsampler.openPoint(metric, chosen)?.let { if (it.time in start..end) points.add(it) }
+        }
+        return chosen to VitalsDownsampler.rebucket(points, start, end, budget, metric.cumulative)
+    }
+
+    /**
+     * Stream every stored point of [tier] in [start, end] to [visitor], block by block,
+     * without materialising the whole range. Pending (unflushed) points come last.
+     */
+    @Synchronized
+    fun scan(metric: VitalMetric, tier: VitalTier, start: Long, end: Long, visitor: (VitalPoint) -> Unit) {
+        val blocks = blockFile(metric, tier)
+        try {
+            blocks.scan(start, end) { bytes ->
+                VitalsBlockFile.decode(bytes, metric.scale) { if (it.time in start..end) visitor(it) }
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to read ${blocks.file.name}", e)
+        }
+        pending[fileKey(metric, tier)]?.forEach { if (it.time in start..end) visitor(it) }
+    }
+
+    private fun countRaw(metric: VitalMetric, start: Long, end: Long): Int {
+        var n = 0
+        scan(metric, VitalTier.RAW, start, end) { n++ }
+        return n
+    }
+
+    private fun addPoint(metric: VitalMetric, tier: VitalTier, point: VitalPoint) {
+        val list = pending.getOrPut(fileKey(metric, tier)) { ArrayList() }
+        list.add(point)
+        if (list.size >= BLOCK_POINTS) writePending(metric, tier)
+    }
+
+    private fun writePending(metric: VitalMetric, tier: VitalTier) {
+        val key = fileKey(metric, tier)
+        val list = pending[key] ?: return
+        if (list.isEmpty()) return
+        val blocks = blockFile(metric, tier)
+        try {
+            blocks.append(list.first().time, list.last().time, VitalsBlockFile.encode(list, metric.scale))
+            list.clear()
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to write block for $key", e)
+        }
+        val now = System.currentTimeMillis()
+        if (now - (lastCompaction[key] ?: 0L) >= COMPACT_INTERVAL_MS) {
+            lastCompaction[key] = now
+            try {
+                blocks.compact(now - tier.retentionMs)
+            } catch (e: Exception) {
+                Log.e(TAG, "Compaction failed for ${blocks.file.name}", e)
+            }
+        }
+    }
+
+    // Opened once per process; a torn tail from a crash mid-append is cut off here
+    private fun blockFile(metric: VitalMetric, tier: VitalTier): VitalsBlockFile {
+        val key = fileKey(metric, tier)
+        files[key]?.let { return it }
+        val blocks = VitalsBlockFile(File(dir, "$key.blk"))
+        try {
+            val cut = blocks.recover()
+            if (cut > 0) Log.w(TAG, "Cut $cut bytes of damaged blocks from ${blocks.file.name}")
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to check ${blocks.file.name}", e)
+        }
+        files[key] = blocks
+        return blocks
+    }
+
+    private fun fileKey(metric: VitalMetric, tier: VitalTier) = metric.key + "_" + tier.name.lowercase()
+}
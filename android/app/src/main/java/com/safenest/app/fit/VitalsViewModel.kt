@@ -4,9 +4,14 @@ import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
 import kotlinx.coroutines.CoroutineExceptionHandler
 import kotlinx.coroutines.Dispatchers
-import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.SharingStarted
 import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.combine
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.flow.onStart
+import kotlinx.coroutines.flow.stateIn
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
 
@@ -22,13 +27,23 @@ data class Vitals(
 
 /**
  * VitalsViewModel
- * - Periodically refreshes data from FitRepository
- * - Exposes StateFlow for UI binding
+ * - Loads a snapshot from the selected VitalsSource on start and on refresh()
+ * - Heart rate streams live from [liveHeartRate] instead of periodic history reads
+ * - Exposes StateFlow for UI binding; the live listener only runs while the UI collects
  */
-class VitalsViewModel(private val repo: FitRepository) : ViewModel() {
+class VitalsViewModel(
+    private val repo: VitalsSource,
+    liveHeartRate: Flow<HeartRateSample>
+) : ViewModel() {
 
-    private val _vitals = MutableStateFlow(Vitals())
-    val vitals: StateFlow<Vitals> = _vitals
+    private val snapshot = MutableStateFlow(Vitals())
+
+    val vitals: StateFlow<Vitals> = combine(
+        snapshot,
+        liveHeartRate.map<HeartRateSample, HeartRateSample?> { it }.onStart { emit(null) }
+    ) { base, live ->
+        if (live == null) base else base.copy(heartRate = live.bpm)
+    }.stateIn(viewModelScope, SharingStarted.WhileSubscribed(5_000), Vitals())
 
     private val _error = MutableStateFlow<String?>(null)
     val error: StateFlow<String?> = _error
@@ -42,22 +57,12 @@ class VitalsViewModel(private val repo: FitRepository) : ViewModel() {
             // Ensure Fit subscriptions so data arrives from Wear and device sensors
             repo.ensureSubscriptions()
             refresh() // initial
-
-            // Periodic refresh; tweak interval as needed
-            while (true) {
-                delay(30_000)
-                refresh()
-            }
         }
     }
 
     suspend fun refresh() = withContext(Dispatchers.IO) {
         try {
-            val steps = repo.getTodaySteps()
-            val hr = repo.getLatestHeartRate()
-            val calories = repo.getCaloriesToday()
-            val dist = repo.getDistanceToday()
-            _vitals.value = Vitals(steps, hr, calories, dist)
+            snapshot.value = repo.getVitalsSnapshot()
             _error.value = null
         } catch (e: FitRepository.NotSignedInException) {
             _error.value = "Sign-in required"
@@ -0,0 +1,183 @@
+package com.safenest.app.fit
+
+import android.content.Context
+import android.util.Log
+import com.google.android.gms.fitness.HistoryClient
+import com.google.android.gms.fitness.data.DataPoint
+import com.google.android.gms.fitness.data.DataSet
+import com.google.android.gms.fitness.data.DataSource
+import com.google.android.gms.fitness.data.DataType
+import com.google.android.gms.fitness.data.Field
+import com.google.android.gms.fitness.request.DataReadRequest
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import kotlinx.coroutines.tasks.await
+import java.util.concurrent.TimeUnit
+
+/** Sample kinds a companion watch can send; each maps to one Fit data source */
+enum class WatchSampleType(
+    val key: String,
+    val dataType: DataType,
+    val field: Field,
+    val streamName: String,
+    val instantaneous: Boolean
+) {
+    STEPS("steps", DataType.TYPE_STEP_COUNT_DELTA, Field.FIELD_STEPS, "safenest_steps_from_watch", false),
+    HEART_RATE("heartRate", DataType.TYPE_HEART_RATE_BPM, Field.FIELD_BPM, "safenest_hr_from_watch", true),
+    CALORIES("calories", DataType.TYPE_CALORIES_EXPENDED, Field.FIELD_CALORIES, "safenest_calories_from_watch", false),
+    DISTANCE("distance", DataType.TYPE_DISTANCE_DELTA, Field.FIELD_DISTANCE, "safenest_distance_from_watch", false);
+
+    companion object {
+        fun fromKey(key: String?): WatchSampleType? = values().firstOrNull { it.key == key }
+    }
+}
+
+data class WatchSample(val type: WatchSampleType, val startMs: Long, val endMs: Long, val value: Double)
+
+data class WatchIngestResult(val inserted: Int, val duplicates: Int, val failedChunks: Int)
+
+/**
+ * Batched watch-to-phone ingestion into Google Fit.
+ * - Drops repeated intervals (last value wins) and delta samples overlapping an earlier one
+ * - Checks each type against what our watch DataSource already holds for the batch's time
+ *   range (one history read per type): samples whose (start, end) is already stored, or
+ *   delta samples overlapping a stored one, are duplicates. A resent batch after a crash or
+ *   timeout only inserts what is still missing, and late out-of-order samples still land
+ * - Coalesces each type into DataSets of up to [MAX_POINTS_PER_DATASET] points on one
+ *   DataSource, instead of one insert per sample
+ * - Inserts at most [PARALLEL_INSERTS] chunks at a time
+ */
+class WatchSampleIngestor(private val context: Context, private val history: HistoryClient) {
+
+    companion object {
+        private const val TAG = "WatchSampleIngestor"
+        const val MAX_POINTS_PER_DATASET = 1000
+        const val PARALLEL_INSERTS = 3
+    }
+
+    suspend fun ingest(samples: List<WatchSample>): WatchIngestResult = coroutineScope {
+        val permits = Semaphore(PARALLEL_INSERTS)
+        var inserted = 0
+        var duplicates = 0
+        var failed = 0
+
+        val perType = samples.groupBy { it.type }.mapNotNull { (type, list) ->
+            val stored = permits.withPermit { storedIntervals(type, list) }
+            if (stored == null) {
+                // Without knowing what is stored, inserting could double count; let the caller resend
+                failed++
+                return@mapNotNull null
+            }
+            val unique = dedupe(type, list, stored)
+            duplicates += list.size - unique.size
+            type to unique.chunked(MAX_POINTS_PER_DATASET)
+        }
+
+        perType.map { (type, chunks) ->
+            async {
+                chunks.map { chunk ->
+                    async { permits.withPermit { insertChunk(type, chunk) } }
+                }.awaitAll()
+            }
+        }.awaitAll().forEachIndexed { i, results ->
+            val chunks = perType[i].second
+            results.forEachIndexed { index, ok -> if (ok) inserted += chunks[index].size else failed++ }
+        }
+
+        if (inserted > 0) FitRepository.invalidateSnapshot()
+        Log.d(TAG, "ingest: inserted=$inserted duplicates=$duplicates failedChunks=$failed")
+        WatchIngestResult(inserted, duplicates, failed)
+    }
+
+    /**
+     * (start, end) of every point our DataSource already holds across [samples]' time range,
+     * sorted by start; null if the read failed
+     */
+    private suspend fun storedIntervals(type: WatchSampleType, samples: List<WatchSample>): List<Pair<Long, Long>>? {
+        val from = samples.minOf { it.startMs }
+        val to = samples.maxOf { it.endMs }
+        return try {
+            val source = source(type)
+            val request = DataReadRequest.Builder()
+                .read(source)
+                .setTimeRange(from, to + 1, TimeUnit.MILLISECONDS)
+                .build()
+            history.readData(request).await().getDataSet(source).dataPoints
+                .map { p ->
+                    if (type.instantaneous) p.getTimestamp(TimeUnit.MILLISECONDS).let { it to it }
+                    else p.getStartTime(TimeUnit.MILLISECONDS) to p.getEndTime(TimeUnit.MILLISECONDS)
+                }
+                .sortedBy { it.first }
+        } catch (e: Exception) {
+            Log.e(TAG, "read stored ${type.key} samples failed", e)
+            null
+        }
+    }
+
+    // Sort, drop what is already stored, collapse identical intervals and overlaps
+    private fun dedupe(type: WatchSampleType, samples: List<WatchSample>, stored: List<Pair<Long, Long>>): List<WatchSample> {
+        val storedKeys = stored.toHashSet()
+        val byInterval = LinkedHashMap<Pair<Long, Long>, WatchSample>()
+        samples.asSequence()
+            .filter { it.endMs >= it.startMs && it.value >= 0 }
+            .filter { if (type.instantaneous) (it.endMs to it.endMs) !in storedKeys else !overlapsStored(stored, storedKeys, it) }
+            .sortedWith(compareBy({ it.startMs }, { it.endMs }))
+            .forEach { byInterval[it.startMs to it.endMs] = it }
+
+        val result = ArrayList<WatchSample>(byInterval.size)
+        var lastEnd = Long.MIN_VALUE
+        for (s in byInterval.values) {
+            if (!type.instantaneous && s.startMs < lastEnd) continue // overlapping delta would double count
+            if (type.instantaneous && s.endMs == lastEnd) continue
+            result.add(s)
+            lastEnd = s.endMs
+        }
+        return result
+    }
+
+    // Stored deltas are sorted by start and never overlap each other
+    private fun overlapsStored(stored: List<Pair<Long, Long>>, storedKeys: Set<Pair<Long, Long>>, s: WatchSample): Boolean {
+        if ((s.startMs to s.endMs) in storedKeys) return true
+        // Last stored interval starting before s ends is the only one that can overlap it
+        var lo = 0
+        var hi = stored.size
+        while (lo < hi) {
+            val mid = (lo + hi) ushr 1
+            if (stored[mid].first < s.endMs) lo = mid + 1 else hi = mid
+        }
+        return lo > 0 && stored[lo - 1].second > s.startMs
+    }
+
+    private fun source(type: WatchSampleType): DataSource = DataSource.Builder()
+        .setAppPackageName(context)
+        .setDataType(type.dataType)
+        .setType(DataSource.TYPE_RAW)
+        .setStreamName(type.streamName)
+        .build()
+
+    private suspend fun insertChunk(type: WatchSampleType, chunk: List<WatchSample>): Boolean {
+        return try {
+            val source = source(type)
+            val builder = DataSet.builder(source)
+            for (s in chunk) {
+                val point = DataPoint.builder(source)
+                if (type.instantaneous) {
+                    point.setTimestamp(s.endMs, TimeUnit.MILLISECONDS)
+                } else {
+                    point.setTimeInterval(s.startMs, s.endMs, TimeUnit.MILLISECONDS)
+                }
+                if (type == WatchSampleType.STEPS) point.setField(type.field, s.value.toInt())
+                else point.setField(type.field, s.value.toFloat())
+                builder.add(point.build())
+            }
+            history.insertData(builder.build()).await()
+            true
+        } catch (e: Exception) {
+            Log.e(TAG, "insert ${type.key} chunk of ${chunk.size} failed", e)
+            false
+        }
+    }
+}
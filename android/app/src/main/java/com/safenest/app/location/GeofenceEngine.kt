@@ -0,0 +1,136 @@
+package com.safenest.app.location
+
+/** One position fix, decoupled from android.location.Location */
+data class GeoFix(
+    val latitude: Double,
+    val longitude: Double,
+    val accuracyM: Float,
+    val timeMs: Long,
+    val speedMps: Float = 0f
+)
+
+enum class GeofenceTransitionKind(val key: String) {
+    ENTER("ENTRY"),
+    EXIT("EXIT"),
+    DWELL("DWELL")
+}
+
+data class GeofenceTransition(val fence: Geofence, val kind: GeofenceTransitionKind, val fix: GeoFix)
+
+/**
+ * Enter/exit/dwell state machine over a [GeofenceIndex].
+ * - The first accepted fix only establishes which fences we are in (no events), as
+ *   the JS service did on start
+ * - Exit needs the fix to clear the radius by its own accuracy (10..50 m), so GPS jitter
+ *   at the boundary does not flap
+ * - Dwell fires once per visit after [dwellMs] inside
+ * - Fixes worse than [MAX_ACCURACY_M] are ignored
+ */
+class GeofenceEngine(private val dwellMs: Long = DEFAULT_DWELL_MS) {
+
+    companion object {
+        const val DEFAULT_DWELL_MS = 10 * 60 * 1000L
+        const val MAX_ACCURACY_M = 150f
+        private const val MIN_HYSTERESIS_M = 10.0
+        private const val MAX_HYSTERESIS_M = 50.0
+
+        const val MIN_INTERVAL_MS = 15_000L
+        const val MAX_INTERVAL_MS = 10 * 60 * 1000L
+        private const val WALKING_SPEED_MPS = 1.4f
+
+        /**
+         * Update interval for a fix [edgeM] from the nearest boundary: half the time it
+         * takes to reach it at the observed speed (walking pace at least)
+         */
+        fun intervalFor(edgeM: Double?, speedMps: Float): Long {
+            if (edgeM == null) return MAX_INTERVAL_MS
+            val speed = maxOf(speedMps, WALKING_SPEED_MPS)
+            val ms = (edgeM / speed * 1000 / 2).toLong()
+            return ms.coerceIn(MIN_INTERVAL_MS, MAX_INTERVAL_MS)
+        }
+    }
+
+    private class Visit(val enteredAt: Long, var dwellReported: Boolean)
+
+    private var index = GeofenceIndex(emptyList())
+    private val fencesById = HashMap<String, Geofence>()
+    private val inside = HashMap<String, Visit>()
+    private var primed = false
+
+    var lastFix: GeoFix? = null
+        private set
+
+    val fenceCount: Int get() = index.size
+
+    fun setFences(fences: List<Geofence>) {
+        val enabled = fences.filter { it.enabled }
+        index = GeofenceIndex(enabled)
+        fencesById.clear()
+        enabled.forEach { fencesById[it.id] = it }
+        inside.keys.retainAll(fencesById.keys)
+    }
+
+    fun insideIds(): Set<String> = inside.keys.toSet()
+
+    /** Feed a batch of fixes (any order); returns transitions in time order */
+    fun process(fixes: List<GeoFix>): List<GeofenceTransition> {
+        val out = ArrayList<GeofenceTransition>()
+        for (fix in fixes.sortedBy { it.timeMs }) {
+            if (fix.accuracyM > MAX_ACCURACY_M) continue
+            if (lastFix?.let { fix.timeMs <= it.timeMs } == true) continue
+            lastFix = fix
+            evaluate(fix, if (primed) out else null)
+            primed = true
+        }
+        return out
+    }
+
+    fun nearestEdgeM(fix: GeoFix): Double? = index.nearestEdgeM(fix.latitude, fix.longitude)
+
+    private fun evaluate(fix: GeoFix, out: MutableList<GeofenceTransition>?) {
+        val hysteresis = fix.accuracyM.toDouble().coerceIn(MIN_HYSTERESIS_M, MAX_HYSTERESIS_M)
+
+        // Fences we are in may be outside the candidate cell once we have left them
+        val toCheck = LinkedHashSet<Geofence>(index.candidates(fix.latitude, fix.longitude))
+        inside.keys.mapNotNullTo(toCheck) { fencesById[it] }
+
+        for (fence in toCheck) {
+            val d = GeoMath.distanceM(fix.latitude, fix.longitude, fence.latitude, fence.longitude)
+            val visit = inside[fence.id]
+            if (visit == null) {
+                if (d <= fence.radiusM) {
+                    inside[fence.id] = Visit(fix.timeMs, dwellReported = out == null)
+                    out?.add(GeofenceTransition(fence, GeofenceTransitionKind.ENTER, fix))
+                }
+            } else if (d > fence.radiusM + hysteresis) {
+                inside.remove(fence.id)
+                out?.add(GeofenceTransition(fence, GeofenceTransitionKind.EXIT, fix))
+            } else if (!visit.dwellReported && fix.timeMs - visit.enteredAt >= dwellMs) {
+                visit.dwellReported = true
+                out?.add(GeofenceTransition(fence, GeofenceTransitionKind.DWELL, fix))
+            }
+        }
+    }
+
+    /** Visits as "id\tenteredAt\tdwellReported" lines, so a service restart does not re-enter */
+    fun encodeState(): String = buildString {
+        append(if (primed) "1" else "0")
+        for ((id, visit) in inside) {
+            append('\n').append(id).append('\t').append(visit.enteredAt).append('\t').append(if (visit.dwellReported) 1 else 0)
+        }
+    }
+
+    fun restoreState(encoded: String?) {
+        inside.clear()
+        primed = false
+        if (encoded.isNullOrEmpty()) return
+        val lines = encoded.split('\n')
+        primed = lines[0] == "1"
+        for (line in lines.drop(1)) {
+            val parts = line.split('\t')
+            if (parts.size != 3 || parts[0] !in fencesById) continue
+            val enteredAt = parts[1].toLongOrNull() ?: continue
+            inside[parts[0]] = Visit(enteredAt, parts[2] == "1")
+        }
+    }
+}
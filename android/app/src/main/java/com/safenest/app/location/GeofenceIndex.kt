@@ -0,0 +1,104 @@
+package com.safenest.app.location
+
+import kotlin.math.PI
+import kotlin.math.abs
+import kotlin.math.atan2
+import kotlin.math.cos
+import kotlin.math.floor
+import kotlin.math.max
+import kotlin.math.sin
+import kotlin.math.sqrt
+
+/** A circular fence, same shape as the JS `Geofence` type */
+data class Geofence(
+    val id: String,
+    val name: String,
+    val latitude: Double,
+    val longitude: Double,
+    val radiusM: Double,
+    val type: String,
+    val alertOnExit: Boolean,
+    val alertOnEntry: Boolean,
+    val enabled: Boolean = true
+)
+
+internal object GeoMath {
+    const val EARTH_RADIUS_M = 6_371_000.0
+    const val METERS_PER_DEG_LAT = 111_320.0
+
+    fun distanceM(lat1: Double, lng1: Double, lat2: Double, lng2: Double): Double {
+        val p1 = lat1 * PI / 180
+        val p2 = lat2 * PI / 180
+        val dp = (lat2 - lat1) * PI / 180
+        val dl = (lng2 - lng1) * PI / 180
+        val a = sin(dp / 2) * sin(dp / 2) + cos(p1) * cos(p2) * sin(dl / 2) * sin(dl / 2)
+        return EARTH_RADIUS_M * 2 * atan2(sqrt(a), sqrt(1 - a))
+    }
+
+    fun metersPerDegLng(lat: Double): Double = max(METERS_PER_DEG_LAT * cos(lat * PI / 180), 1.0)
+}
+
+/**
+ * Uniform-grid spatial index over fences.
+ * - Each fence is filed under every cell its bounding box touches, so a lookup only
+ *   measures the fences of the fix's own cell instead of all of them
+ * - [nearestEdgeM] searches outward ring by ring and stops once no unvisited cell can
+ *   hold a closer edge; the result drives the location update interval
+ */
+class GeofenceIndex(fences: List<Geofence>, private val cellDeg: Double = DEFAULT_CELL_DEG) {
+
+    companion object {
+        const val DEFAULT_CELL_DEG = 0.005 // ~550 m of latitude
+        const val MAX_SEARCH_RINGS = 10
+    }
+
+    private val cells = HashMap<Long, MutableList<Geofence>>()
+
+    val size: Int = fences.size
+
+    init {
+        for (fence in fences) {
+            val dLat = fence.radiusM / GeoMath.METERS_PER_DEG_LAT
+            val dLng = fence.radiusM / GeoMath.metersPerDegLng(fence.latitude)
+            for (y in cell(fence.latitude - dLat)..cell(fence.latitude + dLat)) {
+                for (x in cell(fence.longitude - dLng)..cell(fence.longitude + dLng)) {
+                    cells.getOrPut(key(x, y)) { ArrayList(2) }.add(fence)
+                }
+            }
+        }
+    }
+
+    /** Fences whose bounding box covers the point's cell; everything else is known to be outside */
+    fun candidates(lat: Double, lng: Double): List<Geofence> = cells[key(cell(lng), cell(lat))] ?: emptyList()
+
+    /** Distance to the closest fence boundary (inside or outside), null if none within the search radius */
+    fun nearestEdgeM(lat: Double, lng: Double): Double? {
+        if (cells.isEmpty()) return null
+        val cx = cell(lng)
+        val cy = cell(lat)
+        val ringWidthM = cellDeg * minOf(GeoMath.METERS_PER_DEG_LAT, GeoMath.metersPerDegLng(lat))
+        val seen = HashSet<String>()
+        var best: Double? = null
+        for (ring in 0..MAX_SEARCH_RINGS) {
+            for (y in cy - ring..cy + ring) {
+                for (x in cx - ring..cx + ring) {
+                    if (ring > 0 && abs(x - cx) != ring && abs(y - cy) != ring) continue
+                    val list = cells[key(x, y)] ?: continue
+                    for (fence in list) {
+                        if (!seen.add(fence.id)) continue
+                        val edge = abs(GeoMath.distanceM(lat, lng, fence.latitude, fence.longitude) - fence.radiusM)
+                        if (best == null || edge < best) best = edge
+                    }
+                }
+            }
+            // Cells beyond this ring are at least ring * width away
+            val found = best
+            if (found != null && found <= ring * ringWidthM) return found
+        }
+        return best
+    }
+
+    private fun cell(deg: Double): Int = floor(deg / cellDeg).toInt()
+
+    private fun key(x: Int, y: Int): Long = (y.toLong() shl 32) or (x.toLong() and 0xffffffffL)
+}
@@ -0,0 +1,347 @@
+package com.safenest.app.location
+
+import android.Manifest
+import android.annotation.SuppressLint
+import android.app.NotificationChannel
+import android.app.NotificationManager
+import android.app.PendingIntent
+import android.content.Context
+import android.content.Intent
+import android.content.pm.PackageManager
+import android.os.Build
+import android.os.Debug
+import android.os.HandlerThread
+import android.os.SystemClock
+import android.util.Log
+import androidx.core.app.NotificationCompat
+import androidx.core.content.ContextCompat
+import com.getcapacitor.JSObject
+import com.google.android.gms.location.FusedLocationProviderClient
+import com.google.android.gms.location.LocationCallback
+import com.google.android.gms.location.LocationRequest
+import com.google.android.gms.location.LocationResult
+import com.google.android.gms.location.LocationServices
+import com.google.android.gms.location.Priority
+import com.google.firebase.database.FirebaseDatabase
+import com.safenest.app.MainActivity
+import com.safenest.app.R
+import com.safenest.app.diagnostics.EnergyAccounting
+import com.safenest.app.events.NativeEventBus
+import org.json.JSONArray
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.Locale
+import java.util.TimeZone
+import kotlin.math.abs
+
+/**
+ * Native geofence monitoring, hosted by [GeofenceService] so it keeps running with
+ * the app in the background.
+ * - Fused location updates on a background looper; the interval follows the distance to
+ *   the nearest fence edge (15 s near a boundary, up to 10 min far away) and far from
+ *   every fence the provider may batch up to [BATCH_FACTOR] fixes per delivery
+ * - High accuracy only within [NEAR_EDGE_M] of an edge, balanced power otherwise
+ * - Transitions go through the native alert path: notification, households/{hid}/geofenceEvents,
+ *   and a "geofence" NativeEventBus event for the UI
+ * - Fences and the inside/outside state persist in SafeNestGeofences; every fix also goes
+ *   to the [LocationTrailStore]
+ */
+object GeofenceMonitor {
+
+    private const val TAG = "GeofenceMonitor"
+    private const val PREFS_NAME = "SafeNestGeofences"
+    private const val KEY_FENCES = "fences"
+    private const val KEY_STATE = "engine_state"
+    private const val KEY_ENABLED = "monitoring_enabled"
+    private const val KEY_LAST_ERROR = "last_error"
+    private const val CHANNEL_ID = "geofence_alerts"
+
+    private const val NEAR_EDGE_M = 300.0
+    private const val FAR_EDGE_M = 1_000.0
+    private const val BATCH_FACTOR = 3
+    private const val EVENT_TTL_MS = 30 * 60 * 1000L
+
+    private val engine = GeofenceEngine()
+    private val callback = object : LocationCallback() {
+        override fun onLocationResult(result: LocationResult) {
+            val cpuStart = Debug.threadCpuTimeNanos()
+            val wallStart = SystemClock.elapsedRealtimeNanos()
+            handleLocations(result)
+            val cpu = if (cpuStart < 0) 0L else Debug.threadCpuTimeNanos() - cpuStart
+            EnergyAccounting.addWork("geofenceMonitor", cpu, SystemClock.elapsedRealtimeNanos() - wallStart, 1)
+        }
+    }
+
+    private var appContext: Context? = null
+    private var client: FusedLocationProviderClient? = null
+    private var thread: HandlerThread? = null
+    @Volatile private var requestedIntervalMs = 0L
+    @Volatile private var requestedPriority = 0
+    @Volatile private var requestedBatched = false
+
+    val isRunning: Boolean get() = thread != null
+
+    fun isEnabled(context: Context): Boolean = prefs(context).getBoolean(KEY_ENABLED, false)
+
+    fun setEnabled(context: Context, enabled: Boolean) {
+        prefs(context).edit().putBoolean(KEY_ENABLED, enabled).apply()
+    }
+
+    fun hasPermission(context: Context): Boolean =
+        ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED ||
+            ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_COARSE_LOCATION) == PackageManager.PERMISSION_GRANTED
+
+    /** "Allow all the time": needed to (re)start the service from the background, e.g. after boot */
+    @JvmStatic
+    fun hasBackgroundPermission(context: Context): Boolean =
+        Build.VERSION.SDK_INT < Build.VERSION_CODES.Q ||
+            ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_BACKGROUND_LOCATION) == PackageManager.PERMISSION_GRANTED
+
+    /** Whether the host service should hold the location foreground type */
+    @JvmStatic
+    fun canRun(context: Context): Boolean = isEnabled(context) && hasPermission(context)
+
+    /** Why monitoring is enabled but not running (reported by getStatus), null once it runs */
+    fun setLastError(context: Context, reason: String?) {
+        prefs(context).edit().putString(KEY_LAST_ERROR, reason).apply()
+    }
+
+    /** Start location updates (called by the foreground service); no-op when disabled or already running */
+    @Synchronized
+    fun attach(context: Context) {
+        if (thread != null || !canRun(context)) return
+        val ctx = context.applicationContext
+        appContext = ctx
+        synchronized(engine) {
+            engine.setFences(loadFences(ctx))
+            engine.restoreState(prefs(ctx).getString(KEY_STATE, null))
+        }
+        client = LocationServices.getFusedLocationProviderClient(ctx)
+        thread = HandlerThread("GeofenceMonitor").apply { start() }
+        // Fast, accurate first fix; the interval adapts once we know where we are
+        request(GeofenceEngine.MIN_INTERVAL_MS, Priority.PRIORITY_HIGH_ACCURACY, batched = false)
+        Log.d(TAG, "attached with ${engine.fenceCount} fences")
+    }
+
+    @Synchronized
+    fun detach() {
+        val t = thread ?: return
+        client?.removeLocationUpdates(callback)
+        t.quitSafely()
+        thread = null
+        requestedIntervalMs = 0L
+        appContext?.let {
+            persistState(it)
+            LocationTrailStore.get(it).flush()
+        }
+        Log.d(TAG, "detached")
+    }
+
+    /** Replace the fence set (JSON array in the JS `Geofence` shape) */
+    fun setFences(context: Context, fences: JSONArray) {
+        prefs(context).edit().putString(KEY_FENCES, fences.toString()).apply()
+        synchronized(engine) {
+            engine.setFences(parseFences(fences))
+        }
+        persistState(context)
+        if (isRunning) engine.lastFix?.let { reschedule(it) }
+    }
+
+    fun status(context: Context): JSObject {
+        val result = JSObject()
+        synchronized(engine) {
+            result.put("enabled", isEnabled(context))
+            result.put("monitoring", isRunning)
+            result.put("backgroundGranted", hasBackgroundPermission(context))
+            prefs(context).getString(KEY_LAST_ERROR, null)?.let { result.put("lastError", it) }
+            result.put("fenceCount", if (isRunning) engine.fenceCount else loadFences(context).count { it.enabled })
+            result.put("inside", JSONArray(engine.insideIds().toList()))
+            result.put("intervalMs", requestedIntervalMs)
+            result.put("highAccuracy", requestedPriority == Priority.PRIORITY_HIGH_ACCURACY)
+            engine.lastFix?.let { fix ->
+                result.put("lastFix", JSObject()
+                    .put("latitude", fix.latitude)
+                    .put("longitude", fix.longitude)
+                    .put("accuracy", fix.accuracyM.toDouble())
+                    .put("timestamp", fix.timeMs))
+            }
+        }
+        return result
+    }
+
+    private fun handleLocations(result: LocationResult) {
+        val ctx = appContext ?: return
+        val fixes = result.locations.map {
+            GeoFix(it.latitude, it.longitude, it.accuracy, it.time, if (it.hasSpeed()) it.speed else 0f)
+        }
+        LocationTrailStore.get(ctx).appendAll(fixes)
+        val transitions = synchronized(engine) { engine.process(fixes) }
+        if (transitions.isNotEmpty()) persistState(ctx)
+        transitions.forEach { raise(ctx, it) }
+        engine.lastFix?.let { reschedule(it) }
+    }
+
+    private fun reschedule(fix: GeoFix) {
+        val edge = synchronized(engine) { engine.nearestEdgeM(fix) }
+        val interval = GeofenceEngine.intervalFor(edge, fix.speedMps)
+        val priority = if (edge != null && edge < NEAR_EDGE_M) Priority.PRIORITY_HIGH_ACCURACY else Priority.PRIORITY_BALANCED_POWER_ACCURACY
+        val batched = edge == null || edge > FAR_EDGE_M
+        // Re-requesting restarts the provider; only do it for a meaningful change
+        val current = requestedIntervalMs
+        if (priority == requestedPriority && batched == requestedBatched && current > 0 && abs(interval - current) < current / 4) return
+        request(interval, priority, batched)
+    }
+
+    @SuppressLint("MissingPermission") // checked by canRun() and caught below if revoked since
+    @Synchronized
+    private fun request(intervalMs: Long, priority: Int, batched: Boolean) {
+        val looper = thread?.looper ?: return
+        val c = client ?: return
+        val request = LocationRequest.Builder(priority, intervalMs)
+            .setMinUpdateIntervalMillis(intervalMs / 2)
+            .setMaxUpdateDelayMillis(if (batched) intervalMs * BATCH_FACTOR else intervalMs)
+            .build()
+        try {
+            c.requestLocationUpdates(request, callback, looper)
+            requestedIntervalMs = intervalMs
+            requestedPriority = priority
+            requestedBatched = batched
+            Log.d(TAG, "location updates every ${intervalMs / 1000}s (priority=$priority, batched=$batched)")
+        } catch (e: SecurityException) {
+            Log.w(TAG, "Location permission revoked, stopping geofence monitoring")
+            appContext?.let {
+                setLastError(it, "permission_revoked")
+                GeofenceService.stop(it)
+            }
+            detach()
+        }
+    }
+
+    private fun raise(context: Context, t: GeofenceTransition) {
+        val fence = t.fence
+        val alert = when (t.kind) {
+            GeofenceTransitionKind.EXIT -> fence.alertOnExit
+            GeofenceTransitionKind.ENTER, GeofenceTransitionKind.DWELL -> fence.alertOnEntry
+        }
+        val eventId = t.fix.timeMs.toString() + "_" + fence.id
+        Log.d(TAG, "${t.kind.key} ${fence.name} (alert=$alert)")
+
+        if (alert) {
+            showNotification(context, t)
+            writeEventToFirebase(context, eventId, t)
+        }
+
+        val payload = JSObject()
+            .put("id", eventId)
+            .put("geofenceId", fence.id)
+            .put("geofenceName", fence.name)
+            .put("eventType", t.kind.key)
+            .put("timestamp", t.fix.timeMs)
+            .put("latitude", t.fix.latitude)
+            .put("longitude", t.fix.longitude)
+            .put("alerted", alert)
+        NativeEventBus.post(NativeEventBus.GEOFENCE, payload, EVENT_TTL_MS)
+    }
+
+    private fun showNotification(context: Context, t: GeofenceTransition) {
+        try {
+            val nm = context.getSystemService(Context.NOTIFICATION_SERVICE) as NotificationManager
+            nm.createNotificationChannel(
+                NotificationChannel(CHANNEL_ID, "Geofence Alerts", NotificationManager.IMPORTANCE_HIGH).apply {
+                    enableVibration(true)
+                }
+            )
+            val name = t.fence.name
+            val (title, body) = when (t.kind) {
+                GeofenceTransitionKind.EXIT -> "Left $name" to "Senior has left the $name area. Caregiver has been notified."
+                GeofenceTransitionKind.ENTER -> "Entered $name" to "Senior has entered $name."
+                GeofenceTransitionKind.DWELL -> "Still at $name" to "Senior has been at $name for a while."
+            }
+            val openIntent = Intent(context, MainActivity::class.java)
+                .setFlags(Intent.FLAG_ACTIVITY_NEW_TASK or Intent.FLAG_ACTIVITY_CLEAR_TOP)
+            val pendingIntent = PendingIntent.getActivity(
+                context, ("geofence_" + t.fence.id).hashCode(), openIntent,
+                PendingIntent.FLAG_UPDATE_CURRENT or PendingIntent.FLAG_IMMUTABLE
+            )
+            val notification = NotificationCompat.Builder(context, CHANNEL_ID)
+                .setSmallIcon(R.mipmap.ic_launcher)
+                .setContentTitle(title)
+                .setContentText(body)
+                .setPriority(NotificationCompat.PRIORITY_HIGH)
+                .setCategory(NotificationCompat.CATEGORY_ALARM)
+                .setAutoCancel(true)
+                .setContentIntent(pendingIntent)
+                .build()
+            nm.notify(("geofence_" + t.fence.id).hashCode(), notification)
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to show geofence notification", e)
+        }
+    }
+
+    // Same shape the JS service writes, so the caregiver view reads both
+    private fun writeEventToFirebase(context: Context, eventId: String, t: GeofenceTransition) {
+        try {
+            val householdId = context.getSharedPreferences("SafeNestConfig", Context.MODE_PRIVATE)
+                .getString("household_id", null)
+            if (householdId == null) {
+                Log.w(TAG, "No householdId stored, cannot write to Firebase")
+                return
+            }
+            val iso = SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US)
+                .apply { timeZone = TimeZone.getTimeZone("UTC") }
+            val data = hashMapOf<String, Any>(
+                "id" to eventId,
+                "geofenceId" to t.fence.id,
+                "geofenceName" to t.fence.name,
+                "eventType" to t.kind.key,
+                "timestamp" to iso.format(Date(t.fix.timeMs)),
+                "location" to mapOf("latitude" to t.fix.latitude, "longitude" to t.fix.longitude),
+                "source" to "native"
+            )
+            FirebaseDatabase.getInstance().getReference("households").child(householdId)
+                .child("geofenceEvents").child(eventId)
+                .setValue(data)
+                .addOnFailureListener { e -> Log.e(TAG, "Failed to write geofence event to Firebase", e) }
+        } catch (e: Exception) {
+            Log.e(TAG, "Error writing geofence event to Firebase", e)
+        }
+    }
+
+    private fun persistState(context: Context) {
+        val state = synchronized(engine) { engine.encodeState() }
+        prefs(context).edit().putString(KEY_STATE, state).apply()
+    }
+
+    private fun loadFences(context: Context): List<Geofence> = try {
+        parseFences(JSONArray(prefs(context).getString(KEY_FENCES, "[]")))
+    } catch (e: Exception) {
+        Log.e(TAG, "Stored geofences unreadable", e)
+        emptyList()
+    }
+
+    private fun parseFences(array: JSONArray): List<Geofence> {
+        val out = ArrayList<Geofence>(array.length())
+        for (i in 0 until array.length()) {
+            val o = array.optJSONObject(i) ?: continue
+            val id = o.optString("id")
+            val radius = o.optDouble("radius", 0.0)
+            if (id.isEmpty() || radius <= 0.0 || !o.has("latitude") || !o.has("longitude")) continue
+            out.add(
+                Geofence(
+                    id = id,
+                    name = o.optString("name", "Geofence"),
+                    latitude = o.getDouble("latitude"),
+                    longitude = o.getDouble("longitude"),
+                    radiusM = radius,
+                    type = o.optString("type", "safe_zone"),
+                    alertOnExit = o.optBoolean("alertOnExit", false),
+                    alertOnEntry = o.optBoolean("alertOnEntry", false),
+                    enabled = o.optBoolean("enabled", true)
+                )
+            )
+        }
+        return out
+    }
+
+    private fun prefs(context: Context) = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+}
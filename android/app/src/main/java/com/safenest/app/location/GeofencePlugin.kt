@@ -0,0 +1,88 @@
+package com.safenest.app.location
+
+import android.Manifest
+import android.os.Build
+import com.getcapacitor.Plugin
+import com.getcapacitor.PluginCall
+import com.getcapacitor.PluginMethod
+import com.getcapacitor.annotation.CapacitorPlugin
+import com.getcapacitor.annotation.Permission
+import com.getcapacitor.annotation.PermissionCallback
+
+/**
+ * JS side of the native [GeofenceMonitor].
+ * - setGeofences({ geofences }): replace the fence set (JS `Geofence` objects)
+ * - start() / stop(): turn background monitoring on or off (persisted); runs [GeofenceService]
+ * - requestBackgroundPermission(): ask for "Allow all the time" once foreground location is
+ *   granted, so monitoring survives reboots and background restarts
+ * - getStatus(): fences, which ones we are inside, current update interval, last fix,
+ *   backgroundGranted and lastError when monitoring could not start
+ *
+ * Transitions reach JS as "geofence" NativeEvents.
+ */
+@CapacitorPlugin(
+    name = "Geofence",
+    permissions = [
+        Permission(alias = GeofencePlugin.BACKGROUND, strings = [Manifest.permission.ACCESS_BACKGROUND_LOCATION])
+    ]
+)
+class GeofencePlugin : Plugin() {
+
+    companion object {
+        const val BACKGROUND = "backgroundLocation"
+    }
+
+    @PluginMethod
+    fun setGeofences(call: PluginCall) {
+        val fences = call.getArray("geofences")
+        if (fences == null) {
+            call.reject("geofences is required")
+            return
+        }
+        GeofenceMonitor.setFences(context, fences)
+        call.resolve(GeofenceMonitor.status(context))
+    }
+
+    @PluginMethod
+    fun start(call: PluginCall) {
+        if (!GeofenceMonitor.hasPermission(context)) {
+            call.reject("Location permission not granted", "PERMISSION_DENIED")
+            return
+        }
+        GeofenceMonitor.setEnabled(context, true)
+        GeofenceService.start(context)
+        call.resolve(GeofenceMonitor.status(context))
+    }
+
+    @PluginMethod
+    fun stop(call: PluginCall) {
+        GeofenceMonitor.setEnabled(context, false)
+        GeofenceMonitor.setLastError(context, null)
+        GeofenceService.stop(context)
+        call.resolve(GeofenceMonitor.status(context))
+    }
+
+    // Android 11+ only grants background location as a separate request after foreground access
+    @PluginMethod
+    fun requestBackgroundPermission(call: PluginCall) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q || GeofenceMonitor.hasBackgroundPermission(context)) {
+            call.resolve(GeofenceMonitor.status(context))
+            return
+        }
+        if (!GeofenceMonitor.hasPermission(context)) {
+            call.reject("Location permission not granted", "PERMISSION_DENIED")
+            return
+        }
+        requestPermissionForAlias(BACKGROUND, call, "backgroundPermissionCallback")
+    }
+
+    @PermissionCallback
+    private fun backgroundPermissionCallback(call: PluginCall) {
+        call.resolve(GeofenceMonitor.status(context))
+    }
+
+    @PluginMethod
+    fun getStatus(call: PluginCall) {
+        call.resolve(GeofenceMonitor.status(context))
+    }
+}
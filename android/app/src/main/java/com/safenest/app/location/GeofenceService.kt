@@ -0,0 +1,87 @@
+package com.safenest.app.location
+
+import android.app.NotificationChannel
+import android.app.NotificationManager
+import android.app.Service
+import android.content.Context
+import android.content.Intent
+import android.content.pm.ServiceInfo
+import android.os.IBinder
+import android.util.Log
+import androidx.core.app.NotificationCompat
+import androidx.core.app.ServiceCompat
+
+/**
+ * Foreground service (type location) hosting [GeofenceMonitor].
+ * - Runs independently of FallDetectionService, so turning fall detection off leaves
+ *   geofencing alone and the fall service never holds the location type
+ * - Stops itself when monitoring is disabled or location access is gone
+ */
+class GeofenceService : Service() {
+
+    companion object {
+        private const val TAG = "GeofenceService"
+        private const val NOTIFICATION_ID = 43
+        private const val CHANNEL_ID = "geofence_service"
+
+        /** Start (or refresh) the service; returns false when the system refused it */
+        @JvmStatic
+        fun start(context: Context): Boolean {
+            if (!GeofenceMonitor.canRun(context)) return false
+            return try {
+                context.startForegroundService(Intent(context, GeofenceService::class.java))
+                true
+            } catch (e: Exception) {
+                // e.g. a background start not allowed on Android 12+
+                Log.w(TAG, "Could not start geofence service", e)
+                GeofenceMonitor.setLastError(context, "start_not_allowed")
+                false
+            }
+        }
+
+        fun stop(context: Context) {
+            context.stopService(Intent(context, GeofenceService::class.java))
+        }
+    }
+
+    override fun onStartCommand(intent: Intent?, flags: Int, startId: Int): Int {
+        if (!promote()) {
+            stopSelf()
+            return START_NOT_STICKY
+        }
+        GeofenceMonitor.setLastError(this, null)
+        GeofenceMonitor.attach(this)
+        return START_STICKY
+    }
+
+    override fun onDestroy() {
+        GeofenceMonitor.detach()
+        super.onDestroy()
+    }
+
+    override fun onBind(intent: Intent?): IBinder? = null
+
+    // The location type throws without location access, or when started from the
+    // background with only while-in-use access
+    private fun promote(): Boolean {
+        val nm = getSystemService(Context.NOTIFICATION_SERVICE) as NotificationManager
+        nm.createNotificationChannel(
+            NotificationChannel(CHANNEL_ID, "Location Monitoring", NotificationManager.IMPORTANCE_LOW)
+                .apply { setSound(null, null) }
+        )
+        val notification = NotificationCompat.Builder(this, CHANNEL_ID)
+            .setContentTitle("Safenest safe zones")
+            .setContentText("Watching safe zones in the background")
+            .setSmallIcon(android.R.drawable.ic_menu_mylocation)
+            .setOngoing(true)
+            .build()
+        return try {
+            ServiceCompat.startForeground(this, NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_LOCATION)
+            GeofenceMonitor.canRun(this)
+        } catch (e: SecurityException) {
+            Log.w(TAG, "Location foreground type not allowed, geofencing paused", e)
+            GeofenceMonitor.setLastError(this, "location_not_allowed")
+            false
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.safenest.app.location
+
+import android.util.Log
+import androidx.core.content.FileProvider
+import com.getcapacitor.JSArray
+import com.getcapacitor.JSObject
+import com.getcapacitor.Plugin
+import com.getcapacitor.PluginCall
+import com.getcapacitor.PluginMethod
+import com.getcapacitor.annotation.CapacitorPlugin
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.launch
+import java.io.File
+
+/**
+ * JS side of the [LocationTrailStore].
+ * - record({ fixes: [{ latitude, longitude, accuracy, timestamp, speed? }] }): add fixes
+ *   seen by the WebView (the geofence monitor feeds the store natively)
+ * - getTrail({ start?, end? }): columns { t, lat, lng, acc }, default the last 24 h
+ * - exportTrail({ start, end, format: 'geojson' | 'csv' }): streams the range to a cache
+ *   file and resolves { path, uri, points, bytes } for sharing
+ * - getFootprint(): { bytes, days }
+ */
+@CapacitorPlugin(name = "LocationTrail")
+class LocationTrailPlugin : Plugin() {
+
+    companion object {
+        private const val TAG = "LocationTrailPlugin"
+        private const val DAY_MS = 24L * 60 * 60 * 1000
+    }
+
+    private val pluginScope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+
+    override fun handleOnDestroy() {
+        pluginScope.cancel()
+        super.handleOnDestroy()
+    }
+
+    @PluginMethod
+    fun record(call: PluginCall) {
+        val array = call.getArray("fixes")
+        if (array == null) {
+            call.reject("fixes is required")
+            return
+        }
+        val fixes = ArrayList<GeoFix>(array.length())
+        for (i in 0 until array.length()) {
+            val o = array.optJSONObject(i) ?: continue
+            if (!o.has("latitude") || !o.has("longitude")) continue
+            fixes.add(
+                GeoFix(
+                    o.getDouble("latitude"),
+                    o.getDouble("longitude"),
+                    o.optDouble("accuracy", 0.0).toFloat(),
+                    o.optLong("timestamp", System.currentTimeMillis()),
+                    o.optDouble("speed", 0.0).toFloat()
+                )
+            )
+        }
+        pluginScope.launch {
+            LocationTrailStore.get(context).appendAll(fixes)
+            call.resolve(JSObject().put("recorded", fixes.size))
+        }
+    }
+
+    @PluginMethod
+    fun getTrail(call: PluginCall) {
+        val end = call.getLong("end", System.currentTimeMillis()) ?: System.currentTimeMillis()
+        val start = call.getLong("start", end - DAY_MS) ?: (end - DAY_MS)
+        pluginScope.launch {
+            try {
+                val t = JSArray()
+                val lat = JSArray()
+                val lng = JSArray()
+                val acc = JSArray()
+                LocationTrailStore.get(context).scan(start, end) {
+                    t.put(it.timeMs)
+                    lat.put(it.latitude)
+                    lng.put(it.longitude)
+                    acc.put(it.accuracyM.toDouble())
+                }
+                call.resolve(JSObject().put("t", t).put("lat", lat).put("lng", lng).put("acc", acc))
+            } catch (e: Exception) {
+                Log.e(TAG, "getTrail failed", e)
+                call.reject("getTrail failed: " + e.message)
+            }
+        }
+    }
+
+    @PluginMethod
+    fun exportTrail(call: PluginCall) {
+        val end = call.getLong("end", System.currentTimeMillis()) ?: System.currentTimeMillis()
+        val start = call.getLong("start", end - DAY_MS) ?: (end - DAY_MS)
+        val format = if (call.getString("format") == "csv") "csv" else "geojson"
+        pluginScope.launch {
+            try {
+                val dir = File(context.cacheDir, "exports").apply { mkdirs() }
+                val file = File(dir, "location_trail_${start}_$end.$format")
+                val points = file.bufferedWriter().use { LocationTrailStore.get(context).export(start, end, format, it) }
+                val uri = FileProvider.getUriForFile(context, context.packageName + ".fileprovider", file)
+                call.resolve(
+                    JSObject()
+                        .put("path", file.absolutePath)
+                        .put("uri", uri.toString())
+                        .put("points", points)
+                        .put("bytes", file.length())
+                )
+            } catch (e: Exception) {
+                Log.e(TAG, "exportTrail failed", e)
+                call.reject("exportTrail failed: " + e.message)
+            }
+        }
+    }
+
+    @PluginMethod
+    fun getFootprint(call: PluginCall) {
+        pluginScope.launch {
+            val (bytes, days) = LocationTrailStore.get(context).footprint()
+            call.resolve(JSObject().put("bytes", bytes).put("days", days))
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.safenest.app.location
+
+import android.content.Context
+import android.util.Log
+import com.safenest.app.storage.VarintCodec
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.EOFException
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.Writer
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.Locale
+import java.util.concurrent.TimeUnit
+import kotlin.math.PI
+import kotlin.math.cos
+import kotlin.math.roundToLong
+import kotlin.math.sqrt
+
+/**
+ * On-device location trail in daily files.
+ * - Fixes are buffered into a segment (up to [SEGMENT_MAX_POINTS] points or
+ *   [SEGMENT_MAX_AGE_MS]) and simplified with Douglas-Peucker ([EPSILON_M]) before
+ *   they are written; a point is still kept at least every [MAX_GAP_MS], so time spent
+ *   standing still stays visible
+ * - Segments are columnar delta/varint blocks: seconds, lat/lng at 1e-5 degrees
+ *   (~1 m, the polyline precision) and accuracy in meters, usually 3-5 bytes per point
+ * - Range scans skip blocks by their header times; exports stream day by day
+ * - Day files older than [RETENTION_DAYS] are deleted
+ * - The open segment is journaled raw as fixes arrive and replayed on start, so a
+ *   process kill does not lose up to half an hour of trail
+ *
+ * Layout: filesDir/location_trail/yyyy-MM-dd.trl, blocks of
+ *   [int byteLength][long firstTime][long lastTime][encoded columns];
+ *   the open segment in filesDir/location_trail/open.jnl
+ */
+class LocationTrailStore private constructor(private val dir: File) {
+
+    companion object {
+        private const val TAG = "LocationTrail"
+        private const val SUFFIX = ".trl"
+        private const val JOURNAL = "open.jnl"
+        const val SEGMENT_MAX_POINTS = 120
+        val SEGMENT_MAX_AGE_MS = TimeUnit.MINUTES.toMillis(30)
+        const val EPSILON_M = 10.0
+        val MAX_GAP_MS = TimeUnit.MINUTES.toMillis(10)
+        private const val MIN_SPACING_MS = 5_000L
+        private const val MAX_ACCURACY_M = 100f
+        private const val COORD_SCALE = 1e5
+        const val RETENTION_DAYS = 90
+
+        @Volatile
+        private var instance: LocationTrailStore? = null
+
+        fun get(context: Context): LocationTrailStore = instance ?: synchronized(this) {
+            instance ?: LocationTrailStore(File(context.filesDir, "location_trail").apply { mkdirs() })
+                .also { instance = it }
+        }
+    }
+
+    private val dayFormat = SimpleDateFormat("yyyy-MM-dd", Locale.US)
+    private val pending = ArrayList<GeoFix>()
+    private var pendingDay: String? = null
+    private var lastRetentionSweep: String? = null
+    private var lastTime = 0L
+
+    init {
+        replayJournal()
+    }
+
+    /** Add one fix; poor or out-of-order fixes and fixes closer than 5 s to the last one are dropped */
+    @Synchronized
+    fun append(fix: GeoFix) {
+        if (accept(fix)) writeJournal()
+    }
+
+    @Synchronized
+    fun appendAll(fixes: List<GeoFix>) {
+        var accepted = false
+        fixes.sortedBy { it.timeMs }.forEach { if (accept(it)) accepted = true }
+        if (accepted) writeJournal()
+    }
+
+    private fun accept(fix: GeoFix): Boolean {
+        if (fix.accuracyM > MAX_ACCURACY_M) return false
+        if (fix.timeMs - lastTime < MIN_SPACING_MS) return false
+        lastTime = fix.timeMs
+        val day = dayOf(fix.timeMs)
+        if (day != pendingDay) {
+            flush()
+            pendingDay = day
+        }
+        pending.add(fix)
+        if (pending.size >= SEGMENT_MAX_POINTS || fix.timeMs - pending.first().timeMs >= SEGMENT_MAX_AGE_MS) flush()
+        return true
+    }
+
+    // The whole open segment is rewritten (at most SEGMENT_MAX_POINTS fixes, ~4 KB)
+    private fun writeJournal() {
+        val file = File(dir, JOURNAL)
+        if (pending.isEmpty()) {
+            file.delete()
+            return
+        }
+        try {
+            DataOutputStream(FileOutputStream(file).buffered()).use { out ->
+                for (f in pending) {
+                    out.writeLong(f.timeMs); out.writeDouble(f.latitude); out.writeDouble(f.longitude)
+                    out.writeFloat(f.accuracyM); out.writeFloat(f.speedMps)
+                }
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to journal open segment", e)
+        }
+    }
+
+    private fun replayJournal() {
+        val file = File(dir, JOURNAL)
+        if (!file.exists()) return
+        try {
+            DataInputStream(FileInputStream(file).buffered()).use { input ->
+                while (true) {
+                    val time = try { input.readLong() } catch (e: EOFException) { break }
+                    pending.add(GeoFix(input.readDouble(), input.readDouble(), input.readFloat(), time, input.readFloat()))
+                }
+            }
+        } catch (e: Exception) {
+            // A torn last record only costs that fix
+            Log.w(TAG, "Journal replay stopped early: ${e.message}")
+        }
+        pending.firstOrNull()?.let { pendingDay = dayOf(it.timeMs) }
+        pending.lastOrNull()?.let { lastTime = it.timeMs }
+        if (pending.isNotEmpty()) Log.d(TAG, "replayed ${pending.size} journaled fixes")
+    }
+
+    /** Simplify and write the open segment */
+    @Synchronized
+    fun flush() {
+        val day = pendingDay ?: return
+        if (pending.isEmpty()) return
+        val kept = simplify(pending)
+        val encoded = encodeBlock(kept)
+        try {
+            DataOutputStream(FileOutputStream(File(dir, day + SUFFIX), true).buffered()).use { out ->
+                out.writeInt(encoded.size)
+                out.writeLong(kept.first().timeMs)
+                out.writeLong(kept.last().timeMs)
+                out.write(encoded)
+            }
+            Log.d(TAG, "segment: ${pending.size} fixes -> ${kept.size} points, ${encoded.size} bytes")
+            pending.clear()
+            File(dir, JOURNAL).delete()
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to write segment for $day", e)
+        }
+        if (lastRetentionSweep != day) {
+            lastRetentionSweep = day
+            dropExpired(System.currentTimeMillis())
+        }
+    }
+
+    /**
+     * Stream every stored point in [start, end] to [visitor], day file by day file and
+     * block by block. The open (not yet simplified) segment comes last.
+     */
+    @Synchronized
+    fun scan(start: Long, end: Long, visitor: (GeoFix) -> Unit) {
+        val firstDay = dayOf(start)
+        val lastDay = dayOf(end)
+        val files = dir.listFiles { f -> f.name.endsWith(SUFFIX) }
+            ?.filter { it.name.removeSuffix(SUFFIX) in firstDay..lastDay }
+            ?.sortedBy { it.name }
+            ?: emptyList()
+        for (file in files) {
+            try {
+                DataInputStream(FileInputStream(file).buffered()).use { input ->
+                    while (true) {
+                        val length = try { input.readInt() } catch (e: EOFException) { break }
+                        val first = input.readLong()
+                        val last = input.readLong()
+                        if (last < start || first > end) {
+                            input.skipBytes(length)
+                            continue
+                        }
+                        val bytes = ByteArray(length)
+                        input.readFully(bytes)
+                        decodeBlock(bytes, first) { if (it.timeMs in start..end) visitor(it) }
+                    }
+                }
+            } catch (e: Exception) {
+                Log.e(TAG, "Failed to read ${file.name}", e)
+            }
+        }
+        pending.forEach { if (it.timeMs in start..end) visitor(it) }
+    }
+
+    fun query(start: Long, end: Long): List<GeoFix> {
+        val out = ArrayList<GeoFix>()
+        scan(start, end) { out.add(it) }
+        return out
+    }
+
+    /** Write [start, end] as GeoJSON (one LineString feature) or CSV; returns the point count */
+    @Synchronized
+    fun export(start: Long, end: Long, format: String, writer: Writer): Int {
+        var count = 0
+        if (format == "csv") {
+            writer.write("timestamp,latitude,longitude,accuracy\n")
+            scan(start, end) {
+                writer.write("${it.timeMs},${it.latitude},${it.longitude},${it.accuracyM.roundToLong()}\n")
+                count++
+            }
+        } else {
+            writer.write("{\"type\":\"Feature\",\"properties\":{\"start\":$start,\"end\":$end,\"times\":[")
+            // Times first, then coordinates: two passes keep the export streaming
+            scan(start, end) {
+                if (count++ > 0) writer.write(",")
+                writer.write(it.timeMs.toString())
+            }
+            writer.write("]},\"geometry\":{\"type\":\"LineString\",\"coordinates\":[")
+            var written = 0
+            scan(start, end) {
+                if (written++ > 0) writer.write(",")
+                writer.write("[${it.longitude},${it.latitude}]")
+            }
+            writer.write("]}}")
+        }
+        writer.flush()
+        return count
+    }
+
+    /** Total bytes on disk and number of day files */
+    @Synchronized
+    fun footprint(): Pair<Long, Int> {
+        val files = dir.listFiles { f -> f.name.endsWith(SUFFIX) } ?: return 0L to 0
+        return files.sumOf { it.length() } to files.size
+    }
+
+    // Douglas-Peucker on a local equirectangular projection, plus a point every MAX_GAP_MS
+    private fun simplify(points: List<GeoFix>): List<GeoFix> {
+        if (points.size <= 2) return points.toList()
+        val lat0 = points[0].latitude
+        val mPerDegLng = GeoMath.METERS_PER_DEG_LAT * cos(lat0 * PI / 180)
+        val xs = DoubleArray(points.size) { (points[it].longitude - points[0].longitude) * mPerDegLng }
+        val ys = DoubleArray(points.size) { (points[it].latitude - lat0) * GeoMath.METERS_PER_DEG_LAT }
+
+        val keep = BooleanArray(points.size)
+        keep[0] = true
+        keep[points.size - 1] = true
+        val stack = ArrayDeque<IntArray>()
+        stack.addLast(intArrayOf(0, points.size - 1))
+        while (stack.isNotEmpty()) {
+            val (from, to) = stack.removeLast()
+            var maxDist = 0.0
+            var index = -1
+            for (i in from + 1 until to) {
+                val d = segmentDistance(xs[i], ys[i], xs[from], ys[from], xs[to], ys[to])
+                if (d > maxDist) {
+                    maxDist = d
+                    index = i
+                }
+            }
+            if (index >= 0 && maxDist > EPSILON_M) {
+                keep[index] = true
+                stack.addLast(intArrayOf(from, index))
+                stack.addLast(intArrayOf(index, to))
+            }
+        }
+
+        var lastKept = points[0].timeMs
+        for (i in 1 until points.size) {
+            if (!keep[i] && points[i].timeMs - lastKept >= MAX_GAP_MS) keep[i] = true
+            if (keep[i]) lastKept = points[i].timeMs
+        }
+        return points.filterIndexed { i, _ -> keep[i] }
+    }
+
+    private fun segmentDistance(px: Double, py: Double, ax: Double, ay: Double, bx: Double, by: Double): Double {
+        val dx = bx - ax
+        val dy = by - ay
+        val len2 = dx * dx + dy * dy
+        val t = if (len2 == 0.0) 0.0 else (((px - ax) * dx + (py - ay) * dy) / len2).coerceIn(0.0, 1.0)
+        val ex = px - (ax + t * dx)
+        val ey = py - (ay + t * dy)
+        return sqrt(ex * ex + ey * ey)
+    }
+
+    private fun encodeBlock(points: List<GeoFix>): ByteArray {
+        val out = ByteArrayOutputStream(points.size * 5)
+        VarintCodec.writeVarint(out, points.size.toLong())
+        val base = points.first().timeMs
+        var prev = 0L
+        for (p in points) {
+            val s = (p.timeMs - base) / 1000
+            VarintCodec.writeSigned(out, s - prev); prev = s
+        }
+        prev = 0L
+        for (p in points) {
+            val v = (p.latitude * COORD_SCALE).roundToLong()
+            VarintCodec.writeSigned(out, v - prev); prev = v
+        }
+        prev = 0L
+        for (p in points) {
+            val v = (p.longitude * COORD_SCALE).roundToLong()
+            VarintCodec.writeSigned(out, v - prev); prev = v
+        }
+        for (p in points) VarintCodec.writeVarint(out, p.accuracyM.roundToLong().coerceAtLeast(0))
+        return out.toByteArray()
+    }
+
+    private fun decodeBlock(bytes: ByteArray, base: Long, visitor: (GeoFix) -> Unit) {
+        val reader = VarintCodec.Reader(bytes)
+        val n = reader.varint().toInt()
+        val times = LongArray(n)
+        val lats = LongArray(n)
+        val lngs = LongArray(n)
+        var acc = 0L
+        for (i in 0 until n) { acc += reader.signed(); times[i] = base + acc * 1000 }
+        acc = 0L
+        for (i in 0 until n) { acc += reader.signed(); lats[i] = acc }
+        acc = 0L
+        for (i in 0 until n) { acc += reader.signed(); lngs[i] = acc }
+        for (i in 0 until n) {
+            val accuracy = reader.varint().toFloat()
+            visitor(GeoFix(lats[i] / COORD_SCALE, lngs[i] / COORD_SCALE, accuracy, times[i]))
+        }
+    }
+
+    private fun dropExpired(now: Long) {
+        val cutoff = dayOf(now - TimeUnit.DAYS.toMillis(RETENTION_DAYS.toLong()))
+        dir.listFiles { f -> f.name.endsWith(SUFFIX) && f.name.removeSuffix(SUFFIX) < cutoff }
+            ?.forEach { if (it.delete()) Log.d(TAG, "expired ${it.name}") }
+    }
+
+    private fun dayOf(time: Long): String = dayFormat.format(Date(time))
+}
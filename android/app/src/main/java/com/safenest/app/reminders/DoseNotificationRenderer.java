@@ -0,0 +1,457 @@
+package com.safenest.app.reminders;
+
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.media.RingtoneManager;
+import android.os.SystemClock;
+import android.service.notification.StatusBarNotification;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+
+import com.safenest.app.MainActivity;
+import com.safenest.app.R;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Renders dose notifications so that medicines due at the same time arrive as one group
+ *
+ * - Each dose keeps its own notification (same id as before, so updates replace it in place)
+ *   and joins a group per scheduled time, with an InboxStyle summary and a "Take all" action
+ * - The group alerts through its summary only (GROUP_ALERT_SUMMARY): one sound and vibration
+ *   per burst; callers vibrate / speak only when post() returns RESULT_ALERT. The first
+ *   critical dose to join always alerts, on the critical channel, even inside the quiet window
+ * - Every notify() goes through a token bucket kept below the platform's per-app enqueue
+ *   rate, which silently drops posts in a burst. Tokens are taken under the class lock but
+ *   the wait happens after it is released, so one slow burst never blocks other callers
+ *
+ * Each dose arrives in its own broadcast, so group membership is kept in SharedPreferences.
+ * Groups are per resident: on a shared tablet each senior gets their own summary and "Take all".
+ * Slot alarms use postSlot() for non-critical doses: they go up as summary lines (with their
+ * instructions) and share the summary's "Snooze", so a care-home slot costs one post per resident
+ * rather than one per dose. Critical doses keep their own child (full-screen, Taken, Snooze).
+ */
+public final class DoseNotificationRenderer {
+    private static final String TAG = "DoseNotifications";
+    private static final String PREFS_NAME = "SafeNestReminderGroups";
+
+    public static final int KIND_DUE = 0;
+    public static final int KIND_MISSED = 1;
+
+    public static final int RESULT_SILENT = 0;
+    public static final int RESULT_ALERT = 1;
+
+    public static final String ACTION_TAKE_ALL = "ACTION_TAKE_ALL";
+    public static final String ACTION_SNOOZE_ALL = "ACTION_SNOOZE_ALL";
+    public static final String EXTRA_MEDICINE_IDS = "medicine_ids";
+    // Parallel to EXTRA_MEDICINE_IDS: when each dose was first notified, and whether it is critical
+    public static final String EXTRA_NOTIFIED_ATS = "notified_ats";
+    public static final String EXTRA_CRITICAL_FLAGS = "critical_flags";
+
+    // Doses arriving within this window of the group's last alert stay quiet
+    private static final long ALERT_WINDOW_MS = 2 * 60 * 1000L;
+
+    // The platform allows ~5 enqueues per second per app; stay under it
+    private static final double BUCKET_CAPACITY = 4;
+    private static final double TOKENS_PER_MS = 4 / 1000.0;
+    private static final long MAX_WAIT_MS = 2000;
+    private static double tokens = BUCKET_CAPACITY;
+    private static long lastRefill = SystemClock.elapsedRealtime();
+
+    private DoseNotificationRenderer() {}
+
+    /**
+     * Post one dose's notification into its group and refresh the summary
+     *
+     * @param round escalation round; a higher round than the group last alerted for alerts again
+     */
+    public static int post(Context context, int kind, int notificationId, String residentId,
+                           String medicineId, String medicineName, String dosage, String scheduledTime,
+                           boolean isCritical, int round, NotificationCompat.Builder child) {
+        NotificationManager manager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        String resident = ResidentProfiles.normalize(residentId);
+        String groupKey = groupKey(kind, resident, scheduledTime);
+        long now = System.currentTimeMillis();
+        List<Pending> posts = new ArrayList<>(2);
+        boolean alert;
+
+        synchronized (DoseNotificationRenderer.class) {
+            JSONObject group = load(context, kind, resident, scheduledTime);
+            try {
+                JSONObject items = group.getJSONObject("items");
+                dropDismissed(manager, kind, resident, scheduledTime, items, medicineId);
+                JSONObject previous = items.optJSONObject(medicineId);
+                items.put(medicineId, new JSONObject()
+                    .put("name", medicineName)
+                    .put("dosage", dosage)
+                    .put("critical", isCritical)
+                    .put("notifiedAt", previous != null ? previous.optLong("notifiedAt", now) : now));
+
+                alert = markAlert(group, items, isCritical, round, now);
+                save(context, kind, resident, scheduledTime, group);
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to update dose group", e);
+                alert = true;
+            }
+
+            child.setGroup(groupKey)
+                .setGroupAlertBehavior(NotificationCompat.GROUP_ALERT_SUMMARY)
+                .setOnlyAlertOnce(true);
+            posts.add(new Pending(notificationId, child.build()));
+            Notification summary = buildSummary(context, kind, resident, scheduledTime, group, alert);
+            if (summary != null) posts.add(new Pending(summaryId(kind, resident, scheduledTime), summary));
+        }
+
+        deliver(manager, posts);
+        return alert ? RESULT_ALERT : RESULT_SILENT;
+    }
+
+    /**
+     * Add a resident's non-critical slot doses to the group as summary lines, with no per-dose
+     * children. [doses] maps medicine id to { name, dosage, instructions }; critical doses go
+     * through post() so they keep their own full-screen notification.
+     */
+    public static int postSlot(Context context, String residentId, String scheduledTime, JSONObject doses) {
+        NotificationManager manager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        String resident = ResidentProfiles.normalize(residentId);
+        long now = System.currentTimeMillis();
+        List<Pending> posts = new ArrayList<>(1);
+        boolean alert;
+
+        synchronized (DoseNotificationRenderer.class) {
+            JSONObject group = load(context, KIND_DUE, resident, scheduledTime);
+            try {
+                JSONObject items = group.getJSONObject("items");
+                dropDismissed(manager, KIND_DUE, resident, scheduledTime, items, null);
+                boolean anyCritical = false;
+                for (Iterator<String> it = doses.keys(); it.hasNext(); ) {
+                    String medicineId = it.next();
+                    JSONObject dose = doses.getJSONObject(medicineId);
+                    anyCritical |= dose.optBoolean("critical");
+                    JSONObject previous = items.optJSONObject(medicineId);
+                    items.put(medicineId, new JSONObject()
+                        .put("name", dose.optString("name"))
+                        .put("dosage", dose.optString("dosage"))
+                        .put("instructions", dose.optString("instructions"))
+                        .put("critical", dose.optBoolean("critical"))
+                        .put("notifiedAt", previous != null ? previous.optLong("notifiedAt", now) : now)
+                        .put("summaryOnly", true));
+                }
+                alert = markAlert(group, items, anyCritical, 0, now);
+                save(context, KIND_DUE, resident, scheduledTime, group);
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to update dose group", e);
+                alert = true;
+            }
+            Notification summary = buildSummary(context, KIND_DUE, resident, scheduledTime, group, alert);
+            if (summary != null) posts.add(new Pending(summaryId(KIND_DUE, resident, scheduledTime), summary));
+        }
+
+        deliver(manager, posts);
+        return alert ? RESULT_ALERT : RESULT_SILENT;
+    }
+
+    /**
+     * Drop a dose from its groups after Taken / Snooze / Skip; the summary is updated
+     * quietly, or cancelled with the last dose
+     */
+    public static void remove(Context context, String residentId, String medicineId, String scheduledTime) {
+        NotificationManager manager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        String resident = ResidentProfiles.normalize(residentId);
+        List<Pending> posts = new ArrayList<>(2);
+        synchronized (DoseNotificationRenderer.class) {
+            for (int kind : new int[]{KIND_DUE, KIND_MISSED}) {
+                SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+                if (!prefs.contains(prefsKey(kind, resident, scheduledTime))) continue;
+                JSONObject group = load(context, kind, resident, scheduledTime);
+                JSONObject items = group.optJSONObject("items");
+                if (items == null || items.remove(medicineId) == null) continue;
+                if (items.length() == 0) {
+                    manager.cancel(summaryId(kind, resident, scheduledTime));
+                    prefs.edit().remove(prefsKey(kind, resident, scheduledTime)).apply();
+                } else {
+                    save(context, kind, resident, scheduledTime, group);
+                    Notification summary = buildSummary(context, kind, resident, scheduledTime, group, false);
+                    if (summary != null) posts.add(new Pending(summaryId(kind, resident, scheduledTime), summary));
+                }
+            }
+        }
+        deliver(manager, posts);
+    }
+
+    /** Medicine names currently in a group, so one spoken reminder can cover the whole group */
+    public static synchronized List<String> medicineNames(Context context, String residentId, int kind,
+                                                          String scheduledTime) {
+        List<String> names = new ArrayList<>();
+        JSONObject items = load(context, kind, ResidentProfiles.normalize(residentId), scheduledTime)
+            .optJSONObject("items");
+        if (items != null) {
+            for (Iterator<String> it = items.keys(); it.hasNext(); ) {
+                JSONObject item = items.optJSONObject(it.next());
+                if (item != null) names.add(item.optString("name"));
+            }
+        }
+        return names;
+    }
+
+    /**
+     * notify() through the token bucket; waits up to MAX_WAIT_MS for a token, then posts anyway.
+     * Never call it while holding the class lock.
+     */
+    public static void notify(NotificationManager manager, int id, Notification notification) {
+        long at = reserve();
+        long waitMs = at - SystemClock.elapsedRealtime();
+        if (waitMs > 0) SystemClock.sleep(waitMs);
+        manager.notify(id, notification);
+    }
+
+    /** A notification with its token taken, waiting for its turn */
+    private static final class Pending {
+        final int id;
+        final Notification notification;
+        final long at = reserve();
+
+        Pending(int id, Notification notification) {
+            this.id = id;
+            this.notification = notification;
+        }
+    }
+
+    // Take one token; returns the elapsedRealtime at which the post may go out
+    private static synchronized long reserve() {
+        long now = SystemClock.elapsedRealtime();
+        tokens = Math.min(BUCKET_CAPACITY, tokens + (now - lastRefill) * TOKENS_PER_MS);
+        lastRefill = now;
+        tokens -= 1;
+        // A negative balance is this post's place in the queue
+        return tokens >= 0 ? now : now + Math.min(MAX_WAIT_MS, (long) Math.ceil(-tokens / TOKENS_PER_MS));
+    }
+
+    // Called outside the lock: reservations are in queue order, so posts keep their order
+    private static void deliver(NotificationManager manager, List<Pending> posts) {
+        for (Pending p : posts) {
+            long waitMs = p.at - SystemClock.elapsedRealtime();
+            if (waitMs > 0) SystemClock.sleep(waitMs);
+            manager.notify(p.id, p.notification);
+        }
+    }
+
+    /**
+     * Whether this post alerts, recording it on [group] if so. A critical dose joining a group
+     * that has only alerted at normal level must not stay quiet.
+     */
+    private static boolean markAlert(JSONObject group, JSONObject items, boolean isCritical, int round, long now)
+            throws JSONException {
+        boolean firstCritical = isCritical && !group.optBoolean("alertedCritical");
+        boolean alert = firstCritical || round > group.optInt("round", -1)
+            || now - group.optLong("alertedAt", 0L) > ALERT_WINDOW_MS;
+        if (alert) {
+            group.put("alertedAt", now);
+            group.put("round", Math.max(round, group.optInt("round", -1)));
+            if (isCritical || hasCritical(items)) group.put("alertedCritical", true);
+        }
+        return alert;
+    }
+
+    private static boolean hasCritical(JSONObject items) {
+        for (Iterator<String> it = items.keys(); it.hasNext(); ) {
+            JSONObject item = items.optJSONObject(it.next());
+            if (item != null && item.optBoolean("critical")) return true;
+        }
+        return false;
+    }
+
+    private static Notification buildSummary(Context context, int kind, String residentId,
+                                             String scheduledTime, JSONObject group, boolean alert) {
+        JSONObject items = group.optJSONObject("items");
+        if (items == null || items.length() == 0) return null;
+
+        int count = items.length();
+        boolean anyCritical = false;
+        String[] ids = new String[count];
+        long[] notifiedAts = new long[count];
+        boolean[] criticalFlags = new boolean[count];
+        NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle();
+        int i = 0;
+        for (Iterator<String> it = items.keys(); it.hasNext(); i++) {
+            ids[i] = it.next();
+            JSONObject item = items.optJSONObject(ids[i]);
+            if (item == null) continue;
+            boolean critical = item.optBoolean("critical");
+            notifiedAts[i] = item.optLong("notifiedAt", 0L);
+            criticalFlags[i] = critical;
+            anyCritical |= critical;
+            String dosage = item.optString("dosage");
+            String instructions = item.optString("instructions");
+            style.addLine((critical ? "🔴 " : "💊 ") + item.optString("name")
+                          + (dosage.isEmpty() ? "" : " · " + dosage)
+                          + (instructions.isEmpty() ? "" : " — " + instructions));
+        }
+
+        String title = kind == KIND_MISSED
+            ? "⚠️ " + count + (count == 1 ? " medicine" : " medicines") + " overdue (" + scheduledTime + ")"
+            : "💊 " + count + (count == 1 ? " medicine" : " medicines") + " due at " + scheduledTime;
+        style.setBigContentTitle(title);
+
+        Intent openIntent = new Intent(context, MainActivity.class);
+        openIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
+        openIntent.putExtra("navigate_to", "medicine");
+        openIntent.putExtra(ResidentProfiles.EXTRA_RESIDENT_ID, residentId);
+        PendingIntent openPendingIntent = PendingIntent.getActivity(
+            context,
+            ("group_open_" + kind + residentId + scheduledTime).hashCode(),
+            openIntent,
+            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+        );
+
+        Intent takeAllIntent = new Intent(context, MedicineActionReceiver.class);
+        takeAllIntent.setAction(ACTION_TAKE_ALL);
+        takeAllIntent.putExtra(ResidentProfiles.EXTRA_RESIDENT_ID, residentId);
+        takeAllIntent.putExtra(EXTRA_MEDICINE_IDS, ids);
+        takeAllIntent.putExtra(EXTRA_NOTIFIED_ATS, notifiedAts);
+        takeAllIntent.putExtra(EXTRA_CRITICAL_FLAGS, criticalFlags);
+        takeAllIntent.putExtra(MedicineReminderReceiver.EXTRA_SCHEDULED_TIME, scheduledTime);
+        PendingIntent takeAllPendingIntent = PendingIntent.getBroadcast(
+            context,
+            ("take_all_" + kind + residentId + scheduledTime).hashCode(),
+            takeAllIntent,
+            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+        );
+
+        // Snooze every dose still in the group; each comes back as its own reminder
+        PendingIntent snoozeAllPendingIntent = null;
+        if (kind == KIND_DUE) {
+            Intent snoozeAllIntent = new Intent(context, MedicineActionReceiver.class);
+            snoozeAllIntent.setAction(ACTION_SNOOZE_ALL);
+            snoozeAllIntent.putExtra(ResidentProfiles.EXTRA_RESIDENT_ID, residentId);
+            snoozeAllIntent.putExtra(EXTRA_MEDICINE_IDS, ids);
+            snoozeAllIntent.putExtra(EXTRA_NOTIFIED_ATS, notifiedAts);
+            snoozeAllIntent.putExtra(EXTRA_CRITICAL_FLAGS, criticalFlags);
+            snoozeAllIntent.putExtra(MedicineReminderReceiver.EXTRA_SCHEDULED_TIME, scheduledTime);
+            snoozeAllPendingIntent = PendingIntent.getBroadcast(
+                context,
+                ("snooze_all_" + residentId + scheduledTime).hashCode(),
+                snoozeAllIntent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+            );
+        }
+
+        String channel = anyCritical ? MedicineReminderReceiver.CHANNEL_CRITICAL
+            : kind == KIND_MISSED ? MissedMedicineReceiver.CHANNEL_MISSED : MedicineReminderReceiver.CHANNEL_MEDICINE;
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, channel)
+            .setSmallIcon(R.mipmap.ic_launcher)
+            .setContentTitle(title)
+            .setContentText(count == 1 ? "Tap to open" : "Tap “Take all” once you have taken them")
+            .setStyle(style)
+            .setNumber(count)
+            .setPriority(anyCritical || kind == KIND_MISSED ? NotificationCompat.PRIORITY_MAX
+                                                            : NotificationCompat.PRIORITY_HIGH)
+            .setCategory(kind == KIND_MISSED ? NotificationCompat.CATEGORY_ALARM : NotificationCompat.CATEGORY_REMINDER)
+            .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
+            .setGroup(groupKey(kind, residentId, scheduledTime))
+            .setGroupSummary(true)
+            .setGroupAlertBehavior(NotificationCompat.GROUP_ALERT_SUMMARY)
+            .setOnlyAlertOnce(!alert)
+            .setAutoCancel(true)
+            .setContentIntent(openPendingIntent)
+            .addAction(0, "✓ Take all", takeAllPendingIntent)
+            .setSound(RingtoneManager.getDefaultUri(anyCritical ? RingtoneManager.TYPE_ALARM
+                                                                : RingtoneManager.TYPE_NOTIFICATION))
+            .setDefaults(NotificationCompat.DEFAULT_LIGHTS);
+
+        if (snoozeAllPendingIntent != null) {
+            builder.addAction(0, count == 1 ? "⏰ Snooze 15m" : "⏰ Snooze all 15m", snoozeAllPendingIntent);
+        }
+
+        String residentName = ResidentProfiles.displayName(context, residentId);
+        if (residentName != null) {
+            builder.setSubText(residentName);
+        }
+
+        return builder.build();
+    }
+
+    // Forget doses whose notification is gone (swiped away); the one being posted always stays.
+    // Slot doses have no notification of their own and live as long as the summary.
+    private static void dropDismissed(NotificationManager manager, int kind, String residentId,
+                                      String scheduledTime, JSONObject items, String keep) {
+        Set<Integer> active = new HashSet<>();
+        try {
+            for (StatusBarNotification sbn : manager.getActiveNotifications()) active.add(sbn.getId());
+        } catch (Exception e) {
+            return;
+        }
+        boolean summaryUp = active.contains(summaryId(kind, residentId, scheduledTime));
+        List<String> gone = new ArrayList<>();
+        for (Iterator<String> it = items.keys(); it.hasNext(); ) {
+            String id = it.next();
+            if (id.equals(keep)) continue;
+            JSONObject item = items.optJSONObject(id);
+            boolean shown = item != null && item.optBoolean("summaryOnly")
+                ? summaryUp : active.contains(childId(kind, residentId, id, scheduledTime));
+            if (!shown) gone.add(id);
+        }
+        for (String id : gone) items.remove(id);
+    }
+
+    // The default resident ("") keeps the ids and keys used before residents existed
+    private static int childId(int kind, String residentId, String medicineId, String scheduledTime) {
+        String doseKey = ResidentProfiles.doseKey(residentId, medicineId, scheduledTime);
+        return kind == KIND_MISSED ? ("missed_" + doseKey).hashCode() : doseKey.hashCode();
+    }
+
+    private static int summaryId(int kind, String residentId, String scheduledTime) {
+        return ("group_summary_" + kind + residentId + scheduledTime).hashCode();
+    }
+
+    private static String groupKey(int kind, String residentId, String scheduledTime) {
+        return "com.safenest.doses." + (kind == KIND_MISSED ? "missed." : "due.")
+            + (residentId.isEmpty() ? "" : residentId + ".") + scheduledTime;
+    }
+
+    private static String prefsKey(int kind, String residentId, String scheduledTime) {
+        return "group_" + kind + "_" + (residentId.isEmpty() ? "" : residentId + "_") + scheduledTime;
+    }
+
+    // Groups are per day: yesterday's 08:00 group never carries into today's
+    private static JSONObject load(Context context, int kind, String residentId, String scheduledTime) {
+        String today = new SimpleDateFormat("yyyy-MM-dd", Locale.US).format(new Date());
+        try {
+            String raw = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .getString(prefsKey(kind, residentId, scheduledTime), null);
+            if (raw != null) {
+                JSONObject group = new JSONObject(raw);
+                if (today.equals(group.optString("date")) && group.has("items")) return group;
+            }
+            return new JSONObject().put("date", today).put("items", new JSONObject());
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to load dose group, starting fresh", e);
+            try {
+                return new JSONObject().put("date", today).put("items", new JSONObject());
+            } catch (Exception ignored) {
+                return new JSONObject();
+            }
+        }
+    }
+
+    private static void save(Context context, int kind, String residentId, String scheduledTime, JSONObject group) {
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+            .edit().putString(prefsKey(kind, residentId, scheduledTime), group.toString()).apply();
+    }
+}
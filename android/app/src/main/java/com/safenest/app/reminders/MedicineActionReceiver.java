@@ -10,6 +10,12 @@ import android.content.SharedPreferences;
 import android.os.Build;
 import android.util.Log;
 
+import com.safenest.app.analytics.AdherenceIndex;
+import com.safenest.app.diagnostics.EnergyAccounting;
+import com.safenest.app.diagnostics.EventLog;
+import com.safenest.app.telemetry.ReminderLatencyStats;
+import com.safenest.app.widget.WidgetUpdater;
+
 import org.json.JSONArray;
 import org.json.JSONObject;
 
@@ -22,72 +28,167 @@ import java.util.Locale;
  */
 public class MedicineActionReceiver extends BroadcastReceiver {
     private static final String TAG = "MedicineAction";
-    private static final String PREFS_NAME = "SafeNestMedicineActions";
     
     @Override
     public void onReceive(Context context, Intent intent) {
+        EnergyAccounting.Span span = EnergyAccounting.span(context, "medicineActionReceiver");
+        try {
+            handleAction(context, intent);
+        } finally {
+            span.end();
+            EventLog.flush(context);
+        }
+    }
+    
+    private void handleAction(Context context, Intent intent) {
         String action = intent.getAction();
+        String residentId = ResidentProfiles.normalize(intent.getStringExtra(ResidentProfiles.EXTRA_RESIDENT_ID));
         String medicineId = intent.getStringExtra(MedicineReminderReceiver.EXTRA_MEDICINE_ID);
         String scheduledTime = intent.getStringExtra(MedicineReminderReceiver.EXTRA_SCHEDULED_TIME);
         
-        Log.d(TAG, "Action received: " + action + " for " + medicineId);
+        if (DoseNotificationRenderer.ACTION_TAKE_ALL.equals(action)) {
+            String[] medicineIds = intent.getStringArrayExtra(DoseNotificationRenderer.EXTRA_MEDICINE_IDS);
+            recordGroupResponse(context, intent, medicineIds);
+            handleTakeAll(context, residentId, medicineIds, scheduledTime);
+            return;
+        }
+        if (DoseNotificationRenderer.ACTION_SNOOZE_ALL.equals(action)) {
+            String[] medicineIds = intent.getStringArrayExtra(DoseNotificationRenderer.EXTRA_MEDICINE_IDS);
+            recordGroupResponse(context, intent, medicineIds);
+            handleSnoozeAll(context, residentId, medicineIds, scheduledTime);
+            return;
+        }
         
         if (action == null || medicineId == null) return;
         
+        // How long the senior took to respond to the reminder
+        long notifiedAt = intent.getLongExtra(MedicineReminderReceiver.EXTRA_NOTIFIED_AT, 0L);
+        if (notifiedAt > 0) {
+            boolean isCritical = intent.getBooleanExtra(MedicineReminderReceiver.EXTRA_IS_CRITICAL, false);
+            ReminderLatencyStats.record(context, ReminderLatencyStats.STAGE_RESPONSE, isCritical,
+                                        System.currentTimeMillis() - notifiedAt);
+        }
+        
         // Dismiss the notification
         NotificationManager manager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-        int notificationId = (medicineId + scheduledTime).hashCode();
+        int notificationId = ResidentProfiles.doseKey(residentId, medicineId, scheduledTime).hashCode();
         manager.cancel(notificationId);
+        DoseNotificationRenderer.remove(context, residentId, medicineId, scheduledTime);
         
         switch (action) {
             case "ACTION_TAKEN":
-                handleTaken(context, medicineId, scheduledTime);
+                handleTaken(context, residentId, medicineId, scheduledTime);
                 break;
             case "ACTION_SNOOZE":
-                handleSnooze(context, intent);
+                handleSnooze(context, residentId, intent);
                 break;
             case "ACTION_SKIP":
-                handleSkip(context, medicineId, scheduledTime);
+                handleSkip(context, residentId, medicineId, scheduledTime);
                 break;
         }
     }
     
-    private void handleTaken(Context context, String medicineId, String scheduledTime) {
-        Log.d(TAG, "Marking as taken: " + medicineId);
+    private void handleTaken(Context context, String residentId, String medicineId, String scheduledTime) {
+        EventLog.log(EventLog.ACTION_RECEIVED, EventLog.text(medicineId), EventLog.hhmm(scheduledTime),
+                     EventLog.ACTION_TAKEN);
         
         // Store the action to be synced when app opens
-        storeActionForSync(context, medicineId, scheduledTime, "TAKEN");
+        storeActionForSync(context, residentId, medicineId, scheduledTime, "TAKEN");
         
         // Mark as taken to prevent missed medicine follow-ups
-        MissedMedicineReceiver.markMedicineTaken(context, medicineId, scheduledTime);
+        MissedMedicineReceiver.markMedicineTaken(context, residentId, medicineId, scheduledTime);
         
         // Cancel any pending missed medicine alarms
-        MissedMedicineReceiver.cancelEscalation(context, medicineId, scheduledTime);
+        MissedMedicineReceiver.cancelEscalation(context, residentId, medicineId, scheduledTime);
         
         // Also cancel any missed notification
         NotificationManager manager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-        manager.cancel(("missed_" + medicineId + scheduledTime).hashCode());
-        manager.cancel(("final_missed_" + medicineId + scheduledTime).hashCode());
+        String doseKey = ResidentProfiles.doseKey(residentId, medicineId, scheduledTime);
+        manager.cancel(("missed_" + doseKey).hashCode());
+        manager.cancel(("final_missed_" + doseKey).hashCode());
     }
     
-    private void handleSnooze(Context context, Intent originalIntent) {
-        String medicineId = originalIntent.getStringExtra(MedicineReminderReceiver.EXTRA_MEDICINE_ID);
-        String medicineName = originalIntent.getStringExtra(MedicineReminderReceiver.EXTRA_MEDICINE_NAME);
-        String dosage = originalIntent.getStringExtra(MedicineReminderReceiver.EXTRA_DOSAGE);
-        String scheduledTime = originalIntent.getStringExtra(MedicineReminderReceiver.EXTRA_SCHEDULED_TIME);
-        boolean isCritical = originalIntent.getBooleanExtra(MedicineReminderReceiver.EXTRA_IS_CRITICAL, false);
-        String instructions = originalIntent.getStringExtra(MedicineReminderReceiver.EXTRA_INSTRUCTIONS);
-        boolean voiceEnabled = originalIntent.getBooleanExtra(MedicineReminderReceiver.EXTRA_VOICE_ENABLED, true);
-        
-        Log.d(TAG, "Snoozing for 15 minutes: " + medicineId);
+    /**
+     * A group action answers every dose in it: one response sample per dose, timed from when
+     * that dose was first notified
+     */
+    private void recordGroupResponse(Context context, Intent intent, String[] medicineIds) {
+        long[] notifiedAts = intent.getLongArrayExtra(DoseNotificationRenderer.EXTRA_NOTIFIED_ATS);
+        boolean[] criticalFlags = intent.getBooleanArrayExtra(DoseNotificationRenderer.EXTRA_CRITICAL_FLAGS);
+        if (medicineIds == null || notifiedAts == null || notifiedAts.length != medicineIds.length) return;
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < notifiedAts.length; i++) {
+            if (notifiedAts[i] <= 0) continue;
+            boolean isCritical = criticalFlags != null && i < criticalFlags.length && criticalFlags[i];
+            ReminderLatencyStats.record(context, ReminderLatencyStats.STAGE_RESPONSE, isCritical, now - notifiedAts[i]);
+        }
+    }
+    
+    /**
+     * "Take all" on a group summary: every dose still in the resident's group is taken
+     */
+    private void handleTakeAll(Context context, String residentId, String[] medicineIds, String scheduledTime) {
+        if (medicineIds == null) return;
+        NotificationManager manager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        for (String medicineId : medicineIds) {
+            manager.cancel(ResidentProfiles.doseKey(residentId, medicineId, scheduledTime).hashCode());
+            DoseNotificationRenderer.remove(context, residentId, medicineId, scheduledTime);
+            handleTaken(context, residentId, medicineId, scheduledTime);
+        }
+    }
+    
+    /**
+     * "Snooze" on a group summary: every dose still in the group comes back in 15 minutes as
+     * its own reminder. Slot doses carry no details in the intent, so they are read from the store.
+     */
+    private void handleSnoozeAll(Context context, String residentId, String[] medicineIds, String scheduledTime) {
+        if (medicineIds == null) return;
+        NotificationManager manager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        MedicineReminderScheduler scheduler = new MedicineReminderScheduler(context, residentId);
+        for (String medicineId : medicineIds) {
+            manager.cancel(ResidentProfiles.doseKey(residentId, medicineId, scheduledTime).hashCode());
+            DoseNotificationRenderer.remove(context, residentId, medicineId, scheduledTime);
+            JSONObject reminder = scheduler.findReminder(medicineId, scheduledTime);
+            if (reminder == null) {
+                Log.w(TAG, "No stored reminder for " + medicineId + " at " + scheduledTime + ", not snoozed");
+                continue;
+            }
+            scheduleSnooze(context, residentId, medicineId, reminder.optString("medicineName", "Medicine"),
+                           reminder.optString("dosage", ""), scheduledTime, reminder.optBoolean("isCritical", false),
+                           reminder.optString("instructions", ""), reminder.optBoolean("voiceEnabled", true));
+        }
+    }
+    
+    private void handleSnooze(Context context, String residentId, Intent originalIntent) {
+        scheduleSnooze(
+            context,
+            residentId,
+            originalIntent.getStringExtra(MedicineReminderReceiver.EXTRA_MEDICINE_ID),
+            originalIntent.getStringExtra(MedicineReminderReceiver.EXTRA_MEDICINE_NAME),
+            originalIntent.getStringExtra(MedicineReminderReceiver.EXTRA_DOSAGE),
+            originalIntent.getStringExtra(MedicineReminderReceiver.EXTRA_SCHEDULED_TIME),
+            originalIntent.getBooleanExtra(MedicineReminderReceiver.EXTRA_IS_CRITICAL, false),
+            originalIntent.getStringExtra(MedicineReminderReceiver.EXTRA_INSTRUCTIONS),
+            originalIntent.getBooleanExtra(MedicineReminderReceiver.EXTRA_VOICE_ENABLED, true)
+        );
+    }
+    
+    private void scheduleSnooze(Context context, String residentId, String medicineId, String medicineName,
+                                String dosage, String scheduledTime, boolean isCritical, String instructions,
+                                boolean voiceEnabled) {
+        EventLog.log(EventLog.ACTION_RECEIVED, EventLog.text(medicineId), EventLog.hhmm(scheduledTime),
+                     EventLog.ACTION_SNOOZE);
         
         // Store snooze action
-        storeActionForSync(context, medicineId, scheduledTime, "SNOOZED");
+        storeActionForSync(context, residentId, medicineId, scheduledTime, "SNOOZED");
+        AdherenceIndex.get(context).record(ResidentProfiles.scopedMedicineId(residentId, medicineId), scheduledTime,
+                                           "SNOOZED", System.currentTimeMillis());
         
         // Schedule new reminder in 15 minutes
         long snoozeTime = System.currentTimeMillis() + (15 * 60 * 1000);
         
         Intent reminderIntent = new Intent(context, MedicineReminderReceiver.class);
+        reminderIntent.putExtra(ResidentProfiles.EXTRA_RESIDENT_ID, residentId);
         reminderIntent.putExtra(MedicineReminderReceiver.EXTRA_MEDICINE_ID, medicineId);
         reminderIntent.putExtra(MedicineReminderReceiver.EXTRA_MEDICINE_NAME, medicineName);
         reminderIntent.putExtra(MedicineReminderReceiver.EXTRA_DOSAGE, dosage);
@@ -95,10 +196,11 @@ public class MedicineActionReceiver extends BroadcastReceiver {
         reminderIntent.putExtra(MedicineReminderReceiver.EXTRA_IS_CRITICAL, isCritical);
         reminderIntent.putExtra(MedicineReminderReceiver.EXTRA_INSTRUCTIONS, instructions);
         reminderIntent.putExtra(MedicineReminderReceiver.EXTRA_VOICE_ENABLED, voiceEnabled);
+        reminderIntent.putExtra(MedicineReminderReceiver.EXTRA_PLANNED_TRIGGER, snoozeTime);
         
         PendingIntent pendingIntent = PendingIntent.getBroadcast(
             context,
-            ("snooze_alarm_" + medicineId + scheduledTime).hashCode(),
+            ("snooze_alarm_" + ResidentProfiles.doseKey(residentId, medicineId, scheduledTime)).hashCode(),
             reminderIntent,
             PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
         );
@@ -110,20 +212,25 @@ public class MedicineActionReceiver extends BroadcastReceiver {
             alarmManager.setExact(AlarmManager.RTC_WAKEUP, snoozeTime, pendingIntent);
         }
         
-        Log.d(TAG, "Snoozed alarm scheduled for 15 minutes later");
+        EventLog.log(EventLog.SNOOZE_SCHEDULED, EventLog.text(medicineId), EventLog.hhmm(scheduledTime), snoozeTime);
     }
     
-    private void handleSkip(Context context, String medicineId, String scheduledTime) {
-        Log.d(TAG, "Marking as skipped: " + medicineId);
-        storeActionForSync(context, medicineId, scheduledTime, "SKIPPED");
+    private void handleSkip(Context context, String residentId, String medicineId, String scheduledTime) {
+        EventLog.log(EventLog.ACTION_RECEIVED, EventLog.text(medicineId), EventLog.hhmm(scheduledTime),
+                     EventLog.ACTION_SKIP);
+        storeActionForSync(context, residentId, medicineId, scheduledTime, "SKIPPED");
+        AdherenceIndex.get(context).record(ResidentProfiles.scopedMedicineId(residentId, medicineId), scheduledTime,
+                                           "SKIPPED", System.currentTimeMillis());
+        WidgetUpdater.requestUpdate(context);
     }
     
     /**
      * Store actions to be synced to Firebase when app opens
      */
-    private void storeActionForSync(Context context, String medicineId, String scheduledTime, String status) {
+    private void storeActionForSync(Context context, String residentId, String medicineId, String scheduledTime,
+                                    String status) {
         try {
-            SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+            SharedPreferences prefs = ResidentProfiles.prefs(context, ResidentProfiles.ACTIONS, residentId);
             String existingActions = prefs.getString("pending_actions", "[]");
             JSONArray actions = new JSONArray(existingActions);
             
@@ -137,7 +244,6 @@ public class MedicineActionReceiver extends BroadcastReceiver {
             actions.put(action);
             
             prefs.edit().putString("pending_actions", actions.toString()).apply();
-            Log.d(TAG, "Action stored for sync: " + action.toString());
         } catch (Exception e) {
             Log.e(TAG, "Failed to store action", e);
         }
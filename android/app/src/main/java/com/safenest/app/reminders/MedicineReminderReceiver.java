@@ -15,6 +15,8 @@ import android.os.PowerManager;
 import android.os.VibrationEffect;
 import android.os.Vibrator;
 import android.speech.tts.TextToSpeech;
+import android.speech.tts.UtteranceProgressListener;
+import android.text.TextUtils;
 import android.util.Log;
 
 import androidx.core.app.NotificationCompat;
@@ -23,12 +25,27 @@ import androidx.core.content.ContextCompat;
 
 import com.safenest.app.MainActivity;
 import com.safenest.app.R;
+import com.safenest.app.diagnostics.EnergyAccounting;
+import com.safenest.app.diagnostics.EventLog;
+import com.safenest.app.telemetry.ReminderLatencyStats;
+import com.safenest.app.widget.WidgetUpdater;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 /**
  * BroadcastReceiver that handles scheduled medicine reminders.
  * This works even when the app is in background or killed.
+ *
+ * Daily reminders arrive as ReminderSlots alarms (every resident's doses due at one time);
+ * snoozed reminders still arrive one dose at a time.
  */
 public class MedicineReminderReceiver extends BroadcastReceiver {
     private static final String TAG = "MedicineReminder";
@@ -43,31 +60,78 @@ public class MedicineReminderReceiver extends BroadcastReceiver {
     public static final String EXTRA_IS_CRITICAL = "is_critical";
     public static final String EXTRA_INSTRUCTIONS = "instructions";
     public static final String EXTRA_VOICE_ENABLED = "voice_enabled";
+    // Wall-clock time the alarm was meant to fire, and when the notification went up
+    public static final String EXTRA_PLANNED_TRIGGER = "planned_trigger";
+    public static final String EXTRA_NOTIFIED_AT = "notified_at";
+    
+    private static final int NOT_POSTED = -1;
     
     private TextToSpeech tts;
+    
+    /** One spoken reminder; the text is built when TTS is ready so it covers the whole group */
+    private static final class Speech {
+        final String residentId;
+        final String medicineName;
+        final String dosage;
+        final String scheduledTime;
+        final boolean isCritical;
+        
+        Speech(String residentId, String medicineName, String dosage, String scheduledTime, boolean isCritical) {
+            this.residentId = residentId;
+            this.medicineName = medicineName;
+            this.dosage = dosage;
+            this.scheduledTime = scheduledTime;
+            this.isCritical = isCritical;
+        }
+    }
 
     @Override
     public void onReceive(Context context, Intent intent) {
-        Log.d(TAG, "========== Medicine reminder received ==========");
+        long deliveredAt = System.currentTimeMillis();
         
         // Acquire wake lock to ensure device stays awake during notification
-        PowerManager pm = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
-        PowerManager.WakeLock wakeLock = pm.newWakeLock(
-            PowerManager.PARTIAL_WAKE_LOCK | PowerManager.ACQUIRE_CAUSES_WAKEUP,
-            "SafeNest:MedicineReminder"
+        EnergyAccounting.TrackedWakeLock wakeLock = EnergyAccounting.newWakeLock(
+            context,
+            "medicineReminderReceiver",
+            PowerManager.PARTIAL_WAKE_LOCK | PowerManager.ACQUIRE_CAUSES_WAKEUP
         );
         wakeLock.acquire(60 * 1000L); // 1 minute max
         
+        if (ReminderSlots.ACTION_SLOT.equals(intent.getAction())) {
+            // A slot can hold dozens of residents' doses; deliver them off the main thread
+            PendingResult pendingResult = goAsync();
+            new Thread(() -> {
+                EnergyAccounting.Span span = EnergyAccounting.span(context, "medicineReminderReceiver");
+                try {
+                    deliverSlot(context, intent, deliveredAt);
+                    WidgetUpdater.requestUpdate(context);
+                } finally {
+                    wakeLock.release();
+                    span.end();
+                    EventLog.flush(context);
+                    pendingResult.finish();
+                }
+            }, "ReminderSlot").start();
+            return;
+        }
+        
+        EnergyAccounting.Span span = EnergyAccounting.span(context, "medicineReminderReceiver");
         try {
-            processReminder(context, intent);
+            processReminder(context, intent, deliveredAt);
+            // The due dose moves from "next" to pending on the widget
+            WidgetUpdater.requestUpdate(context);
         } finally {
-            if (wakeLock.isHeld()) {
-                wakeLock.release();
-            }
+            wakeLock.release();
+            span.end();
+            EventLog.flush(context);
         }
     }
     
-    private void processReminder(Context context, Intent intent) {
+    /**
+     * A single dose: snoozed reminders and per-dose alarms set before the slot layer
+     */
+    private void processReminder(Context context, Intent intent, long deliveredAt) {
+        String residentId = ResidentProfiles.normalize(intent.getStringExtra(ResidentProfiles.EXTRA_RESIDENT_ID));
         String medicineId = intent.getStringExtra(EXTRA_MEDICINE_ID);
         String medicineName = intent.getStringExtra(EXTRA_MEDICINE_NAME);
         String dosage = intent.getStringExtra(EXTRA_DOSAGE);
@@ -76,53 +140,210 @@ public class MedicineReminderReceiver extends BroadcastReceiver {
         String instructions = intent.getStringExtra(EXTRA_INSTRUCTIONS);
         boolean voiceEnabled = intent.getBooleanExtra(EXTRA_VOICE_ENABLED, true);
         
-        Log.d(TAG, "Medicine: " + medicineName + ", Time: " + scheduledTime + ", Critical: " + isCritical);
-        
         if (medicineName == null) {
             Log.e(TAG, "Medicine name is null, ignoring");
             return;
         }
         
         createNotificationChannels(context);
-        showMedicineNotification(context, medicineId, medicineName, dosage, scheduledTime, isCritical, instructions);
+        boolean alert = deliverDose(context, residentId, medicineId, medicineName, dosage, scheduledTime, isCritical,
+                                    instructions, voiceEnabled, deliveredAt,
+                                    intent.getLongExtra(EXTRA_PLANNED_TRIGGER, 0L));
         
         // Vibrate to get attention
-        vibrateDevice(context, isCritical);
+        if (alert) {
+            vibrateDevice(context, isCritical);
+        }
         
         // Speak the reminder if voice is enabled
-        if (voiceEnabled) {
-            speakReminder(context, medicineName, dosage, isCritical);
+        if (voiceEnabled && alert) {
+            List<Speech> speech = new ArrayList<>();
+            speech.add(new Speech(residentId, medicineName, dosage, scheduledTime, isCritical));
+            speakReminders(context, speech, deliveredAt);
+        }
+        
+        // CRITICAL: Make sure the daily slot is armed for tomorrow (moves old per-dose alarms onto slots)
+        rescheduleForTomorrow(context, residentId, medicineId, medicineName, dosage, scheduledTime, 
+                              isCritical, instructions, voiceEnabled);
+    }
+    
+    /**
+     * Every dose due at a slot's time, across residents: one notification per resident
+     * (InboxStyle summary), one vibration and one spoken reminder per resident.
+     * Critical doses also get their own child, with a full-screen intent, Taken and Snooze.
+     */
+    private void deliverSlot(Context context, Intent intent, long deliveredAt) {
+        String slotTime = intent.getStringExtra(ReminderSlots.EXTRA_SLOT_TIME);
+        if (slotTime == null) return;
+        long plannedTrigger = intent.getLongExtra(EXTRA_PLANNED_TRIGGER, 0L);
+        List<String[]> members = ReminderSlots.members(context, slotTime);
+        EventLog.log(EventLog.SLOT_FIRED, EventLog.hhmm(slotTime), members.size(),
+                     plannedTrigger > 0 ? deliveredAt - plannedTrigger : 0L);
+        
+        Map<String, List<String>> byResident = new LinkedHashMap<>();
+        for (String[] member : members) {
+            List<String> ids = byResident.get(member[0]);
+            if (ids == null) {
+                ids = new ArrayList<>();
+                byResident.put(member[0], ids);
+            }
+            ids.add(member[1]);
+        }
+        
+        createNotificationChannels(context);
+        boolean canNotify = canPostNotifications(context);
+        List<Speech> speech = new ArrayList<>();
+        boolean vibrate = false;
+        boolean vibrateCritical = false;
+        for (Map.Entry<String, List<String>> entry : byResident.entrySet()) {
+            String residentId = entry.getKey();
+            MedicineReminderScheduler scheduler = new MedicineReminderScheduler(context, residentId);
+            JSONObject doses = new JSONObject();
+            boolean alert = false;
+            boolean anyDose = false;
+            boolean anyCritical = false;
+            boolean anyVoice = false;
+            String firstName = null;
+            String firstDosage = null;
+            for (String medicineId : entry.getValue()) {
+                JSONObject reminder = scheduler.findReminder(medicineId, slotTime);
+                if (reminder == null) {
+                    Log.w(TAG, "Dropping stale slot member " + medicineId + " at " + slotTime);
+                    ReminderSlots.remove(context, slotTime, residentId, medicineId);
+                    continue;
+                }
+                String medicineName = reminder.optString("medicineName", "Medicine");
+                String dosage = reminder.optString("dosage", "");
+                boolean isCritical = reminder.optBoolean("isCritical", false);
+                boolean voiceEnabled = reminder.optBoolean("voiceEnabled", true);
+                String instructions = reminder.optString("instructions", "");
+                recordFired(context, medicineId, slotTime, isCritical, deliveredAt, plannedTrigger);
+                MissedMedicineReceiver.scheduleFollowUp(context, residentId, medicineId, medicineName, dosage,
+                                                         slotTime, isCritical, voiceEnabled);
+                if (isCritical) {
+                    // Critical doses must not be reduced to a summary line
+                    int result = canNotify
+                        ? showMedicineNotification(context, residentId, medicineId, medicineName, dosage, slotTime,
+                                                   true, instructions)
+                        : NOT_POSTED;
+                    recordNotified(context, medicineId, slotTime, true, result != NOT_POSTED, deliveredAt);
+                    alert |= result != DoseNotificationRenderer.RESULT_SILENT;
+                } else {
+                    try {
+                        doses.put(medicineId, new JSONObject()
+                            .put("name", medicineName)
+                            .put("dosage", dosage)
+                            .put("instructions", instructions));
+                    } catch (JSONException e) {
+                        Log.e(TAG, "Failed to add " + medicineId + " to slot notification", e);
+                    }
+                }
+                anyDose = true;
+                anyCritical |= isCritical;
+                anyVoice |= voiceEnabled;
+                if (firstName == null) {
+                    firstName = medicineName;
+                    firstDosage = dosage;
+                }
+            }
+            if (!anyDose) continue;
+            
+            // After the critical children, so the group's one alert is the critical one
+            if (doses.length() > 0) {
+                int result = canNotify
+                    ? DoseNotificationRenderer.postSlot(context, residentId, slotTime, doses)
+                    : NOT_POSTED;
+                for (Iterator<String> it = doses.keys(); it.hasNext(); ) {
+                    recordNotified(context, it.next(), slotTime, false, result != NOT_POSTED, deliveredAt);
+                }
+                alert |= result != DoseNotificationRenderer.RESULT_SILENT;
+            }
+            
+            // Criticality covers every dose the resident has in this slot, not just the first
+            if (alert) {
+                vibrate = true;
+                vibrateCritical |= anyCritical;
+            }
+            // The spoken text names the whole group, so one per resident is enough
+            if (anyVoice && alert) {
+                speech.add(new Speech(residentId, firstName, firstDosage, slotTime, anyCritical));
+            }
+        }
+        
+        if (vibrate) {
+            vibrateDevice(context, vibrateCritical);
+        }
+        if (!speech.isEmpty()) {
+            speakReminders(context, speech, deliveredAt);
+        }
+        
+        // Slot alarms are one-shot too: arm tomorrow's
+        if (!ReminderSlots.members(context, slotTime).isEmpty()) {
+            ReminderSlots.arm(context, slotTime);
         }
+    }
+    
+    /**
+     * Post one dose and start its missed-dose follow-up
+     *
+     * @return true if this dose should vibrate / speak (first of its group, or not grouped)
+     */
+    private boolean deliverDose(Context context, String residentId, String medicineId, String medicineName,
+                                String dosage, String scheduledTime, boolean isCritical, String instructions,
+                                boolean voiceEnabled, long deliveredAt, long plannedTrigger) {
+        recordFired(context, medicineId, scheduledTime, isCritical, deliveredAt, plannedTrigger);
+        int result = showMedicineNotification(context, residentId, medicineId, medicineName, dosage, scheduledTime,
+                                              isCritical, instructions);
+        recordNotified(context, medicineId, scheduledTime, isCritical, result != NOT_POSTED, deliveredAt);
         
         // Schedule follow-up check in 30 minutes (for missed medicine detection)
-        MissedMedicineReceiver.scheduleFollowUp(context, medicineId, medicineName, dosage, 
+        MissedMedicineReceiver.scheduleFollowUp(context, residentId, medicineId, medicineName, dosage, 
                                                  scheduledTime, isCritical, voiceEnabled);
         
-        // CRITICAL: Re-schedule this alarm for tomorrow (since setExact is one-time)
-        rescheduleForTomorrow(context, medicineId, medicineName, dosage, scheduledTime, 
-                              isCritical, instructions, voiceEnabled);
+        // Doses due together alert once per group; an unposted reminder still alerts on its own
+        return result != DoseNotificationRenderer.RESULT_SILENT;
+    }
+    
+    private static void recordFired(Context context, String medicineId, String scheduledTime, boolean isCritical,
+                                    long deliveredAt, long plannedTrigger) {
+        // Alarms scheduled before planned triggers were recorded carry none; skip those
+        EventLog.log(EventLog.REMINDER_FIRED, EventLog.text(medicineId), EventLog.hhmm(scheduledTime),
+                     EventLog.bool(isCritical), plannedTrigger > 0 ? deliveredAt - plannedTrigger : 0L);
+        if (plannedTrigger > 0) {
+            ReminderLatencyStats.record(context, ReminderLatencyStats.STAGE_ALARM, isCritical, deliveredAt - plannedTrigger);
+        }
+    }
+    
+    private static void recordNotified(Context context, String medicineId, String scheduledTime, boolean isCritical,
+                                       boolean posted, long deliveredAt) {
+        EventLog.log(EventLog.REMINDER_NOTIFIED, EventLog.text(medicineId), EventLog.hhmm(scheduledTime),
+                     EventLog.bool(posted));
+        if (posted) {
+            ReminderLatencyStats.record(context, ReminderLatencyStats.STAGE_NOTIFY, isCritical,
+                                        System.currentTimeMillis() - deliveredAt);
+        }
     }
     
     /**
-     * Re-schedule the alarm for the next day (setExact alarms are one-time only)
+     * Re-store the reminder and arm its slot for the next day (alarms are one-time only)
      */
-    private void rescheduleForTomorrow(Context context, String medicineId, String medicineName,
+    private void rescheduleForTomorrow(Context context, String residentId, String medicineId, String medicineName,
                                         String dosage, String scheduledTime, boolean isCritical,
                                         String instructions, boolean voiceEnabled) {
         try {
-            MedicineReminderScheduler scheduler = new MedicineReminderScheduler(context);
+            MedicineReminderScheduler scheduler = new MedicineReminderScheduler(context, residentId);
             scheduler.scheduleReminder(medicineId, medicineName, dosage, scheduledTime, 
                                         isCritical, instructions, voiceEnabled);
-            Log.d(TAG, "Re-scheduled alarm for tomorrow: " + medicineName + " at " + scheduledTime);
         } catch (Exception e) {
             Log.e(TAG, "Failed to re-schedule alarm for tomorrow", e);
         }
     }
     
     /**
-     * Speak the medicine reminder using Text-to-Speech
+     * Speak the reminders using Text-to-Speech, one after another
      */
-    private void speakReminder(Context context, String medicineName, String dosage, boolean isCritical) {
+    private void speakReminders(Context context, List<Speech> speech, long deliveredAt) {
+        Context appContext = context.getApplicationContext();
         tts = new TextToSpeech(context, status -> {
             if (status == TextToSpeech.SUCCESS) {
                 int result = tts.setLanguage(Locale.US);
@@ -131,26 +352,32 @@ public class MedicineReminderReceiver extends BroadcastReceiver {
                     tts.setLanguage(Locale.getDefault());
                 }
                 
-                // Build the speech text
-                StringBuilder speechText = new StringBuilder();
-                if (isCritical) {
-                    speechText.append("Attention! Critical medication alert. ");
-                } else {
-                    speechText.append("Medicine reminder. ");
-                }
-                speechText.append("Time to take ").append(medicineName);
-                if (dosage != null && !dosage.isEmpty()) {
-                    speechText.append(", ").append(dosage);
-                }
-                speechText.append(".");
-                
-                Log.d(TAG, "Speaking: " + speechText.toString());
+                tts.setOnUtteranceProgressListener(new UtteranceProgressListener() {
+                    @Override
+                    public void onStart(String utteranceId) {
+                        // Utterance ids carry the index into [speech]
+                        int index = Integer.parseInt(utteranceId.substring(utteranceId.lastIndexOf('_') + 1));
+                        boolean isCritical = speech.get(index).isCritical;
+                        EventLog.log(EventLog.REMINDER_SPOKEN, EventLog.bool(isCritical));
+                        ReminderLatencyStats.record(appContext, ReminderLatencyStats.STAGE_TTS, isCritical,
+                                                    System.currentTimeMillis() - deliveredAt);
+                    }
+                    
+                    @Override
+                    public void onDone(String utteranceId) {}
+                    
+                    @Override
+                    public void onError(String utteranceId) {}
+                });
                 
-                // Speak with higher priority for critical medicines
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-                    tts.speak(speechText.toString(), TextToSpeech.QUEUE_FLUSH, null, "medicine_reminder");
-                } else {
-                    tts.speak(speechText.toString(), TextToSpeech.QUEUE_FLUSH, null);
+                for (int i = 0; i < speech.size(); i++) {
+                    String text = speechText(appContext, speech.get(i));
+                    int queueMode = i == 0 ? TextToSpeech.QUEUE_FLUSH : TextToSpeech.QUEUE_ADD;
+                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                        tts.speak(text, queueMode, null, "medicine_reminder_" + i);
+                    } else {
+                        tts.speak(text, queueMode, null);
+                    }
                 }
                 
                 // Shutdown TTS after speaking (delayed to allow speech to complete)
@@ -160,13 +387,51 @@ public class MedicineReminderReceiver extends BroadcastReceiver {
                         tts.shutdown();
                         tts = null;
                     }
-                }, 5000); // 5 seconds should be enough for the speech
+                }, 5000L * speech.size()); // 5 seconds per reminder should be enough
             } else {
                 Log.e(TAG, "TTS initialization failed");
             }
         });
     }
     
+    private static String speechText(Context context, Speech s) {
+        StringBuilder speechText = new StringBuilder();
+        if (s.isCritical) {
+            speechText.append("Attention! Critical medication alert. ");
+        } else {
+            speechText.append("Medicine reminder. ");
+        }
+        String residentName = ResidentProfiles.displayName(context, s.residentId);
+        if (residentName != null) {
+            speechText.append("For ").append(residentName).append(". ");
+        }
+        // By now the rest of a simultaneous burst has usually joined the group
+        List<String> names = DoseNotificationRenderer.medicineNames(
+            context, s.residentId, DoseNotificationRenderer.KIND_DUE, s.scheduledTime);
+        if (names.size() > 1) {
+            speechText.append("Time to take your ").append(names.size()).append(" medicines: ")
+                      .append(TextUtils.join(", ", names));
+        } else {
+            speechText.append("Time to take ").append(s.medicineName);
+            if (s.dosage != null && !s.dosage.isEmpty()) {
+                speechText.append(", ").append(s.dosage);
+            }
+        }
+        speechText.append(".");
+        return speechText.toString();
+    }
+    
+    // Notification permission is needed on Android 13+
+    private static boolean canPostNotifications(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                && ContextCompat.checkSelfPermission(context, android.Manifest.permission.POST_NOTIFICATIONS)
+                   != PackageManager.PERMISSION_GRANTED) {
+            Log.e(TAG, "❌ POST_NOTIFICATIONS permission not granted! Cannot show notification.");
+            return false;
+        }
+        return true;
+    }
+    
     private void createNotificationChannels(Context context) {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             NotificationManager manager = context.getSystemService(NotificationManager.class);
@@ -213,30 +478,29 @@ public class MedicineReminderReceiver extends BroadcastReceiver {
         }
     }
     
-    private void showMedicineNotification(Context context, String medicineId, String medicineName, 
-                                          String dosage, String scheduledTime, boolean isCritical,
-                                          String instructions) {
-        // Check notification permission on Android 13+
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
-            if (ContextCompat.checkSelfPermission(context, android.Manifest.permission.POST_NOTIFICATIONS) 
-                    != PackageManager.PERMISSION_GRANTED) {
-                Log.e(TAG, "❌ POST_NOTIFICATIONS permission not granted! Cannot show notification.");
-                return;
-            }
+    /**
+     * @return NOT_POSTED, or the group result from DoseNotificationRenderer
+     */
+    private int showMedicineNotification(Context context, String residentId, String medicineId, String medicineName, 
+                                             String dosage, String scheduledTime, boolean isCritical,
+                                             String instructions) {
+        if (!canPostNotifications(context)) {
+            return NOT_POSTED;
         }
         
-        NotificationManager manager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        long notifiedAt = System.currentTimeMillis();
         
         // Intent to open app when notification clicked
         Intent openIntent = new Intent(context, MainActivity.class);
         openIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
         openIntent.putExtra("navigate_to", "medicine");
+        openIntent.putExtra(ResidentProfiles.EXTRA_RESIDENT_ID, residentId);
         openIntent.putExtra(EXTRA_MEDICINE_ID, medicineId);
         openIntent.putExtra(EXTRA_SCHEDULED_TIME, scheduledTime);
         
         PendingIntent openPendingIntent = PendingIntent.getActivity(
             context, 
-            medicineId.hashCode(), 
+            (residentId + medicineId).hashCode(), 
             openIntent, 
             PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
         );
@@ -244,11 +508,14 @@ public class MedicineReminderReceiver extends BroadcastReceiver {
         // Action: Mark as Taken
         Intent takenIntent = new Intent(context, MedicineActionReceiver.class);
         takenIntent.setAction("ACTION_TAKEN");
+        takenIntent.putExtra(ResidentProfiles.EXTRA_RESIDENT_ID, residentId);
         takenIntent.putExtra(EXTRA_MEDICINE_ID, medicineId);
         takenIntent.putExtra(EXTRA_SCHEDULED_TIME, scheduledTime);
+        takenIntent.putExtra(EXTRA_IS_CRITICAL, isCritical);
+        takenIntent.putExtra(EXTRA_NOTIFIED_AT, notifiedAt);
         PendingIntent takenPendingIntent = PendingIntent.getBroadcast(
             context,
-            ("taken_" + medicineId + scheduledTime).hashCode(),
+            ("taken_" + ResidentProfiles.doseKey(residentId, medicineId, scheduledTime)).hashCode(),
             takenIntent,
             PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
         );
@@ -256,15 +523,17 @@ public class MedicineReminderReceiver extends BroadcastReceiver {
         // Action: Snooze 15min
         Intent snoozeIntent = new Intent(context, MedicineActionReceiver.class);
         snoozeIntent.setAction("ACTION_SNOOZE");
+        snoozeIntent.putExtra(ResidentProfiles.EXTRA_RESIDENT_ID, residentId);
         snoozeIntent.putExtra(EXTRA_MEDICINE_ID, medicineId);
         snoozeIntent.putExtra(EXTRA_MEDICINE_NAME, medicineName);
         snoozeIntent.putExtra(EXTRA_DOSAGE, dosage);
         snoozeIntent.putExtra(EXTRA_SCHEDULED_TIME, scheduledTime);
         snoozeIntent.putExtra(EXTRA_IS_CRITICAL, isCritical);
         snoozeIntent.putExtra(EXTRA_INSTRUCTIONS, instructions);
+        snoozeIntent.putExtra(EXTRA_NOTIFIED_AT, notifiedAt);
         PendingIntent snoozePendingIntent = PendingIntent.getBroadcast(
             context,
-            ("snooze_" + medicineId + scheduledTime).hashCode(),
+            ("snooze_" + ResidentProfiles.doseKey(residentId, medicineId, scheduledTime)).hashCode(),
             snoozeIntent,
             PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
         );
@@ -301,11 +570,16 @@ public class MedicineReminderReceiver extends BroadcastReceiver {
             builder.setFullScreenIntent(openPendingIntent, true);
         }
         
-        // Unique notification ID based on medicine and time
-        int notificationId = (medicineId + scheduledTime).hashCode();
-        manager.notify(notificationId, builder.build());
+        // On a shared tablet, say whose dose it is
+        String residentName = ResidentProfiles.displayName(context, residentId);
+        if (residentName != null) {
+            builder.setSubText(residentName);
+        }
         
-        Log.d(TAG, "Notification shown for: " + medicineName + " at " + scheduledTime);
+        // Unique notification ID based on resident, medicine and time
+        int notificationId = ResidentProfiles.doseKey(residentId, medicineId, scheduledTime).hashCode();
+        return DoseNotificationRenderer.post(context, DoseNotificationRenderer.KIND_DUE, notificationId, residentId,
+                                             medicineId, medicineName, dosage, scheduledTime, isCritical, 0, builder);
     }
     
     private void vibrateDevice(Context context, boolean isCritical) {
@@ -8,27 +8,72 @@ import android.content.SharedPreferences;
 import android.os.Build;
 import android.util.Log;
 
+import com.safenest.app.diagnostics.EventLog;
+import com.safenest.app.widget.WidgetUpdater;
+
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Schedules medicine reminders using AlarmManager
  * Works even when app is in background or killed
+ *
+ * One scheduler per resident: reminders are stored in that resident's prefs file and
+ * armed through the shared ReminderSlots layer.
+ *
+ * The plugin, the slot receiver and RemoteScheduleSync all read-modify-write the same
+ * scheduled_reminders string from different threads, so every mutation holds one lock per
+ * resident prefs file.
  */
 public class MedicineReminderScheduler {
     private static final String TAG = "ReminderScheduler";
-    private static final String PREFS_NAME = "SafeNestReminders";
+    private static final Map<String, Object> LOCKS = new HashMap<>();
     
     private final Context context;
+    private final String residentId;
     private final AlarmManager alarmManager;
     private final SharedPreferences prefs;
+    private final Object lock;
     
     public MedicineReminderScheduler(Context context) {
+        this(context, ResidentProfiles.DEFAULT_RESIDENT);
+    }
+    
+    public MedicineReminderScheduler(Context context, String residentId) {
         this.context = context;
+        this.residentId = ResidentProfiles.normalize(residentId);
         this.alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-        this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.prefs = ResidentProfiles.prefs(context, ResidentProfiles.REMINDERS, this.residentId);
+        this.lock = lockFor(ResidentProfiles.prefsName(ResidentProfiles.REMINDERS, this.residentId));
+    }
+    
+    private static Object lockFor(String prefsName) {
+        synchronized (LOCKS) {
+            Object lock = LOCKS.get(prefsName);
+            if (lock == null) {
+                lock = new Object();
+                LOCKS.put(prefsName, lock);
+            }
+            return lock;
+        }
+    }
+    
+    /**
+     * Held for a read-then-write across several calls (e.g. diffing scheduled times);
+     * single calls already take it
+     */
+    Object lock() {
+        return lock;
+    }
+    
+    public String getResidentId() {
+        return residentId;
     }
     
     /**
@@ -54,87 +99,21 @@ public class MedicineReminderScheduler {
     public void scheduleReminder(String medicineId, String medicineName, String dosage, 
                                   String time, boolean isCritical, String instructions,
                                   boolean voiceEnabled) {
-        try {
-            Log.d(TAG, "========== Scheduling Reminder ==========");
-            Log.d(TAG, "Medicine: " + medicineName + ", Time: " + time);
-            
-            // Check Android 12+ exact alarm permission
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && !alarmManager.canScheduleExactAlarms()) {
-                Log.w(TAG, "⚠️ Cannot schedule exact alarms! Permission not granted.");
-                // Fall back to inexact alarm (less reliable but better than nothing)
-            }
-            
-            String[] timeParts = time.split(":");
-            int hour = Integer.parseInt(timeParts[0]);
-            int minute = Integer.parseInt(timeParts[1]);
-            
-            // Calculate next occurrence of this time
-            Calendar calendar = Calendar.getInstance();
-            calendar.set(Calendar.HOUR_OF_DAY, hour);
-            calendar.set(Calendar.MINUTE, minute);
-            calendar.set(Calendar.SECOND, 0);
-            calendar.set(Calendar.MILLISECOND, 0);
+        synchronized (lock) {
+            try {
+                // Store first: the slot alarm looks the dose up when it fires
+                storeReminder(medicineId, medicineName, dosage, time, isCritical, instructions, voiceEnabled);
             
-            // If time has passed today, schedule for tomorrow
-            if (calendar.getTimeInMillis() <= System.currentTimeMillis()) {
-                calendar.add(Calendar.DAY_OF_MONTH, 1);
-                Log.d(TAG, "Time already passed today, scheduling for tomorrow");
-            }
-            
-            Intent intent = new Intent(context, MedicineReminderReceiver.class);
-            intent.setAction("com.safenest.MEDICINE_REMINDER");
-            intent.putExtra(MedicineReminderReceiver.EXTRA_MEDICINE_ID, medicineId);
-            intent.putExtra(MedicineReminderReceiver.EXTRA_MEDICINE_NAME, medicineName);
-            intent.putExtra(MedicineReminderReceiver.EXTRA_DOSAGE, dosage);
-            intent.putExtra(MedicineReminderReceiver.EXTRA_SCHEDULED_TIME, time);
-            intent.putExtra(MedicineReminderReceiver.EXTRA_IS_CRITICAL, isCritical);
-            intent.putExtra(MedicineReminderReceiver.EXTRA_INSTRUCTIONS, instructions);
-            intent.putExtra(MedicineReminderReceiver.EXTRA_VOICE_ENABLED, voiceEnabled);
-            
-            int requestCode = (medicineId + time).hashCode();
-            PendingIntent pendingIntent = PendingIntent.getBroadcast(
-                context,
-                requestCode,
-                intent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-            );
+                // Installs upgraded from per-dose alarms still have one pending; it would fire alongside the slot
+                cancelLegacyAlarm(medicineId, time);
+                ReminderSlots.add(context, time, residentId, medicineId);
+                long trigger = ReminderSlots.arm(context, time);
             
-            // Schedule exact alarm
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && alarmManager.canScheduleExactAlarms()) {
-                // Android 12+ with permission
-                alarmManager.setExactAndAllowWhileIdle(
-                    AlarmManager.RTC_WAKEUP,
-                    calendar.getTimeInMillis(),
-                    pendingIntent
-                );
-                Log.d(TAG, "✅ Scheduled EXACT alarm (Android 12+)");
-            } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                // Android 6+ (Doze mode aware)
-                alarmManager.setExactAndAllowWhileIdle(
-                    AlarmManager.RTC_WAKEUP,
-                    calendar.getTimeInMillis(),
-                    pendingIntent
-                );
-                Log.d(TAG, "✅ Scheduled EXACT alarm (Doze-aware)");
-            } else {
-                // Older Android
-                alarmManager.setExact(
-                    AlarmManager.RTC_WAKEUP,
-                    calendar.getTimeInMillis(),
-                    pendingIntent
-                );
-                Log.d(TAG, "✅ Scheduled EXACT alarm (Legacy)");
+                EventLog.log(EventLog.REMINDER_SCHEDULED, EventLog.text(medicineId), EventLog.hhmm(time),
+                        trigger, ReminderSlots.exactMode(context));
+            } catch (Exception e) {
+                Log.e(TAG, "❌ Failed to schedule reminder", e);
             }
-            
-            // Store for re-scheduling after reboot
-            storeReminder(medicineId, medicineName, dosage, time, isCritical, instructions, voiceEnabled);
-            
-            Log.d(TAG, "✅ Reminder scheduled: " + medicineName + " at " + time + 
-                      " (triggers: " + calendar.getTime() + ")" + 
-                      (voiceEnabled ? " [Voice ON]" : " [Voice OFF]"));
-            Log.d(TAG, "==========================================");
-        } catch (Exception e) {
-            Log.e(TAG, "❌ Failed to schedule reminder", e);
         }
     }
     
@@ -142,44 +121,172 @@ public class MedicineReminderScheduler {
      * Cancel a scheduled reminder
      */
     public void cancelReminder(String medicineId, String time) {
+        synchronized (lock) {
+            if (ReminderSlots.remove(context, time, residentId, medicineId)) {
+                ReminderSlots.disarm(context, time);
+            }
+            cancelLegacyAlarm(medicineId, time);
+            removeStoredReminder(medicineId, time);
+        
+            EventLog.log(EventLog.REMINDER_CANCELLED, EventLog.text(medicineId), EventLog.hhmm(time));
+        }
+    }
+    
+    /**
+     * Re-add this resident's stored reminders to their slots without arming them
+     * (after boot, before ReminderSlots.armAll); returns how many were restored
+     */
+    public int restoreSlots() {
+        try {
+            JSONArray reminders = new JSONArray(prefs.getString("scheduled_reminders", "[]"));
+            for (int i = 0; i < reminders.length(); i++) {
+                JSONObject r = reminders.getJSONObject(i);
+                ReminderSlots.add(context, r.getString("time"), residentId, r.getString("medicineId"));
+            }
+            return reminders.length();
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to restore reminder slots", e);
+            return 0;
+        }
+    }
+    
+    /**
+     * The stored reminder for one dose, or null if it is no longer scheduled
+     */
+    public JSONObject findReminder(String medicineId, String time) {
+        try {
+            JSONArray reminders = new JSONArray(prefs.getString("scheduled_reminders", "[]"));
+            for (int i = 0; i < reminders.length(); i++) {
+                JSONObject r = reminders.getJSONObject(i);
+                if (r.getString("medicineId").equals(medicineId) && r.getString("time").equals(time)) {
+                    return r;
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to read stored reminders", e);
+        }
+        return null;
+    }
+    
+    /**
+     * Times this resident currently has scheduled for a medicine
+     */
+    public List<String> getScheduledTimes(String medicineId) {
+        List<String> times = new ArrayList<>();
+        try {
+            JSONArray reminders = new JSONArray(prefs.getString("scheduled_reminders", "[]"));
+            for (int i = 0; i < reminders.length(); i++) {
+                JSONObject r = reminders.getJSONObject(i);
+                if (r.getString("medicineId").equals(medicineId)) times.add(r.getString("time"));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to read stored reminders", e);
+        }
+        return times;
+    }
+    
+    // Per-dose alarms from before the slot layer (default resident only)
+    private void cancelLegacyAlarm(String medicineId, String time) {
         Intent intent = new Intent(context, MedicineReminderReceiver.class);
         intent.setAction("com.safenest.MEDICINE_REMINDER");
         
-        int requestCode = (medicineId + time).hashCode();
+        int requestCode = ResidentProfiles.doseKey(residentId, medicineId, time).hashCode();
         PendingIntent pendingIntent = PendingIntent.getBroadcast(
             context,
             requestCode,
             intent,
             PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
         );
-        
         alarmManager.cancel(pendingIntent);
-        removeStoredReminder(medicineId, time);
-        
-        Log.d(TAG, "Cancelled reminder for " + medicineId + " at " + time);
     }
     
+    /**
+     * Days the medicine is taken: [startMs, endMs] in local days, endMs 0 = ongoing.
+     * Kept apart from the per-time entries so rescheduling a single time leaves it alone.
+     */
+    public void setActiveRange(String medicineId, long startMs, long endMs) {
+        synchronized (lock) {
+            if (startMs <= 0 && endMs <= 0) {
+                prefs.edit().remove("range_" + medicineId).apply();
+            } else {
+                prefs.edit().putString("range_" + medicineId, startMs + "," + endMs).apply();
+            }
+            WidgetUpdater.requestUpdate(context);
+        }
+    }
+
+    /**
+     * Whether the medicine is scheduled on the local day containing [now]; true when no
+     * range was recorded (reminders stored before ranges were)
+     */
+    public static boolean isActiveOn(SharedPreferences prefs, String medicineId, long now) {
+        String range = prefs.getString("range_" + medicineId, null);
+        if (range == null) return true;
+        try {
+            String[] parts = range.split(",");
+            long start = Long.parseLong(parts[0]);
+            long end = Long.parseLong(parts[1]);
+            Calendar day = Calendar.getInstance();
+            day.setTimeInMillis(now);
+            day.set(Calendar.HOUR_OF_DAY, 0);
+            day.set(Calendar.MINUTE, 0);
+            day.set(Calendar.SECOND, 0);
+            day.set(Calendar.MILLISECOND, 0);
+            long todayStart = day.getTimeInMillis();
+            day.add(Calendar.DAY_OF_MONTH, 1);
+            long tomorrowStart = day.getTimeInMillis();
+            // Started on or before today, and not ended before today began
+            return (start <= 0 || start < tomorrowStart) && (end <= 0 || end >= todayStart);
+        } catch (Exception e) {
+            return true;
+        }
+    }
+
     /**
      * Cancel all reminders for a medicine
      */
     public void cancelAllRemindersForMedicine(String medicineId) {
-        try {
-            String remindersJson = prefs.getString("scheduled_reminders", "[]");
-            JSONArray reminders = new JSONArray(remindersJson);
-            JSONArray remaining = new JSONArray();
+        synchronized (lock) {
+            try {
+                String remindersJson = prefs.getString("scheduled_reminders", "[]");
+                JSONArray reminders = new JSONArray(remindersJson);
+                JSONArray remaining = new JSONArray();
             
-            for (int i = 0; i < reminders.length(); i++) {
-                JSONObject reminder = reminders.getJSONObject(i);
-                if (reminder.getString("medicineId").equals(medicineId)) {
-                    cancelReminder(medicineId, reminder.getString("time"));
-                } else {
-                    remaining.put(reminder);
+                for (int i = 0; i < reminders.length(); i++) {
+                    JSONObject reminder = reminders.getJSONObject(i);
+                    if (reminder.getString("medicineId").equals(medicineId)) {
+                        cancelReminder(medicineId, reminder.getString("time"));
+                    } else {
+                        remaining.put(reminder);
+                    }
                 }
-            }
             
-            prefs.edit().putString("scheduled_reminders", remaining.toString()).apply();
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to cancel reminders for medicine", e);
+                prefs.edit()
+                    .putString("scheduled_reminders", remaining.toString())
+                    .remove("range_" + medicineId)
+                    .apply();
+            
+                WidgetUpdater.requestUpdate(context);
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to cancel reminders for medicine", e);
+            }
+        }
+    }
+    
+    /**
+     * Cancel every reminder of this resident (before removing the profile)
+     */
+    public void cancelAllReminders() {
+        synchronized (lock) {
+            try {
+                JSONArray reminders = new JSONArray(prefs.getString("scheduled_reminders", "[]"));
+                for (int i = 0; i < reminders.length(); i++) {
+                    JSONObject reminder = reminders.getJSONObject(i);
+                    cancelReminder(reminder.getString("medicineId"), reminder.getString("time"));
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to cancel reminders", e);
+            }
         }
     }
     
@@ -213,6 +320,8 @@ public class MedicineReminderScheduler {
             
             prefs.edit().putString("scheduled_reminders", filtered.toString()).apply();
             
+            WidgetUpdater.requestUpdate(context);
+            
             // Also store medicine data separately (for MissedMedicineReceiver lookup)
             JSONObject medicineData = new JSONObject();
             medicineData.put("name", medicineName);
@@ -239,6 +348,8 @@ public class MedicineReminderScheduler {
             }
             
             prefs.edit().putString("scheduled_reminders", filtered.toString()).apply();
+            
+            WidgetUpdater.requestUpdate(context);
         } catch (Exception e) {
             Log.e(TAG, "Failed to remove reminder", e);
         }
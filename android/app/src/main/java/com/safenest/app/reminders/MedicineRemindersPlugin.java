@@ -10,12 +10,17 @@ import com.getcapacitor.Plugin;
 import com.getcapacitor.PluginCall;
 import com.getcapacitor.PluginMethod;
 import com.getcapacitor.annotation.CapacitorPlugin;
+import com.safenest.app.analytics.AdherenceIndex;
+import com.safenest.app.telemetry.ReminderLatencyStats;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 /**
  * Capacitor Plugin to schedule medicine reminders from JavaScript
+ *
+ * Every call takes an optional residentId (shared care-home devices); without one it acts on
+ * the device's own senior, as before.
  */
 @CapacitorPlugin(name = "MedicineReminders")
 public class MedicineRemindersPlugin extends Plugin {
@@ -27,9 +32,19 @@ public class MedicineRemindersPlugin extends Plugin {
         scheduler = new MedicineReminderScheduler(getContext());
     }
     
+    private static String residentId(PluginCall call) {
+        return ResidentProfiles.normalize(call.getString("residentId", ResidentProfiles.DEFAULT_RESIDENT));
+    }
+    
+    private MedicineReminderScheduler schedulerFor(PluginCall call) {
+        String residentId = residentId(call);
+        return residentId.isEmpty() ? scheduler : new MedicineReminderScheduler(getContext(), residentId);
+    }
+    
     /**
      * Schedule a medicine reminder
-     * Call from JS: MedicineReminders.scheduleReminder({ medicineId, medicineName, dosage, time, isCritical, instructions, voiceReminderEnabled })
+     * Call from JS: MedicineReminders.scheduleReminder({ medicineId, medicineName, dosage, time, isCritical, instructions, voiceReminderEnabled, startDate?, endDate?, residentId? })
+     * startDate/endDate (epoch ms) bound the days the medicine counts as due
      */
     @PluginMethod
     public void scheduleReminder(PluginCall call) {
@@ -46,7 +61,9 @@ public class MedicineRemindersPlugin extends Plugin {
             return;
         }
         
+        MedicineReminderScheduler scheduler = schedulerFor(call);
         scheduler.scheduleReminder(medicineId, medicineName, dosage, time, isCritical, instructions, voiceEnabled);
+        applyActiveRange(call, scheduler, medicineId);
         
         JSObject result = new JSObject();
         result.put("success", true);
@@ -55,6 +72,14 @@ public class MedicineRemindersPlugin extends Plugin {
         call.resolve(result);
     }
     
+    // Only when JS sent a range: older callers keep whatever range is stored
+    private void applyActiveRange(PluginCall call, MedicineReminderScheduler scheduler, String medicineId) {
+        if (!call.getData().has("startDate") && !call.getData().has("endDate")) return;
+        Long start = call.getLong("startDate", 0L);
+        Long end = call.getLong("endDate", 0L);
+        scheduler.setActiveRange(medicineId, start != null ? start : 0L, end != null ? end : 0L);
+    }
+    
     /**
      * Schedule multiple reminders for a medicine (multiple times per day)
      */
@@ -74,10 +99,12 @@ public class MedicineRemindersPlugin extends Plugin {
         }
         
         try {
+            MedicineReminderScheduler scheduler = schedulerFor(call);
             for (int i = 0; i < times.length(); i++) {
                 String time = times.getString(i);
                 scheduler.scheduleReminder(medicineId, medicineName, dosage, time, isCritical, instructions, voiceEnabled);
             }
+            applyActiveRange(call, scheduler, medicineId);
             
             JSObject result = new JSObject();
             result.put("success", true);
@@ -102,7 +129,7 @@ public class MedicineRemindersPlugin extends Plugin {
             return;
         }
         
-        scheduler.cancelReminder(medicineId, time);
+        schedulerFor(call).cancelReminder(medicineId, time);
         call.resolve();
     }
     
@@ -118,7 +145,7 @@ public class MedicineRemindersPlugin extends Plugin {
             return;
         }
         
-        scheduler.cancelAllRemindersForMedicine(medicineId);
+        schedulerFor(call).cancelAllRemindersForMedicine(medicineId);
         call.resolve();
     }
     
@@ -129,7 +156,7 @@ public class MedicineRemindersPlugin extends Plugin {
     @PluginMethod
     public void getPendingActions(PluginCall call) {
         try {
-            SharedPreferences prefs = getContext().getSharedPreferences("SafeNestMedicineActions", Context.MODE_PRIVATE);
+            SharedPreferences prefs = ResidentProfiles.prefs(getContext(), ResidentProfiles.ACTIONS, residentId(call));
             String actionsJson = prefs.getString("pending_actions", "[]");
             
             JSObject result = new JSObject();
@@ -145,7 +172,7 @@ public class MedicineRemindersPlugin extends Plugin {
      */
     @PluginMethod
     public void clearPendingActions(PluginCall call) {
-        SharedPreferences prefs = getContext().getSharedPreferences("SafeNestMedicineActions", Context.MODE_PRIVATE);
+        SharedPreferences prefs = ResidentProfiles.prefs(getContext(), ResidentProfiles.ACTIONS, residentId(call));
         prefs.edit().putString("pending_actions", "[]").apply();
         call.resolve();
     }
@@ -191,7 +218,7 @@ public class MedicineRemindersPlugin extends Plugin {
     @PluginMethod
     public void getPendingCaregiverAlerts(PluginCall call) {
         try {
-            SharedPreferences prefs = getContext().getSharedPreferences("SafeNestCaregiverAlerts", Context.MODE_PRIVATE);
+            SharedPreferences prefs = ResidentProfiles.prefs(getContext(), ResidentProfiles.CAREGIVER_ALERTS, residentId(call));
             String alertsJson = prefs.getString("pending_alerts", "[]");
             
             JSObject result = new JSObject();
@@ -207,7 +234,7 @@ public class MedicineRemindersPlugin extends Plugin {
      */
     @PluginMethod
     public void clearPendingCaregiverAlerts(PluginCall call) {
-        SharedPreferences prefs = getContext().getSharedPreferences("SafeNestCaregiverAlerts", Context.MODE_PRIVATE);
+        SharedPreferences prefs = ResidentProfiles.prefs(getContext(), ResidentProfiles.CAREGIVER_ALERTS, residentId(call));
         prefs.edit().putString("pending_alerts", "[]").apply();
         call.resolve();
     }
@@ -225,11 +252,50 @@ public class MedicineRemindersPlugin extends Plugin {
             return;
         }
         
-        MissedMedicineReceiver.markMedicineTaken(getContext(), medicineId, scheduledTime);
-        MissedMedicineReceiver.cancelEscalation(getContext(), medicineId, scheduledTime);
+        String residentId = residentId(call);
+        MissedMedicineReceiver.markMedicineTaken(getContext(), residentId, medicineId, scheduledTime);
+        MissedMedicineReceiver.cancelEscalation(getContext(), residentId, medicineId, scheduledTime);
         call.resolve();
     }
     
+    /**
+     * Rolling adherence from the native index: 7/30/90-day rates, streaks and how late
+     * doses were taken, per medicine and for the household. Constant time per medicine.
+     * Call from JS: MedicineReminders.getAdherence({ medicineId?, residentId? })
+     */
+    @PluginMethod
+    public void getAdherence(PluginCall call) {
+        try {
+            String residentId = residentId(call);
+            String medicineId = call.getString("medicineId");
+            if (medicineId != null) {
+                medicineId = ResidentProfiles.scopedMedicineId(residentId, medicineId);
+            }
+            JSONObject snapshot = AdherenceIndex.get(getContext())
+                .snapshot(medicineId, residentId, System.currentTimeMillis());
+            call.resolve(JSObject.fromJSONObject(snapshot));
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to read adherence", e);
+            call.reject("Failed to get adherence: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Reminder delivery latency histograms per day and medicine class: alarm drift vs the
+     * planned trigger, notification and TTS delay, and how long the senior took to respond.
+     * Call from JS: MedicineReminders.getDeliveryLatency({ days? })
+     */
+    @PluginMethod
+    public void getDeliveryLatency(PluginCall call) {
+        try {
+            int days = call.getInt("days", 7);
+            call.resolve(ReminderLatencyStats.snapshot(getContext(), days));
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to read delivery latency", e);
+            call.reject("Failed to get delivery latency: " + e.getMessage());
+        }
+    }
+    
     /**
      * Store household ID for Firebase sync when app is closed
      */
@@ -244,8 +310,7 @@ public class MedicineRemindersPlugin extends Plugin {
         
         SharedPreferences prefs = getContext().getSharedPreferences("SafeNestConfig", Context.MODE_PRIVATE);
         prefs.edit().putString("household_id", householdId).apply();
-        
-        Log.d(TAG, "Stored householdId: " + householdId);
+        RemoteScheduleSync.refresh();
         call.resolve();
     }
     
@@ -262,6 +327,24 @@ public class MedicineRemindersPlugin extends Plugin {
         call.resolve(result);
     }
     
+    /**
+     * Follow caregiver edits to households/{hid}/medicines natively while the app is closed
+     * (hosted by the fall detection service). Enable on senior devices only.
+     * hosted is false while fall detection is off: nothing listens until the app opens again.
+     * Call from JS: MedicineReminders.setRemoteScheduleSync({ enabled })
+     */
+    @PluginMethod
+    public void setRemoteScheduleSync(PluginCall call) {
+        boolean enabled = call.getBoolean("enabled", false);
+        RemoteScheduleSync.setEnabled(getContext(), enabled);
+        
+        JSObject result = new JSObject();
+        result.put("enabled", enabled);
+        result.put("running", RemoteScheduleSync.isRunning());
+        result.put("hosted", RemoteScheduleSync.isHosted());
+        call.resolve(result);
+    }
+    
     /**
      * Check if app can schedule exact alarms (Android 12+ requirement)
      */
@@ -277,28 +360,21 @@ public class MedicineRemindersPlugin extends Plugin {
      */
     @PluginMethod
     public void requestExactAlarmPermission(PluginCall call) {
-        Log.d(TAG, "✅ requestExactAlarmPermission called");
-        Log.d(TAG, "Android SDK: " + android.os.Build.VERSION.SDK_INT + ", S = " + android.os.Build.VERSION_CODES.S);
-        
         try {
             if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.S) {
                 android.app.Activity activity = getActivity();
-                Log.d(TAG, "Activity is null? " + (activity == null));
-                
                 if (activity == null) {
-                    Log.e(TAG, "❌ Activity is null, cannot proceed");
+                    Log.e(TAG, "Activity is null, cannot open exact alarm settings");
                     call.reject("Activity not available");
                     return;
                 }
                 
                 activity.runOnUiThread(() -> {
-                    Log.d(TAG, "🔵 Running on UI thread...");
                     boolean launched = false;
                     android.content.Context ctx = getContext();
 
                     // Direct approach: open app settings where user can toggle exact alarms
                     try {
-                        Log.d(TAG, "Opening app details settings...");
                         android.content.Intent appSettings = new android.content.Intent(
                             android.provider.Settings.ACTION_APPLICATION_DETAILS_SETTINGS,
                             android.net.Uri.parse("package:" + getContext().getPackageName())
@@ -306,30 +382,26 @@ public class MedicineRemindersPlugin extends Plugin {
                         appSettings.addFlags(android.content.Intent.FLAG_ACTIVITY_NEW_TASK | android.content.Intent.FLAG_ACTIVITY_CLEAR_TOP);
                         
                         activity.startActivity(appSettings);
-                        Log.d(TAG, "✅ Started app settings activity");
                         launched = true;
                     } catch (Exception e) {
-                        Log.e(TAG, "❌ Failed to open app settings: " + e.getMessage(), e);
+                        Log.e(TAG, "Failed to open app settings", e);
                     }
 
                     if (!launched) {
                         try {
-                            Log.d(TAG, "Fallback: Opening general Settings...");
                             android.content.Intent settings = new android.content.Intent(android.provider.Settings.ACTION_SETTINGS);
                             settings.addFlags(android.content.Intent.FLAG_ACTIVITY_NEW_TASK | android.content.Intent.FLAG_ACTIVITY_CLEAR_TOP);
                             activity.startActivity(settings);
-                            Log.d(TAG, "✅ Started general settings");
                         } catch (Exception e) {
-                            Log.e(TAG, "❌ Fallback also failed: " + e.getMessage(), e);
+                            Log.e(TAG, "Failed to open general settings", e);
                         }
                     }
                 });
-            } else {
-                Log.d(TAG, "Android < 12, exact alarms always available");
             }
+            // Below Android 12 exact alarms are always available
             call.resolve();
         } catch (Exception e) {
-            Log.e(TAG, "❌ Exception in requestExactAlarmPermission: " + e.getMessage(), e);
+            Log.e(TAG, "Failed to request exact alarm permission", e);
             call.reject("Failed to open settings");
         }
     }
@@ -340,7 +412,7 @@ public class MedicineRemindersPlugin extends Plugin {
     @PluginMethod
     public void getScheduledReminders(PluginCall call) {
         try {
-            SharedPreferences prefs = getContext().getSharedPreferences("SafeNestReminders", Context.MODE_PRIVATE);
+            SharedPreferences prefs = ResidentProfiles.prefs(getContext(), ResidentProfiles.REMINDERS, residentId(call));
             String remindersJson = prefs.getString("scheduled_reminders", "[]");
             
             JSObject result = new JSObject();
@@ -351,4 +423,55 @@ public class MedicineRemindersPlugin extends Plugin {
             call.reject("Failed to get scheduled reminders: " + e.getMessage());
         }
     }
+    
+    /**
+     * Register (or rename) a resident on a shared device
+     * Call from JS: MedicineReminders.registerResident({ residentId, name, householdId? })
+     */
+    @PluginMethod
+    public void registerResident(PluginCall call) {
+        String residentId = residentId(call);
+        String name = call.getString("name");
+        
+        if (residentId.isEmpty() || name == null) {
+            call.reject("Missing residentId or name");
+            return;
+        }
+        
+        ResidentProfiles.register(getContext(), residentId, name, call.getString("householdId"));
+        RemoteScheduleSync.refresh();
+        call.resolve();
+    }
+    
+    /**
+     * Registered residents with their names and household overrides
+     */
+    @PluginMethod
+    public void listResidents(PluginCall call) {
+        try {
+            JSObject result = new JSObject();
+            result.put("residents", JSObject.fromJSONObject(ResidentProfiles.profiles(getContext())));
+            call.resolve(result);
+        } catch (Exception e) {
+            call.reject("Failed to list residents: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Cancel all of a resident's reminders and delete their stored state
+     */
+    @PluginMethod
+    public void removeResident(PluginCall call) {
+        String residentId = residentId(call);
+        
+        if (residentId.isEmpty()) {
+            call.reject("Missing residentId");
+            return;
+        }
+        
+        new MedicineReminderScheduler(getContext(), residentId).cancelAllReminders();
+        ResidentProfiles.remove(getContext(), residentId);
+        RemoteScheduleSync.refresh();
+        call.resolve();
+    }
 }
@@ -21,6 +21,10 @@ import androidx.core.app.NotificationCompat;
 
 import com.safenest.app.MainActivity;
 import com.safenest.app.R;
+import com.safenest.app.analytics.AdherenceIndex;
+import com.safenest.app.diagnostics.EnergyAccounting;
+import com.safenest.app.diagnostics.EventLog;
+import com.safenest.app.widget.WidgetUpdater;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -59,7 +63,6 @@ public class MissedMedicineReceiver extends BroadcastReceiver {
     public static final String EXTRA_ESCALATION_COUNT = "escalation_count";
     public static final String EXTRA_VOICE_ENABLED = "voice_enabled";
     
-    private static final String PREFS_NAME = "SafeNestMedicineTaken";
     private static final int ESCALATION_INTERVAL_MS = 15 * 60 * 1000; // 15 minutes
     private static final int MAX_ESCALATIONS = 4; // Max 1 hour of escalations (4 x 15 min)
     private static final int GRACE_PERIOD_MINUTES = 60; // After this, mark as MISSED
@@ -68,8 +71,19 @@ public class MissedMedicineReceiver extends BroadcastReceiver {
 
     @Override
     public void onReceive(Context context, Intent intent) {
+        EnergyAccounting.Span span = EnergyAccounting.span(context, "missedMedicineReceiver");
+        try {
+            handleIntent(context, intent);
+        } finally {
+            span.end();
+            EventLog.flush(context);
+        }
+    }
+    
+    private void handleIntent(Context context, Intent intent) {
         String action = intent.getAction();
         
+        String residentId = ResidentProfiles.normalize(intent.getStringExtra(ResidentProfiles.EXTRA_RESIDENT_ID));
         String medicineId = intent.getStringExtra(EXTRA_MEDICINE_ID);
         String medicineName = intent.getStringExtra(EXTRA_MEDICINE_NAME);
         String dosage = intent.getStringExtra(EXTRA_DOSAGE);
@@ -86,26 +100,28 @@ public class MissedMedicineReceiver extends BroadcastReceiver {
         createNotificationChannels(context);
         
         // Check if medicine was already taken
-        if (wasMedicineTaken(context, medicineId, scheduledTime)) {
-            Log.d(TAG, "Medicine " + medicineName + " was already taken, canceling follow-up");
-            cancelEscalation(context, medicineId, scheduledTime);
+        if (wasMedicineTaken(context, residentId, medicineId, scheduledTime)) {
+            EventLog.log(EventLog.FOLLOW_UP, EventLog.text(medicineId), EventLog.hhmm(scheduledTime),
+                         EventLog.STAGE_ALREADY_TAKEN);
+            cancelEscalation(context, residentId, medicineId, scheduledTime);
             return;
         }
         
         if (ACTION_CHECK_MISSED.equals(action)) {
             // First follow-up check (30 min after scheduled time)
-            Log.d(TAG, "First follow-up check for: " + medicineName);
-            handleFirstFollowUp(context, medicineId, medicineName, dosage, scheduledTime, isCritical, voiceEnabled);
+            EventLog.log(EventLog.FOLLOW_UP, EventLog.text(medicineId), EventLog.hhmm(scheduledTime), 0);
+            handleFirstFollowUp(context, residentId, medicineId, medicineName, dosage, scheduledTime, isCritical, voiceEnabled);
             
         } else if (ACTION_ESCALATE.equals(action)) {
             // Escalating reminder (every 15 min)
-            Log.d(TAG, "Escalation #" + escalationCount + " for: " + medicineName);
-            handleEscalation(context, medicineId, medicineName, dosage, scheduledTime, isCritical, voiceEnabled, escalationCount);
+            EventLog.log(EventLog.FOLLOW_UP, EventLog.text(medicineId), EventLog.hhmm(scheduledTime), escalationCount);
+            handleEscalation(context, residentId, medicineId, medicineName, dosage, scheduledTime, isCritical, voiceEnabled, escalationCount);
             
         } else if (ACTION_MARK_MISSED.equals(action)) {
             // Final: Mark as MISSED and alert caregiver
-            Log.d(TAG, "Marking as MISSED and alerting caregiver: " + medicineName);
-            handleMarkMissed(context, medicineId, medicineName, dosage, scheduledTime, isCritical);
+            EventLog.log(EventLog.FOLLOW_UP, EventLog.text(medicineId), EventLog.hhmm(scheduledTime),
+                         EventLog.STAGE_MISSED);
+            handleMarkMissed(context, residentId, medicineId, medicineName, dosage, scheduledTime, isCritical);
         }
     }
     
@@ -113,48 +129,54 @@ public class MissedMedicineReceiver extends BroadcastReceiver {
      * First follow-up (30 min after scheduled time)
      * Shows urgent notification and schedules escalation
      */
-    private void handleFirstFollowUp(Context context, String medicineId, String medicineName,
+    private void handleFirstFollowUp(Context context, String residentId, String medicineId, String medicineName,
                                       String dosage, String scheduledTime, boolean isCritical,
                                       boolean voiceEnabled) {
         // Show "You haven't taken your medicine" notification
-        showMissedNotification(context, medicineId, medicineName, dosage, scheduledTime, isCritical, 0);
+        boolean alert = showMissedNotification(context, residentId, medicineId, medicineName, dosage, scheduledTime,
+                                               isCritical, 0) == DoseNotificationRenderer.RESULT_ALERT;
         
         // Speak reminder if enabled
-        if (voiceEnabled) {
-            speakMissedReminder(context, medicineName, dosage, false);
+        if (voiceEnabled && alert) {
+            speakMissedReminder(context, residentId, medicineName, dosage, false);
         }
         
-        // Vibrate urgently
-        vibrateDevice(context, true);
+        // Vibrate urgently, once for all doses overdue together
+        if (alert) {
+            vibrateDevice(context, true);
+        }
         
         // Schedule first escalation in 15 minutes
-        scheduleEscalation(context, medicineId, medicineName, dosage, scheduledTime, isCritical, voiceEnabled, 1);
+        scheduleEscalation(context, residentId, medicineId, medicineName, dosage, scheduledTime, isCritical, voiceEnabled, 1);
         
         // Schedule final MISSED marking after grace period
-        scheduleFinalMissed(context, medicineId, medicineName, dosage, scheduledTime, isCritical,
+        scheduleFinalMissed(context, residentId, medicineId, medicineName, dosage, scheduledTime, isCritical,
                            GRACE_PERIOD_MINUTES - 30); // 30 more minutes (since we're already 30 min in)
     }
     
     /**
      * Escalating reminder (every 15 min)
      */
-    private void handleEscalation(Context context, String medicineId, String medicineName,
+    private void handleEscalation(Context context, String residentId, String medicineId, String medicineName,
                                    String dosage, String scheduledTime, boolean isCritical,
                                    boolean voiceEnabled, int escalationCount) {
         // Show escalating notification
-        showMissedNotification(context, medicineId, medicineName, dosage, scheduledTime, isCritical, escalationCount);
+        boolean alert = showMissedNotification(context, residentId, medicineId, medicineName, dosage, scheduledTime,
+                                               isCritical, escalationCount) == DoseNotificationRenderer.RESULT_ALERT;
         
         // Speak reminder with urgency
-        if (voiceEnabled) {
-            speakMissedReminder(context, medicineName, dosage, escalationCount >= 2);
+        if (voiceEnabled && alert) {
+            speakMissedReminder(context, residentId, medicineName, dosage, escalationCount >= 2);
         }
         
         // Vibrate
-        vibrateDevice(context, true);
+        if (alert) {
+            vibrateDevice(context, true);
+        }
         
         // Schedule next escalation if not at max
         if (escalationCount < MAX_ESCALATIONS) {
-            scheduleEscalation(context, medicineId, medicineName, dosage, scheduledTime, 
+            scheduleEscalation(context, residentId, medicineId, medicineName, dosage, scheduledTime, 
                               isCritical, voiceEnabled, escalationCount + 1);
         }
     }
@@ -162,40 +184,46 @@ public class MissedMedicineReceiver extends BroadcastReceiver {
     /**
      * Final: Mark as MISSED, alert caregiver, and store for sync
      */
-    private void handleMarkMissed(Context context, String medicineId, String medicineName,
+    private void handleMarkMissed(Context context, String residentId, String medicineId, String medicineName,
                                    String dosage, String scheduledTime, boolean isCritical) {
         // Store MISSED status for app to sync
-        storeMissedMedicine(context, medicineId, scheduledTime);
+        storeMissedMedicine(context, residentId, medicineId, scheduledTime);
+        AdherenceIndex.get(context).record(ResidentProfiles.scopedMedicineId(residentId, medicineId),
+                                                   scheduledTime, "MISSED", System.currentTimeMillis());
         
         // Cancel any remaining escalations
-        cancelEscalation(context, medicineId, scheduledTime);
+        cancelEscalation(context, residentId, medicineId, scheduledTime);
         
         // Show final MISSED notification to senior
-        showFinalMissedNotification(context, medicineId, medicineName, dosage, scheduledTime, isCritical);
+        showFinalMissedNotification(context, residentId, medicineId, medicineName, dosage, scheduledTime, isCritical);
         
         // Alert caregiver - FOR ALL MEDICINES (not just critical)
-        sendCaregiverAlert(context, medicineId, medicineName, dosage, scheduledTime, isCritical);
+        sendCaregiverAlert(context, residentId, medicineId, medicineName, dosage, scheduledTime, isCritical);
         
         // Speak final warning
-        speakMissedReminder(context, medicineName, dosage, true);
+        speakMissedReminder(context, residentId, medicineName, dosage, true);
+
+        // Missed count on the home screen widget
+        WidgetUpdater.requestUpdate(context);
     }
     
     /**
      * Show notification that medicine was missed
+     *
+     * @return the group result from DoseNotificationRenderer
      */
-    private void showMissedNotification(Context context, String medicineId, String medicineName,
+    private int showMissedNotification(Context context, String residentId, String medicineId, String medicineName,
                                          String dosage, String scheduledTime, boolean isCritical,
                                          int escalationCount) {
-        NotificationManager manager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-        
         // Intent to open app
         Intent openIntent = new Intent(context, MainActivity.class);
         openIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
         openIntent.putExtra("navigate_to", "medicine");
+        openIntent.putExtra(ResidentProfiles.EXTRA_RESIDENT_ID, residentId);
         
         PendingIntent openPendingIntent = PendingIntent.getActivity(
             context, 
-            ("missed_" + medicineId).hashCode(), 
+            ("missed_" + residentId + medicineId).hashCode(), 
             openIntent, 
             PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
         );
@@ -203,11 +231,12 @@ public class MissedMedicineReceiver extends BroadcastReceiver {
         // Action: Mark as Taken
         Intent takenIntent = new Intent(context, MedicineActionReceiver.class);
         takenIntent.setAction("ACTION_TAKEN");
+        takenIntent.putExtra(ResidentProfiles.EXTRA_RESIDENT_ID, residentId);
         takenIntent.putExtra(EXTRA_MEDICINE_ID, medicineId);
         takenIntent.putExtra(EXTRA_SCHEDULED_TIME, scheduledTime);
         PendingIntent takenPendingIntent = PendingIntent.getBroadcast(
             context,
-            ("missed_taken_" + medicineId + scheduledTime).hashCode(),
+            ("missed_taken_" + ResidentProfiles.doseKey(residentId, medicineId, scheduledTime)).hashCode(),
             takenIntent,
             PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
         );
@@ -243,24 +272,32 @@ public class MissedMedicineReceiver extends BroadcastReceiver {
             builder.setFullScreenIntent(openPendingIntent, true);
         }
         
-        int notificationId = ("missed_" + medicineId + scheduledTime).hashCode();
-        manager.notify(notificationId, builder.build());
+        String residentName = ResidentProfiles.displayName(context, residentId);
+        if (residentName != null) {
+            builder.setSubText(residentName);
+        }
+        
+        int notificationId = ("missed_" + ResidentProfiles.doseKey(residentId, medicineId, scheduledTime)).hashCode();
+        return DoseNotificationRenderer.post(context, DoseNotificationRenderer.KIND_MISSED, notificationId, residentId,
+                                             medicineId, medicineName, dosage, scheduledTime, isCritical,
+                                             escalationCount, builder);
     }
     
     /**
      * Show final MISSED notification
      */
-    private void showFinalMissedNotification(Context context, String medicineId, String medicineName,
+    private void showFinalMissedNotification(Context context, String residentId, String medicineId, String medicineName,
                                               String dosage, String scheduledTime, boolean isCritical) {
         NotificationManager manager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
         
         Intent openIntent = new Intent(context, MainActivity.class);
         openIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
         openIntent.putExtra("navigate_to", "medicine");
+        openIntent.putExtra(ResidentProfiles.EXTRA_RESIDENT_ID, residentId);
         
         PendingIntent openPendingIntent = PendingIntent.getActivity(
             context, 
-            ("final_missed_" + medicineId).hashCode(), 
+            ("final_missed_" + residentId + medicineId).hashCode(), 
             openIntent, 
             PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
         );
@@ -279,24 +316,30 @@ public class MissedMedicineReceiver extends BroadcastReceiver {
             .setAutoCancel(true)
             .setContentIntent(openPendingIntent);
         
-        int notificationId = ("final_missed_" + medicineId + scheduledTime).hashCode();
-        manager.notify(notificationId, builder.build());
+        String residentName = ResidentProfiles.displayName(context, residentId);
+        if (residentName != null) {
+            builder.setSubText(residentName);
+        }
+        
+        int notificationId = ("final_missed_" + ResidentProfiles.doseKey(residentId, medicineId, scheduledTime)).hashCode();
+        DoseNotificationRenderer.notify(manager, notificationId, builder.build());
     }
     
     /**
      * Send alert to caregiver (stored for app to send via Firebase)
      * Also writes directly to Firebase if possible
      */
-    private void sendCaregiverAlert(Context context, String medicineId, String medicineName,
+    private void sendCaregiverAlert(Context context, String residentId, String medicineId, String medicineName,
                                      String dosage, String scheduledTime, boolean isCritical) {
         try {
             // Store in SharedPreferences as backup
-            SharedPreferences prefs = context.getSharedPreferences("SafeNestCaregiverAlerts", Context.MODE_PRIVATE);
+            SharedPreferences prefs = ResidentProfiles.prefs(context, ResidentProfiles.CAREGIVER_ALERTS, residentId);
             String existingAlerts = prefs.getString("pending_alerts", "[]");
             JSONArray alerts = new JSONArray(existingAlerts);
             
             JSONObject alert = new JSONObject();
             alert.put("type", "MEDICINE_MISSED");
+            if (!residentId.isEmpty()) alert.put("residentId", residentId);
             alert.put("medicineId", medicineId);
             alert.put("medicineName", medicineName);
             alert.put("dosage", dosage);
@@ -308,10 +351,11 @@ public class MissedMedicineReceiver extends BroadcastReceiver {
             alerts.put(alert);
             prefs.edit().putString("pending_alerts", alerts.toString()).apply();
             
-            Log.d(TAG, "Caregiver alert stored: " + medicineName + " MISSED");
+            EventLog.log(EventLog.CAREGIVER_ALERT, EventLog.text(medicineId), EventLog.hhmm(scheduledTime),
+                         EventLog.bool(isCritical));
             
             // Write directly to Firebase
-            writeAlertToFirebase(context, medicineId, medicineName, dosage, scheduledTime, isCritical);
+            writeAlertToFirebase(context, residentId, medicineId, medicineName, dosage, scheduledTime, isCritical);
         } catch (Exception e) {
             Log.e(TAG, "Failed to store caregiver alert", e);
         }
@@ -320,11 +364,10 @@ public class MissedMedicineReceiver extends BroadcastReceiver {
     /**
      * Write caregiver alert directly to Firebase
      */
-    private void writeAlertToFirebase(Context context, String medicineId, String medicineName,
+    private void writeAlertToFirebase(Context context, String residentId, String medicineId, String medicineName,
                                        String dosage, String scheduledTime, boolean isCritical) {
         try {
-            SharedPreferences configPrefs = context.getSharedPreferences("SafeNestConfig", Context.MODE_PRIVATE);
-            String householdId = configPrefs.getString("household_id", null);
+            String householdId = ResidentProfiles.householdId(context, residentId);
             
             if (householdId == null) {
                 Log.w(TAG, "No householdId stored, cannot write to Firebase");
@@ -341,6 +384,10 @@ public class MissedMedicineReceiver extends BroadcastReceiver {
             java.util.Map<String, Object> alertData = new java.util.HashMap<>();
             alertData.put("id", alertId);
             alertData.put("type", "MEDICINE_MISSED");
+            if (!residentId.isEmpty()) {
+                alertData.put("residentId", residentId);
+                alertData.put("residentName", ResidentProfiles.displayName(context, residentId));
+            }
             alertData.put("medicineId", medicineId);
             alertData.put("medicineName", medicineName);
             alertData.put("dosage", dosage);
@@ -351,7 +398,8 @@ public class MissedMedicineReceiver extends BroadcastReceiver {
             alertData.put("read", false);
             
             alertsRef.child(alertId).setValue(alertData)
-                .addOnSuccessListener(aVoid -> Log.d(TAG, "Alert written to Firebase: " + alertId))
+                .addOnSuccessListener(aVoid -> EventLog.log(EventLog.FIREBASE_WRITTEN, EventLog.text(medicineId),
+                                                             EventLog.KIND_ALERT))
                 .addOnFailureListener(e -> Log.e(TAG, "Failed to write alert to Firebase", e));
         } catch (Exception e) {
             Log.e(TAG, "Error writing alert to Firebase", e);
@@ -362,10 +410,10 @@ public class MissedMedicineReceiver extends BroadcastReceiver {
      * Store missed medicine status for app to sync
      * Also writes directly to Firebase if possible
      */
-    private void storeMissedMedicine(Context context, String medicineId, String scheduledTime) {
+    private void storeMissedMedicine(Context context, String residentId, String medicineId, String scheduledTime) {
         try {
             // Store in SharedPreferences as backup
-            SharedPreferences prefs = context.getSharedPreferences("SafeNestMedicineActions", Context.MODE_PRIVATE);
+            SharedPreferences prefs = ResidentProfiles.prefs(context, ResidentProfiles.ACTIONS, residentId);
             String existing = prefs.getString("pending_actions", "[]");
             JSONArray actions = new JSONArray(existing);
             
@@ -379,10 +427,10 @@ public class MissedMedicineReceiver extends BroadcastReceiver {
             actions.put(action);
             prefs.edit().putString("pending_actions", actions.toString()).apply();
             
-            Log.d(TAG, "MISSED status stored for sync: " + medicineId);
+            EventLog.log(EventLog.MARKED_MISSED, EventLog.text(medicineId), EventLog.hhmm(scheduledTime));
             
             // Write directly to Firebase
-            writeMissedLogToFirebase(context, medicineId, scheduledTime);
+            writeMissedLogToFirebase(context, residentId, medicineId, scheduledTime);
         } catch (Exception e) {
             Log.e(TAG, "Failed to store missed status", e);
         }
@@ -391,10 +439,9 @@ public class MissedMedicineReceiver extends BroadcastReceiver {
     /**
      * Write missed medicine log directly to Firebase
      */
-    private void writeMissedLogToFirebase(Context context, String medicineId, String scheduledTime) {
+    private void writeMissedLogToFirebase(Context context, String residentId, String medicineId, String scheduledTime) {
         try {
-            SharedPreferences configPrefs = context.getSharedPreferences("SafeNestConfig", Context.MODE_PRIVATE);
-            String householdId = configPrefs.getString("household_id", null);
+            String householdId = ResidentProfiles.householdId(context, residentId);
             
             if (householdId == null) {
                 Log.w(TAG, "No householdId stored, cannot write to Firebase");
@@ -402,7 +449,7 @@ public class MissedMedicineReceiver extends BroadcastReceiver {
             }
             
             // Get medicine name from SharedPreferences (stored when scheduling reminder)
-            SharedPreferences reminderPrefs = context.getSharedPreferences("SafeNestReminders", Context.MODE_PRIVATE);
+            SharedPreferences reminderPrefs = ResidentProfiles.prefs(context, ResidentProfiles.REMINDERS, residentId);
             String medicineDataJson = reminderPrefs.getString("medicine_" + medicineId, null);
             String medicineName = "Medicine";
             String dosage = "";
@@ -437,7 +484,8 @@ public class MissedMedicineReceiver extends BroadcastReceiver {
             logData.put("source", "native");
             
             logsRef.child(logId).setValue(logData)
-                .addOnSuccessListener(aVoid -> Log.d(TAG, "MISSED log written to Firebase: " + logId))
+                .addOnSuccessListener(aVoid -> EventLog.log(EventLog.FIREBASE_WRITTEN, EventLog.text(medicineId),
+                                                             EventLog.KIND_MISSED_LOG))
                 .addOnFailureListener(e -> Log.e(TAG, "Failed to write MISSED log to Firebase", e));
         } catch (Exception e) {
             Log.e(TAG, "Error writing MISSED log to Firebase", e);
@@ -447,8 +495,8 @@ public class MissedMedicineReceiver extends BroadcastReceiver {
     /**
      * Check if medicine was taken (via SharedPreferences flag set by app/notification action)
      */
-    private boolean wasMedicineTaken(Context context, String medicineId, String scheduledTime) {
-        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    private boolean wasMedicineTaken(Context context, String residentId, String medicineId, String scheduledTime) {
+        SharedPreferences prefs = ResidentProfiles.prefs(context, ResidentProfiles.TAKEN, residentId);
         String key = medicineId + "_" + scheduledTime + "_" + getTodayDate();
         return prefs.getBoolean(key, false);
     }
@@ -456,11 +504,17 @@ public class MissedMedicineReceiver extends BroadcastReceiver {
     /**
      * Mark medicine as taken (called from MedicineActionReceiver)
      */
-    public static void markMedicineTaken(Context context, String medicineId, String scheduledTime) {
-        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    public static void markMedicineTaken(Context context, String residentId, String medicineId, String scheduledTime) {
+        SharedPreferences prefs = ResidentProfiles.prefs(context, ResidentProfiles.TAKEN, residentId);
         String key = medicineId + "_" + scheduledTime + "_" + getTodayDate();
+        // Notification action and app can both report the same dose; count it once
+        if (!prefs.getBoolean(key, false)) {
+            AdherenceIndex.get(context).record(ResidentProfiles.scopedMedicineId(residentId, medicineId),
+                                                       scheduledTime, "TAKEN", System.currentTimeMillis());
+        }
         prefs.edit().putBoolean(key, true).apply();
-        Log.d(TAG, "Medicine marked as taken: " + key);
+        EventLog.log(EventLog.MARKED_TAKEN, EventLog.text(medicineId), EventLog.hhmm(scheduledTime));
+        WidgetUpdater.requestUpdate(context);
     }
     
     private static String getTodayDate() {
@@ -470,13 +524,14 @@ public class MissedMedicineReceiver extends BroadcastReceiver {
     /**
      * Schedule first follow-up check (30 min after scheduled time)
      */
-    public static void scheduleFollowUp(Context context, String medicineId, String medicineName,
+    public static void scheduleFollowUp(Context context, String residentId, String medicineId, String medicineName,
                                          String dosage, String scheduledTime, boolean isCritical,
                                          boolean voiceEnabled) {
         AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
         
         Intent intent = new Intent(context, MissedMedicineReceiver.class);
         intent.setAction(ACTION_CHECK_MISSED);
+        intent.putExtra(ResidentProfiles.EXTRA_RESIDENT_ID, residentId);
         intent.putExtra(EXTRA_MEDICINE_ID, medicineId);
         intent.putExtra(EXTRA_MEDICINE_NAME, medicineName);
         intent.putExtra(EXTRA_DOSAGE, dosage);
@@ -484,7 +539,7 @@ public class MissedMedicineReceiver extends BroadcastReceiver {
         intent.putExtra(EXTRA_IS_CRITICAL, isCritical);
         intent.putExtra(EXTRA_VOICE_ENABLED, voiceEnabled);
         
-        int requestCode = ("followup_" + medicineId + scheduledTime).hashCode();
+        int requestCode = ("followup_" + ResidentProfiles.doseKey(residentId, medicineId, scheduledTime)).hashCode();
         PendingIntent pendingIntent = PendingIntent.getBroadcast(
             context, requestCode, intent,
             PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
@@ -499,19 +554,20 @@ public class MissedMedicineReceiver extends BroadcastReceiver {
             alarmManager.setExact(AlarmManager.RTC_WAKEUP, triggerTime, pendingIntent);
         }
         
-        Log.d(TAG, "Scheduled follow-up check in 30 min for: " + medicineName);
+        EventLog.log(EventLog.FOLLOW_UP_SCHEDULED, EventLog.text(medicineId), EventLog.hhmm(scheduledTime), 0, 30);
     }
     
     /**
      * Schedule escalating reminder
      */
-    private void scheduleEscalation(Context context, String medicineId, String medicineName,
+    private void scheduleEscalation(Context context, String residentId, String medicineId, String medicineName,
                                      String dosage, String scheduledTime, boolean isCritical,
                                      boolean voiceEnabled, int escalationCount) {
         AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
         
         Intent intent = new Intent(context, MissedMedicineReceiver.class);
         intent.setAction(ACTION_ESCALATE);
+        intent.putExtra(ResidentProfiles.EXTRA_RESIDENT_ID, residentId);
         intent.putExtra(EXTRA_MEDICINE_ID, medicineId);
         intent.putExtra(EXTRA_MEDICINE_NAME, medicineName);
         intent.putExtra(EXTRA_DOSAGE, dosage);
@@ -520,7 +576,7 @@ public class MissedMedicineReceiver extends BroadcastReceiver {
         intent.putExtra(EXTRA_VOICE_ENABLED, voiceEnabled);
         intent.putExtra(EXTRA_ESCALATION_COUNT, escalationCount);
         
-        int requestCode = ("escalate_" + medicineId + scheduledTime + "_" + escalationCount).hashCode();
+        int requestCode = ("escalate_" + ResidentProfiles.doseKey(residentId, medicineId, scheduledTime) + "_" + escalationCount).hashCode();
         PendingIntent pendingIntent = PendingIntent.getBroadcast(
             context, requestCode, intent,
             PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
@@ -534,26 +590,28 @@ public class MissedMedicineReceiver extends BroadcastReceiver {
             alarmManager.setExact(AlarmManager.RTC_WAKEUP, triggerTime, pendingIntent);
         }
         
-        Log.d(TAG, "Scheduled escalation #" + escalationCount + " in 15 min for: " + medicineName);
+        EventLog.log(EventLog.FOLLOW_UP_SCHEDULED, EventLog.text(medicineId), EventLog.hhmm(scheduledTime),
+                     escalationCount, ESCALATION_INTERVAL_MS / 60_000);
     }
     
     /**
      * Schedule final MISSED marking
      */
-    private void scheduleFinalMissed(Context context, String medicineId, String medicineName,
+    private void scheduleFinalMissed(Context context, String residentId, String medicineId, String medicineName,
                                       String dosage, String scheduledTime, boolean isCritical,
                                       int delayMinutes) {
         AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
         
         Intent intent = new Intent(context, MissedMedicineReceiver.class);
         intent.setAction(ACTION_MARK_MISSED);
+        intent.putExtra(ResidentProfiles.EXTRA_RESIDENT_ID, residentId);
         intent.putExtra(EXTRA_MEDICINE_ID, medicineId);
         intent.putExtra(EXTRA_MEDICINE_NAME, medicineName);
         intent.putExtra(EXTRA_DOSAGE, dosage);
         intent.putExtra(EXTRA_SCHEDULED_TIME, scheduledTime);
         intent.putExtra(EXTRA_IS_CRITICAL, isCritical);
         
-        int requestCode = ("final_missed_" + medicineId + scheduledTime).hashCode();
+        int requestCode = ("final_missed_" + ResidentProfiles.doseKey(residentId, medicineId, scheduledTime)).hashCode();
         PendingIntent pendingIntent = PendingIntent.getBroadcast(
             context, requestCode, intent,
             PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
@@ -567,20 +625,21 @@ public class MissedMedicineReceiver extends BroadcastReceiver {
             alarmManager.setExact(AlarmManager.RTC_WAKEUP, triggerTime, pendingIntent);
         }
         
-        Log.d(TAG, "Scheduled MISSED marking in " + delayMinutes + " min for: " + medicineName);
+        EventLog.log(EventLog.FOLLOW_UP_SCHEDULED, EventLog.text(medicineId), EventLog.hhmm(scheduledTime),
+                     EventLog.STAGE_MISSED, delayMinutes);
     }
     
     /**
      * Cancel all escalation alarms for a medicine
      */
-    public static void cancelEscalation(Context context, String medicineId, String scheduledTime) {
+    public static void cancelEscalation(Context context, String residentId, String medicineId, String scheduledTime) {
         AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
         
         // Cancel follow-up
         Intent followUpIntent = new Intent(context, MissedMedicineReceiver.class);
         followUpIntent.setAction(ACTION_CHECK_MISSED);
         PendingIntent followUpPI = PendingIntent.getBroadcast(
-            context, ("followup_" + medicineId + scheduledTime).hashCode(),
+            context, ("followup_" + ResidentProfiles.doseKey(residentId, medicineId, scheduledTime)).hashCode(),
             followUpIntent, PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
         );
         alarmManager.cancel(followUpPI);
@@ -590,7 +649,7 @@ public class MissedMedicineReceiver extends BroadcastReceiver {
             Intent escalateIntent = new Intent(context, MissedMedicineReceiver.class);
             escalateIntent.setAction(ACTION_ESCALATE);
             PendingIntent escalatePI = PendingIntent.getBroadcast(
-                context, ("escalate_" + medicineId + scheduledTime + "_" + i).hashCode(),
+                context, ("escalate_" + ResidentProfiles.doseKey(residentId, medicineId, scheduledTime) + "_" + i).hashCode(),
                 escalateIntent, PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
             );
             alarmManager.cancel(escalatePI);
@@ -600,16 +659,17 @@ public class MissedMedicineReceiver extends BroadcastReceiver {
         Intent missedIntent = new Intent(context, MissedMedicineReceiver.class);
         missedIntent.setAction(ACTION_MARK_MISSED);
         PendingIntent missedPI = PendingIntent.getBroadcast(
-            context, ("final_missed_" + medicineId + scheduledTime).hashCode(),
+            context, ("final_missed_" + ResidentProfiles.doseKey(residentId, medicineId, scheduledTime)).hashCode(),
             missedIntent, PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
         );
         alarmManager.cancel(missedPI);
         
         // Clear notification
         NotificationManager manager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-        manager.cancel(("missed_" + medicineId + scheduledTime).hashCode());
+        manager.cancel(("missed_" + ResidentProfiles.doseKey(residentId, medicineId, scheduledTime)).hashCode());
+        DoseNotificationRenderer.remove(context, residentId, medicineId, scheduledTime);
         
-        Log.d(TAG, "Cancelled all escalations for: " + medicineId);
+        EventLog.log(EventLog.ESCALATIONS_CANCELLED, EventLog.text(medicineId), EventLog.hhmm(scheduledTime));
     }
     
     /**
@@ -652,7 +712,9 @@ public class MissedMedicineReceiver extends BroadcastReceiver {
     /**
      * Speak missed reminder using TTS
      */
-    private void speakMissedReminder(Context context, String medicineName, String dosage, boolean urgent) {
+    private void speakMissedReminder(Context context, String residentId, String medicineName, String dosage,
+                                     boolean urgent) {
+        String residentName = ResidentProfiles.displayName(context, residentId);
         tts = new TextToSpeech(context, status -> {
             if (status == TextToSpeech.SUCCESS) {
                 tts.setLanguage(Locale.US);
@@ -663,6 +725,9 @@ public class MissedMedicineReceiver extends BroadcastReceiver {
                 } else {
                     speech.append("Reminder. You haven't taken your medicine. ");
                 }
+                if (residentName != null) {
+                    speech.append("For ").append(residentName).append(". ");
+                }
                 speech.append("Please take ").append(medicineName);
                 if (dosage != null && !dosage.isEmpty()) {
                     speech.append(", ").append(dosage);
@@ -3,47 +3,31 @@ package com.safenest.app.reminders;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.util.Log;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
+import com.safenest.app.diagnostics.EventLog;
 
 /**
- * Re-schedules all medicine reminders after device boot
+ * Re-schedules all medicine reminders after device boot, for every resident
  */
 public class ReminderBootReceiver extends BroadcastReceiver {
     private static final String TAG = "ReminderBoot";
-    private static final String PREFS_NAME = "SafeNestReminders";
     
     @Override
     public void onReceive(Context context, Intent intent) {
         if (Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction()) ||
             "android.intent.action.QUICKBOOT_POWERON".equals(intent.getAction())) {
             
-            Log.d(TAG, "Device booted, re-scheduling medicine reminders");
-            
             try {
-                SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-                String remindersJson = prefs.getString("scheduled_reminders", "[]");
-                JSONArray reminders = new JSONArray(remindersJson);
-                
-                MedicineReminderScheduler scheduler = new MedicineReminderScheduler(context);
-                
-                for (int i = 0; i < reminders.length(); i++) {
-                    JSONObject reminder = reminders.getJSONObject(i);
-                    scheduler.scheduleReminder(
-                        reminder.getString("medicineId"),
-                        reminder.getString("medicineName"),
-                        reminder.getString("dosage"),
-                        reminder.getString("time"),
-                        reminder.optBoolean("isCritical", false),
-                        reminder.optString("instructions", ""),
-                        reminder.optBoolean("voiceEnabled", true)
-                    );
+                // Refill every resident's slots from their stored reminders, then arm each slot once
+                int restored = 0;
+                for (String residentId : ResidentProfiles.allResidentIds(context)) {
+                    restored += new MedicineReminderScheduler(context, residentId).restoreSlots();
                 }
+                int armed = ReminderSlots.armAll(context);
                 
-                Log.d(TAG, "Re-scheduled " + reminders.length() + " reminders");
+                EventLog.log(EventLog.BOOT_RESCHEDULED, restored, armed);
+                EventLog.flush(context);
             } catch (Exception e) {
                 Log.e(TAG, "Failed to re-schedule reminders", e);
             }
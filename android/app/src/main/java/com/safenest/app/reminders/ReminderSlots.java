@@ -0,0 +1,181 @@
+package com.safenest.app.reminders;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.util.Log;
+
+import com.safenest.app.diagnostics.EventLog;
+
+import org.json.JSONArray;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shared alarm layer for daily reminders: one exact alarm per reminder time ("slot"),
+ * however many residents and medicines are due at it
+ *
+ * - Slot members are (residentId, medicineId) pairs, kept per HH:mm in SafeNestReminderSlots
+ * - A tablet with 40 residents needs a handful of alarms instead of hundreds (AlarmManager
+ *   caps an app at 500), and simultaneous doses wake the device once
+ * - When a slot fires, MedicineReminderReceiver delivers every member's dose and re-arms it
+ *   for the next day
+ */
+public final class ReminderSlots {
+    private static final String TAG = "ReminderSlots";
+    private static final String PREFS_NAME = "SafeNestReminderSlots";
+
+    public static final String ACTION_SLOT = "com.safenest.REMINDER_SLOT";
+    public static final String EXTRA_SLOT_TIME = "slot_time";
+
+    private ReminderSlots() {}
+
+    /** Add a dose to its slot; returns false if it was already there */
+    public static synchronized boolean add(Context context, String time, String residentId, String medicineId) {
+        JSONArray members = load(context, time);
+        String resident = ResidentProfiles.normalize(residentId);
+        if (indexOf(members, resident, medicineId) >= 0) return false;
+        members.put(new JSONArray().put(resident).put(medicineId));
+        save(context, time, members);
+        return true;
+    }
+
+    /** Remove a dose from its slot; returns true if the slot is now empty */
+    public static synchronized boolean remove(Context context, String time, String residentId, String medicineId) {
+        JSONArray members = load(context, time);
+        int i = indexOf(members, ResidentProfiles.normalize(residentId), medicineId);
+        if (i >= 0) members.remove(i);
+        save(context, time, members);
+        return members.length() == 0;
+    }
+
+    /** Slot members as { residentId, medicineId } pairs */
+    public static synchronized List<String[]> members(Context context, String time) {
+        JSONArray members = load(context, time);
+        List<String[]> out = new ArrayList<>(members.length());
+        for (int i = 0; i < members.length(); i++) {
+            JSONArray m = members.optJSONArray(i);
+            if (m != null) out.add(new String[]{m.optString(0), m.optString(1)});
+        }
+        return out;
+    }
+
+    /** Next wall-clock time [time] (HH:mm) occurs, today or tomorrow */
+    public static long nextTrigger(String time) {
+        String[] timeParts = time.split(":");
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(Calendar.HOUR_OF_DAY, Integer.parseInt(timeParts[0]));
+        calendar.set(Calendar.MINUTE, Integer.parseInt(timeParts[1]));
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        if (calendar.getTimeInMillis() <= System.currentTimeMillis()) {
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        return calendar.getTimeInMillis();
+    }
+
+    /** Which exact-alarm API arm() uses on this device, as an EventLog mode */
+    public static int exactMode(Context context) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && alarmManager.canScheduleExactAlarms()) {
+            return EventLog.MODE_EXACT;
+        }
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.M ? EventLog.MODE_EXACT_DOZE : EventLog.MODE_EXACT_LEGACY;
+    }
+
+    /** (Re-)arm the slot's alarm for its next occurrence; returns the trigger time */
+    public static long arm(Context context, String time) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        long trigger = nextTrigger(time);
+
+        Intent intent = new Intent(context, MedicineReminderReceiver.class);
+        intent.setAction(ACTION_SLOT);
+        intent.putExtra(EXTRA_SLOT_TIME, time);
+        intent.putExtra(MedicineReminderReceiver.EXTRA_PLANNED_TRIGGER, trigger);
+        PendingIntent pendingIntent = PendingIntent.getBroadcast(
+            context,
+            ("slot_" + time).hashCode(),
+            intent,
+            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+        );
+
+        // Same exact-alarm ladder the per-dose reminders used
+        int mode = exactMode(context);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && mode != EventLog.MODE_EXACT) {
+                Log.w(TAG, "⚠️ Cannot schedule exact alarms! Permission not granted.");
+            }
+            alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, trigger, pendingIntent);
+        } else {
+            alarmManager.setExact(AlarmManager.RTC_WAKEUP, trigger, pendingIntent);
+        }
+        EventLog.log(EventLog.SLOT_ARMED, EventLog.hhmm(time), trigger, mode);
+        return trigger;
+    }
+
+    public static void disarm(Context context, String time) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        Intent intent = new Intent(context, MedicineReminderReceiver.class);
+        intent.setAction(ACTION_SLOT);
+        PendingIntent pendingIntent = PendingIntent.getBroadcast(
+            context,
+            ("slot_" + time).hashCode(),
+            intent,
+            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+        );
+        alarmManager.cancel(pendingIntent);
+    }
+
+    /** Re-arm every non-empty slot (after boot); returns how many were armed */
+    public static int armAll(Context context) {
+        int armed = 0;
+        Map<String, ?> all;
+        synchronized (ReminderSlots.class) {
+            all = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).getAll();
+        }
+        for (String time : all.keySet()) {
+            try {
+                if (members(context, time).isEmpty()) continue;
+                arm(context, time);
+                armed++;
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to arm slot " + time, e);
+            }
+        }
+        return armed;
+    }
+
+    private static int indexOf(JSONArray members, String residentId, String medicineId) {
+        for (int i = 0; i < members.length(); i++) {
+            JSONArray m = members.optJSONArray(i);
+            if (m != null && residentId.equals(m.optString(0)) && medicineId.equals(m.optString(1))) return i;
+        }
+        return -1;
+    }
+
+    private static JSONArray load(Context context, String time) {
+        String raw = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).getString(time, "[]");
+        try {
+            return new JSONArray(raw);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to parse slot " + time, e);
+            return new JSONArray();
+        }
+    }
+
+    private static void save(Context context, String time, JSONArray members) {
+        SharedPreferences.Editor editor = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit();
+        if (members.length() == 0) {
+            editor.remove(time);
+        } else {
+            editor.putString(time, members.toString());
+        }
+        editor.apply();
+    }
+}
@@ -0,0 +1,429 @@
+package com.safenest.app.reminders;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+import com.safenest.app.diagnostics.EventLog;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Keeps native alarms in step with households/{hid}/medicines while the app is closed,
+ * hosted by FallDetectionService
+ *
+ * - One ChildEventListener per resident with a linked household; each added / changed /
+ *   removed medicine becomes a minimal alarm diff through that resident's
+ *   MedicineReminderScheduler (only times that appeared or went away are touched, unless
+ *   name, dosage or flags changed)
+ * - A per-resident cursor in SafeNestScheduleSync holds a fingerprint of every medicine
+ *   last applied, so the replay of existing children on attach costs nothing for unchanged
+ *   medicines, and medicines deleted while detached are cancelled once the replay is done
+ * - Opt-in via setEnabled(); the app enables it on senior devices only, since a
+ *   caregiver's phone stores the same household id
+ *
+ * Listeners only live while FallDetectionService hosts them (attach / detach). With fall
+ * detection turned off nothing listens while the app is closed: setRemoteScheduleSync
+ * reports hosted = false, and the JS layer then re-schedules every medicine when the app
+ * opens, while it skips that pass whenever this sync is running.
+ */
+public final class RemoteScheduleSync {
+    private static final String TAG = "RemoteScheduleSync";
+    private static final String PREFS_NAME = "SafeNestScheduleSync";
+    private static final String KEY_ENABLED = "remote_sync_enabled";
+    private static final String KEY_CURSOR = "cursor_";
+
+    private static Context appContext;
+    private static HandlerThread thread;
+    private static Handler handler;
+    private static final List<Attachment> attachments = new ArrayList<>();
+
+    private RemoteScheduleSync() {}
+
+    /** One resident's listener on one household */
+    private static final class Attachment {
+        final Context context;
+        final String residentId;
+        final String householdId;
+        final DatabaseReference ref;
+        final Set<String> seen = new HashSet<>();
+        ChildEventListener listener;
+
+        Attachment(Context context, String residentId, String householdId, DatabaseReference ref) {
+            this.context = context;
+            this.residentId = residentId;
+            this.householdId = householdId;
+            this.ref = ref;
+        }
+    }
+
+    public static boolean isEnabled(Context context) {
+        return prefs(context).getBoolean(KEY_ENABLED, false);
+    }
+
+    public static synchronized void setEnabled(Context context, boolean enabled) {
+        boolean wasEnabled = isEnabled(context);
+        prefs(context).edit().putBoolean(KEY_ENABLED, enabled).apply();
+        // The app re-sends this on every start; only a real change re-attaches
+        if (appContext == null || wasEnabled == enabled) return;
+        stop();
+        if (enabled) start();
+    }
+
+    public static synchronized boolean isRunning() {
+        return thread != null;
+    }
+
+    /** Whether a service is hosting the sync; without one, edits only land when the app opens */
+    public static synchronized boolean isHosted() {
+        return appContext != null;
+    }
+
+    /** Called by the hosting foreground service; listens only while enabled */
+    public static synchronized void attach(Context context) {
+        appContext = context.getApplicationContext();
+        if (thread == null && isEnabled(appContext)) start();
+    }
+
+    public static synchronized void detach() {
+        stop();
+        appContext = null;
+    }
+
+    /**
+     * Re-attach after the household or the resident list changed; no-op without a host
+     */
+    public static synchronized void refresh() {
+        if (appContext == null || !isEnabled(appContext)) return;
+        stop();
+        start();
+    }
+
+    private static void start() {
+        thread = new HandlerThread("RemoteScheduleSync");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+
+        for (String residentId : ResidentProfiles.allResidentIds(appContext)) {
+            String householdId = ResidentProfiles.linkedHouseholdId(appContext, residentId);
+            if (householdId == null || householdId.isEmpty()) continue;
+            try {
+                attachResident(residentId, householdId);
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to attach schedule listener for household " + householdId, e);
+            }
+        }
+        EventLog.log(EventLog.SYNC_ATTACHED, attachments.size());
+        EventLog.flush(appContext);
+    }
+
+    private static void stop() {
+        if (thread == null) return;
+        int detached = attachments.size();
+        for (Attachment a : attachments) {
+            if (a.listener != null) a.ref.removeEventListener(a.listener);
+        }
+        attachments.clear();
+        thread.quitSafely();
+        thread = null;
+        handler = null;
+        EventLog.log(EventLog.SYNC_DETACHED, detached);
+        if (appContext != null) EventLog.flush(appContext);
+    }
+
+    private static void attachResident(String residentId, String householdId) {
+        DatabaseReference ref = FirebaseDatabase.getInstance()
+            .getReference("households").child(householdId).child("medicines");
+        Attachment a = new Attachment(appContext, residentId, householdId, ref);
+        Handler h = handler;
+
+        // A different household than last time: its medicines are no longer ours
+        h.post(() -> forgetOtherHousehold(a));
+
+        a.listener = new ChildEventListener() {
+            @Override
+            public void onChildAdded(@NonNull DataSnapshot snapshot, String previousChildName) {
+                MedicineSpec spec = MedicineSpec.from(snapshot);
+                h.post(() -> {
+                    a.seen.add(snapshot.getKey());
+                    apply(a, snapshot.getKey(), spec);
+                });
+            }
+
+            @Override
+            public void onChildChanged(@NonNull DataSnapshot snapshot, String previousChildName) {
+                MedicineSpec spec = MedicineSpec.from(snapshot);
+                h.post(() -> apply(a, snapshot.getKey(), spec));
+            }
+
+            @Override
+            public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+                h.post(() -> remove(a, snapshot.getKey()));
+            }
+
+            @Override
+            public void onChildMoved(@NonNull DataSnapshot snapshot, String previousChildName) {}
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.w(TAG, "Schedule listener cancelled: " + error.getMessage());
+            }
+        };
+        ref.addChildEventListener(a.listener);
+
+        // Fires after the initial onChildAdded replay: anything in the cursor that was not
+        // replayed was deleted while we were not listening
+        ref.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                h.post(() -> reconcile(a));
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.w(TAG, "Initial schedule read cancelled: " + error.getMessage());
+            }
+        });
+
+        attachments.add(a);
+    }
+
+    /**
+     * Apply one medicine as an alarm diff against what the resident has scheduled now
+     */
+    private static void apply(Attachment a, String medicineId, MedicineSpec spec) {
+        if (medicineId == null) return;
+        try {
+            JSONObject cursor = loadCursor(a.context, a.residentId);
+            JSONObject medicines = cursor.getJSONObject("medicines");
+            JSONObject last = medicines.optJSONObject(medicineId);
+            if (last != null && last.optLong("fp") == spec.fingerprint()) return;
+
+            MedicineReminderScheduler scheduler = new MedicineReminderScheduler(a.context, a.residentId);
+            scheduler.setActiveRange(medicineId, spec.startMs, spec.endMs);
+            // Unknown to the cursor: assume the stored reminders are stale and re-store them
+            boolean detailsChanged = last == null || last.optLong("details") != spec.detailsFingerprint();
+
+            int removed = 0;
+            int added = 0;
+            // The diff is read-then-write: hold the resident's scheduler lock across it
+            synchronized (scheduler.lock()) {
+                List<String> scheduled = scheduler.getScheduledTimes(medicineId);
+                for (String time : scheduled) {
+                    if (!spec.times.contains(time)) {
+                        scheduler.cancelReminder(medicineId, time);
+                        removed++;
+                    }
+                }
+                for (String time : spec.times) {
+                    if (detailsChanged || !scheduled.contains(time)) {
+                        scheduler.scheduleReminder(medicineId, spec.name, spec.dosage, time,
+                                                   spec.isCritical, spec.instructions, spec.voiceEnabled);
+                        added++;
+                    }
+                }
+            }
+
+            medicines.put(medicineId, new JSONObject()
+                .put("fp", spec.fingerprint())
+                .put("details", spec.detailsFingerprint()));
+            saveCursor(a.context, a.residentId, cursor);
+            EventLog.log(EventLog.SCHEDULE_SYNCED, EventLog.text(medicineId), added, removed);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to apply remote schedule for " + medicineId, e);
+        } finally {
+            EventLog.flush(a.context);
+        }
+    }
+
+    private static void remove(Attachment a, String medicineId) {
+        if (medicineId == null) return;
+        try {
+            MedicineReminderScheduler scheduler = new MedicineReminderScheduler(a.context, a.residentId);
+            int removed;
+            synchronized (scheduler.lock()) {
+                removed = scheduler.getScheduledTimes(medicineId).size();
+                scheduler.cancelAllRemindersForMedicine(medicineId);
+            }
+
+            JSONObject cursor = loadCursor(a.context, a.residentId);
+            cursor.getJSONObject("medicines").remove(medicineId);
+            saveCursor(a.context, a.residentId, cursor);
+            EventLog.log(EventLog.SCHEDULE_SYNCED, EventLog.text(medicineId), 0, removed);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to remove remote schedule for " + medicineId, e);
+        } finally {
+            EventLog.flush(a.context);
+        }
+    }
+
+    private static void reconcile(Attachment a) {
+        try {
+            JSONObject medicines = loadCursor(a.context, a.residentId).getJSONObject("medicines");
+            List<String> gone = new ArrayList<>();
+            for (Iterator<String> it = medicines.keys(); it.hasNext(); ) {
+                String medicineId = it.next();
+                if (!a.seen.contains(medicineId)) gone.add(medicineId);
+            }
+            for (String medicineId : gone) remove(a, medicineId);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to reconcile remote schedule", e);
+        }
+    }
+
+    private static void forgetOtherHousehold(Attachment a) {
+        JSONObject cursor = loadCursor(a.context, a.residentId);
+        String previous = cursor.optString("householdId", "");
+        if (previous.equals(a.householdId)) return;
+        try {
+            if (!previous.isEmpty()) {
+                MedicineReminderScheduler scheduler = new MedicineReminderScheduler(a.context, a.residentId);
+                JSONObject medicines = cursor.getJSONObject("medicines");
+                for (Iterator<String> it = medicines.keys(); it.hasNext(); ) {
+                    scheduler.cancelAllRemindersForMedicine(it.next());
+                }
+            }
+            saveCursor(a.context, a.residentId, new JSONObject()
+                .put("householdId", a.householdId)
+                .put("medicines", new JSONObject()));
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to reset schedule cursor", e);
+        }
+    }
+
+    private static JSONObject loadCursor(Context context, String residentId) {
+        String raw = prefs(context).getString(KEY_CURSOR + residentId, null);
+        try {
+            if (raw != null) {
+                JSONObject cursor = new JSONObject(raw);
+                if (cursor.has("medicines")) return cursor;
+            }
+            return new JSONObject().put("medicines", new JSONObject());
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to parse schedule cursor, starting fresh", e);
+            try {
+                return new JSONObject().put("medicines", new JSONObject());
+            } catch (Exception ignored) {
+                return new JSONObject();
+            }
+        }
+    }
+
+    private static void saveCursor(Context context, String residentId, JSONObject cursor) {
+        prefs(context).edit().putString(KEY_CURSOR + residentId, cursor.toString()).apply();
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * The schedule-relevant fields of a medicine node (the JS `Medicine` shape); quantity,
+     * notes and dates do not affect alarms and are ignored
+     */
+    private static final class MedicineSpec {
+        final String name;
+        final String dosage;
+        final List<String> times;
+        final boolean isCritical;
+        final String instructions;
+        final boolean voiceEnabled;
+        final long startMs;
+        final long endMs; // 0 = ongoing
+
+        private MedicineSpec(String name, String dosage, List<String> times, boolean isCritical,
+                             String instructions, boolean voiceEnabled, long startMs, long endMs) {
+            this.name = name;
+            this.dosage = dosage;
+            this.times = times;
+            this.isCritical = isCritical;
+            this.instructions = instructions;
+            this.voiceEnabled = voiceEnabled;
+            this.startMs = startMs;
+            this.endMs = endMs;
+        }
+
+        static MedicineSpec from(DataSnapshot snapshot) {
+            List<String> times = new ArrayList<>();
+            for (DataSnapshot t : snapshot.child("times").getChildren()) {
+                String time = t.getValue(String.class);
+                if (time != null && time.matches("\\d{1,2}:\\d{2}") && !times.contains(time)) times.add(time);
+            }
+            Collections.sort(times);
+            return new MedicineSpec(
+                string(snapshot, "name", "Medicine"),
+                string(snapshot, "dosage", ""),
+                times,
+                bool(snapshot, "isCritical", false),
+                string(snapshot, "instructions", ""),
+                bool(snapshot, "voiceReminderEnabled", true),
+                time(snapshot, "startDate"),
+                time(snapshot, "endDate")
+            );
+        }
+
+        /** Everything scheduleReminder stores, except the times */
+        long detailsFingerprint() {
+            return fnv(name + '\u0000' + dosage + '\u0000' + instructions + '\u0000' + isCritical + '\u0000' + voiceEnabled);
+        }
+
+        long fingerprint() {
+            return fnv(detailsFingerprint() + "|" + new JSONArray(times) + "|" + startMs + "|" + endMs);
+        }
+
+        private static String string(DataSnapshot snapshot, String key, String fallback) {
+            Object value = snapshot.child(key).getValue();
+            return value != null ? value.toString() : fallback;
+        }
+
+        // Dates are stored by the app as ISO strings (toISOString); 0 when absent or unparseable
+        private static long time(DataSnapshot snapshot, String key) {
+            Object value = snapshot.child(key).getValue();
+            if (value instanceof Number) return ((Number) value).longValue();
+            if (!(value instanceof String)) return 0L;
+            try {
+                SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSX", Locale.US);
+                Date parsed = iso.parse((String) value);
+                return parsed != null ? parsed.getTime() : 0L;
+            } catch (Exception e) {
+                return 0L;
+            }
+        }
+
+        private static boolean bool(DataSnapshot snapshot, String key, boolean fallback) {
+            Boolean value = snapshot.child(key).getValue(Boolean.class);
+            return value != null ? value : fallback;
+        }
+
+        // 64-bit FNV-1a, stable across processes and releases
+        private static long fnv(String s) {
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < s.length(); i++) {
+                h ^= s.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            return h;
+        }
+    }
+}
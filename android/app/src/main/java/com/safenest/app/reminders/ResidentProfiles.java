@@ -0,0 +1,163 @@
+package com.safenest.app.reminders;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Resident profiles for shared devices (one care-home tablet serving many seniors)
+ *
+ * - Every dose carries a resident id (EXTRA_RESIDENT_ID); DEFAULT_RESIDENT ("") is the
+ *   single-senior device and keeps the original prefs files, ids and request codes
+ * - Reminder, taken, action and caregiver-alert state is partitioned into one prefs file
+ *   per resident (e.g. SafeNestReminders_<id>), so loading or editing one resident never
+ *   reads or rewrites another's data
+ * - Residents may sync to their own household; otherwise SafeNestConfig's household_id is used
+ */
+public final class ResidentProfiles {
+    private static final String TAG = "ResidentProfiles";
+    private static final String PREFS_NAME = "SafeNestResidents";
+    private static final String KEY_RESIDENTS = "residents";
+
+    public static final String DEFAULT_RESIDENT = "";
+    public static final String EXTRA_RESIDENT_ID = "resident_id";
+
+    // Base names of the partitioned prefs files
+    public static final String REMINDERS = "SafeNestReminders";
+    public static final String TAKEN = "SafeNestMedicineTaken";
+    public static final String ACTIONS = "SafeNestMedicineActions";
+    public static final String CAREGIVER_ALERTS = "SafeNestCaregiverAlerts";
+    private static final String[] PARTITIONS = {REMINDERS, TAKEN, ACTIONS, CAREGIVER_ALERTS};
+
+    private ResidentProfiles() {}
+
+    /** Null-safe resident id: anything missing means the default resident */
+    public static String normalize(String residentId) {
+        return residentId == null ? DEFAULT_RESIDENT : residentId.trim();
+    }
+
+    public static String prefsName(String base, String residentId) {
+        String id = normalize(residentId);
+        if (id.isEmpty()) return base;
+        // Prefs names become file names
+        return base + "_" + id.replaceAll("[^A-Za-z0-9_-]", "_");
+    }
+
+    public static SharedPreferences prefs(Context context, String base, String residentId) {
+        return context.getSharedPreferences(prefsName(base, residentId), Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Key for one dose across residents: notification ids, request codes and group keys
+     * are derived from it. Identical to the old medicineId + time for the default resident.
+     */
+    public static String doseKey(String residentId, String medicineId, String scheduledTime) {
+        return normalize(residentId) + medicineId + scheduledTime;
+    }
+
+    /** Medicine key for device-wide indexes (adherence), unchanged for the default resident */
+    public static String scopedMedicineId(String residentId, String medicineId) {
+        String id = normalize(residentId);
+        return id.isEmpty() ? medicineId : id + "/" + medicineId;
+    }
+
+    public static synchronized void register(Context context, String residentId, String name, String householdId) {
+        String id = normalize(residentId);
+        if (id.isEmpty()) return;
+        try {
+            JSONObject all = load(context);
+            JSONObject profile = all.optJSONObject(id);
+            if (profile == null) profile = new JSONObject();
+            if (name != null) profile.put("name", name);
+            if (householdId != null) profile.put("householdId", householdId);
+            all.put(id, profile);
+            save(context, all);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to register resident", e);
+        }
+    }
+
+    /** Forget a resident and delete its partitioned state; reminders must be cancelled first */
+    public static synchronized void remove(Context context, String residentId) {
+        String id = normalize(residentId);
+        if (id.isEmpty()) return;
+        JSONObject all = load(context);
+        all.remove(id);
+        save(context, all);
+        for (String base : PARTITIONS) {
+            context.deleteSharedPreferences(prefsName(base, id));
+        }
+    }
+
+    /** Registered residents, not including the default one */
+    public static synchronized List<String> residentIds(Context context) {
+        List<String> ids = new ArrayList<>();
+        for (Iterator<String> it = load(context).keys(); it.hasNext(); ) ids.add(it.next());
+        return ids;
+    }
+
+    /** Default resident first, then every registered one */
+    public static List<String> allResidentIds(Context context) {
+        List<String> ids = new ArrayList<>();
+        ids.add(DEFAULT_RESIDENT);
+        ids.addAll(residentIds(context));
+        return ids;
+    }
+
+    public static synchronized JSONObject profiles(Context context) {
+        return load(context);
+    }
+
+    /** Display name, or null for the default resident / an unnamed one */
+    public static synchronized String displayName(Context context, String residentId) {
+        String id = normalize(residentId);
+        if (id.isEmpty()) return null;
+        JSONObject profile = load(context).optJSONObject(id);
+        String name = profile != null ? profile.optString("name", "") : "";
+        return name.isEmpty() ? null : name;
+    }
+
+    /** The resident's own household, falling back to the device's */
+    public static synchronized String householdId(Context context, String residentId) {
+        String id = normalize(residentId);
+        if (!id.isEmpty()) {
+            JSONObject profile = load(context).optJSONObject(id);
+            String householdId = profile != null ? profile.optString("householdId", "") : "";
+            if (!householdId.isEmpty()) return householdId;
+        }
+        return context.getSharedPreferences("SafeNestConfig", Context.MODE_PRIVATE).getString("household_id", null);
+    }
+
+    /**
+     * The household whose medicines drive this resident's reminders: the device's for the
+     * default resident, only the resident's own for registered ones (else null)
+     */
+    public static synchronized String linkedHouseholdId(Context context, String residentId) {
+        String id = normalize(residentId);
+        if (id.isEmpty()) return householdId(context, id);
+        JSONObject profile = load(context).optJSONObject(id);
+        String householdId = profile != null ? profile.optString("householdId", "") : "";
+        return householdId.isEmpty() ? null : householdId;
+    }
+
+    private static JSONObject load(Context context) {
+        String raw = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).getString(KEY_RESIDENTS, "{}");
+        try {
+            return new JSONObject(raw);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to parse residents, starting empty", e);
+            return new JSONObject();
+        }
+    }
+
+    private static void save(Context context, JSONObject all) {
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+            .edit().putString(KEY_RESIDENTS, all.toString()).apply();
+    }
+}
@@ -0,0 +1,351 @@
+package com.safenest.app.reports
+
+import android.content.Context
+import android.graphics.pdf.PdfDocument
+import com.safenest.app.fit.VitalMetric
+import com.safenest.app.fit.VitalTier
+import com.safenest.app.fit.VitalsTimeSeriesStore
+import com.safenest.app.location.GeoMath
+import com.safenest.app.location.LocationTrailStore
+import kotlinx.coroutines.ensureActive
+import java.io.File
+import java.io.FileOutputStream
+import java.text.SimpleDateFormat
+import java.util.Calendar
+import java.util.Date
+import java.util.Locale
+import kotlin.coroutines.coroutineContext
+
+/**
+ * Builds the health report PDF for one period.
+ * - Readings and medicine logs come from the household's records (kept on the device by
+ *   [HouseholdRecords]), so the report is the same on the caregiver's phone as on the senior's
+ * - Each reading type gets a daily avg/min/max table, folded into one small aggregate per
+ *   local day; compliance is counted over the selected period, overall and per medicine
+ * - Watch metrics and the location trail live only on the senior's device; their sections
+ *   are added when this device has data for the period
+ * - Sections are drawn as soon as their data is folded; finished pages are handed to
+ *   [PdfDocument] and never touched again
+ * - Cancellation is checked between days and sections; a cancelled run leaves no file
+ *
+ * [onProgress] gets (0..1, stage) and is called from the generating thread.
+ */
+class HealthReportGenerator(
+    private val context: Context,
+    private val onProgress: (Double, String) -> Unit
+) {
+
+    companion object {
+        private const val DAY_MS = 24L * 60 * 60 * 1000
+        const val MAX_DAYS = 366
+        /** Statuses that count towards compliance; pending and snoozed doses are still open */
+        private val COUNTED = setOf("TAKEN", "MISSED", "SKIPPED")
+    }
+
+    class Result(val file: File, val pages: Int, val days: Int)
+
+    /** One household reading; [diastolic] is NaN for everything but blood pressure */
+    data class Reading(val type: String, val time: Long, val value: Double, val diastolic: Double = Double.NaN)
+
+    /** One medicine log entry; [status] is TAKEN / MISSED / SKIPPED / ... as stored */
+    data class DoseLog(val medicineId: String, val name: String, val status: String, val scheduledTime: String, val time: Long)
+
+    /** Reading types in report order, with their section titles */
+    private val readingTypes = listOf(
+        "bloodPressure" to "Blood pressure (mmHg)",
+        "bloodSugar" to "Blood sugar (mg/dL)",
+        "heartRate" to "Heart rate (bpm)",
+        "temperature" to "Temperature (°F)",
+        "weight" to "Weight (kg)",
+        "spo2" to "SpO2 (%)"
+    )
+
+    /** Per-day fold of one metric; [last] is the latest hourly value, i.e. the day's total for running totals */
+    private class DayStats(var min: Double = Double.MAX_VALUE, var max: Double = -Double.MAX_VALUE) {
+        var sum = 0.0
+        var samples = 0
+        var last = 0.0
+        var lastTime = Long.MIN_VALUE
+        val average get() = sum / samples
+
+        fun add(v: Double, time: Long) {
+            if (v < min) min = v
+            if (v > max) max = v
+            sum += v
+            samples++
+            if (time >= lastTime) {
+                last = v
+                lastTime = time
+            }
+        }
+    }
+
+    private val dayFormat = SimpleDateFormat("EEE d MMM", Locale.getDefault())
+    private val dateFormat = SimpleDateFormat("d MMM yyyy", Locale.getDefault())
+
+    /**
+     * Write the report for [start, end) to [out].
+     * [title] names the report (e.g. "Weekly Health Report"), [subject] is an optional
+     * resident name for the header; [readings] and [logs] are the household's records,
+     * entries outside the period are ignored.
+     */
+    suspend fun generate(
+        start: Long,
+        end: Long,
+        title: String,
+        subject: String?,
+        readings: List<Reading>,
+        logs: List<DoseLog>,
+        out: File
+    ): Result {
+        val days = dayStarts(start, end)
+        val doc = PdfDocument()
+        val tmp = File(out.path + ".tmp")
+        try {
+            val writer = ReportPdfWriter(doc, "SafeNest · $title")
+            onProgress(0.0, "summary")
+            header(writer, title, subject, start, end)
+            val inPeriod = readings.filter { it.time in start until end && !it.value.isNaN() }
+            val periodLogs = logs.filter { it.time in start until end }
+            summary(writer, inPeriod, periodLogs)
+            compliance(writer, periodLogs)
+            coroutineContext.ensureActive()
+
+            // Household readings are folded in memory; the on-device stores take one scan per day
+            val byType = inPeriod.groupBy { it.type }
+            val metrics = VitalMetric.values().filter { it != VitalMetric.HEART_RATE || byType["heartRate"].isNullOrEmpty() }
+            val totalSteps = readingTypes.size + (metrics.size + 1) * days.size
+            var step = 0
+            for ((type, label) in readingTypes) {
+                coroutineContext.ensureActive()
+                readingSection(writer, label, type == "bloodPressure", days, byType[type].orEmpty())
+                onProgress(0.05 + 0.85 * ++step / totalSteps, type)
+            }
+
+            for (metric in metrics) {
+                val stats = ArrayList<DayStats?>(days.size)
+                for (dayStart in days) {
+                    coroutineContext.ensureActive()
+                    stats.add(foldDay(metric, dayStart, dayStart + DAY_MS - 1))
+                    onProgress(0.05 + 0.85 * ++step / totalSteps, metric.key)
+                }
+                vitalSection(writer, metric, days, stats)
+            }
+
+            val trail = ArrayList<Triple<Long, Int, Double>>()
+            for (dayStart in days) {
+                coroutineContext.ensureActive()
+                val (points, meters) = foldTrail(dayStart, dayStart + DAY_MS - 1)
+                if (points > 0) trail.add(Triple(dayStart, points, meters))
+                onProgress(0.05 + 0.85 * ++step / totalSteps, "location")
+            }
+            if (trail.isNotEmpty()) {
+                writer.heading("Location")
+                writer.row(listOf("Day", "Points", "Distance"), listOf(2f, 1f, 1f), bold = true)
+                for ((dayStart, points, meters) in trail) {
+                    writer.row(listOf(dayFormat.format(Date(dayStart)), "$points", km(meters)), listOf(2f, 1f, 1f))
+                }
+                writer.text("Total distance recorded: ${km(trail.sumOf { it.third })}", writer.mutedPaint)
+            }
+
+            writer.space(12f)
+            writer.text(
+                "This report is generated from the readings and medicine logs recorded in SafeNest and is not a medical " +
+                    "diagnosis. Please share it with a healthcare professional.",
+                writer.mutedPaint
+            )
+            writer.finish()
+            coroutineContext.ensureActive()
+
+            onProgress(0.95, "writing")
+            FileOutputStream(tmp).use { doc.writeTo(it) }
+            if (!tmp.renameTo(out)) throw IllegalStateException("Failed to move report into place")
+            onProgress(1.0, "done")
+            return Result(out, writer.pageCount, days.size)
+        } finally {
+            doc.close()
+            tmp.delete()
+        }
+    }
+
+    private fun header(writer: ReportPdfWriter, title: String, subject: String?, start: Long, end: Long) {
+        writer.title(title)
+        if (!subject.isNullOrBlank()) writer.text(subject)
+        writer.text(
+            "${dateFormat.format(Date(start))} – ${dateFormat.format(Date(end - 1))} · generated " +
+                dateFormat.format(Date()),
+            writer.mutedPaint
+        )
+    }
+
+    private fun summary(writer: ReportPdfWriter, readings: List<Reading>, logs: List<DoseLog>) {
+        writer.heading("Summary")
+        val counted = logs.count { it.status in COUNTED }
+        if (counted > 0) {
+            val taken = logs.count { it.status == "TAKEN" }
+            writer.text("Medication compliance for the period: ${taken * 100 / counted}% of $counted doses")
+        }
+        if (readings.isEmpty()) {
+            writer.text("No readings were recorded in this period.", writer.mutedPaint)
+            return
+        }
+        val weights = listOf(2f, 1f, 1f, 1f, 1f, 1f)
+        writer.row(listOf("Reading", "Latest", "Average", "Min", "Max", "Count"), weights, bold = true)
+        val byType = readings.groupBy { it.type }
+        for ((type, label) in readingTypes) {
+            val list = byType[type] ?: continue
+            val latest = list.maxByOrNull { it.time }!!
+            val bp = type == "bloodPressure"
+            val sys = DayStats().also { d -> list.forEach { d.add(it.value, it.time) } }
+            val dia = DayStats().also { d -> list.forEach { if (!it.diastolic.isNaN()) d.add(it.diastolic, it.time) } }
+            writer.row(
+                listOf(
+                    label,
+                    if (bp) pair(latest.value, latest.diastolic) else one(latest.value),
+                    if (bp) pair(sys.average, dia.average) else one(sys.average),
+                    if (bp) pair(sys.min, dia.min) else one(sys.min),
+                    if (bp) pair(sys.max, dia.max) else one(sys.max),
+                    "${list.size}"
+                ),
+                weights
+            )
+        }
+    }
+
+    /** Overall and per-medicine compliance, plus the scheduled time missed most often */
+    private fun compliance(writer: ReportPdfWriter, logs: List<DoseLog>) {
+        val counted = logs.filter { it.status in COUNTED }
+        if (counted.isEmpty()) return
+        writer.heading("Medication compliance")
+        val weights = listOf(3f, 1f, 1f, 1f, 1f)
+        writer.row(listOf("Medicine", "Taken", "Missed", "Skipped", "Compliance"), weights, bold = true)
+        for ((_, doses) in counted.groupBy { it.medicineId }.entries.sortedBy { it.value.first().name.lowercase() }) {
+            val taken = doses.count { it.status == "TAKEN" }
+            writer.row(
+                listOf(
+                    doses.first().name,
+                    "$taken",
+                    "${doses.count { it.status == "MISSED" }}",
+                    "${doses.count { it.status == "SKIPPED" }}",
+                    "${taken * 100 / doses.size}%"
+                ),
+                weights
+            )
+        }
+        counted.filter { it.status == "MISSED" && it.scheduledTime.isNotEmpty() }
+            .groupingBy { it.scheduledTime }.eachCount()
+            .maxByOrNull { it.value }
+            ?.let { writer.text("Most missed time: ${it.key} (${it.value} doses)", writer.mutedPaint) }
+    }
+
+    /** Daily avg/min/max of one household reading type; blood pressure shows systolic/diastolic */
+    private fun readingSection(writer: ReportPdfWriter, label: String, bp: Boolean, days: List<Long>, readings: List<Reading>) {
+        if (readings.isEmpty()) return
+        val sys = arrayOfNulls<DayStats>(days.size)
+        val dia = arrayOfNulls<DayStats>(days.size)
+        for (r in readings) {
+            val i = dayIndex(days, r.time)
+            if (i < 0) continue
+            (sys[i] ?: DayStats().also { sys[i] = it }).add(r.value, r.time)
+            if (!r.diastolic.isNaN()) (dia[i] ?: DayStats().also { dia[i] = it }).add(r.diastolic, r.time)
+        }
+        writer.heading(label)
+        writer.dailyChart(sys.map { d -> d?.let { Triple(it.min, it.average, it.max) } })
+        val weights = listOf(2f, 1f, 1f, 1f, 1f)
+        writer.row(listOf("Day", "Average", "Min", "Max", "Readings"), weights, bold = true)
+        sys.forEachIndexed { i, s ->
+            if (s == null) return@forEachIndexed
+            val d = dia[i]
+            val day = dayFormat.format(Date(days[i]))
+            if (bp && d != null) {
+                writer.row(listOf(day, pair(s.average, d.average), pair(s.min, d.min), pair(s.max, d.max), "${s.samples}"), weights)
+            } else {
+                writer.row(listOf(day, one(s.average), one(s.min), one(s.max), "${s.samples}"), weights)
+            }
+        }
+    }
+
+    /** Index of the local day holding [time], or -1 outside the report */
+    private fun dayIndex(days: List<Long>, time: Long): Int {
+        val i = days.binarySearch(time)
+        val day = if (i >= 0) i else -i - 2
+        if (day !in days.indices) return -1
+        val next = if (day + 1 < days.size) days[day + 1] else days[day] + DAY_MS
+        return if (time < next) day else -1
+    }
+
+    private fun foldDay(metric: VitalMetric, from: Long, to: Long): DayStats? {
+        val day = DayStats()
+        VitalsTimeSeriesStore.get(context).scan(metric, VitalTier.HOUR, from, to) { p ->
+            if (p.min < day.min) day.min = p.min
+            if (p.max > day.max) day.max = p.max
+            day.sum += p.value * p.count
+            day.samples += p.count
+            if (p.time >= day.lastTime) {
+                day.last = p.value
+                day.lastTime = p.time
+            }
+        }
+        return if (day.samples > 0) day else null
+    }
+
+    private fun foldTrail(from: Long, to: Long): Pair<Int, Double> {
+        var points = 0
+        var meters = 0.0
+        var prevLat = 0.0
+        var prevLng = 0.0
+        LocationTrailStore.get(context).scan(from, to) { fix ->
+            if (points > 0) meters += GeoMath.distanceM(prevLat, prevLng, fix.latitude, fix.longitude)
+            prevLat = fix.latitude
+            prevLng = fix.longitude
+            points++
+        }
+        return points to meters
+    }
+
+    private fun vitalSection(writer: ReportPdfWriter, metric: VitalMetric, days: List<Long>, stats: List<DayStats?>) {
+        if (stats.all { it == null }) return
+        writer.heading(metric.label())
+        if (metric.cumulative) {
+            writer.dailyChart(stats.map { d -> d?.let { Triple(0.0, it.last, it.last) } })
+            writer.row(listOf("Day", "Total"), listOf(2f, 3f), bold = true)
+        } else {
+            writer.dailyChart(stats.map { d -> d?.let { Triple(it.min, it.average, it.max) } })
+            writer.row(listOf("Day", "Average", "Min", "Max"), listOf(2f, 1f, 1f, 1f), bold = true)
+        }
+        stats.forEachIndexed { i, d ->
+            if (d == null) return@forEachIndexed
+            val day = dayFormat.format(Date(days[i]))
+            if (metric.cumulative) writer.row(listOf(day, one(d.last)), listOf(2f, 3f))
+            else writer.row(listOf(day, one(d.average), one(d.min), one(d.max)), listOf(2f, 1f, 1f, 1f))
+        }
+    }
+
+    /** Local midnights covering [start, end), capped at [MAX_DAYS] */
+    private fun dayStarts(start: Long, end: Long): List<Long> {
+        val cal = Calendar.getInstance().apply {
+            timeInMillis = start
+            set(Calendar.HOUR_OF_DAY, 0); set(Calendar.MINUTE, 0); set(Calendar.SECOND, 0); set(Calendar.MILLISECOND, 0)
+        }
+        val out = ArrayList<Long>()
+        while (cal.timeInMillis < end && out.size < MAX_DAYS) {
+            out.add(cal.timeInMillis)
+            cal.add(Calendar.DAY_OF_YEAR, 1)
+        }
+        return out
+    }
+
+    private fun VitalMetric.label() = when (this) {
+        VitalMetric.HEART_RATE -> "Heart rate (bpm)"
+        VitalMetric.STEPS -> "Steps"
+        VitalMetric.CALORIES -> "Calories (kcal)"
+        VitalMetric.DISTANCE -> "Distance walked (m)"
+    }
+
+    private fun one(v: Double) = String.format(Locale.US, "%.1f", v)
+
+    private fun pair(a: Double, b: Double) =
+        if (b.isNaN() || b == Double.MAX_VALUE || b == -Double.MAX_VALUE) a.toInt().toString() else "${a.toInt()}/${b.toInt()}"
+
+    private fun km(meters: Double) = String.format(Locale.US, "%.1f km", meters / 1000)
+}
@@ -0,0 +1,172 @@
+package com.safenest.app.reports
+
+import android.content.ActivityNotFoundException
+import android.content.Intent
+import android.net.Uri
+import android.util.Log
+import androidx.core.content.FileProvider
+import com.getcapacitor.JSArray
+import com.getcapacitor.JSObject
+import com.getcapacitor.Plugin
+import com.getcapacitor.PluginCall
+import com.getcapacitor.PluginMethod
+import com.getcapacitor.annotation.CapacitorPlugin
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.launch
+import org.json.JSONObject
+import java.io.File
+import java.util.UUID
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * JS side of [HealthReportGenerator].
+ * - generate({ householdId, period: 'weekly' | 'monthly', start?, end?, title?, subject?, reportId?, open? }):
+ *   builds the PDF off the main thread from the household's [HouseholdRecords] and resolves
+ *   { reportId, path, uri, pages, days, bytes }. No readings cross the bridge here: they reach
+ *   the records through HealthAnalytics.analyze. Pass your own reportId to be able to cancel
+ *   before the call settles; open: true hands the file to a PDF viewer when done.
+ * - getCoverage({ householdId }): { logsFrom } – medicine logs are complete from that time
+ *   (null when none were synced yet)
+ * - backfillLogs({ householdId, from, logs }): older medicine logs, sent once per household;
+ *   logs are { id, medicineId, medicineName, status, scheduledTime, date (ms) }
+ * - cancel({ reportId }): stop a running report; its generate call rejects with CANCELLED
+ *
+ * Progress reaches JS as "reportProgress" events { reportId, progress (0..1), stage }.
+ */
+@CapacitorPlugin(name = "HealthReport")
+class HealthReportPlugin : Plugin() {
+
+    companion object {
+        private const val TAG = "HealthReportPlugin"
+        private const val DAY_MS = 24L * 60 * 60 * 1000
+        private const val PROGRESS_STEP = 0.02 // throttle bridge traffic
+    }
+
+    private val pluginScope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+    private val jobs = ConcurrentHashMap<String, Job>()
+
+    override fun handleOnDestroy() {
+        pluginScope.cancel()
+        super.handleOnDestroy()
+    }
+
+    @PluginMethod
+    fun generate(call: PluginCall) {
+        val monthly = call.getString("period") == "monthly"
+        val end = call.getLong("end", System.currentTimeMillis()) ?: System.currentTimeMillis()
+        val defaultStart = end - (if (monthly) 30 else 7) * DAY_MS
+        val start = call.getLong("start", defaultStart) ?: defaultStart
+        if (start >= end) {
+            call.reject("start must be before end")
+            return
+        }
+        val title = call.getString("title") ?: if (monthly) "Monthly Health Report" else "Weekly Health Report"
+        val subject = call.getString("subject")
+        val open = call.getBoolean("open", false) == true
+        val reportId = call.getString("reportId") ?: UUID.randomUUID().toString()
+        val householdId = call.getString("householdId") ?: ""
+
+        // Registered before it starts, so cancel() can always find it
+        val job = pluginScope.launch(start = CoroutineStart.LAZY) {
+            var reported = -1.0
+            val generator = HealthReportGenerator(context) { progress, stage ->
+                if (progress - reported >= PROGRESS_STEP || progress >= 1.0) {
+                    reported = progress
+                    notifyListeners("reportProgress", JSObject()
+                        .put("reportId", reportId)
+                        .put("progress", progress)
+                        .put("stage", stage))
+                }
+            }
+            try {
+                val dir = File(context.cacheDir, "reports").apply { mkdirs() }
+                // Reports are shared right away; drop the ones from earlier days
+                dir.listFiles()?.filter { it.lastModified() < System.currentTimeMillis() - DAY_MS }?.forEach { it.delete() }
+                val file = File(dir, "SafeNest_Health_Report_${reportId}.pdf")
+                val records = HouseholdRecords.get(context, householdId)
+                val result = generator.generate(
+                    start, end, title, subject, records.readings(start, end), records.logs(start, end), file
+                )
+                val uri = FileProvider.getUriForFile(context, context.packageName + ".fileprovider", result.file)
+                if (open) openPdf(uri)
+                Log.d(TAG, "Report $reportId: ${result.pages} pages, ${result.file.length()} bytes")
+                call.resolve(
+                    JSObject()
+                        .put("reportId", reportId)
+                        .put("path", result.file.absolutePath)
+                        .put("uri", uri.toString())
+                        .put("pages", result.pages)
+                        .put("days", result.days)
+                        .put("bytes", result.file.length())
+                )
+            } catch (e: CancellationException) {
+                Log.d(TAG, "Report $reportId cancelled")
+                call.reject("Report cancelled", "CANCELLED")
+            } catch (e: Exception) {
+                Log.e(TAG, "Report generation failed", e)
+                call.reject("generate failed: " + e.message)
+            } finally {
+                jobs.remove(reportId)
+            }
+        }
+        jobs[reportId] = job
+        job.start()
+    }
+
+    @PluginMethod
+    fun getCoverage(call: PluginCall) {
+        val householdId = call.getString("householdId") ?: ""
+        pluginScope.launch {
+            val logsFrom = HouseholdRecords.get(context, householdId).logsFrom
+            call.resolve(JSObject().put("logsFrom", if (logsFrom == Long.MAX_VALUE) JSONObject.NULL else logsFrom))
+        }
+    }
+
+    @PluginMethod
+    fun backfillLogs(call: PluginCall) {
+        val householdId = call.getString("householdId") ?: ""
+        val from = call.getLong("from")
+        val logs = call.getArray("logs") ?: JSArray()
+        if (from == null) {
+            call.reject("from is required")
+            return
+        }
+        pluginScope.launch {
+            try {
+                val added = HouseholdRecords.get(context, householdId).putLogs(HouseholdRecords.parseLogs(logs), from)
+                call.resolve(JSObject().put("added", added))
+            } catch (e: Exception) {
+                Log.e(TAG, "backfillLogs failed", e)
+                call.reject("backfillLogs failed: " + e.message)
+            }
+        }
+    }
+
+    @PluginMethod
+    fun cancel(call: PluginCall) {
+        val reportId = call.getString("reportId")
+        val job = reportId?.let { jobs[it] }
+        job?.cancel()
+        call.resolve(JSObject().put("cancelled", job != null))
+    }
+
+    private fun openPdf(uri: Uri) {
+        val intent = Intent(Intent.ACTION_VIEW)
+            .setDataAndType(uri, "application/pdf")
+            .addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION)
+        val activity = activity ?: return
+        activity.runOnUiThread {
+            try {
+                activity.startActivity(Intent.createChooser(intent, "Open report"))
+            } catch (e: ActivityNotFoundException) {
+                Log.w(TAG, "No app to open the report", e)
+            }
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.safenest.app.reports
+
+import android.content.Context
+import android.util.Log
+import java.io.ByteArrayInputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.RandomAccessFile
+import org.json.JSONArray
+import java.util.concurrent.TimeUnit
+
+/**
+ * The household's readings and medicine logs as the report needs them, kept on the device
+ * so a report only has to be told its range.
+ * - Fed from the incremental analytics sync (new readings, recent logs) and a one-time log
+ *   backfill; records are keyed by id, so a re-sent record costs nothing and an edit wins
+ * - Append-only journal per household (filesDir/household_records/{householdId}.jnl);
+ *   a torn tail from a crash is cut off on load
+ * - Compacted, dropping records older than [RETAIN_MS], once the journal holds twice the live records
+ */
+class HouseholdRecords private constructor(private val file: File, val householdId: String) {
+
+    companion object {
+        private const val TAG = "HouseholdRecords"
+        private const val DIR = "household_records"
+        private const val TAG_READING = 1
+        private const val TAG_LOG = 2
+        private const val TAG_LOGS_FROM = 3
+        private const val MIN_COMPACT_ENTRIES = 1_000
+        private val RETAIN_MS = TimeUnit.DAYS.toMillis(400)
+
+        @Volatile
+        private var instance: HouseholdRecords? = null
+
+        fun get(context: Context, householdId: String): HouseholdRecords {
+            instance?.let { if (it.householdId == householdId) return it }
+            return synchronized(this) {
+                instance?.takeIf { it.householdId == householdId }
+                    ?: HouseholdRecords(File(dir(context), fileName(householdId)), householdId)
+                        .also { it.load(); instance = it }
+            }
+        }
+
+        /** Forget every household's records */
+        fun resetAll(context: Context) = synchronized(this) {
+            instance?.reset()
+            dir(context).listFiles()?.forEach { it.delete() }
+        }
+
+        /** Readings as JS sends them: { id, type, timestamp (ms), value | { systolic, diastolic } } */
+        fun parseReadings(vitals: JSONArray): List<Pair<String, HealthReportGenerator.Reading>> {
+            val out = ArrayList<Pair<String, HealthReportGenerator.Reading>>(vitals.length())
+            for (i in 0 until vitals.length()) {
+                val o = vitals.optJSONObject(i) ?: continue
+                val id = o.optString("id")
+                val type = o.optString("type")
+                val time = o.optLong("timestamp", 0L)
+                if (id.isEmpty() || type.isEmpty() || time <= 0L) continue
+                val bp = o.optJSONObject("value")
+                val reading = if (type == "bloodPressure") {
+                    val systolic = bp?.optDouble("systolic")?.takeUnless { it.isNaN() } ?: o.optDouble("systolic")
+                    val diastolic = bp?.optDouble("diastolic")?.takeUnless { it.isNaN() } ?: o.optDouble("diastolic")
+                    HealthReportGenerator.Reading(type, time, systolic, diastolic)
+                } else {
+                    HealthReportGenerator.Reading(type, time, o.optDouble("value"))
+                }
+                if (!reading.value.isNaN()) out.add(id to reading)
+            }
+            return out
+        }
+
+        /** Medicine logs as JS sends them: { id, medicineId, medicineName, status, scheduledTime, date (ms) } */
+        fun parseLogs(logs: JSONArray): List<Pair<String, HealthReportGenerator.DoseLog>> {
+            val out = ArrayList<Pair<String, HealthReportGenerator.DoseLog>>(logs.length())
+            for (i in 0 until logs.length()) {
+                val o = logs.optJSONObject(i) ?: continue
+                val id = o.optString("id")
+                val date = o.optLong("date", 0L)
+                if (id.isEmpty() || date <= 0L) continue
+                out.add(id to HealthReportGenerator.DoseLog(
+                    o.optString("medicineId"),
+                    o.optString("medicineName", "Medicine"),
+                    o.optString("status"),
+                    o.optString("scheduledTime"),
+                    date
+                ))
+            }
+            return out
+        }
+
+        private fun dir(context: Context) = File(context.filesDir, DIR).apply { mkdirs() }
+
+        private fun fileName(householdId: String) =
+            householdId.ifEmpty { "_local" }.replace(Regex("[^A-Za-z0-9_-]"), "_") + ".jnl"
+    }
+
+    private val readings = HashMap<String, HealthReportGenerator.Reading>()
+    private val logs = HashMap<String, HealthReportGenerator.DoseLog>()
+    private var entries = 0
+
+    /** Logs are complete from this time on; older ones have to be backfilled once */
+    var logsFrom = Long.MAX_VALUE
+        private set
+
+    /** Upsert readings keyed by id; returns how many were new or changed */
+    @Synchronized
+    fun putReadings(list: List<Pair<String, HealthReportGenerator.Reading>>): Int {
+        val changed = list.filter { (id, r) -> readings[id] != r }
+        if (changed.isEmpty()) return 0
+        append { out ->
+            for ((id, r) in changed) {
+                writeReading(out, id, r)
+                readings[id] = r
+            }
+        }
+        return changed.size
+    }
+
+    /** Upsert dose logs keyed by id; [from] marks logs as complete from that time on */
+    @Synchronized
+    fun putLogs(list: List<Pair<String, HealthReportGenerator.DoseLog>>, from: Long? = null): Int {
+        val changed = list.filter { (id, l) -> logs[id] != l }
+        val extends = from != null && from < logsFrom
+        if (changed.isEmpty() && !extends) return 0
+        append { out ->
+            for ((id, l) in changed) {
+                writeLog(out, id, l)
+                logs[id] = l
+            }
+            if (extends) {
+                out.writeByte(TAG_LOGS_FROM)
+                out.writeLong(from!!)
+                entries++
+                logsFrom = from
+            }
+        }
+        return changed.size
+    }
+
+    @Synchronized
+    fun readings(start: Long, end: Long): List<HealthReportGenerator.Reading> =
+        readings.values.filter { it.time in start until end }.sortedBy { it.time }
+
+    @Synchronized
+    fun logs(start: Long, end: Long): List<HealthReportGenerator.DoseLog> =
+        logs.values.filter { it.time in start until end }.sortedBy { it.time }
+
+    @Synchronized
+    fun reset() {
+        readings.clear()
+        logs.clear()
+        entries = 0
+        logsFrom = Long.MAX_VALUE
+        file.delete()
+    }
+
+    private fun writeReading(out: DataOutputStream, id: String, r: HealthReportGenerator.Reading) {
+        out.writeByte(TAG_READING)
+        out.writeUTF(id)
+        out.writeUTF(r.type)
+        out.writeLong(r.time)
+        out.writeDouble(r.value)
+        out.writeDouble(r.diastolic)
+        entries++
+    }
+
+    private fun writeLog(out: DataOutputStream, id: String, l: HealthReportGenerator.DoseLog) {
+        out.writeByte(TAG_LOG)
+        out.writeUTF(id)
+        out.writeUTF(l.medicineId)
+        out.writeUTF(l.name)
+        out.writeUTF(l.status)
+        out.writeUTF(l.scheduledTime)
+        out.writeLong(l.time)
+        entries++
+    }
+
+    private fun append(block: (DataOutputStream) -> Unit) {
+        try {
+            DataOutputStream(FileOutputStream(file, true).buffered()).use(block)
+        } catch (e: IOException) {
+            Log.e(TAG, "Failed to append household records", e)
+        }
+        if (entries >= MIN_COMPACT_ENTRIES && entries > 2 * (readings.size + logs.size)) compact()
+    }
+
+    /** Rewrite the live records (minus expired ones) through a temp file */
+    private fun compact() {
+        val cutoff = System.currentTimeMillis() - RETAIN_MS
+        readings.values.removeAll { it.time < cutoff }
+        logs.values.removeAll { it.time < cutoff }
+        val tmp = File(file.path + ".tmp")
+        entries = 0
+        try {
+            DataOutputStream(FileOutputStream(tmp).buffered()).use { out ->
+                for ((id, r) in readings) writeReading(out, id, r)
+                for ((id, l) in logs) writeLog(out, id, l)
+                if (logsFrom != Long.MAX_VALUE) {
+                    out.writeByte(TAG_LOGS_FROM)
+                    out.writeLong(maxOf(logsFrom, cutoff))
+                    entries++
+                }
+            }
+            if (!tmp.renameTo(file)) Log.w(TAG, "Failed to replace ${file.name}")
+        } catch (e: IOException) {
+            Log.e(TAG, "Failed to compact household records", e)
+            tmp.delete()
+        }
+    }
+
+    private fun load() {
+        if (!file.exists()) return
+        val bytes = try {
+            file.readBytes()
+        } catch (e: IOException) {
+            Log.e(TAG, "Failed to read household records, starting fresh", e)
+            return
+        }
+        val input = DataInputStream(ByteArrayInputStream(bytes))
+        var good = 0
+        try {
+            while (input.available() > 0) {
+                when (input.readUnsignedByte()) {
+                    TAG_READING -> {
+                        val id = input.readUTF()
+                        readings[id] = HealthReportGenerator.Reading(
+                            input.readUTF(), input.readLong(), input.readDouble(), input.readDouble()
+                        )
+                    }
+                    TAG_LOG -> {
+                        val id = input.readUTF()
+                        logs[id] = HealthReportGenerator.DoseLog(
+                            input.readUTF(), input.readUTF(), input.readUTF(), input.readUTF(), input.readLong()
+                        )
+                    }
+                    TAG_LOGS_FROM -> logsFrom = minOf(logsFrom, input.readLong())
+                    else -> throw IOException("unknown record tag")
+                }
+                entries++
+                good = bytes.size - input.available()
+            }
+        } catch (e: IOException) {
+            // EOFException included: the last append was torn; keep everything before it
+            Log.w(TAG, "Household records cut at byte $good of ${bytes.size}", e)
+            try {
+                RandomAccessFile(file, "rw").use { it.setLength(good.toLong()) }
+            } catch (t: IOException) {
+                Log.e(TAG, "Failed to truncate household records", t)
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.safenest.app.reports
+
+import android.graphics.Color
+import android.graphics.Paint
+import android.graphics.RectF
+import android.graphics.Typeface
+import android.graphics.pdf.PdfDocument
+
+/**
+ * Top-to-bottom layout over a [PdfDocument] on A4 pages.
+ * - Starts a new page whenever the next block does not fit, and finishes the previous one
+ *   right away, so only one page is ever open for drawing
+ * - Every page gets the report title and page number in its footer
+ */
+internal class ReportPdfWriter(private val doc: PdfDocument, private val footer: String) {
+
+    companion object {
+        const val PAGE_WIDTH = 595 // A4 at 72 dpi
+        const val PAGE_HEIGHT = 842
+        const val MARGIN = 40f
+        val CONTENT_WIDTH = PAGE_WIDTH - 2 * MARGIN
+    }
+
+    private val titlePaint = Paint(Paint.ANTI_ALIAS_FLAG).apply {
+        color = Color.rgb(30, 64, 175); textSize = 20f; typeface = Typeface.DEFAULT_BOLD
+    }
+    private val headingPaint = Paint(Paint.ANTI_ALIAS_FLAG).apply {
+        color = Color.rgb(55, 65, 81); textSize = 14f; typeface = Typeface.DEFAULT_BOLD
+    }
+    val bodyPaint = Paint(Paint.ANTI_ALIAS_FLAG).apply { color = Color.rgb(51, 51, 51); textSize = 10f }
+    val mutedPaint = Paint(Paint.ANTI_ALIAS_FLAG).apply { color = Color.rgb(107, 114, 128); textSize = 9f }
+    private val boldPaint = Paint(bodyPaint).apply { typeface = Typeface.DEFAULT_BOLD }
+    private val rulePaint = Paint().apply { color = Color.rgb(229, 231, 235); strokeWidth = 1f }
+    private val barPaint = Paint(Paint.ANTI_ALIAS_FLAG).apply { color = Color.rgb(147, 197, 253) }
+    private val dotPaint = Paint(Paint.ANTI_ALIAS_FLAG).apply { color = Color.rgb(30, 64, 175) }
+
+    private var page: PdfDocument.Page? = null
+    private var y = MARGIN
+    var pageCount = 0
+        private set
+
+    fun title(text: String) {
+        ensure(30f)
+        canvas().drawText(text, MARGIN, y + 20f, titlePaint)
+        y += 28f
+        canvas().drawLine(MARGIN, y, MARGIN + CONTENT_WIDTH, y, titlePaint)
+        y += 10f
+    }
+
+    fun heading(text: String) {
+        ensure(40f) // keep a heading with at least one line of its section
+        y += 10f
+        canvas().drawText(text, MARGIN, y + 14f, headingPaint)
+        y += 20f
+        canvas().drawLine(MARGIN, y, MARGIN + CONTENT_WIDTH, y, rulePaint)
+        y += 6f
+    }
+
+    /** Wrapped paragraph */
+    fun text(text: String, paint: Paint = bodyPaint) {
+        val lineHeight = paint.textSize * 1.4f
+        var rest = text
+        while (rest.isNotEmpty()) {
+            val n = paint.breakText(rest, true, CONTENT_WIDTH, null).coerceAtLeast(1)
+            // Break on the last space that fits, unless the word alone is wider than a line
+            val cut = if (n < rest.length) rest.lastIndexOf(' ', n).takeIf { it > 0 } ?: n else n
+            ensure(lineHeight)
+            canvas().drawText(rest.substring(0, cut).trimEnd(), MARGIN, y + paint.textSize, paint)
+            y += lineHeight
+            rest = rest.substring(cut).trimStart()
+        }
+    }
+
+    /** One table row; [weights] split the content width, [bold] for header rows */
+    fun row(cells: List<String>, weights: List<Float>, bold: Boolean = false) {
+        val lineHeight = 15f
+        ensure(lineHeight)
+        val total = weights.sum()
+        var x = MARGIN
+        val paint = if (bold) boldPaint else bodyPaint
+        cells.forEachIndexed { i, cell ->
+            canvas().drawText(cell, x, y + 11f, paint)
+            x += CONTENT_WIDTH * weights[i] / total
+        }
+        y += lineHeight
+        if (bold) {
+            canvas().drawLine(MARGIN, y - 2f, MARGIN + CONTENT_WIDTH, y - 2f, rulePaint)
+        }
+    }
+
+    /**
+     * Daily min-max bars with the average as a dot; days without data are left empty.
+     * [days] holds (min, avg, max) per day or null.
+     */
+    fun dailyChart(days: List<Triple<Double, Double, Double>?>, height: Float = 110f) {
+        ensure(height + 16f)
+        val values = days.filterNotNull()
+        if (values.isEmpty() || days.isEmpty()) return
+        var lo = values.minOf { it.first }
+        var hi = values.maxOf { it.third }
+        if (hi - lo < 1e-9) { lo -= 1; hi += 1 }
+        val c = canvas()
+        val area = RectF(MARGIN + 36f, y + 4f, MARGIN + CONTENT_WIDTH, y + 4f + height)
+        c.drawLine(area.left, area.bottom, area.right, area.bottom, rulePaint)
+        c.drawLine(area.left, area.top, area.left, area.bottom, rulePaint)
+        c.drawText(format(hi), MARGIN, area.top + 8f, mutedPaint)
+        c.drawText(format(lo), MARGIN, area.bottom, mutedPaint)
+
+        val slot = area.width() / days.size
+        val barWidth = (slot * 0.5f).coerceIn(1f, 10f)
+        fun yOf(v: Double) = area.bottom - ((v - lo) / (hi - lo)).toFloat() * area.height()
+        days.forEachIndexed { i, d ->
+            if (d == null) return@forEachIndexed
+            val cx = area.left + slot * (i + 0.5f)
+            c.drawRect(cx - barWidth / 2, yOf(d.third), cx + barWidth / 2, maxOf(yOf(d.first), yOf(d.third) + 1f), barPaint)
+            c.drawCircle(cx, yOf(d.second), 2f, dotPaint)
+        }
+        y += height + 16f
+    }
+
+    fun space(h: Float) {
+        y += h
+    }
+
+    /** Finish the open page; call once before PdfDocument.writeTo */
+    fun finish() {
+        page?.let { doc.finishPage(it) }
+        page = null
+    }
+
+    private fun canvas() = page!!.canvas
+
+    private fun ensure(height: Float) {
+        if (page != null && y + height <= PAGE_HEIGHT - MARGIN - 14f) return
+        finish()
+        pageCount++
+        val next = doc.startPage(PdfDocument.PageInfo.Builder(PAGE_WIDTH, PAGE_HEIGHT, pageCount).create())
+        next.canvas.drawText("$footer · page $pageCount", MARGIN, PAGE_HEIGHT - MARGIN / 2, mutedPaint)
+        page = next
+        y = MARGIN
+    }
+
+    private fun format(v: Double): String =
+        if (v >= 100 || v == Math.floor(v)) v.toLong().toString() else String.format(java.util.Locale.US, "%.1f", v)
+}
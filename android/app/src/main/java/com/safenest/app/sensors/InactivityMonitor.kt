@@ -0,0 +1,81 @@
+package com.safenest.app.sensors
+
+import android.content.Context
+import android.hardware.Sensor
+import android.hardware.SensorEvent
+import android.hardware.SensorEventListener
+import android.hardware.SensorManager
+import kotlin.math.abs
+import kotlin.math.sqrt
+
+/**
+ * Tracks when the phone last moved, for "no movement for hours" checks on the senior's device.
+ * - SensorHub subscriber on the accelerometer the fall detector already runs, so it adds no
+ *   registration of its own; it asks for 5 Hz with [BATCH_LATENCY_US] of batching, which the
+ *   hub only honours when no live subscriber needs more
+ * - Movement is a sample whose magnitude is [MOVEMENT_THRESHOLD] m/s² away from gravity
+ * - The last movement time is written to prefs at most every [SAVE_INTERVAL_MS], so it
+ *   survives a service restart
+ */
+object InactivityMonitor {
+
+    private const val PREFS_NAME = "SafeNestInactivity"
+    private const val KEY_LAST_MOVEMENT = "last_movement_at"
+    private const val PERIOD_US = 200_000
+    private const val BATCH_LATENCY_US = 10_000_000
+    private const val MOVEMENT_THRESHOLD = 1.5f
+    private const val SAVE_INTERVAL_MS = 5 * 60 * 1000L
+
+    @Volatile
+    private var appContext: Context? = null
+    @Volatile
+    private var attached = false
+    @Volatile
+    private var lastMovement = 0L
+    private var lastSavedAt = 0L
+
+    private val listener = object : SensorEventListener {
+        override fun onSensorChanged(event: SensorEvent) {
+            if (event.values.size < 3) return
+            val x = event.values[0]
+            val y = event.values[1]
+            val z = event.values[2]
+            if (abs(sqrt(x * x + y * y + z * z) - SensorManager.GRAVITY_EARTH) < MOVEMENT_THRESHOLD) return
+            val now = System.currentTimeMillis()
+            lastMovement = now
+            if (now - lastSavedAt >= SAVE_INTERVAL_MS) save(now)
+        }
+
+        override fun onAccuracyChanged(sensor: Sensor?, accuracy: Int) {}
+    }
+
+    /** Subscribe to the SensorHub (called by the foreground service) */
+    fun attach(context: Context) {
+        appContext = context.applicationContext
+        if (lastMovement == 0L) lastMovement = prefs(context).getLong(KEY_LAST_MOVEMENT, 0L)
+        SensorHub.subscribe(Sensor.TYPE_ACCELEROMETER, PERIOD_US, listener, BATCH_LATENCY_US)
+        attached = true
+    }
+
+    fun detach() {
+        attached = false
+        SensorHub.unsubscribe(Sensor.TYPE_ACCELEROMETER, listener)
+        if (lastMovement > lastSavedAt) save(lastMovement)
+    }
+
+    /** Wall-clock time of the last movement seen, or 0 if none was ever seen */
+    fun lastMovementAt(context: Context): Long =
+        lastMovement.takeIf { it > 0L } ?: prefs(context).getLong(KEY_LAST_MOVEMENT, 0L)
+
+    /** Whether the monitor is subscribed and the hub is delivering samples */
+    val isMonitoring: Boolean get() = attached && SensorHub.isRunning
+
+    private fun save(time: Long) {
+        val ctx = appContext ?: return
+        lastSavedAt = time
+        prefs(ctx).edit().putLong(KEY_LAST_MOVEMENT, time).apply()
+    }
+
+    private fun prefs(context: Context) =
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+}
@@ -0,0 +1,148 @@
+package com.safenest.app.sensors
+
+import android.content.Context
+import android.hardware.Sensor
+import android.hardware.SensorEvent
+import android.hardware.SensorEventListener
+import android.hardware.SensorManager
+import android.os.SystemClock
+import android.util.Log
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+
+/**
+ * Process-wide sensor multiplexer owned by FallDetectionService.
+ * - Registers each physical sensor once, at the fastest rate any subscriber asked for,
+ *   batched in the sensor FIFO up to the shortest report latency any subscriber accepts
+ * - Fans samples out to subscribers (fall detector, step tracker, ...)
+ * - Keeps the last value per sensor so one-off reads need no registration
+ *
+ * Subscriptions made while the hub is stopped are remembered and registered on start().
+ */
+object SensorHub {
+
+    private const val TAG = "SensorHub"
+
+    private class Subscription(val listener: SensorEventListener, val periodUs: Int, val maxLatencyUs: Int)
+
+    private class LastValue(val values: FloatArray, val timestampNanos: Long, val receivedAt: Long)
+
+    private var sensorManager: SensorManager? = null
+    private val subscriptions = ConcurrentHashMap<Int, CopyOnWriteArrayList<Subscription>>()
+    private val registeredPeriodUs = ConcurrentHashMap<Int, Int>()
+    private val registeredLatencyUs = ConcurrentHashMap<Int, Int>()
+    private val lastValues = ConcurrentHashMap<Int, LastValue>()
+
+    @Volatile
+    var isRunning = false
+        private set
+
+    private val dispatcher = object : SensorEventListener {
+        override fun onSensorChanged(event: SensorEvent) {
+            val type = event.sensor.type
+            lastValues[type] = LastValue(event.values.copyOf(), event.timestamp, SystemClock.elapsedRealtime())
+            subscriptions[type]?.forEach { it.listener.onSensorChanged(event) }
+        }
+
+        override fun onAccuracyChanged(sensor: Sensor, accuracy: Int) {
+            subscriptions[sensor.type]?.forEach { it.listener.onAccuracyChanged(sensor, accuracy) }
+        }
+    }
+
+    @Synchronized
+    fun start(context: Context) {
+        if (isRunning) return
+        sensorManager = context.applicationContext.getSystemService(Context.SENSOR_SERVICE) as? SensorManager
+        isRunning = true
+        subscriptions.keys.forEach { updateRegistration(it) }
+        Log.d(TAG, "started with ${subscriptions.size} sensor types")
+    }
+
+    @Synchronized
+    fun stop() {
+        if (!isRunning) return
+        sensorManager?.unregisterListener(dispatcher)
+        registeredPeriodUs.clear()
+        registeredLatencyUs.clear()
+        lastValues.clear()
+        isRunning = false
+        Log.d(TAG, "stopped")
+    }
+
+    fun hasSensor(context: Context, sensorType: Int): Boolean {
+        val sm = context.getSystemService(Context.SENSOR_SERVICE) as? SensorManager ?: return false
+        return sm.getDefaultSensor(sensorType) != null
+    }
+
+    /**
+     * Subscribe to a sensor type. [periodUs] accepts microseconds or one of the
+     * SensorManager.SENSOR_DELAY_* constants; [maxLatencyUs] > 0 lets the sensor batch
+     * samples for that long before waking the CPU, unless another subscriber needs them live.
+     */
+    @Synchronized
+    @JvmOverloads
+    fun subscribe(sensorType: Int, periodUs: Int, listener: SensorEventListener, maxLatencyUs: Int = 0) {
+        val list = subscriptions.getOrPut(sensorType) { CopyOnWriteArrayList() }
+        list.removeAll { it.listener === listener }
+        list.add(Subscription(listener, toMicros(periodUs), maxLatencyUs.coerceAtLeast(0)))
+        if (isRunning) updateRegistration(sensorType)
+    }
+
+    @Synchronized
+    fun unsubscribe(sensorType: Int, listener: SensorEventListener) {
+        subscriptions[sensorType]?.removeAll { it.listener === listener }
+        if (isRunning) updateRegistration(sensorType)
+    }
+
+    @Synchronized
+    fun unsubscribeAll(listener: SensorEventListener) {
+        subscriptions.keys.forEach { unsubscribe(it, listener) }
+    }
+
+    /** Ask batching sensors to deliver what they hold now; the samples arrive asynchronously */
+    fun requestFlush() {
+        if (isRunning) sensorManager?.flush(dispatcher)
+    }
+
+    /** Last values seen for the sensor while the hub was running, or null */
+    fun lastValue(sensorType: Int): FloatArray? = lastValues[sensorType]?.values
+
+    /** Age in ms of the cached value, or null when nothing is cached */
+    fun lastValueAgeMs(sensorType: Int): Long? =
+        lastValues[sensorType]?.let { SystemClock.elapsedRealtime() - it.receivedAt }
+
+    // (Re)register so the physical sensor runs at the fastest period and shortest latency
+    // any subscriber needs
+    private fun updateRegistration(sensorType: Int) {
+        val sm = sensorManager ?: return
+        val sensor = sm.getDefaultSensor(sensorType) ?: return
+        val wanted = subscriptions[sensorType]?.minOfOrNull { it.periodUs }
+        val wantedLatency = subscriptions[sensorType]?.minOfOrNull { it.maxLatencyUs } ?: 0
+        val current = registeredPeriodUs[sensorType]
+        if (wanted == current && wantedLatency == (registeredLatencyUs[sensorType] ?: 0)) return
+
+        if (current != null) {
+            sm.unregisterListener(dispatcher, sensor)
+            registeredPeriodUs.remove(sensorType)
+            registeredLatencyUs.remove(sensorType)
+        }
+        if (wanted != null) {
+            if (sm.registerListener(dispatcher, sensor, wanted, wantedLatency)) {
+                registeredPeriodUs[sensorType] = wanted
+                registeredLatencyUs[sensorType] = wantedLatency
+            } else {
+                Log.w(TAG, "Failed to register sensor type $sensorType")
+            }
+        } else {
+            lastValues.remove(sensorType)
+        }
+    }
+
+    private fun toMicros(period: Int): Int = when (period) {
+        SensorManager.SENSOR_DELAY_FASTEST -> 0
+        SensorManager.SENSOR_DELAY_GAME -> 20_000
+        SensorManager.SENSOR_DELAY_UI -> 66_667
+        SensorManager.SENSOR_DELAY_NORMAL -> 200_000
+        else -> period
+    }
+}
@@ -0,0 +1,46 @@
+package com.safenest.app.storage
+
+import java.io.ByteArrayOutputStream
+
+/**
+ * LEB128 varints with zig-zag encoding for signed deltas.
+ * Used by the on-device stores to keep columns of small deltas at 1-2 bytes per value.
+ */
+object VarintCodec {
+
+    fun zigzag(v: Long): Long = (v shl 1) xor (v shr 63)
+
+    fun unzigzag(v: Long): Long = (v ushr 1) xor -(v and 1)
+
+    fun writeVarint(out: ByteArrayOutputStream, value: Long) {
+        var v = value
+        while (v and 0x7FL.inv() != 0L) {
+            out.write(((v and 0x7F) or 0x80).toInt())
+            v = v ushr 7
+        }
+        out.write(v.toInt())
+    }
+
+    fun writeSigned(out: ByteArrayOutputStream, value: Long) = writeVarint(out, zigzag(value))
+
+    /** Sequential reader over an encoded byte range */
+    class Reader(private val bytes: ByteArray, private var pos: Int = 0, private val end: Int = bytes.size) {
+
+        fun hasMore(): Boolean = pos < end
+
+        fun varint(): Long {
+            var result = 0L
+            var shift = 0
+            while (true) {
+                if (pos >= end) throw IllegalStateException("Truncated varint")
+                val b = bytes[pos++].toInt()
+                result = result or ((b and 0x7F).toLong() shl shift)
+                if (b and 0x80 == 0) return result
+                shift += 7
+                if (shift > 63) throw IllegalStateException("Varint too long")
+            }
+        }
+
+        fun signed(): Long = unzigzag(varint())
+    }
+}
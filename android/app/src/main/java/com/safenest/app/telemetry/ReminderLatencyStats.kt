@@ -0,0 +1,232 @@
+package com.safenest.app.telemetry
+
+import android.content.Context
+import android.util.Log
+import com.getcapacitor.JSArray
+import com.getcapacitor.JSObject
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.Locale
+import java.util.TimeZone
+
+/**
+ * How late medicine reminders reach the senior, one stage at a time.
+ * - ALARM: alarm delivered vs the planned trigger time (Doze / OEM battery saver drift)
+ * - NOTIFY: notification posted vs alarm delivered
+ * - TTS: speech started vs alarm delivered
+ * - RESPONSE: Taken / Snooze / Skip tapped vs notification posted
+ *
+ * Each stage feeds a fixed-bucket histogram per local day and per medicine class
+ * (regular / critical), kept for [DAYS] days in a few KB at filesDir/reminder_latency.bin.
+ * A dose's stages are recorded by different receivers (alarm, then the action tap minutes
+ * later), often in a process started just for that broadcast, so each record rewrites the
+ * file right away; at a few records per dose that is cheaper than any batching would save.
+ */
+object ReminderLatencyStats {
+
+    private const val TAG = "ReminderLatency"
+
+    const val STAGE_ALARM = 0
+    const val STAGE_NOTIFY = 1
+    const val STAGE_TTS = 2
+    const val STAGE_RESPONSE = 3
+    private val STAGE_NAMES = arrayOf("alarm", "notify", "tts", "response")
+    private val CLASS_NAMES = arrayOf("regular", "critical")
+
+    // Upper bounds in seconds; the final bucket catches everything slower
+    private val BUCKETS_SEC = longArrayOf(1, 5, 15, 30, 60, 120, 300, 600, 1_800, 3_600, 7_200)
+    private val BUCKETS = BUCKETS_SEC.size + 1
+    private const val DAYS = 14
+    private const val FORMAT_VERSION = 1
+    private const val DAY_MS = 24L * 60 * 60 * 1000
+    private const val SYNC_INTERVAL_MS = 6 * 60 * 60 * 1000L
+
+    // Per (day slot, class, stage) cell: bucket counts, plus sum and max in ms
+    private val CELLS = CLASS_NAMES.size * STAGE_NAMES.size
+    private val slotDay = LongArray(DAYS) { Long.MIN_VALUE }
+    private val counts = IntArray(DAYS * CELLS * BUCKETS)
+    private val sumMs = LongArray(DAYS * CELLS)
+    private val maxMs = LongArray(DAYS * CELLS)
+    private val early = IntArray(DAYS * CELLS) // fired before the planned time
+
+    private var file: File? = null
+    private var lastSync = 0L
+
+    /** Record one stage for a dose; a negative [deltaMs] (early) counts in the first bucket */
+    @JvmStatic
+    @Synchronized
+    fun record(context: Context, stage: Int, critical: Boolean, deltaMs: Long) {
+        load(context)
+        val now = System.currentTimeMillis()
+        val day = dayOf(now)
+        val slot = Math.floorMod(day, DAYS.toLong()).toInt()
+        if (slotDay[slot] != day) clearSlot(slot, day)
+
+        val cell = slot * CELLS + (if (critical) 1 else 0) * STAGE_NAMES.size + stage
+        val ms = deltaMs.coerceAtLeast(0L)
+        if (deltaMs < 0) early[cell]++
+        counts[cell * BUCKETS + bucketFor(ms)]++
+        sumMs[cell] += ms
+        if (ms > maxMs[cell]) maxMs[cell] = ms
+        save()
+
+        if (stage == STAGE_ALARM && now - lastSync >= SYNC_INTERVAL_MS) {
+            lastSync = now
+            TelemetrySync.upload(context, "reminderLatency", compactSnapshot(day))
+        }
+    }
+
+    /**
+     * Per-day histograms for the last [days] days, newest first:
+     * { bucketsSec, days: [{ date, regular | critical: { alarm | notify | tts | response:
+     *   { counts, count, meanMs, maxMs, early, p50Ms, p90Ms } } }] }
+     */
+    @JvmStatic
+    @Synchronized
+    fun snapshot(context: Context, days: Int): JSObject {
+        load(context)
+        val today = dayOf(System.currentTimeMillis())
+        val out = JSArray()
+        val dateFormat = SimpleDateFormat("yyyy-MM-dd", Locale.US)
+        for (day in today downTo today - days.coerceIn(1, DAYS) + 1) {
+            val slot = Math.floorMod(day, DAYS.toLong()).toInt()
+            if (slotDay[slot] != day) continue
+            val entry = JSObject().put("date", dateFormat.format(Date(day * DAY_MS - offsetAt(day * DAY_MS))))
+            for (c in CLASS_NAMES.indices) {
+                val stages = JSObject()
+                for (s in STAGE_NAMES.indices) {
+                    val cell = slot * CELLS + c * STAGE_NAMES.size + s
+                    val n = cellCount(cell)
+                    if (n == 0) continue
+                    val buckets = JSArray()
+                    for (b in 0 until BUCKETS) buckets.put(counts[cell * BUCKETS + b])
+                    stages.put(STAGE_NAMES[s], JSObject()
+                        .put("counts", buckets)
+                        .put("count", n)
+                        .put("meanMs", sumMs[cell] / n)
+                        .put("maxMs", maxMs[cell])
+                        .put("early", early[cell])
+                        .put("p50Ms", quantileMs(cell, 0.5))
+                        .put("p90Ms", quantileMs(cell, 0.9)))
+                }
+                if (stages.length() > 0) entry.put(CLASS_NAMES[c], stages)
+            }
+            out.put(entry)
+        }
+        val bounds = JSArray()
+        for (b in BUCKETS_SEC) bounds.put(b)
+        return JSObject().put("bucketsSec", bounds).put("days", out)
+    }
+
+    /** Flat map for the sync layer: today's count / p90 / max per class and stage */
+    private fun compactSnapshot(day: Long): Map<String, Any> {
+        val slot = Math.floorMod(day, DAYS.toLong()).toInt()
+        val out = HashMap<String, Any>()
+        for (c in CLASS_NAMES.indices) {
+            for (s in STAGE_NAMES.indices) {
+                val cell = slot * CELLS + c * STAGE_NAMES.size + s
+                val n = cellCount(cell)
+                if (n == 0) continue
+                val key = CLASS_NAMES[c] + "_" + STAGE_NAMES[s]
+                out[key + "_n"] = n
+                out[key + "_p90Ms"] = quantileMs(cell, 0.9)
+                out[key + "_maxMs"] = maxMs[cell]
+            }
+        }
+        out["timestamp"] = System.currentTimeMillis()
+        return out
+    }
+
+    private fun cellCount(cell: Int): Int {
+        var n = 0
+        for (b in 0 until BUCKETS) n += counts[cell * BUCKETS + b]
+        return n
+    }
+
+    /** Upper bound of the bucket holding quantile [q]; the overflow bucket reports the max seen */
+    private fun quantileMs(cell: Int, q: Double): Long {
+        val target = Math.ceil(cellCount(cell) * q).toInt().coerceAtLeast(1)
+        var seen = 0
+        for (b in 0 until BUCKETS) {
+            seen += counts[cell * BUCKETS + b]
+            if (seen >= target) return if (b < BUCKETS_SEC.size) BUCKETS_SEC[b] * 1_000 else maxMs[cell]
+        }
+        return maxMs[cell]
+    }
+
+    private fun bucketFor(ms: Long): Int {
+        for (i in BUCKETS_SEC.indices) if (ms <= BUCKETS_SEC[i] * 1_000) return i
+        return BUCKETS_SEC.size
+    }
+
+    private fun clearSlot(slot: Int, day: Long) {
+        slotDay[slot] = day
+        counts.fill(0, slot * CELLS * BUCKETS, (slot + 1) * CELLS * BUCKETS)
+        sumMs.fill(0L, slot * CELLS, (slot + 1) * CELLS)
+        maxMs.fill(0L, slot * CELLS, (slot + 1) * CELLS)
+        early.fill(0, slot * CELLS, (slot + 1) * CELLS)
+    }
+
+    private fun dayOf(time: Long) = Math.floorDiv(time + offsetAt(time), DAY_MS)
+
+    private fun offsetAt(time: Long) = TimeZone.getDefault().getOffset(time).toLong()
+
+    private fun load(context: Context) {
+        if (file != null) return
+        val f = File(context.applicationContext.filesDir, "reminder_latency.bin")
+        file = f
+        if (!f.exists()) return
+        try {
+            DataInputStream(FileInputStream(f).buffered()).use { input ->
+                if (input.readInt() != FORMAT_VERSION || input.readInt() != CELLS * BUCKETS) {
+                    Log.w(TAG, "Latency stats layout changed, starting fresh")
+                    return
+                }
+                lastSync = input.readLong()
+                for (slot in 0 until DAYS) {
+                    slotDay[slot] = input.readLong()
+                    for (cell in slot * CELLS until (slot + 1) * CELLS) {
+                        for (b in 0 until BUCKETS) counts[cell * BUCKETS + b] = input.readInt()
+                        sumMs[cell] = input.readLong()
+                        maxMs[cell] = input.readLong()
+                        early[cell] = input.readInt()
+                    }
+                }
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to load latency stats, starting fresh", e)
+            slotDay.fill(Long.MIN_VALUE)
+            counts.fill(0); sumMs.fill(0L); maxMs.fill(0L); early.fill(0)
+        }
+    }
+
+    private fun save() {
+        val f = file ?: return
+        val tmp = File(f.path + ".tmp")
+        try {
+            DataOutputStream(FileOutputStream(tmp).buffered()).use { out ->
+                out.writeInt(FORMAT_VERSION)
+                out.writeInt(CELLS * BUCKETS)
+                out.writeLong(lastSync)
+                for (slot in 0 until DAYS) {
+                    out.writeLong(slotDay[slot])
+                    for (cell in slot * CELLS until (slot + 1) * CELLS) {
+                        for (b in 0 until BUCKETS) out.writeInt(counts[cell * BUCKETS + b])
+                        out.writeLong(sumMs[cell])
+                        out.writeLong(maxMs[cell])
+                        out.writeInt(early[cell])
+                    }
+                }
+            }
+            if (!tmp.renameTo(f)) Log.w(TAG, "Failed to replace ${f.name}")
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to save latency stats", e)
+            tmp.delete()
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.safenest.app.telemetry;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Writes compact device health snapshots to Firebase so detection health and cost
+ * can be compared across the fleet. Opt-in via setEnabled(); off by default.
+ *
+ * Layout: households/{householdId}/deviceTelemetry/{installId}/{section}
+ */
+public final class TelemetrySync {
+    private static final String TAG = "TelemetrySync";
+    private static final String PREFS_NAME = "SafeNestConfig";
+    private static final String KEY_ENABLED = "telemetry_sync_enabled";
+    private static final String KEY_INSTALL_ID = "telemetry_install_id";
+
+    private TelemetrySync() {}
+
+    public static boolean isEnabled(Context context) {
+        return prefs(context).getBoolean(KEY_ENABLED, false);
+    }
+
+    public static void setEnabled(Context context, boolean enabled) {
+        prefs(context).edit().putBoolean(KEY_ENABLED, enabled).apply();
+    }
+
+    /**
+     * Upload one section snapshot, replacing the previous one. No-op when disabled
+     * or when the device is not linked to a household yet.
+     */
+    public static void upload(Context context, String section, Map<String, Object> snapshot) {
+        if (!isEnabled(context)) return;
+        try {
+            String householdId = prefs(context).getString("household_id", null);
+            if (householdId == null) {
+                Log.w(TAG, "No householdId stored, skipping telemetry upload");
+                return;
+            }
+
+            Map<String, Object> data = new HashMap<>(snapshot);
+            data.put("device", Build.MANUFACTURER + " " + Build.MODEL);
+            data.put("sdk", Build.VERSION.SDK_INT);
+
+            com.google.firebase.database.FirebaseDatabase.getInstance()
+                .getReference("households").child(householdId)
+                .child("deviceTelemetry").child(installId(context)).child(section)
+                .setValue(data)
+                .addOnFailureListener(e -> Log.w(TAG, "Telemetry upload failed: " + section, e));
+        } catch (Exception e) {
+            Log.e(TAG, "Error uploading telemetry", e);
+        }
+    }
+
+    private static String installId(Context context) {
+        SharedPreferences prefs = prefs(context);
+        String id = prefs.getString(KEY_INSTALL_ID, null);
+        if (id == null) {
+            id = UUID.randomUUID().toString().substring(0, 8);
+            prefs.edit().putString(KEY_INSTALL_ID, id).apply();
+        }
+        return id;
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,76 @@
+package com.safenest.app.widget;
+
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.appwidget.AppWidgetProvider;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+import android.widget.RemoteViews;
+
+import com.safenest.app.MainActivity;
+import com.safenest.app.R;
+
+/**
+ * Shared home screen SOS widget.
+ * - Tap opens MainActivity with the triggerSOS extra (one intent path for every widget)
+ * - Shows next dose, today's adherence and fall-monitor state from {@link WidgetSnapshot}
+ * - Status changes are pushed by {@link WidgetUpdater} as partial updates; the full
+ *   layout is only rebuilt here when the launcher asks (add, resize, reboot)
+ *
+ * Subclasses only pick the layout, the clickable view and the intent action.
+ */
+public abstract class SosWidgetBase extends AppWidgetProvider {
+    private static final String TAG = "SosWidget";
+
+    protected abstract int layoutId();
+
+    protected abstract int buttonId();
+
+    protected abstract String sosAction();
+
+    @Override
+    public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
+        Log.d(TAG, getClass().getSimpleName() + " onUpdate for " + appWidgetIds.length + " widgets");
+        WidgetSnapshot snapshot = WidgetSnapshot.rebuild(context);
+        for (int appWidgetId : appWidgetIds) {
+            RemoteViews views = new RemoteViews(context.getPackageName(), layoutId());
+            views.setOnClickPendingIntent(buttonId(), sosPendingIntent(context, appWidgetId));
+            applyStatus(context, views, snapshot);
+            appWidgetManager.updateAppWidget(appWidgetId, views);
+        }
+    }
+
+    private PendingIntent sosPendingIntent(Context context, int appWidgetId) {
+        Intent intent = new Intent(context, MainActivity.class);
+        intent.setAction(sosAction());
+        intent.putExtra("triggerSOS", true);
+        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_SINGLE_TOP);
+
+        // Widget ID as request code keeps one PendingIntent per widget instance
+        return PendingIntent.getActivity(
+            context,
+            appWidgetId,
+            intent,
+            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+        );
+    }
+
+    /** Fill the status lines; used for full and partial updates alike */
+    static void applyStatus(Context context, RemoteViews views, WidgetSnapshot snapshot) {
+        String next = snapshot.nextDoseName != null
+            ? context.getString(R.string.widget_next_dose, snapshot.nextDoseName, snapshot.nextDoseTime)
+            : context.getString(R.string.widget_no_dose);
+        views.setTextViewText(R.id.widget_next_dose, next);
+
+        String adherence = snapshot.dueToday == 0 ? ""
+            : context.getString(R.string.widget_adherence, snapshot.takenToday, snapshot.dueToday);
+        if (snapshot.missedToday > 0) {
+            adherence += context.getString(R.string.widget_missed, snapshot.missedToday);
+        }
+        views.setTextViewText(R.id.widget_adherence, adherence);
+
+        views.setTextViewText(R.id.widget_monitor, context.getString(
+            snapshot.monitoring ? R.string.widget_monitor_on : R.string.widget_monitor_off));
+    }
+}
@@ -0,0 +1,136 @@
+package com.safenest.app.widget;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.safenest.app.reminders.MedicineReminderScheduler;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Small precomputed state rendered by the home screen widgets.
+ * Rebuilt natively whenever the dose ledger or the fall monitor changes, so drawing
+ * a widget is a handful of prefs reads and never needs the WebView.
+ *
+ * Stored in SharedPreferences "SafeNestWidget".
+ */
+public final class WidgetSnapshot {
+    private static final String TAG = "WidgetSnapshot";
+    private static final String PREFS_NAME = "SafeNestWidget";
+    private static final String KEY_NEXT_NAME = "next_dose_name";
+    private static final String KEY_NEXT_TIME = "next_dose_time";
+    private static final String KEY_DUE = "due_today";
+    private static final String KEY_TAKEN = "taken_today";
+    private static final String KEY_MISSED = "missed_today";
+    private static final String KEY_MONITORING = "fall_monitor_active";
+    private static final String KEY_BUILT_AT = "built_at";
+
+    // Matches MissedMedicineReceiver: a dose not taken 60 min after its time is marked missed
+    private static final int MISSED_AFTER_MINUTES = 60;
+
+    public final String nextDoseName;
+    public final String nextDoseTime;
+    public final int dueToday;
+    public final int takenToday;
+    public final int missedToday;
+    public final boolean monitoring;
+
+    private WidgetSnapshot(String nextDoseName, String nextDoseTime, int dueToday, int takenToday,
+                           int missedToday, boolean monitoring) {
+        this.nextDoseName = nextDoseName;
+        this.nextDoseTime = nextDoseTime;
+        this.dueToday = dueToday;
+        this.takenToday = takenToday;
+        this.missedToday = missedToday;
+        this.monitoring = monitoring;
+    }
+
+    /** Last stored snapshot (cheap; used when drawing) */
+    public static WidgetSnapshot load(Context context) {
+        SharedPreferences p = prefs(context);
+        return new WidgetSnapshot(
+            p.getString(KEY_NEXT_NAME, null),
+            p.getString(KEY_NEXT_TIME, null),
+            p.getInt(KEY_DUE, 0),
+            p.getInt(KEY_TAKEN, 0),
+            p.getInt(KEY_MISSED, 0),
+            p.getBoolean(KEY_MONITORING, false)
+        );
+    }
+
+    public static void setMonitoring(Context context, boolean active) {
+        prefs(context).edit().putBoolean(KEY_MONITORING, active).apply();
+    }
+
+    /** Recompute the dose part from the reminder and taken ledgers and store it */
+    public static WidgetSnapshot rebuild(Context context) {
+        String nextName = null;
+        String nextTime = null;
+        int due = 0;
+        int taken = 0;
+        int missed = 0;
+        try {
+            SharedPreferences reminders = context.getSharedPreferences("SafeNestReminders", Context.MODE_PRIVATE);
+            SharedPreferences takenPrefs = context.getSharedPreferences("SafeNestMedicineTaken", Context.MODE_PRIVATE);
+            JSONArray list = new JSONArray(reminders.getString("scheduled_reminders", "[]"));
+            String today = new SimpleDateFormat("yyyy-MM-dd", Locale.US).format(new Date());
+            Calendar now = Calendar.getInstance();
+            int nowMinutes = now.get(Calendar.HOUR_OF_DAY) * 60 + now.get(Calendar.MINUTE);
+            int nextMinutes = Integer.MAX_VALUE;
+
+            for (int i = 0; i < list.length(); i++) {
+                JSONObject r = list.getJSONObject(i);
+                String time = r.optString("time", "");
+                int minutes = toMinutes(time);
+                if (minutes < 0) continue;
+                // Finished or not yet started courses are still stored but not due today
+                if (!MedicineReminderScheduler.isActiveOn(reminders, r.optString("medicineId"), now.getTimeInMillis())) continue;
+                due++;
+                boolean wasTaken = takenPrefs.getBoolean(r.optString("medicineId") + "_" + time + "_" + today, false);
+                if (wasTaken) {
+                    taken++;
+                } else if (minutes + MISSED_AFTER_MINUTES <= nowMinutes) {
+                    missed++;
+                }
+                // Next dose: earliest untaken dose that is not yet overdue past the missed window
+                if (!wasTaken && minutes + MISSED_AFTER_MINUTES > nowMinutes && minutes < nextMinutes) {
+                    nextMinutes = minutes;
+                    nextName = r.optString("medicineName", null);
+                    nextTime = time;
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to rebuild widget snapshot", e);
+        }
+
+        prefs(context).edit()
+            .putString(KEY_NEXT_NAME, nextName)
+            .putString(KEY_NEXT_TIME, nextTime)
+            .putInt(KEY_DUE, due)
+            .putInt(KEY_TAKEN, taken)
+            .putInt(KEY_MISSED, missed)
+            .putLong(KEY_BUILT_AT, System.currentTimeMillis())
+            .apply();
+        return new WidgetSnapshot(nextName, nextTime, due, taken, missed, prefs(context).getBoolean(KEY_MONITORING, false));
+    }
+
+    private static int toMinutes(String hhmm) {
+        try {
+            String[] parts = hhmm.split(":");
+            return Integer.parseInt(parts[0]) * 60 + Integer.parseInt(parts[1]);
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,76 @@
+package com.safenest.app.widget;
+
+import android.appwidget.AppWidgetManager;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.widget.RemoteViews;
+
+import com.safenest.app.R;
+import com.safenest.app.SOSWidgetProvider;
+
+/**
+ * Pushes widget status changes.
+ * - Call {@link #requestUpdate} whenever the dose ledger or the fall monitor changes
+ * - Bursts are debounced: the first request goes out right away, later ones within
+ *   {@link #DEBOUNCE_MS} are folded into a single trailing update
+ * - Uses partiallyUpdateAppWidget with text-only RemoteViews, so click intents and the
+ *   rest of the layout are left alone
+ */
+public final class WidgetUpdater {
+    private static final String TAG = "WidgetUpdater";
+    private static final long DEBOUNCE_MS = 1000L;
+
+    private static final Handler handler = new Handler(Looper.getMainLooper());
+    private static long lastPushAt = 0L;
+    private static boolean pending = false;
+
+    private WidgetUpdater() {}
+
+    public static synchronized void requestUpdate(Context context) {
+        if (pending) return;
+        pending = true;
+        final Context appContext = context.getApplicationContext();
+        long wait = Math.max(0L, lastPushAt + DEBOUNCE_MS - SystemClock.uptimeMillis());
+        handler.postDelayed(() -> {
+            synchronized (WidgetUpdater.class) {
+                pending = false;
+                lastPushAt = SystemClock.uptimeMillis();
+            }
+            push(appContext);
+        }, wait);
+    }
+
+    /** Record the fall monitor state and refresh the widgets */
+    public static void setMonitoring(Context context, boolean active) {
+        WidgetSnapshot.setMonitoring(context, active);
+        requestUpdate(context);
+    }
+
+    private static void push(Context context) {
+        try {
+            AppWidgetManager manager = AppWidgetManager.getInstance(context);
+            int[] sosIds = manager.getAppWidgetIds(new ComponentName(context, SOSWidgetProvider.class));
+            int[] panicIds = manager.getAppWidgetIds(new ComponentName(context, PanicButtonWidget.class));
+            if (sosIds.length == 0 && panicIds.length == 0) return;
+
+            WidgetSnapshot snapshot = WidgetSnapshot.rebuild(context);
+            partialUpdate(context, manager, sosIds, R.layout.widget_sos, snapshot);
+            partialUpdate(context, manager, panicIds, R.layout.widget_panic_button, snapshot);
+        } catch (Exception e) {
+            Log.e(TAG, "Widget update failed", e);
+        }
+    }
+
+    private static void partialUpdate(Context context, AppWidgetManager manager, int[] ids, int layoutId,
+                                      WidgetSnapshot snapshot) {
+        if (ids.length == 0) return;
+        RemoteViews views = new RemoteViews(context.getPackageName(), layoutId);
+        SosWidgetBase.applyStatus(context, views, snapshot);
+        manager.partiallyUpdateAppWidget(ids, views);
+        Log.d(TAG, "Partially updated " + ids.length + " widget(s)");
+    }
+}
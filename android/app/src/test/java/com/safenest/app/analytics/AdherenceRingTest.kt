@@ -0,0 +1,106 @@
+package com.safenest.app.analytics
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+
+class AdherenceRingTest {
+
+    private val d7 = 0
+    private val d30 = 1
+    private val d90 = 2
+
+    @Test
+    fun windowsDropDaysAsTheyAge() {
+        val ring = AdherenceRing()
+        ring.add(1000, AdherenceRing.TAKEN)
+        ring.add(1000, AdherenceRing.MISSED)
+        assertEquals(1, ring.sum(d7, AdherenceRing.TAKEN))
+
+        ring.advance(1007) // day 1000 just left the 7-day window
+        assertEquals(0, ring.sum(d7, AdherenceRing.TAKEN))
+        assertEquals(1, ring.sum(d30, AdherenceRing.TAKEN))
+        assertEquals(1, ring.sum(d90, AdherenceRing.MISSED))
+
+        ring.advance(1090)
+        assertEquals(0, ring.sum(d90, AdherenceRing.MISSED))
+        assertTrue(ring.isEmpty())
+    }
+
+    @Test
+    fun windowSumsMatchBruteForceAcrossGaps() {
+        val ring = AdherenceRing()
+        val events = ArrayList<Long>()
+        var day = 500L
+        repeat(400) { i ->
+            day += (i * 7) % 4 // 0..3 day steps, sometimes the same day
+            ring.add(day, AdherenceRing.TAKEN)
+            events.add(day)
+            for ((w, len) in AdherenceRing.WINDOWS.withIndex()) {
+                val expected = events.count { it > day - len }
+                assertEquals("window $len at day $day", expected, ring.sum(w, AdherenceRing.TAKEN))
+            }
+        }
+    }
+
+    @Test
+    fun lateEventsLandInTheirOwnDay() {
+        val ring = AdherenceRing()
+        ring.advance(2000)
+        ring.add(1995, AdherenceRing.TAKEN) // still inside the 7-day window
+        ring.add(1990, AdherenceRing.TAKEN) // only in 30/90
+        ring.add(1900, AdherenceRing.TAKEN) // older than the ring, dropped
+        assertEquals(1, ring.sum(d7, AdherenceRing.TAKEN))
+        assertEquals(2, ring.sum(d30, AdherenceRing.TAKEN))
+        assertEquals(2, ring.sum(d90, AdherenceRing.TAKEN))
+    }
+
+    @Test
+    fun streaksCountCleanDaysAndSkipEmptyOnes() {
+        val ring = AdherenceRing()
+        ring.add(10, AdherenceRing.TAKEN)
+        ring.add(11, AdherenceRing.TAKEN)
+        ring.advance(13) // day 12 had no doses
+        ring.add(13, AdherenceRing.TAKEN)
+        assertEquals(3, ring.currentStreak())
+
+        ring.add(14, AdherenceRing.TAKEN)
+        ring.add(14, AdherenceRing.SKIPPED)
+        assertEquals(0, ring.currentStreak())
+        ring.add(15, AdherenceRing.TAKEN)
+        assertEquals(1, ring.currentStreak())
+        assertEquals(3, ring.bestStreak)
+    }
+
+    @Test
+    fun writeReadRestoresWindowsAndStreaks() {
+        val ring = AdherenceRing()
+        for (d in 100L..140L) {
+            ring.add(d, AdherenceRing.TAKEN)
+            if (d % 10 == 0L) ring.add(d, AdherenceRing.MISSED)
+            ring.add(d, AdherenceRing.LATE_FIRST + AdherenceRing.lateBin(d % 150))
+        }
+        val bytes = ByteArrayOutputStream().also { ring.write(DataOutputStream(it)) }.toByteArray()
+        val restored = AdherenceRing()
+        restored.read(DataInputStream(ByteArrayInputStream(bytes)), AdherenceRing.FIELDS)
+
+        for (w in AdherenceRing.WINDOWS.indices) {
+            for (f in 0 until AdherenceRing.FIELDS) assertEquals(ring.sum(w, f), restored.sum(w, f))
+        }
+        assertEquals(ring.currentStreak(), restored.currentStreak())
+        assertEquals(ring.bestStreak, restored.bestStreak)
+    }
+
+    @Test
+    fun lateBinsFollowEdges() {
+        assertEquals(0, AdherenceRing.lateBin(0))
+        assertEquals(1, AdherenceRing.lateBin(15))
+        assertEquals(2, AdherenceRing.lateBin(59))
+        assertEquals(3, AdherenceRing.lateBin(60))
+        assertEquals(4, AdherenceRing.lateBin(600))
+    }
+}
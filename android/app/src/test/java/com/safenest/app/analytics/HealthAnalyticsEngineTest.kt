@@ -0,0 +1,115 @@
+package com.safenest.app.analytics
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.util.TimeZone
+
+class HealthAnalyticsEngineTest {
+
+    private val hour = 60 * 60 * 1000L
+    private val day = 24 * hour
+    private val utc = TimeZone.getTimeZone("UTC")
+    private val tokyo = TimeZone.getTimeZone("Asia/Tokyo") // UTC+9, no DST
+    private val now = 20_000 * day + 12 * hour
+
+    @Test
+    fun watermarksAreKeptPerType() {
+        val engine = HealthAnalyticsEngine(utc)
+        assertTrue(engine.addVital("hr1", "heartRate", now - hour, 72.0))
+        // Entered later but measured earlier: another type's newer reading must not hide it
+        assertTrue(engine.addVital("bp1", "bloodPressure", now - 5 * hour, 130.0, 85.0))
+        assertFalse(engine.addVital("hr0", "heartRate", now - 2 * hour, 70.0))
+
+        assertEquals(mapOf("heartRate" to now - hour, "bloodPressure" to now - 5 * hour), engine.watermarks())
+        assertEquals(1L, engine.channel(VitalChannel.BLOOD_PRESSURE).count)
+        assertEquals(1L, engine.channel(VitalChannel.HEART_RATE).count)
+    }
+
+    @Test
+    fun resentReadingsOnTheWatermarkCountOnce() {
+        val engine = HealthAnalyticsEngine(utc)
+        assertTrue(engine.addVital("a", "temperature", now, 98.6))
+        assertTrue(engine.addVital("b", "temperature", now, 99.1)) // same instant, new id
+        assertFalse(engine.addVital("a", "temperature", now, 98.6))
+        assertEquals(2L, engine.channel(VitalChannel.TEMPERATURE).count)
+    }
+
+    @Test
+    fun untrackedTypesMoveOnlyTheirOwnWatermark() {
+        val engine = HealthAnalyticsEngine(utc)
+        assertFalse(engine.addVital("o1", "oxygen", now, 97.0))
+        assertTrue(engine.addVital("w1", "weight", now - day, 70.0))
+        assertEquals(now, engine.watermarks()["oxygen"])
+    }
+
+    @Test
+    fun logsAreBucketedByLocalDay() {
+        val engine = HealthAnalyticsEngine(tokyo)
+        val localMidnight = 20_000 * day - 9 * hour
+        // 01:00 local is still the previous day in UTC
+        val logTime = localMidnight + hour
+        val evening = localMidnight + 6 * day + 23 * hour
+        engine.upsertLog("l1", logTime, "TAKEN", evening)
+
+        assertEquals(100.0 to 1, engine.compliance(evening))
+        // One local day later the log has left the 7-day window
+        assertEquals(100.0 to 0, engine.compliance(evening + day))
+    }
+
+    @Test
+    fun statusChangesReplaceTheLog() {
+        val engine = HealthAnalyticsEngine(utc)
+        engine.upsertLog("l1", now - hour, "PENDING", now)
+        engine.upsertLog("l2", now - 2 * day, "MISSED", now)
+        assertEquals(0.0 to 2, engine.compliance(now))
+
+        engine.upsertLog("l1", now - hour, "TAKEN", now)
+        assertEquals(50.0 to 2, engine.compliance(now))
+
+        engine.upsertLog("old", now - 10 * day, "TAKEN", now) // outside the kept days
+        assertEquals(50.0 to 2, engine.compliance(now))
+    }
+
+    @Test
+    fun persistentHighPressureIsPredictedOnceThereIsEnoughHistory() {
+        val engine = HealthAnalyticsEngine(utc)
+        engine.addVital("first", "heartRate", now - 20 * day, 70.0)
+        for (d in 7 downTo 1) engine.addVital("bp$d", "bloodPressure", now - d * day, 150.0, 95.0)
+        assertTrue(engine.hasEnoughData(now))
+
+        val predictions = engine.predictions(now)
+        val hypertension = predictions.single { it.type == "hypertension" }
+        assertEquals("high", hypertension.severity)
+        assertEquals(95, hypertension.probability)
+
+        val tooEarly = HealthAnalyticsEngine(utc)
+        for (d in 7 downTo 1) tooEarly.addVital("bp$d", "bloodPressure", now - d * day, 150.0, 95.0)
+        assertFalse(tooEarly.hasEnoughData(now))
+        assertTrue(tooEarly.predictions(now).isEmpty())
+    }
+
+    @Test
+    fun writeReadRestoresWatermarksAndLogs() {
+        val engine = HealthAnalyticsEngine(utc)
+        engine.addVital("hr1", "heartRate", now - hour, 72.0)
+        engine.addVital("bp1", "bloodPressure", now - 3 * hour, 128.0, 82.0)
+        engine.upsertLog("l1", now - hour, "TAKEN", now)
+        engine.upsertLog("l2", now - day, "MISSED", now)
+        val bytes = ByteArrayOutputStream().also { engine.write(DataOutputStream(it)) }.toByteArray()
+
+        val restored = HealthAnalyticsEngine(utc)
+        assertTrue(restored.read(DataInputStream(ByteArrayInputStream(bytes))))
+        assertEquals(engine.watermarks(), restored.watermarks())
+        assertEquals(engine.compliance(now), restored.compliance(now))
+        assertFalse(restored.addVital("hr1", "heartRate", now - hour, 72.0))
+        // A status change after restore still replaces the restored entry
+        restored.upsertLog("l2", now - day, "TAKEN", now)
+        assertEquals(100.0 to 2, restored.compliance(now))
+    }
+}
@@ -0,0 +1,106 @@
+package com.safenest.app.analytics
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+
+class VitalChannelStateTest {
+
+    private val day = 24 * 60 * 60 * 1000L
+    private val t0 = 19_000 * day
+
+    @Test
+    fun windowKeepsTheLastReadingsWhileTotalsKeepEverything() {
+        val state = VitalChannelState(VitalChannel.HEART_RATE) // window of 10
+        val values = (1..15).map { 60.0 + it }
+        values.forEachIndexed { i, v -> state.push(t0 + i * day, v, 0.0) }
+
+        assertEquals(15L, state.count)
+        assertEquals(10, state.size)
+        assertEquals(values.takeLast(10).average(), state.windowMeanA, 1e-9)
+        assertEquals(values.average(), state.mean, 1e-9)
+        val expectedVariance = values.sumOf { (it - values.average()) * (it - values.average()) } / (values.size - 1)
+        assertEquals(expectedVariance, state.variance, 1e-9)
+        assertEquals(75.0, state.last, 0.0)
+        assertEquals(t0, state.firstTime)
+        assertEquals(t0 + 14 * day, state.lastTime)
+    }
+
+    @Test
+    fun outOfRangeCountsFollowEvictions() {
+        val state = VitalChannelState(VitalChannel.HEART_RATE)
+        repeat(4) { state.push(t0 + it, 130.0, 0.0) }
+        repeat(2) { state.push(t0 + 10 + it, 40.0, 0.0) }
+        assertEquals(4, state.highCount)
+        assertEquals(2, state.lowCount)
+
+        repeat(10) { state.push(t0 + 100 + it, 70.0, 0.0) }
+        assertEquals(0, state.highCount)
+        assertEquals(0, state.lowCount)
+    }
+
+    @Test
+    fun bloodPressureClassifiesOnEitherValue() {
+        val state = VitalChannelState(VitalChannel.BLOOD_PRESSURE)
+        state.push(t0, 150.0, 80.0)
+        state.push(t0 + 1, 120.0, 95.0)
+        state.push(t0 + 2, 120.0, 80.0)
+        assertEquals(2, state.highCount)
+        assertEquals(130.0, state.windowMeanA, 1e-9)
+        assertEquals(85.0, state.windowMeanB, 1e-9)
+    }
+
+    @Test
+    fun ewmaStartsAtTheFirstReading() {
+        val state = VitalChannelState(VitalChannel.WEIGHT)
+        state.push(t0, 70.0, 0.0)
+        assertEquals(70.0, state.ewma, 0.0)
+        state.push(t0 + day, 80.0, 0.0)
+        assertEquals(70.0 + VitalChannelState.EWMA_ALPHA * 10, state.ewma, 1e-9)
+    }
+
+    @Test
+    fun slopeIsPerDayOverTheWindow() {
+        val state = VitalChannelState(VitalChannel.WEIGHT)
+        state.push(t0, 70.0, 0.0)
+        state.push(t0 + day, 70.5, 0.0)
+        assertNull(state.slopePerDay())
+        for (d in 2..20) state.push(t0 + d * day, 70.0 + 0.5 * d, 0.0)
+        assertEquals(0.5, state.slopePerDay()!!, 1e-9)
+    }
+
+    @Test
+    fun slopeNeedsTimeSpread() {
+        val state = VitalChannelState(VitalChannel.TEMPERATURE)
+        repeat(4) { state.push(t0, 98.0 + it, 0.0) }
+        assertNull(state.slopePerDay())
+    }
+
+    @Test
+    fun writeReadRestoresWindowAndStatistics() {
+        val state = VitalChannelState(VitalChannel.BLOOD_SUGAR)
+        for (d in 0 until 30) state.push(t0 + d * day, 120.0 + (d * 37) % 90, 0.0)
+        val bytes = ByteArrayOutputStream().also { state.write(DataOutputStream(it)) }.toByteArray()
+        val restored = VitalChannelState(VitalChannel.BLOOD_SUGAR)
+        restored.read(DataInputStream(ByteArrayInputStream(bytes)))
+
+        assertEquals(state.count, restored.count)
+        assertEquals(state.mean, restored.mean, 0.0)
+        assertEquals(state.variance, restored.variance, 0.0)
+        assertEquals(state.ewma, restored.ewma, 0.0)
+        assertEquals(state.size, restored.size)
+        assertEquals(state.windowMeanA, restored.windowMeanA, 1e-9)
+        assertEquals(state.highCount, restored.highCount)
+        assertEquals(state.slopePerDay()!!, restored.slopePerDay()!!, 1e-9)
+
+        // Both keep evicting the same way afterwards
+        state.push(t0 + 30 * day, 200.0, 0.0)
+        restored.push(t0 + 30 * day, 200.0, 0.0)
+        assertEquals(state.windowMeanA, restored.windowMeanA, 1e-9)
+        assertEquals(state.highCount, restored.highCount)
+    }
+}
@@ -0,0 +1,76 @@
+package com.safenest.app.falldetection
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Random
+import kotlin.math.abs
+import kotlin.math.ln
+
+class P2QuantileEstimatorTest {
+
+    private val n = 100_000
+
+    private fun samples(seed: Long, dist: String): DoubleArray {
+        val random = Random(seed)
+        return DoubleArray(n) {
+            when (dist) {
+                "uniform" -> random.nextDouble() * 20
+                "normal" -> 9.81 + 2 * random.nextGaussian() // a phone mostly at rest
+                else -> -ln(1 - random.nextDouble()) * 3 // long right tail, like impacts
+            }
+        }
+    }
+
+    // Where the estimate falls in the sorted samples, as a fraction of n
+    private fun rankOf(sorted: DoubleArray, value: Double): Double {
+        var index = sorted.binarySearch(value)
+        if (index < 0) index = -index - 1
+        return index / sorted.size.toDouble()
+    }
+
+    @Test
+    fun estimateMatchesSortedReference() {
+        for (seed in 1L..3L) {
+            for (dist in listOf("uniform", "normal", "exponential")) {
+                val xs = samples(seed, dist)
+                val sorted = xs.sortedArray()
+                for (q in listOf(0.5, 0.9, 0.99, 0.999)) {
+                    val estimator = P2QuantileEstimator(q)
+                    xs.forEach { estimator.add(it) }
+                    val rank = rankOf(sorted, estimator.value())
+                    val tolerance = if (q == 0.999) 0.001 else 0.002
+                    assertTrue("$dist seed=$seed q=$q rank=$rank", abs(rank - q) <= tolerance)
+                }
+            }
+        }
+    }
+
+    @Test
+    fun fewSamplesUseExactQuantile() {
+        val estimator = P2QuantileEstimator(0.5)
+        assertTrue(estimator.value().isNaN())
+        listOf(3.0, 1.0, 2.0).forEach { estimator.add(it) }
+        assertEquals(2.0, estimator.value(), 0.0)
+    }
+
+    @Test
+    fun decodedStateContinuesLikeTheOriginal() {
+        val xs = samples(7, "exponential")
+        val original = P2QuantileEstimator(0.999)
+        xs.take(n / 2).forEach { original.add(it) }
+        val restored = P2QuantileEstimator.decode(0.999, original.encode())
+        xs.drop(n / 2).forEach {
+            original.add(it)
+            restored.add(it)
+        }
+        assertEquals(original.count, restored.count)
+        assertEquals(original.value(), restored.value(), 1e-9)
+    }
+
+    @Test
+    fun unusableTextGivesFreshEstimator() {
+        assertEquals(0L, P2QuantileEstimator.decode(0.5, "garbage").count)
+        assertEquals(0L, P2QuantileEstimator.decode(0.5, "5|a,b|c|d").count)
+    }
+}
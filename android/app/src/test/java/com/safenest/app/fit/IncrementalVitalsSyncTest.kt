@@ -0,0 +1,117 @@
+package com.safenest.app.fit
+
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+import java.util.TimeZone
+
+class IncrementalVitalsSyncTest {
+
+    private val utc = TimeZone.getTimeZone("UTC")
+    private val day = 24 * 60 * 60 * 1000L
+    private val now = 20_000 * day + 12 * 60 * 60 * 1000L // noon UTC
+    private val minute = 60_000L
+
+    private class FakeFeed : VitalsChangeFeed {
+        val seed = ArrayList<VitalsChange.Upsert>()
+        val pages = ArrayDeque<VitalsChangesPage>()
+        var tokens = 0
+        var seedReads = 0
+        val requestedTokens = ArrayList<String>()
+
+        override suspend fun newToken(): String = "t" + (++tokens)
+
+        override suspend fun changesSince(token: String): VitalsChangesPage {
+            requestedTokens.add(token)
+            return pages.removeFirstOrNull() ?: VitalsChangesPage(emptyList(), token, hasMore = false)
+        }
+
+        override suspend fun readSince(startMs: Long): List<VitalsChange.Upsert> {
+            seedReads++
+            return seed.filter { it.endMs >= startMs }
+        }
+    }
+
+    private class MemoryStore : VitalsSyncStore {
+        var saved: Pair<String, String>? = null
+        override fun load() = saved
+        override fun save(token: String, state: String) {
+            saved = token to state
+        }
+    }
+
+    private fun steps(id: String, at: Long, count: Int) =
+        VitalsChange.Upsert(id, VitalsRecordKind.STEPS, at, at + minute, count.toDouble())
+
+    @Test
+    fun seedsThenMergesOnlyDeltas() = runBlocking {
+        val feed = FakeFeed()
+        val store = MemoryStore()
+        feed.seed += steps("a", now - 60 * minute, 500)
+        feed.seed += steps("old", now - day, 9_000) // yesterday, must not count today
+        val sync = IncrementalVitalsSync(feed, store, IncrementalVitalsState(utc))
+
+        assertEquals(500, sync.sync(now).steps)
+        assertEquals(1, feed.seedReads)
+        assertEquals(-1, sync.lastChangeCount)
+
+        feed.pages += VitalsChangesPage(
+            listOf(
+                steps("b", now - 10 * minute, 200),
+                steps("a", now - 60 * minute, 450), // edited record replaces, not adds
+                VitalsChange.Upsert("hr1", VitalsRecordKind.HEART_RATE, now - 5 * minute, now - 2 * minute, 72.0)
+            ),
+            nextToken = "t1-page", hasMore = true
+        )
+        feed.pages += VitalsChangesPage(listOf(VitalsChange.Delete("b")), "t2", hasMore = false)
+
+        val vitals = sync.sync(now)
+        assertEquals(450, vitals.steps)
+        assertEquals(72f, vitals.heartRate)
+        assertEquals(1, feed.seedReads)
+        assertEquals(4, sync.lastChangeCount)
+        assertEquals(listOf("t1", "t1-page"), feed.requestedTokens)
+        assertEquals("t2", store.saved?.first)
+    }
+
+    @Test
+    fun restoresStateFromStoreWithoutSeeding() = runBlocking {
+        val store = MemoryStore()
+        val first = FakeFeed().apply { seed += steps("a", now - 30 * minute, 1_200) }
+        IncrementalVitalsSync(first, store, IncrementalVitalsState(utc)).sync(now)
+
+        val second = FakeFeed()
+        second.pages += VitalsChangesPage(listOf(steps("c", now - minute, 30)), "t9", hasMore = false)
+        val vitals = IncrementalVitalsSync(second, store, IncrementalVitalsState(utc)).sync(now)
+
+        assertEquals(1_230, vitals.steps)
+        assertEquals(0, second.seedReads)
+    }
+
+    @Test
+    fun expiredTokenTriggersReseed() = runBlocking {
+        val feed = FakeFeed()
+        val store = MemoryStore()
+        feed.seed += steps("a", now - 30 * minute, 100)
+        val sync = IncrementalVitalsSync(feed, store, IncrementalVitalsState(utc))
+        sync.sync(now)
+
+        feed.seed += steps("b", now - 20 * minute, 50)
+        feed.pages += VitalsChangesPage(emptyList(), "", hasMore = false, tokenExpired = true)
+        val vitals = sync.sync(now)
+
+        assertEquals(150, vitals.steps)
+        assertEquals(2, feed.seedReads)
+        assertEquals("t2", store.saved?.first)
+    }
+
+    @Test
+    fun staleHeartRateIsIgnored() = runBlocking {
+        val feed = FakeFeed()
+        feed.seed += VitalsChange.Upsert("hr", VitalsRecordKind.HEART_RATE, now - 90 * minute, now - 60 * minute, 80.0)
+        val vitals = IncrementalVitalsSync(feed, MemoryStore(), IncrementalVitalsState(utc)).sync(now)
+
+        assertNull(vitals.heartRate)
+    }
+}
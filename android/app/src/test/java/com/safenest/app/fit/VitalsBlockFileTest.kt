@@ -0,0 +1,118 @@
+package com.safenest.app.fit
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.io.RandomAccessFile
+
+class VitalsBlockFileTest {
+
+    @get:Rule
+    val tmp = TemporaryFolder()
+
+    private val minute = 60_000L
+    private val t0 = 1_700_000_000_000L
+
+    private fun points(from: Int, n: Int) = (from until from + n).map { i ->
+        val v = 60.0 + (i * 7) % 40 + 0.5 * (i % 2)
+        VitalPoint(t0 + i * minute, v, v - (i % 3), v + (i % 5) * 0.5, 1 + i % 4)
+    }
+
+    private fun readAll(blocks: VitalsBlockFile, scale: Int): List<VitalPoint> {
+        val out = ArrayList<VitalPoint>()
+        blocks.scan(Long.MIN_VALUE, Long.MAX_VALUE) { VitalsBlockFile.decode(it, scale, out::add) }
+        return out
+    }
+
+    private fun appendAll(blocks: VitalsBlockFile, list: List<VitalPoint>, scale: Int) =
+        blocks.append(list.first().time, list.last().time, VitalsBlockFile.encode(list, scale))
+
+    @Test
+    fun codecRoundTripsAtMetricScale() {
+        val original = points(0, 128) + VitalPoint(t0 - minute, 0.0, -3.5, 250.0, 0) // time going back
+        val decoded = ArrayList<VitalPoint>()
+        VitalsBlockFile.decode(VitalsBlockFile.encode(original, 10), 10, decoded::add)
+        assertEquals(original, decoded)
+    }
+
+    @Test
+    fun scanSkipsBlocksOutsideTheRange() {
+        val blocks = VitalsBlockFile(File(tmp.root, "hr.blk"))
+        val first = points(0, 10)
+        val second = points(100, 10)
+        appendAll(blocks, first, 10)
+        appendAll(blocks, second, 10)
+
+        var decodedBlocks = 0
+        blocks.scan(t0 + 100 * minute, t0 + 200 * minute) { decodedBlocks++ }
+        assertEquals(1, decodedBlocks)
+        assertEquals(first + second, readAll(blocks, 10))
+    }
+
+    @Test
+    fun tornTailIsCutBackToTheLastWholeBlock() {
+        val file = File(tmp.root, "steps.blk")
+        val blocks = VitalsBlockFile(file)
+        appendAll(blocks, points(0, 20), 10)
+        appendAll(blocks, points(20, 20), 10)
+        val intact = file.length()
+        appendAll(blocks, points(40, 20), 10)
+        // A crash mid-append leaves half of the last block behind
+        RandomAccessFile(file, "rw").use { it.setLength(intact + VitalsBlockFile.HEADER_BYTES + 3) }
+
+        assertEquals((VitalsBlockFile.HEADER_BYTES + 3).toLong(), blocks.recover())
+        assertEquals(intact, file.length())
+        assertEquals(points(0, 40), readAll(blocks, 10))
+
+        // Appends after recovery are readable after the kept blocks
+        appendAll(blocks, points(40, 20), 10)
+        assertEquals(points(0, 60), readAll(blocks, 10))
+    }
+
+    @Test
+    fun corruptBlockDropsItAndEverythingAfter() {
+        val file = File(tmp.root, "calories.blk")
+        val blocks = VitalsBlockFile(file)
+        appendAll(blocks, points(0, 20), 10)
+        val intact = file.length()
+        appendAll(blocks, points(20, 20), 10)
+        appendAll(blocks, points(40, 20), 10)
+        RandomAccessFile(file, "rw").use {
+            val at = intact + VitalsBlockFile.HEADER_BYTES + 2
+            it.seek(at)
+            val flipped = it.read() xor 0xFF
+            it.seek(at)
+            it.write(flipped)
+        }
+
+        assertTrue(blocks.recover() > 0)
+        assertEquals(points(0, 20), readAll(blocks, 10))
+    }
+
+    @Test
+    fun fileInAnotherFormatStartsOver() {
+        val file = File(tmp.root, "distance.blk")
+        file.writeBytes(ByteArray(50) { it.toByte() })
+        val blocks = VitalsBlockFile(file)
+
+        assertEquals(50L, blocks.recover())
+        assertEquals(0L, file.length())
+        appendAll(blocks, points(0, 5), 10)
+        assertEquals(points(0, 5), readAll(blocks, 10))
+    }
+
+    @Test
+    fun compactionDropsExpiredBlocksOnly() {
+        val blocks = VitalsBlockFile(File(tmp.root, "hr_minute.blk"))
+        appendAll(blocks, points(0, 10), 10)
+        appendAll(blocks, points(10, 10), 10)
+        appendAll(blocks, points(20, 10), 10)
+
+        assertEquals(1, blocks.compact(t0 + 10 * minute))
+        assertEquals(points(10, 20), readAll(blocks, 10))
+        assertEquals(0L, blocks.recover())
+    }
+}
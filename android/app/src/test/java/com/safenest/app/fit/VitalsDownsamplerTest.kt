@@ -0,0 +1,106 @@
+package com.safenest.app.fit
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.util.TimeZone
+
+class VitalsDownsamplerTest {
+
+    private val minute = 60_000L
+    private val hour = 60 * minute
+    private val day = 24 * hour
+    private val midnight = 20_000 * day // UTC
+
+    private fun collect(sampler: VitalsDownsampler, metric: VitalMetric, samples: List<Pair<Long, Double>>) =
+        ArrayList<Pair<VitalTier, VitalPoint>>().also { out ->
+            for ((time, value) in samples) sampler.add(metric, time, value) { tier, p -> out.add(tier to p) }
+        }
+
+    @Test
+    fun gaugeBucketsAverageAndCloseOnTheNextSample() {
+        val sampler = VitalsDownsampler(TimeZone.getTimeZone("UTC"))
+        val closed = collect(sampler, VitalMetric.HEART_RATE, listOf(
+            midnight + 10_000 to 60.0,
+            midnight + 40_000 to 80.0,
+            midnight + minute + 5_000 to 70.0 // closes the first minute only
+        ))
+
+        assertEquals(listOf(VitalTier.MINUTE to VitalPoint(midnight, 70.0, 60.0, 80.0, 2)), closed)
+        assertEquals(VitalPoint(midnight, 70.0, 60.0, 80.0, 3), sampler.openPoint(VitalMetric.HEART_RATE, VitalTier.HOUR))
+        assertEquals(VitalPoint(midnight, 70.0, 60.0, 80.0, 3), sampler.openPoint(VitalMetric.HEART_RATE, VitalTier.DAY))
+    }
+
+    @Test
+    fun cumulativeBucketsKeepTheLastTotal() {
+        val sampler = VitalsDownsampler(TimeZone.getTimeZone("UTC"))
+        val closed = collect(sampler, VitalMetric.STEPS, listOf(
+            midnight + 5 * minute to 100.0,
+            midnight + 50 * minute to 900.0,
+            midnight + hour + minute to 1_200.0 // closes minute 50 and hour 0
+        ))
+
+        assertEquals(VitalTier.MINUTE to VitalPoint(midnight + 5 * minute, 100.0, 100.0, 100.0, 1), closed[0])
+        assertEquals(VitalTier.MINUTE to VitalPoint(midnight + 50 * minute, 900.0, 900.0, 900.0, 1), closed[1])
+        assertEquals(VitalTier.HOUR to VitalPoint(midnight, 900.0, 100.0, 900.0, 2), closed[2])
+        assertEquals(3, closed.size)
+    }
+
+    @Test
+    fun dayBucketsFollowLocalMidnight() {
+        val tokyo = TimeZone.getTimeZone("Asia/Tokyo") // UTC+9, no DST
+        val sampler = VitalsDownsampler(tokyo)
+        val localMidnight = midnight - 9 * hour
+        val closed = collect(sampler, VitalMetric.HEART_RATE, listOf(
+            localMidnight - minute to 50.0, // 23:59 the day before
+            localMidnight + minute to 90.0
+        ))
+
+        val dayPoint = closed.single { it.first == VitalTier.DAY }.second
+        assertEquals(localMidnight - day, dayPoint.time)
+        assertEquals(VitalPoint(localMidnight, 90.0, 90.0, 90.0, 1), sampler.openPoint(VitalMetric.HEART_RATE, VitalTier.DAY))
+    }
+
+    @Test
+    fun lateSampleSkipsClosedBuckets() {
+        val sampler = VitalsDownsampler(TimeZone.getTimeZone("UTC"))
+        collect(sampler, VitalMetric.HEART_RATE, listOf(midnight + 2 * minute to 70.0))
+        val closed = collect(sampler, VitalMetric.HEART_RATE, listOf(midnight + 10_000 to 200.0))
+
+        assertEquals(emptyList<Pair<VitalTier, VitalPoint>>(), closed)
+        assertEquals(VitalPoint(midnight + 2 * minute, 70.0, 70.0, 70.0, 1), sampler.openPoint(VitalMetric.HEART_RATE, VitalTier.MINUTE))
+        // Still inside the open hour, so the hour bucket takes it
+        assertEquals(2, sampler.openPoint(VitalMetric.HEART_RATE, VitalTier.HOUR)!!.count)
+    }
+
+    @Test
+    fun openBucketsSurviveWriteAndRead() {
+        val sampler = VitalsDownsampler(TimeZone.getTimeZone("UTC"))
+        collect(sampler, VitalMetric.CALORIES, listOf(midnight + hour to 12.5, midnight + hour + 1_000 to 14.0))
+        val bytes = ByteArrayOutputStream().also { sampler.write(DataOutputStream(it)) }.toByteArray()
+
+        val restored = VitalsDownsampler(TimeZone.getTimeZone("UTC"))
+        restored.read(DataInputStream(ByteArrayInputStream(bytes)))
+        for (tier in listOf(VitalTier.MINUTE, VitalTier.HOUR, VitalTier.DAY)) {
+            assertEquals(sampler.openPoint(VitalMetric.CALORIES, tier), restored.openPoint(VitalMetric.CALORIES, tier))
+        }
+        assertNull(restored.openPoint(VitalMetric.STEPS, VitalTier.HOUR))
+    }
+
+    @Test
+    fun rebucketWeightsAveragesByCount() {
+        val points = listOf(
+            VitalPoint(0, 60.0, 55.0, 65.0, 1),
+            VitalPoint(10, 90.0, 80.0, 100.0, 3),
+            VitalPoint(60, 70.0, 70.0, 70.0, 2)
+        )
+        val merged = VitalsDownsampler.rebucket(points, 0, 100, 2, cumulative = false)
+
+        assertEquals(listOf(VitalPoint(0, 82.5, 55.0, 100.0, 4), VitalPoint(50, 70.0, 70.0, 70.0, 2)), merged)
+        assertEquals(points, VitalsDownsampler.rebucket(points, 0, 100, 3, cumulative = false))
+    }
+}
@@ -0,0 +1,83 @@
+package com.safenest.bench;
+
+import com.safenest.bench.prefs.PrefsFile;
+import com.safenest.bench.store.JsonPrefsScheduleStore;
+import com.safenest.bench.store.PrefsDoseStateStore;
+import com.safenest.bench.store.Reminder;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Care-home shaped test data: each medicine has one daily dose at one of a few round-the-clock
+ * times, with Firebase-push-id-like ids and realistic name / instruction lengths.
+ */
+final class Fixtures {
+    static final String[] TIMES = {"08:00", "13:30", "20:00"};
+    static final LocalDate TODAY = LocalDate.of(2026, 1, 1);
+
+    private Fixtures() {}
+
+    static String medicineId(int i) {
+        return String.format("-Nq7%016d", i);
+    }
+
+    static String timeOf(int i) {
+        return TIMES[i % TIMES.length];
+    }
+
+    static Reminder reminder(int i) {
+        return new Reminder(medicineId(i), "Metformin " + (i % 50), (1 + i % 3) + " tablets",
+                timeOf(i), i % 7 == 0, "Take with food, after breakfast", true);
+    }
+
+    /** Schedule prefs as storeReminder would leave them after adding [medicines] reminders */
+    static PrefsFile schedulePrefs(int medicines) {
+        JSONArray all = new JSONArray();
+        Map<String, Object> entries = new HashMap<>();
+        for (int i = 0; i < medicines; i++) {
+            Reminder r = reminder(i);
+            JSONObject o = new JSONObject();
+            o.put("medicineId", r.medicineId);
+            o.put("medicineName", r.medicineName);
+            o.put("dosage", r.dosage);
+            o.put("time", r.time);
+            o.put("isCritical", r.isCritical);
+            o.put("instructions", r.instructions);
+            o.put("voiceEnabled", r.voiceEnabled);
+            all.put(o);
+            entries.put("medicine_" + r.medicineId,
+                    new JSONObject().put("name", r.medicineName).put("dosage", r.dosage)
+                            .put("isCritical", r.isCritical).toString());
+        }
+        entries.put(JsonPrefsScheduleStore.KEY, all.toString());
+        PrefsFile prefs = new PrefsFile();
+        prefs.putAllSilently(entries);
+        prefs.apply();
+        return prefs;
+    }
+
+    /** One taken flag per medicine per day for [days] days before [TODAY] */
+    static PrefsFile doseHistoryPrefs(int medicines, int days) {
+        Map<String, Object> entries = new HashMap<>(medicines * days * 4 / 3 + 16);
+        for (int d = 1; d <= days; d++) {
+            String date = TODAY.minusDays(d).toString();
+            for (int i = 0; i < medicines; i++) {
+                entries.put(PrefsDoseStateStore.key(medicineId(i), timeOf(i), date), Boolean.TRUE);
+            }
+        }
+        PrefsFile prefs = new PrefsFile();
+        prefs.putAllSilently(entries);
+        prefs.apply();
+        return prefs;
+    }
+
+    /** Cheap deterministic scatter over [0, bound) so lookups do not walk in key order */
+    static int scatter(long n, int bound) {
+        return (int) Math.floorMod(n * 0x9E3779B97F4A7C15L >>> 17, (long) bound);
+    }
+}
@@ -0,0 +1,136 @@
+package com.safenest.bench;
+
+import com.safenest.bench.prefs.PrefsFile;
+import com.safenest.bench.store.ActionLog;
+import com.safenest.bench.store.DoseStateStore;
+import com.safenest.bench.store.JsonPrefsActionLog;
+import com.safenest.bench.store.JsonPrefsScheduleStore;
+import com.safenest.bench.store.PrefsDoseStateStore;
+import com.safenest.bench.store.Reminder;
+import com.safenest.bench.store.ScheduleStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Reminder persistence at care-home scale, one benchmark per hot path:
+ * - scheduleUpsert: re-storing a reminder (every alarm re-schedules itself for tomorrow)
+ * - scheduleCancel: removing one reminder
+ * - doseLookup / doseMarkTaken: the taken flags behind missed-dose follow-ups
+ * - actionAppend: queueing a Taken / Snooze / Skip tap for sync
+ *
+ * Sizes are restored between operations with plain map puts (no file write), so every
+ * operation sees the same data size and only the operation's own cost is measured.
+ */
+public class ReminderPersistenceBenchmark {
+
+    @State(Scope.Thread)
+    public static class ScheduleState {
+        @Param({"10", "100", "1000", "10000"})
+        public int medicines;
+
+        PrefsFile prefs;
+        ScheduleStore store;
+        String full;
+        long n;
+
+        @Setup
+        public void setup() {
+            prefs = Fixtures.schedulePrefs(medicines);
+            store = new JsonPrefsScheduleStore(prefs);
+            full = prefs.getString(JsonPrefsScheduleStore.KEY, "[]");
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class DoseState {
+        @Param({"10", "100", "1000", "10000"})
+        public int medicines;
+
+        @Param({"1", "3"})
+        public int historyYears;
+
+        DoseStateStore store;
+        int days;
+        String today;
+        String[] dates;
+        long n;
+
+        @Setup
+        public void setup() {
+            days = historyYears * 365;
+            store = new PrefsDoseStateStore(Fixtures.doseHistoryPrefs(medicines, days));
+            today = Fixtures.TODAY.toString();
+            dates = new String[days];
+            for (int d = 0; d < days; d++) dates[d] = Fixtures.TODAY.minusDays(d + 1).toString();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ActionState {
+        @Param({"10", "100", "1000", "10000"})
+        public int medicines;
+
+        PrefsFile prefs;
+        ActionLog log;
+        String backlog;
+        int appended;
+        long n;
+
+        // One day of unsynced actions: the queue is cleared whenever the app syncs
+        @Setup
+        public void setup() {
+            prefs = new PrefsFile();
+            log = new JsonPrefsActionLog(prefs);
+            for (int i = 0; i < medicines; i++) {
+                log.append(Fixtures.medicineId(i), Fixtures.timeOf(i), "TAKEN", 1_767_225_600_000L + i, "2026-01-01");
+            }
+            backlog = prefs.getString(JsonPrefsActionLog.KEY, "[]");
+        }
+    }
+
+    @Benchmark
+    public int scheduleUpsert(ScheduleState s) {
+        Reminder r = Fixtures.reminder(Fixtures.scatter(s.n++, s.medicines));
+        s.store.upsert(r);
+        return s.prefs.fileBytes();
+    }
+
+    @Benchmark
+    public int scheduleCancel(ScheduleState s) {
+        int i = Fixtures.scatter(s.n++, s.medicines);
+        s.store.cancel(Fixtures.medicineId(i), Fixtures.timeOf(i));
+        int bytes = s.prefs.fileBytes();
+        s.prefs.putString(JsonPrefsScheduleStore.KEY, s.full);
+        return bytes;
+    }
+
+    @Benchmark
+    public boolean doseLookup(DoseState s) {
+        long n = s.n++;
+        int i = Fixtures.scatter(n, s.medicines);
+        return s.store.isTaken(Fixtures.medicineId(i), Fixtures.timeOf(i), s.dates[Fixtures.scatter(n >>> 7, s.days)]);
+    }
+
+    // Today's doses only, so the key count stays fixed; re-marking still rewrites the file
+    @Benchmark
+    public boolean doseMarkTaken(DoseState s) {
+        int i = Fixtures.scatter(s.n++, s.medicines);
+        return s.store.markTaken(Fixtures.medicineId(i), Fixtures.timeOf(i), s.today);
+    }
+
+    @Benchmark
+    public int actionAppend(ActionState s) {
+        int i = Fixtures.scatter(s.n++, s.medicines);
+        s.log.append(Fixtures.medicineId(i), Fixtures.timeOf(i), "TAKEN", 1_767_225_600_000L + s.n, "2026-01-01");
+        int bytes = s.prefs.fileBytes();
+        if (++s.appended >= s.medicines) {
+            s.prefs.putString(JsonPrefsActionLog.KEY, s.backlog);
+            s.appended = 0;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,122 @@
+package com.safenest.bench.prefs;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JVM stand-in for one SharedPreferences file, with the cost model that matters here:
+ * - reads are a HashMap lookup on the in-memory copy
+ * - every apply() writes the WHOLE map back out as XML, the way SharedPreferencesImpl
+ *   does, no matter how small the edit was
+ *
+ * The XML goes into an in-memory buffer instead of disk, so the benchmarks measure the
+ * CPU and allocation the app pays per write without flash I/O noise. apply() is done
+ * inline (like commit()) so that cost is charged to the operation that caused it.
+ */
+public class PrefsFile {
+    private final Map<String, Object> map = new HashMap<>();
+    private final ByteArrayOutputStream disk = new ByteArrayOutputStream(64 * 1024);
+    private long bytesWritten;
+
+    public String getString(String key, String defValue) {
+        Object v = map.get(key);
+        return v instanceof String ? (String) v : defValue;
+    }
+
+    public boolean getBoolean(String key, boolean defValue) {
+        Object v = map.get(key);
+        return v instanceof Boolean ? (Boolean) v : defValue;
+    }
+
+    public boolean contains(String key) {
+        return map.containsKey(key);
+    }
+
+    public PrefsFile putString(String key, String value) {
+        map.put(key, value);
+        return this;
+    }
+
+    public PrefsFile putBoolean(String key, boolean value) {
+        map.put(key, value);
+        return this;
+    }
+
+    public PrefsFile remove(String key) {
+        map.remove(key);
+        return this;
+    }
+
+    /** Load entries without paying for a write, for benchmark setup */
+    public void putAllSilently(Map<String, ?> entries) {
+        map.putAll(entries);
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    /** Size of the file after the last write */
+    public int fileBytes() {
+        return disk.size();
+    }
+
+    public long bytesWritten() {
+        return bytesWritten;
+    }
+
+    /** Rewrite the whole file */
+    public void apply() {
+        disk.reset();
+        try {
+            Writer out = new BufferedWriter(new OutputStreamWriter(disk, StandardCharsets.UTF_8), 8 * 1024);
+            out.write("<?xml version='1.0' encoding='utf-8' standalone='yes' ?>\n<map>\n");
+            for (Map.Entry<String, Object> e : map.entrySet()) {
+                Object v = e.getValue();
+                if (v instanceof String) {
+                    out.write("    <string name=\"");
+                    escape(out, e.getKey());
+                    out.write("\">");
+                    escape(out, (String) v);
+                    out.write("</string>\n");
+                } else {
+                    out.write("    <boolean name=\"");
+                    escape(out, e.getKey());
+                    out.write("\" value=\"");
+                    out.write(String.valueOf(v));
+                    out.write("\" />\n");
+                }
+            }
+            out.write("</map>\n");
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        bytesWritten += disk.size();
+    }
+
+    private static void escape(Writer out, String s) throws IOException {
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            String rep;
+            switch (s.charAt(i)) {
+                case '&': rep = "&amp;"; break;
+                case '<': rep = "&lt;"; break;
+                case '>': rep = "&gt;"; break;
+                case '"': rep = "&quot;"; break;
+                default: continue;
+            }
+            out.write(s, start, i - start);
+            out.write(rep);
+            start = i + 1;
+        }
+        out.write(s, start, s.length() - start);
+    }
+}
@@ -0,0 +1,10 @@
+package com.safenest.bench.store;
+
+/**
+ * Notification actions queued for the app to sync (MedicineActionReceiver.storeActionForSync)
+ */
+public interface ActionLog {
+    void append(String medicineId, String scheduledTime, String status, long timestamp, String date);
+
+    int pending();
+}
@@ -0,0 +1,11 @@
+package com.safenest.bench.store;
+
+/**
+ * Per-dose "taken" flags (MissedMedicineReceiver.markMedicineTaken / wasMedicineTaken)
+ */
+public interface DoseStateStore {
+    /** Returns true if the dose was not marked before */
+    boolean markTaken(String medicineId, String time, String date);
+
+    boolean isTaken(String medicineId, String time, String date);
+}
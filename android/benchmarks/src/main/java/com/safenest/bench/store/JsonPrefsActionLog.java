@@ -0,0 +1,38 @@
+package com.safenest.bench.store;
+
+import com.safenest.bench.prefs.PrefsFile;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * The app's current layout: a "pending_actions" JSON array that is parsed and rewritten
+ * for each appended action until the app syncs and clears it.
+ */
+public class JsonPrefsActionLog implements ActionLog {
+    public static final String KEY = "pending_actions";
+
+    private final PrefsFile prefs;
+
+    public JsonPrefsActionLog(PrefsFile prefs) {
+        this.prefs = prefs;
+    }
+
+    @Override
+    public void append(String medicineId, String scheduledTime, String status, long timestamp, String date) {
+        JSONArray actions = new JSONArray(prefs.getString(KEY, "[]"));
+        JSONObject action = new JSONObject();
+        action.put("medicineId", medicineId);
+        action.put("scheduledTime", scheduledTime);
+        action.put("status", status);
+        action.put("timestamp", timestamp);
+        action.put("date", date);
+        actions.put(action);
+        prefs.putString(KEY, actions.toString()).apply();
+    }
+
+    @Override
+    public int pending() {
+        return new JSONArray(prefs.getString(KEY, "[]")).length();
+    }
+}
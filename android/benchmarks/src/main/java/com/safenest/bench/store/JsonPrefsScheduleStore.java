@@ -0,0 +1,65 @@
+package com.safenest.bench.store;
+
+import com.safenest.bench.prefs.PrefsFile;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * The app's current layout: one "scheduled_reminders" JSON array, parsed, filtered and
+ * re-serialized on every change, plus a "medicine_<id>" blob per medicine.
+ */
+public class JsonPrefsScheduleStore implements ScheduleStore {
+    public static final String KEY = "scheduled_reminders";
+
+    private final PrefsFile prefs;
+
+    public JsonPrefsScheduleStore(PrefsFile prefs) {
+        this.prefs = prefs;
+    }
+
+    @Override
+    public void upsert(Reminder reminder) {
+        JSONArray reminders = new JSONArray(prefs.getString(KEY, "[]"));
+        JSONArray filtered = without(reminders, reminder.medicineId, reminder.time);
+
+        JSONObject r = new JSONObject();
+        r.put("medicineId", reminder.medicineId);
+        r.put("medicineName", reminder.medicineName);
+        r.put("dosage", reminder.dosage);
+        r.put("time", reminder.time);
+        r.put("isCritical", reminder.isCritical);
+        r.put("instructions", reminder.instructions);
+        r.put("voiceEnabled", reminder.voiceEnabled);
+        filtered.put(r);
+        prefs.putString(KEY, filtered.toString()).apply();
+
+        JSONObject medicineData = new JSONObject();
+        medicineData.put("name", reminder.medicineName);
+        medicineData.put("dosage", reminder.dosage);
+        medicineData.put("isCritical", reminder.isCritical);
+        prefs.putString("medicine_" + reminder.medicineId, medicineData.toString()).apply();
+    }
+
+    @Override
+    public void cancel(String medicineId, String time) {
+        JSONArray reminders = new JSONArray(prefs.getString(KEY, "[]"));
+        prefs.putString(KEY, without(reminders, medicineId, time).toString()).apply();
+    }
+
+    @Override
+    public int count() {
+        return new JSONArray(prefs.getString(KEY, "[]")).length();
+    }
+
+    private static JSONArray without(JSONArray reminders, String medicineId, String time) {
+        JSONArray filtered = new JSONArray();
+        for (int i = 0; i < reminders.length(); i++) {
+            JSONObject r = reminders.getJSONObject(i);
+            if (!(r.getString("medicineId").equals(medicineId) && r.getString("time").equals(time))) {
+                filtered.put(r);
+            }
+        }
+        return filtered;
+    }
+}
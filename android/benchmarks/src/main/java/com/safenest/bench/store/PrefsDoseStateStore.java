@@ -0,0 +1,32 @@
+package com.safenest.bench.store;
+
+import com.safenest.bench.prefs.PrefsFile;
+
+/**
+ * The app's current layout: one boolean key per dose ("<id>_<HH:mm>_<yyyy-MM-dd>") in
+ * SafeNestMedicineTaken, never pruned, so the file grows with every day of history.
+ */
+public class PrefsDoseStateStore implements DoseStateStore {
+    private final PrefsFile prefs;
+
+    public PrefsDoseStateStore(PrefsFile prefs) {
+        this.prefs = prefs;
+    }
+
+    public static String key(String medicineId, String time, String date) {
+        return medicineId + "_" + time + "_" + date;
+    }
+
+    @Override
+    public boolean markTaken(String medicineId, String time, String date) {
+        String key = key(medicineId, time, date);
+        boolean wasNew = !prefs.getBoolean(key, false);
+        prefs.putBoolean(key, true).apply();
+        return wasNew;
+    }
+
+    @Override
+    public boolean isTaken(String medicineId, String time, String date) {
+        return prefs.getBoolean(key(medicineId, time, date), false);
+    }
+}
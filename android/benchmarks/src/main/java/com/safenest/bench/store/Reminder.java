@@ -0,0 +1,25 @@
+package com.safenest.bench.store;
+
+/**
+ * One stored daily reminder, the fields MedicineReminderScheduler persists for reboot
+ */
+public final class Reminder {
+    public final String medicineId;
+    public final String medicineName;
+    public final String dosage;
+    public final String time;
+    public final boolean isCritical;
+    public final String instructions;
+    public final boolean voiceEnabled;
+
+    public Reminder(String medicineId, String medicineName, String dosage, String time,
+                    boolean isCritical, String instructions, boolean voiceEnabled) {
+        this.medicineId = medicineId;
+        this.medicineName = medicineName;
+        this.dosage = dosage;
+        this.time = time;
+        this.isCritical = isCritical;
+        this.instructions = instructions;
+        this.voiceEnabled = voiceEnabled;
+    }
+}
@@ -0,0 +1,13 @@
+package com.safenest.bench.store;
+
+/**
+ * Persisted reminder schedule (MedicineReminderScheduler.storeReminder / removeStoredReminder)
+ */
+public interface ScheduleStore {
+    /** Add or replace the reminder for (medicineId, time) */
+    void upsert(Reminder reminder);
+
+    void cancel(String medicineId, String time);
+
+    int count();
+}
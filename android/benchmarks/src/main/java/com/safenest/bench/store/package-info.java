@@ -0,0 +1,6 @@
+/**
+ * Stand-ins for the app's reminder storage, rebuilt on {@link com.safenest.bench.prefs.PrefsFile}
+ * so they run on a plain JVM. They copy the app's key and JSON layouts, not its code:
+ * a layout change in the app has to be mirrored here for the numbers to mean anything.
+ */
+package com.safenest.bench.store;
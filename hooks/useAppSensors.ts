@@ -2,6 +2,7 @@ import { useState, useEffect, useRef } from 'react';
 import { LocationData } from '../types';
 import { Capacitor } from '@capacitor/core';
 import { Geolocation, PermissionStatus as GeoPermissionStatus, Position as CapPosition } from '@capacitor/geolocation';
+import { recordLocationFix, flushLocationTrail } from '../services/locationTrail';
 
 interface SensorConfig {
   isMonitoring: boolean; // Global master switch
@@ -177,6 +178,13 @@ export const useAppSensors = ({
           }
 
           const { latitude, longitude } = pos.coords;
+          recordLocationFix({
+            latitude,
+            longitude,
+            accuracy: pos.coords.accuracy,
+            timestamp: pos.timestamp,
+            speed: pos.coords.speed ?? undefined,
+          });
           let currentAddress = locationRef.current?.address || 'Locating...';
           if (currentAddress === 'Location Sharing Off') currentAddress = 'Locating...';
 
@@ -205,6 +213,7 @@ export const useAppSensors = ({
 
       return () => {
         if (watchId) Geolocation.clearWatch({ id: watchId });
+        flushLocationTrail();
       };
 
     } else if ('geolocation' in navigator) {
@@ -0,0 +1,76 @@
+import { Capacitor } from '@capacitor/core';
+
+interface StartupTimeline {
+  launchedAt: number;
+  coldStart: boolean;
+  complete: boolean;
+  marks: Record<string, number>;
+  sections: Record<string, number>;
+  history?: Array<{ launchedAt: number; coldStart: boolean; marks: Record<string, number> }>;
+}
+
+// One day of background energy accounting; cpuShare is the owner's share of process CPU
+export interface EnergyDay {
+  date: string;
+  processCpuMs: number;
+  attributedCpuMs: number;
+  wakeLockMs: number;
+  owners: Record<string, { cpuMs: number; wallMs: number; runs: number; wakeLockMs: number; wakeLocks: number; cpuShare: number }>;
+}
+
+// Text export of the native reminder event log; uri is a content:// uri that can be shared
+export interface EventLogExport {
+  path: string;
+  uri: string;
+  events: number;
+  bytes: number;
+}
+
+interface AppDiagnosticsPlugin {
+  getStartupTimeline: (options?: { includeHistory?: boolean }) => Promise<StartupTimeline>;
+  markStartup: (options: { name: string }) => Promise<void>;
+  getEnergyReport: (options?: { days?: number }) => Promise<{ days: EnergyDay[] }>;
+  exportEventLog: () => Promise<EventLogExport>;
+}
+
+const plugin: AppDiagnosticsPlugin | null = Capacitor.isNativePlatform()
+  ? ((window as any).Capacitor?.Plugins?.AppDiagnostics as AppDiagnosticsPlugin)
+  : null;
+
+export const getStartupTimeline = async (includeHistory = false) => {
+  if (!plugin) return null;
+  try {
+    return await plugin.getStartupTimeline({ includeHistory });
+  } catch (e) {
+    console.error('[AppDiagnostics] getStartupTimeline failed', e);
+    return null;
+  }
+};
+
+// Record a JS milestone (stored as "js.<name>") in the native startup timeline
+export const markStartup = (name: string) => {
+  if (!plugin) return;
+  plugin.markStartup({ name }).catch((e) => console.error('[AppDiagnostics] markStartup failed', e));
+};
+
+// Daily per-component CPU / wakelock totals (receivers, fall sensors, geofence), newest first
+export const getEnergyReport = async (days = 7): Promise<EnergyDay[]> => {
+  if (!plugin) return [];
+  try {
+    return (await plugin.getEnergyReport({ days })).days;
+  } catch (e) {
+    console.error('[AppDiagnostics] getEnergyReport failed', e);
+    return [];
+  }
+};
+
+// Writes the on-device reminder event log (scheduled / fired / notified / actions) to a shareable file
+export const exportEventLog = async (): Promise<EventLogExport | null> => {
+  if (!plugin) return null;
+  try {
+    return await plugin.exportEventLog();
+  } catch (e) {
+    console.error('[AppDiagnostics] exportEventLog failed', e);
+    return null;
+  }
+};
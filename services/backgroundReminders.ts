@@ -1,12 +1,138 @@
 import { Capacitor, registerPlugin } from '@capacitor/core';
-import type { Medicine } from '../types';
+import type { Medicine, MedicineLog } from '../types';
+
+export interface AdherenceWindow {
+  adherence: number | null; // TAKEN share of doses, null without doses
+  doses: number;
+  taken: number;
+  skipped: number;
+  missed: number;
+  snoozed: number;
+  late: number[]; // TAKEN doses per lateness bin, see lateBinsMin
+}
+
+export interface AdherenceStats {
+  currentStreak: number;
+  bestStreak: number;
+  d7: AdherenceWindow;
+  d30: AdherenceWindow;
+  d90: AdherenceWindow;
+}
+
+export interface AdherenceSnapshot {
+  lateBinsMin: number[]; // bin edges in minutes: [15, 30, 60, 120] -> <15, 15-30, 30-60, 60-120, 120+
+  household?: AdherenceStats;
+  medicines: Record<string, AdherenceStats>;
+}
+
+const ADHERENCE_LATE_BINS_MIN = [15, 30, 60, 120];
+const DAY_MS = 24 * 60 * 60 * 1000;
+
+const minutesOfDay = (time?: string): number | null => {
+  const match = time?.match(/(\d{1,2}):(\d{2})\s*(AM|PM)?/i);
+  if (!match) return null;
+  let hours = Number(match[1]) % (match[3] ? 12 : 24);
+  if (match[3]?.toUpperCase() === 'PM') hours += 12;
+  return hours * 60 + Number(match[2]);
+};
+
+/**
+ * The native index's snapshot rebuilt from the household's medicine logs, for devices that
+ * never ran the reminders (a caregiver's phone). One status per dose instance
+ * (medicine, scheduled time, day); TAKEN wins over MISSED / SKIPPED for the same dose.
+ */
+export const adherenceFromLogs = (logs: MedicineLog[], now = Date.now()): AdherenceSnapshot => {
+  const localDay = (time: number) => Math.floor((time - new Date(time).getTimezoneOffset() * 60_000) / DAY_MS);
+  const today = localDay(now);
+  const doses = new Map<string, { day: number; log: MedicineLog }>();
+  for (const log of logs) {
+    if (log.status !== 'TAKEN' && log.status !== 'MISSED' && log.status !== 'SKIPPED') continue;
+    const day = localDay(new Date(log.date).getTime());
+    if (day <= today - 90 || day > today) continue;
+    const key = `${log.medicineId}|${log.scheduledTime}|${day}`;
+    const existing = doses.get(key);
+    if (!existing || log.status === 'TAKEN') doses.set(key, { day, log });
+  }
+
+  const emptyWindow = (): AdherenceWindow => ({
+    adherence: null, doses: 0, taken: 0, skipped: 0, missed: 0, snoozed: 0,
+    late: new Array(ADHERENCE_LATE_BINS_MIN.length + 1).fill(0),
+  });
+  const windows = { d7: emptyWindow(), d30: emptyWindow(), d90: emptyWindow() };
+  const broken = new Map<number, boolean>(); // day -> any skipped / missed dose
+  for (const { day, log } of doses.values()) {
+    broken.set(day, (broken.get(day) ?? false) || log.status !== 'TAKEN');
+    const scheduled = minutesOfDay(log.scheduledTime);
+    const actual = minutesOfDay(log.actualTime);
+    let bin = -1;
+    if (log.status === 'TAKEN' && scheduled !== null && actual !== null) {
+      const delay = Math.max(0, (actual - scheduled + 1440) % 1440);
+      bin = ADHERENCE_LATE_BINS_MIN.findIndex((edge) => delay < edge);
+      if (bin < 0) bin = ADHERENCE_LATE_BINS_MIN.length;
+    }
+    for (const [size, w] of [[7, windows.d7], [30, windows.d30], [90, windows.d90]] as const) {
+      if (day <= today - size) continue;
+      w.doses++;
+      if (log.status === 'TAKEN') w.taken++;
+      else if (log.status === 'SKIPPED') w.skipped++;
+      else w.missed++;
+      if (bin >= 0) w.late[bin]++;
+    }
+  }
+  for (const w of Object.values(windows)) {
+    w.adherence = w.doses > 0 ? Math.round((w.taken * 100) / w.doses) : null;
+  }
+
+  // Streaks: a day with doses and none skipped / missed extends; days without doses don't count
+  let streak = 0;
+  let bestStreak = 0;
+  let currentStreak = 0;
+  for (const day of [...broken.keys()].sort((a, b) => a - b)) {
+    streak = broken.get(day) ? 0 : streak + 1;
+    bestStreak = Math.max(bestStreak, streak);
+    currentStreak = streak;
+  }
+
+  return {
+    lateBinsMin: ADHERENCE_LATE_BINS_MIN,
+    household: { currentStreak, bestStreak, ...windows },
+    medicines: {},
+  };
+};
+
+export interface LatencyHistogram {
+  counts: number[]; // per bucket, see bucketsSec; the last bucket is open-ended
+  count: number;
+  meanMs: number;
+  maxMs: number;
+  early: number; // alarms that fired before the planned time
+  p50Ms: number;
+  p90Ms: number;
+}
+
+type LatencyStages = Partial<Record<'alarm' | 'notify' | 'tts' | 'response', LatencyHistogram>>;
+
+export interface DeliveryLatencySnapshot {
+  bucketsSec: number[];
+  days: Array<{ date: string; regular?: LatencyStages; critical?: LatencyStages }>;
+}
+
+// Shared care-home devices: omit residentId for the device's own senior
+interface ResidentScope {
+  residentId?: string;
+}
+
+export interface ResidentProfile {
+  name: string;
+  householdId?: string;
+}
 
 /**
  * Native Medicine Reminders Plugin Interface
  * Handles background medicine reminders that work even when app is closed
  */
 interface MedicineRemindersPluginInterface {
-  scheduleReminder(options: {
+  scheduleReminder(options: ResidentScope & {
     medicineId: string;
     medicineName: string;
     dosage?: string;
@@ -16,26 +142,28 @@ interface MedicineRemindersPluginInterface {
     voiceReminderEnabled?: boolean;
   }): Promise<{ success: boolean; medicineId: string; time: string }>;
 
-  scheduleMedicineReminders(options: {
+  scheduleMedicineReminders(options: ResidentScope & {
     medicineId: string;
     medicineName: string;
     dosage?: string;
     times: string[];
     isCritical?: boolean;
+    startDate?: number; // epoch ms; bounds the days the widget counts the medicine as due
+    endDate?: number;
     instructions?: string;
     voiceReminderEnabled?: boolean;
   }): Promise<{ success: boolean; medicineId: string; scheduledCount: number }>;
 
-  cancelReminder(options: {
+  cancelReminder(options: ResidentScope & {
     medicineId: string;
     time: string;
   }): Promise<void>;
 
-  cancelMedicineReminders(options: {
+  cancelMedicineReminders(options: ResidentScope & {
     medicineId: string;
   }): Promise<void>;
 
-  getPendingActions(): Promise<{
+  getPendingActions(options?: ResidentScope): Promise<{
     actions: Array<{
       medicineId: string;
       action: 'taken' | 'snoozed' | 'skipped';
@@ -43,16 +171,17 @@ interface MedicineRemindersPluginInterface {
     }>;
   }>;
 
-  clearPendingActions(): Promise<void>;
+  clearPendingActions(options?: ResidentScope): Promise<void>;
 
   requestBatteryOptimizationExemption(): Promise<void>;
 
   isBatteryOptimizationExempted(): Promise<{ isExempted: boolean }>;
   
   // Caregiver alert methods
-  getPendingCaregiverAlerts(): Promise<{
+  getPendingCaregiverAlerts(options?: ResidentScope): Promise<{
     alerts: Array<{
       type: 'MEDICINE_MISSED';
+      residentId?: string;
       medicineId: string;
       medicineName: string;
       dosage: string;
@@ -63,23 +192,37 @@ interface MedicineRemindersPluginInterface {
     }>;
   }>;
   
-  clearPendingCaregiverAlerts(): Promise<void>;
+  clearPendingCaregiverAlerts(options?: ResidentScope): Promise<void>;
   
-  markMedicineTaken(options: {
+  markMedicineTaken(options: ResidentScope & {
     medicineId: string;
     scheduledTime: string;
   }): Promise<void>;
   
+  // Rolling adherence index (7/30/90 days), constant time per medicine
+  getAdherence(options?: ResidentScope & { medicineId?: string }): Promise<AdherenceSnapshot>;
+  
+  // Reminder delivery latency histograms per day and medicine class
+  getDeliveryLatency(options?: { days?: number }): Promise<DeliveryLatencySnapshot>;
+  
   // Household ID methods for native Firebase sync
   setHouseholdId(options: { householdId: string }): Promise<void>;
   getHouseholdId(): Promise<{ householdId: string | null }>;
   
+  // Native follow of caregiver medicine edits while the app is closed (senior devices)
+  setRemoteScheduleSync(options: { enabled: boolean }): Promise<{ enabled: boolean; running: boolean; hosted: boolean }>;
+  
   // Exact alarm permission methods (Android 12+)
   canScheduleExactAlarms(): Promise<{ canSchedule: boolean }>;
   requestExactAlarmPermission(): Promise<void>;
   
+  // Resident profiles on shared devices
+  registerResident(options: { residentId: string; name: string; householdId?: string }): Promise<void>;
+  listResidents(): Promise<{ residents: Record<string, ResidentProfile> }>;
+  removeResident(options: { residentId: string }): Promise<void>;
+  
   // Debug methods
-  getScheduledReminders(): Promise<{ 
+  getScheduledReminders(options?: ResidentScope): Promise<{ 
     reminders: Array<{
       medicineId: string;
       medicineName: string;
@@ -108,6 +251,8 @@ const MedicineRemindersNative = registerPlugin<MedicineRemindersPluginInterface>
  */
 class BackgroundMedicineReminders {
   private isNativeAvailable: boolean;
+  // Resolves true while native RemoteScheduleSync follows the household's medicines itself
+  private remoteSyncRunning: Promise<boolean> = Promise.resolve(false);
 
   constructor() {
     this.isNativeAvailable = Capacitor.isNativePlatform() && Capacitor.getPlatform() === 'android';
@@ -149,7 +294,9 @@ class BackgroundMedicineReminders {
         times: times,
         isCritical: medicine.isCritical || false,
         instructions: medicine.instructions || '',
-        voiceReminderEnabled: medicine.voiceReminderEnabled !== false // Default true
+        voiceReminderEnabled: medicine.voiceReminderEnabled !== false, // Default true
+        startDate: medicine.startDate ? new Date(medicine.startDate).getTime() : 0,
+        endDate: medicine.endDate ? new Date(medicine.endDate).getTime() : 0
       });
 
       console.log(`[BackgroundReminders] Scheduled ${result.scheduledCount} reminders for ${medicine.name}`);
@@ -320,6 +467,39 @@ class BackgroundMedicineReminders {
     }
   }
 
+  /**
+   * Adherence, streaks and late-dose distribution from the native index
+   * (fed by notification actions and missed-dose checks on this device). With a residentId
+   * the medicines and the household total cover that resident only.
+   */
+  async getAdherence(medicineId?: string, residentId?: string): Promise<AdherenceSnapshot | null> {
+    if (!this.isNativeAvailable) return null;
+
+    try {
+      return await MedicineRemindersNative.getAdherence({
+        ...(medicineId ? { medicineId } : {}),
+        ...(residentId ? { residentId } : {}),
+      });
+    } catch (error) {
+      console.error('[BackgroundReminders] Failed to get adherence:', error);
+      return null;
+    }
+  }
+
+  /**
+   * How late reminders fired and were answered on this device, newest day first
+   */
+  async getDeliveryLatency(days = 7): Promise<DeliveryLatencySnapshot | null> {
+    if (!this.isNativeAvailable) return null;
+
+    try {
+      return await MedicineRemindersNative.getDeliveryLatency({ days });
+    } catch (error) {
+      console.error('[BackgroundReminders] Failed to get delivery latency:', error);
+      return null;
+    }
+  }
+
   /**
    * Mark a medicine as taken (cancels all missed follow-up notifications)
    * Call this when user marks medicine as taken in-app
@@ -350,6 +530,29 @@ class BackgroundMedicineReminders {
     }
   }
 
+  /**
+   * Let native alarms follow caregiver edits while the app is closed
+   * Enable on the senior's device only; a caregiver's phone must not ring
+   * The native listeners are hosted by the fall detection service; with it off, edits made
+   * while the app is closed only land on the next open, through scheduleAllMedicines
+   */
+  async setRemoteScheduleSync(enabled: boolean): Promise<void> {
+    if (!this.isNativeAvailable) return;
+
+    this.remoteSyncRunning = MedicineRemindersNative.setRemoteScheduleSync({ enabled })
+      .then((result) => {
+        if (enabled && !result.hosted) {
+          console.warn('[BackgroundReminders] Remote schedule sync needs fall detection running; edits apply on next app open');
+        }
+        return result.running;
+      })
+      .catch((error) => {
+        console.error('[BackgroundReminders] Failed to set remote schedule sync:', error);
+        return false;
+      });
+    await this.remoteSyncRunning;
+  }
+
   /**
    * Get stored household ID from native
    */
@@ -367,10 +570,16 @@ class BackgroundMedicineReminders {
 
   /**
    * Schedule reminders for all medicines
-   * Useful to call on app startup to ensure all reminders are scheduled
+   * Useful to call on app startup to ensure all reminders are scheduled.
+   * Skipped while native remote schedule sync is running: it already diffs every medicine
+   * against the stored alarms, and a cancel + reschedule pass here would race it.
    */
   async scheduleAllMedicines(medicines: Medicine[]): Promise<void> {
     if (!this.isNativeAvailable) return;
+    if (await this.remoteSyncRunning) {
+      console.log('[BackgroundReminders] Native schedule sync is running, not rescheduling');
+      return;
+    }
 
     console.log(`[BackgroundReminders] Scheduling ${medicines.length} medicines...`);
     
@@ -1,9 +1,14 @@
 import { Capacitor } from '@capacitor/core';
+import { onNativeEvent } from './nativeEvents';
 
 // Minimal plugin interface
 interface FallDetectionPlugin {
   start: () => Promise<void>;
   stop: () => Promise<void>;
+  getStats: (options?: { windowMinutes?: number }) => Promise<Record<string, unknown>>;
+  reportFalseAlarm: () => Promise<void>;
+  setStatsSync: (options: { enabled: boolean }) => Promise<{ enabled: boolean }>;
+  getInactivity: () => Promise<{ lastMovementAt: number; inactiveMs: number; monitoring: boolean }>;
 }
 
 const plugin: FallDetectionPlugin | null = Capacitor.isNativePlatform()
@@ -28,9 +33,39 @@ export const stopFallDetection = async () => {
   }
 };
 
+export const getFallDetectionStats = async (windowMinutes = 15) => {
+  if (!plugin) return null;
+  try {
+    return await plugin.getStats({ windowMinutes });
+  } catch (e) {
+    console.error('[FallDetection] getStats failed', e);
+    return null;
+  }
+};
+
+// How long the phone has been still, as seen by the fall detection service
+export const getInactivity = async () => {
+  if (!plugin) return null;
+  try {
+    return await plugin.getInactivity();
+  } catch (e) {
+    console.error('[FallDetection] getInactivity failed', e);
+    return null;
+  }
+};
+
+// Tell the native detector the user dismissed the countdown (false positive)
+export const reportFallFalseAlarm = async () => {
+  if (!plugin) return;
+  try {
+    await plugin.reportFalseAlarm();
+  } catch (e) {
+    console.error('[FallDetection] reportFalseAlarm failed', e);
+  }
+};
+
+// Delivered once through the native event queue, even if the fall happened before JS loaded
 export const subscribeFallDetected = (handler: () => void) => {
   if (!Capacitor.isNativePlatform()) return () => {};
-  const listener = () => handler();
-  window.addEventListener('fallDetected', listener);
-  return () => window.removeEventListener('fallDetected', listener);
+  return onNativeEvent('fallDetected', () => handler());
 };
@@ -4,10 +4,24 @@ import { LocalNotifications } from '@capacitor/local-notifications';
 import { db } from './firebase';
 import { ref, push, set, onValue } from 'firebase/database';
 import { Geofence, GeofenceEvent } from '../types';
+import { onNativeEvent } from './nativeEvents';
 
 const STORAGE_KEY = 'safenest_geofences';
 const NOTIFICATION_ID_BASE = 60000;
 
+// Native geofence monitor (android GeofencePlugin); keeps running in the background
+interface NativeGeofencePlugin {
+  setGeofences: (options: { geofences: Geofence[] }) => Promise<Record<string, unknown>>;
+  start: () => Promise<Record<string, unknown>>;
+  stop: () => Promise<Record<string, unknown>>;
+  requestBackgroundPermission: () => Promise<{ backgroundGranted?: boolean }>;
+  getStatus: () => Promise<{ inside?: string[]; lastFix?: { latitude: number; longitude: number } }>;
+}
+
+const nativePlugin: NativeGeofencePlugin | null = Capacitor.getPlatform() === 'android'
+  ? ((window as any).Capacitor?.Plugins?.Geofence as NativeGeofencePlugin) || null
+  : null;
+
 /**
  * Geofence Service
  * 
@@ -24,6 +38,7 @@ class GeofenceService {
   private householdId: string | null = null;
   private onEventCallback: ((event: GeofenceEvent) => void) | null = null;
   private insideGeofences: Set<string> = new Set(); // Track which geofences senior is inside
+  private unsubscribeNative: (() => void) | null = null;
 
   constructor() {
     this.loadGeofences();
@@ -47,6 +62,12 @@ class GeofenceService {
     } catch (e) {
       console.error('[Geofence] Failed to save:', e);
     }
+    this.pushToNative();
+  }
+
+  private pushToNative(): void {
+    nativePlugin?.setGeofences({ geofences: this.geofences })
+      .catch((e) => console.error('[Geofence] Native sync failed:', e));
   }
 
   /**
@@ -183,7 +204,7 @@ class GeofenceService {
       return;
     }
 
-    if (this.watchId) return; // Already monitoring
+    if (this.watchId || this.unsubscribeNative) return; // Already monitoring
 
     try {
       // Request permissions
@@ -193,6 +214,11 @@ class GeofenceService {
         return;
       }
 
+      if (nativePlugin) {
+        await this.startNativeMonitoring(nativePlugin);
+        return;
+      }
+
       // Get initial position
       const position = await Geolocation.getCurrentPosition({
         enableHighAccuracy: true,
@@ -233,10 +259,65 @@ class GeofenceService {
     }
   }
 
+  /**
+   * Hand monitoring to the native engine: it evaluates fences, notifies and writes
+   * geofenceEvents itself, and reports transitions back here for the UI
+   */
+  private async startNativeMonitoring(plugin: NativeGeofencePlugin): Promise<void> {
+    this.unsubscribeNative = onNativeEvent('geofence', (payload) => this.handleNativeEvent(payload));
+    await plugin.setGeofences({ geofences: this.geofences });
+    const status = await plugin.start();
+    this.applyNativeStatus(status as any);
+    // "Allow all the time" lets the native service come back after a reboot or background kill
+    if (!(status as any)?.backgroundGranted) {
+      plugin.requestBackgroundPermission()
+        .then((result) => {
+          if (!result.backgroundGranted) console.warn('[Geofence] Background location denied; monitoring stops after reboot');
+        })
+        .catch((e) => console.error('[Geofence] Background permission request failed:', e));
+    }
+    console.log('[Geofence] Started native monitoring');
+  }
+
+  private applyNativeStatus(status: { inside?: string[]; lastFix?: { latitude: number; longitude: number } } | null): void {
+    if (!status) return;
+    if (status.inside) this.insideGeofences = new Set(status.inside);
+    if (status.lastFix) this.lastPosition = { lat: status.lastFix.latitude, lng: status.lastFix.longitude };
+  }
+
+  private handleNativeEvent(payload: Record<string, unknown>): void {
+    const geofenceId = String(payload.geofenceId);
+    const eventType = payload.eventType as GeofenceEvent['eventType'];
+    const lat = Number(payload.latitude);
+    const lng = Number(payload.longitude);
+
+    this.lastPosition = { lat, lng };
+    if (eventType === 'EXIT') this.insideGeofences.delete(geofenceId);
+    else this.insideGeofences.add(geofenceId);
+
+    if (this.onEventCallback) {
+      this.onEventCallback({
+        id: String(payload.id),
+        geofenceId,
+        geofenceName: String(payload.geofenceName),
+        eventType,
+        timestamp: new Date(Number(payload.timestamp)),
+        location: { latitude: lat, longitude: lng },
+        notifiedCaregivers: [],
+      });
+    }
+  }
+
   /**
    * Stop monitoring
    */
   async stopMonitoring(): Promise<void> {
+    if (this.unsubscribeNative) {
+      this.unsubscribeNative();
+      this.unsubscribeNative = null;
+      await nativePlugin?.stop().catch((e) => console.error('[Geofence] Native stop failed:', e));
+      console.log('[Geofence] Stopped native monitoring');
+    }
     if (this.watchId) {
       await Geolocation.clearWatch({ id: this.watchId });
       this.watchId = null;
@@ -14,6 +14,28 @@ export const requestPermissions = async (): Promise<boolean> => {
   return res?.started === true;
 };
 
+export type HealthConnectStatus = { status: 'available' | 'updateRequired' | 'unavailable'; granted: boolean };
+
+export const getHealthConnectStatus = async (): Promise<HealthConnectStatus> => {
+  if (!Plugin?.getHealthConnectStatus) return { status: 'unavailable', granted: false };
+  try {
+    return await Plugin.getHealthConnectStatus();
+  } catch (e) {
+    return { status: 'unavailable', granted: false };
+  }
+};
+
+// Opens Health Connect's permission screen; resolves once the user returns
+export const requestHealthConnectPermissions = async (): Promise<HealthConnectStatus> => {
+  if (!Plugin?.requestHealthConnectPermissions) return { status: 'unavailable', granted: false };
+  try {
+    return await Plugin.requestHealthConnectPermissions();
+  } catch (e) {
+    console.error('[GoogleFit] Health Connect permission request failed:', e);
+    return { status: 'unavailable', granted: false };
+  }
+};
+
 export const ensureSubscriptions = async (): Promise<boolean> => {
   if (!Plugin) return false;
   try {
@@ -39,4 +61,63 @@ export const getVitals = async (): Promise<{steps: number; heartRate: number | n
   }
 };
 
-export default { hasPermissions, requestPermissions, ensureSubscriptions, getVitals };
\ No newline at end of file
+export interface HeartRateSample {
+  bpm: number;
+  time: number;
+  source: string;
+}
+
+/**
+ * Follow live heart rate through native "heartRate" events (at most one per throttleMs).
+ * If starting fails the subscription retries every retryMs until stopped.
+ * If the native stream ends for good (e.g. 'NOT_SIGNED_IN') onError is called once and
+ * nothing is retried; start again after signing in.
+ * Returns a function that stops the stream.
+ */
+export const startLiveHeartRate = (
+  onSample: (sample: HeartRateSample) => void,
+  options: { throttleMs?: number; retryMs?: number; onError?: (code: string) => void } = {}
+): (() => void) => {
+  if (!Plugin) return () => {};
+  let stopped = false;
+  let listener: { remove: () => Promise<void> } | null = null;
+  let errorListener: { remove: () => Promise<void> } | null = null;
+  let retry: ReturnType<typeof setTimeout> | null = null;
+
+  const start = async () => {
+    try {
+      if (!listener) {
+        listener = await Plugin.addListener('heartRate', (e: HeartRateSample) => {
+          if (!stopped) onSample({ bpm: Number(e.bpm), time: Number(e.time), source: e.source });
+        });
+      }
+      if (!errorListener) {
+        errorListener = await Plugin.addListener('heartRateError', (e: { code: string }) => {
+          if (stopped) return;
+          stopped = true;
+          listener?.remove();
+          errorListener?.remove();
+          options.onError?.(e.code);
+        });
+      }
+      if (stopped) return;
+      await Plugin.startLiveHeartRate({ throttleMs: options.throttleMs });
+    } catch (e) {
+      console.warn('Live heart rate failed to start, retrying', e);
+      if (!stopped) retry = setTimeout(start, options.retryMs ?? 30_000);
+    }
+  };
+  start();
+
+  return () => {
+    stopped = true;
+    if (retry) clearTimeout(retry);
+    listener?.remove();
+    listener = null;
+    errorListener?.remove();
+    errorListener = null;
+    Plugin.stopLiveHeartRate().catch(() => {});
+  };
+};
+
+export default { hasPermissions, requestPermissions, getHealthConnectStatus, requestHealthConnectPermissions, ensureSubscriptions, getVitals, startLiveHeartRate };
\ No newline at end of file
@@ -1,5 +1,58 @@
+import { Capacitor } from '@capacitor/core';
 import { VitalReading, MedicineLog, HealthPrediction, HealthRiskScore } from '../types';
 
+// Native incremental engine (android HealthAnalyticsPlugin); keeps running state so a
+// query costs the same however long the history is
+interface NativeAnalysis {
+  predictions: Array<Omit<HealthPrediction, 'timestamp'> & { timestamp: number }>;
+  riskScore: HealthRiskScore;
+  hasEnoughData: boolean;
+  // Newest reading time the engine has per vital type
+  watermarks: Record<string, number>;
+  added: number;
+}
+
+interface HealthAnalyticsPlugin {
+  analyze: (options: { householdId: string; vitals: NativeVital[]; logs: NativeLog[]; logsFrom: number }) => Promise<NativeAnalysis>;
+}
+
+interface NativeVital {
+  id: string;
+  type: VitalReading['type'];
+  timestamp: number;
+  value: VitalReading['value'];
+  systolic?: number;
+  diastolic?: number;
+}
+
+export interface NativeLog {
+  id: string;
+  medicineId: string;
+  medicineName: string;
+  scheduledTime: string;
+  date: number;
+  status: MedicineLog['status'];
+}
+
+export const toNativeLog = (l: MedicineLog, date: number): NativeLog => ({
+  id: l.id,
+  medicineId: l.medicineId,
+  medicineName: l.medicineName,
+  scheduledTime: l.scheduledTime,
+  date,
+  status: l.status,
+});
+
+const analyticsPlugin: HealthAnalyticsPlugin | null = Capacitor.getPlatform() === 'android'
+  ? ((window as any).Capacitor?.Plugins?.HealthAnalytics as HealthAnalyticsPlugin) || null
+  : null;
+
+// Per household and vital type: readings before this time are already counted natively
+const nativeWatermarks = new Map<string, Record<string, number>>();
+const LOG_WINDOW_MS = 8 * 24 * 60 * 60 * 1000;
+
+const toMillis = (d: Date | string) => (d instanceof Date ? d : new Date(d)).getTime();
+
 /**
  * Minimum days of data required before showing health alerts
  * Set to 15 days to ensure reliable predictions (not based on 1-2 days of data)
@@ -9,19 +62,9 @@ const MINIMUM_DATA_DAYS = 15;
 /**
  * Check if we have enough historical data to generate predictions
  */
-function hasEnoughDataForPredictions(vitals: VitalReading[]): boolean {
-  if (vitals.length === 0) return false;
-
-  // Get oldest vital reading timestamp
-  const oldestVital = vitals.reduce((oldest, current) => {
-    const currentDate = current.timestamp instanceof Date ? current.timestamp : new Date(current.timestamp);
-    const oldestDate = oldest.timestamp instanceof Date ? oldest.timestamp : new Date(oldest.timestamp);
-    return currentDate < oldestDate ? current : oldest;
-  });
-
-  const oldestDate = oldestVital.timestamp instanceof Date ? oldestVital.timestamp : new Date(oldestVital.timestamp);
-  const daysDifference = Math.floor((Date.now() - oldestDate.getTime()) / (24 * 60 * 60 * 1000));
-
+function hasEnoughDataForPredictions(oldestTimestamp: number): boolean {
+  if (!Number.isFinite(oldestTimestamp)) return false;
+  const daysDifference = Math.floor((Date.now() - oldestTimestamp) / (24 * 60 * 60 * 1000));
   return daysDifference >= MINIMUM_DATA_DAYS;
 }
 
@@ -37,15 +80,24 @@ export function analyzeHealthData(
 } {
   const predictions: HealthPrediction[] = [];
 
-  // Get vitals by type
-  const bpReadings = vitals.filter((v) => v.type === 'bloodPressure');
-  const tempReadings = vitals.filter((v) => v.type === 'temperature');
-  const weightReadings = vitals.filter((v) => v.type === 'weight');
-  const hrReadings = vitals.filter((v) => v.type === 'heartRate');
-  const bgReadings = vitals.filter((v) => v.type === 'bloodSugar');
+  // Group vitals by type and find the oldest reading in one pass
+  const bpReadings: VitalReading[] = [];
+  const tempReadings: VitalReading[] = [];
+  const weightReadings: VitalReading[] = [];
+  const hrReadings: VitalReading[] = [];
+  const bgReadings: VitalReading[] = [];
+  let oldestTimestamp = Infinity;
+  for (const v of vitals) {
+    oldestTimestamp = Math.min(oldestTimestamp, toMillis(v.timestamp));
+    if (v.type === 'bloodPressure') bpReadings.push(v);
+    else if (v.type === 'temperature') tempReadings.push(v);
+    else if (v.type === 'weight') weightReadings.push(v);
+    else if (v.type === 'heartRate') hrReadings.push(v);
+    else if (v.type === 'bloodSugar') bgReadings.push(v);
+  }
 
   // Only generate predictions if we have 15+ days of data
-  if (hasEnoughDataForPredictions(vitals)) {
+  if (hasEnoughDataForPredictions(oldestTimestamp)) {
     // Detect various health risks
     const hypertensionPred = detectHypertensionRisk(bpReadings);
     if (hypertensionPred) predictions.push(hypertensionPred);
@@ -78,6 +130,60 @@ export function analyzeHealthData(
   return { predictions, riskScore };
 }
 
+/**
+ * Hand the native engine (and the household records native reports read) whatever it has
+ * not seen yet: readings newer than its watermark for their type and the last 8 days of logs.
+ * Android only; throws elsewhere.
+ */
+export async function syncNativeAnalytics(
+  householdId: string,
+  vitals: VitalReading[],
+  medicineLogs: MedicineLog[]
+): Promise<NativeAnalysis> {
+  if (!analyticsPlugin) throw new Error('Native analytics are only available on Android');
+  const logCutoff = Date.now() - LOG_WINDOW_MS;
+  const marks = nativeWatermarks.get(householdId) ?? {};
+  const newVitals: NativeVital[] = [];
+  for (const v of vitals) {
+    const timestamp = toMillis(v.timestamp);
+    if (timestamp < (marks[v.type] ?? 0)) continue;
+    newVitals.push({ id: v.id, type: v.type, timestamp, value: v.value, systolic: v.systolic, diastolic: v.diastolic });
+  }
+  const recentLogs: NativeLog[] = [];
+  for (const l of medicineLogs) {
+    const date = toMillis(l.date);
+    if (date >= logCutoff) recentLogs.push(toNativeLog(l, date));
+  }
+
+  const result = await analyticsPlugin.analyze({ householdId, vitals: newVitals, logs: recentLogs, logsFrom: logCutoff });
+  nativeWatermarks.set(householdId, result.watermarks ?? {});
+  return result;
+}
+
+/**
+ * Same result as analyzeHealthData, computed by the native engine when available.
+ * Only readings newer than the native watermark and the last 8 days of logs cross the
+ * bridge; falls back to the JS analysis elsewhere or on error.
+ * Native state is kept per [householdId], so switching seniors never mixes their data.
+ */
+export async function analyzeHealthDataIncremental(
+  householdId: string,
+  vitals: VitalReading[],
+  medicineLogs: MedicineLog[]
+): Promise<ReturnType<typeof analyzeHealthData>> {
+  if (!analyticsPlugin) return analyzeHealthData(vitals, medicineLogs);
+  try {
+    const result = await syncNativeAnalytics(householdId, vitals, medicineLogs);
+    return {
+      predictions: result.predictions.map((p) => ({ ...p, timestamp: new Date(p.timestamp) })),
+      riskScore: result.riskScore,
+    };
+  } catch (e) {
+    console.error('[HealthAnalytics] native analyze failed, using JS analysis', e);
+    return analyzeHealthData(vitals, medicineLogs);
+  }
+}
+
 /**
  * Calculate overall health risk score
  */
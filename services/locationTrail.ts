@@ -0,0 +1,76 @@
+import { Capacitor } from '@capacitor/core';
+
+// On-device location trail (android LocationTrailStore): simplified, compressed daily files
+
+interface TrailFix {
+  latitude: number;
+  longitude: number;
+  accuracy: number;
+  timestamp: number;
+  speed?: number;
+}
+
+export interface LocationTrail {
+  t: number[];
+  lat: number[];
+  lng: number[];
+  acc: number[];
+}
+
+interface LocationTrailPlugin {
+  record: (options: { fixes: TrailFix[] }) => Promise<{ recorded: number }>;
+  getTrail: (options?: { start?: number; end?: number }) => Promise<LocationTrail>;
+  exportTrail: (options: { start?: number; end?: number; format?: 'geojson' | 'csv' }) =>
+    Promise<{ path: string; uri: string; points: number; bytes: number }>;
+  getFootprint: () => Promise<{ bytes: number; days: number }>;
+}
+
+const plugin: LocationTrailPlugin | null = Capacitor.getPlatform() === 'android'
+  ? ((window as any).Capacitor?.Plugins?.LocationTrail as LocationTrailPlugin) || null
+  : null;
+
+// Fixes are sent in batches so a 1 Hz watch does not cross the bridge every second
+const FLUSH_INTERVAL_MS = 60_000;
+const FLUSH_SIZE = 30;
+let buffer: TrailFix[] = [];
+let lastFlush = Date.now();
+
+const flush = () => {
+  if (!plugin || buffer.length === 0) return;
+  const fixes = buffer;
+  buffer = [];
+  lastFlush = Date.now();
+  plugin.record({ fixes }).catch((e) => console.error('[LocationTrail] record failed', e));
+};
+
+export const recordLocationFix = (fix: TrailFix) => {
+  if (!plugin) return;
+  buffer.push(fix);
+  if (buffer.length >= FLUSH_SIZE || Date.now() - lastFlush >= FLUSH_INTERVAL_MS) flush();
+};
+
+export const flushLocationTrail = flush;
+
+/** Whether this device keeps a native trail (Android only) */
+export const isLocationTrailAvailable = () => plugin !== null;
+
+/** Trail for [start, end] (default: last 24 h) as parallel arrays */
+export const getLocationTrail = async (start?: number, end?: number) => {
+  if (!plugin) return null;
+  try {
+    return await plugin.getTrail({ start, end });
+  } catch (e) {
+    console.error('[LocationTrail] getTrail failed', e);
+    return null;
+  }
+};
+
+export const exportLocationTrail = async (start: number, end: number, format: 'geojson' | 'csv' = 'geojson') => {
+  if (!plugin) return null;
+  try {
+    return await plugin.exportTrail({ start, end, format });
+  } catch (e) {
+    console.error('[LocationTrail] exportTrail failed', e);
+    return null;
+  }
+};
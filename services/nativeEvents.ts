@@ -0,0 +1,104 @@
+import { Capacitor } from '@capacitor/core';
+
+// Native → JS event queue (android NativeEventBus).
+// Native buffers events until ready() is called, sends whatever is due as one 'nativeEvent'
+// window event ({ events: [...] }, each with an id), and keeps each queued until acked here.
+// Acks from one batch go back in one call.
+
+interface NativeEventsPlugin {
+  ready: () => Promise<{ delivered: number }>;
+  ack: (options: { eventIds: string[] }) => Promise<{ acked: number }>;
+}
+
+interface NativeEvent {
+  eventId: string;
+  type: string;
+  payload: Record<string, unknown>;
+}
+
+type Handler = (payload: Record<string, unknown>) => void;
+
+const plugin: NativeEventsPlugin | null = Capacitor.isNativePlatform()
+  ? ((window as any).Capacitor?.Plugins?.NativeEvents as NativeEventsPlugin)
+  : null;
+
+const handlers = new Map<string, Set<Handler>>();
+// Events that arrived before any handler for their type subscribed
+const unclaimed = new Map<string, NativeEvent[]>();
+const handled = new Set<string>();
+let readySignalled = false;
+let acks: string[] = [];
+
+// Events delivered in the same batch are acked together once the batch is processed
+const queueAck = (eventId: string) => {
+  acks.push(eventId);
+  if (acks.length > 1) return;
+  queueMicrotask(() => {
+    const eventIds = acks;
+    acks = [];
+    plugin?.ack({ eventIds }).catch((e) => console.error('[NativeEvents] ack failed', e));
+  });
+};
+
+const deliver = (event: NativeEvent) => {
+  const set = handlers.get(event.type);
+  if (!set || set.size === 0) {
+    const list = unclaimed.get(event.type) || [];
+    if (!list.some((e) => e.eventId === event.eventId)) list.push(event);
+    unclaimed.set(event.type, list);
+    return;
+  }
+  if (!handled.has(event.eventId)) {
+    handled.add(event.eventId);
+    set.forEach((handler) => {
+      try {
+        handler(event.payload || {});
+      } catch (e) {
+        console.error(`[NativeEvents] ${event.type} handler failed`, e);
+      }
+    });
+  }
+  queueAck(event.eventId);
+};
+
+const onWindowEvent = (event: any) => {
+  if (!Array.isArray(event?.events)) return;
+  for (const e of event.events) {
+    if (!e?.eventId || !e?.type) continue;
+    deliver({ eventId: e.eventId, type: e.type, payload: e.payload });
+  }
+};
+
+if (plugin) {
+  window.addEventListener('nativeEvent', onWindowEvent);
+}
+
+/** Subscribe to a native event type; events that arrived earlier are replayed once */
+export const onNativeEvent = (type: string, handler: Handler) => {
+  if (!plugin) return () => {};
+  const set = handlers.get(type) || new Set<Handler>();
+  set.add(handler);
+  handlers.set(type, set);
+
+  const waiting = unclaimed.get(type);
+  if (waiting) {
+    unclaimed.delete(type);
+    waiting.forEach(deliver);
+  }
+  return () => {
+    set.delete(handler);
+  };
+};
+
+/** Tell native the listener is installed; queued events are flushed right after */
+export const signalNativeEventsReady = async () => {
+  if (!plugin || readySignalled) return;
+  readySignalled = true;
+  try {
+    const res = await plugin.ready();
+    if (res?.delivered) console.log(`[NativeEvents] ${res.delivered} queued event(s) delivered`);
+  } catch (e) {
+    readySignalled = false;
+    console.error('[NativeEvents] ready failed', e);
+  }
+};
@@ -1,5 +1,6 @@
+import { Capacitor } from '@capacitor/core';
 import { VitalReading, MedicineLog, HealthReport, HealthPrediction, HealthRiskScore } from '../types';
-import { analyzeHealthData } from './healthPredictions';
+import { analyzeHealthData, NativeLog, syncNativeAnalytics, toNativeLog } from './healthPredictions';
 
 /**
  * Generate a weekly or monthly health report for a senior
@@ -209,3 +210,100 @@ export const shouldGenerateReport = (
 
   return lastReportDate < threshold;
 };
+
+// Native PDF reports (android HealthReportPlugin): the household's readings and medicine logs
+// live natively (fed by the incremental analytics sync), so a report call carries only its
+// range and options and the WebView never lays out the report. Resolves with a content:// uri.
+
+export interface NativeReportResult {
+  reportId: string;
+  path: string;
+  uri: string;
+  pages: number;
+  days: number;
+  bytes: number;
+}
+
+const toMillis = (d: Date | string) => (d instanceof Date ? d : new Date(d)).getTime();
+
+interface HealthReportPlugin {
+  generate: (options: {
+    householdId: string;
+    period: 'weekly' | 'monthly';
+    start?: number;
+    end?: number;
+    title?: string;
+    subject?: string;
+    reportId?: string;
+    open?: boolean;
+  }) => Promise<NativeReportResult>;
+  getCoverage: (options: { householdId: string }) => Promise<{ logsFrom: number | null }>;
+  backfillLogs: (options: { householdId: string; from: number; logs: NativeLog[] }) => Promise<{ added: number }>;
+  cancel: (options: { reportId: string }) => Promise<{ cancelled: boolean }>;
+  addListener: (
+    event: 'reportProgress',
+    handler: (e: { reportId: string; progress: number; stage: string }) => void
+  ) => Promise<{ remove: () => Promise<void> }>;
+}
+
+const reportPlugin: HealthReportPlugin | null = Capacitor.getPlatform() === 'android'
+  ? ((window as any).Capacitor?.Plugins?.HealthReport as HealthReportPlugin) || null
+  : null;
+
+export const isNativeReportAvailable = () => reportPlugin !== null;
+
+/**
+ * Generate the PDF natively for the household's period; onProgress gets 0..1. Rejects with
+ * code CANCELLED after cancelNativeHealthReport(reportId).
+ * vitals and medicineLogs are only used to top up the native records: new readings go
+ * through the incremental analytics sync, and logs older than that sync's window are sent
+ * once per household, the first time a report reaches back that far.
+ */
+export const generateNativeHealthReport = async (
+  householdId: string,
+  period: 'weekly' | 'monthly',
+  vitals: VitalReading[],
+  medicineLogs: MedicineLog[],
+  options: { reportId?: string; subject?: string; open?: boolean; onProgress?: (progress: number, stage: string) => void } = {}
+): Promise<NativeReportResult> => {
+  if (!reportPlugin) throw new Error('Native reports are only available on Android');
+  const reportId = options.reportId ?? `report_${Date.now()}`;
+  const end = Date.now();
+  const start = end - (period === 'weekly' ? 7 : 30) * 24 * 60 * 60 * 1000;
+
+  await syncNativeAnalytics(householdId, vitals, medicineLogs);
+  const { logsFrom } = await reportPlugin.getCoverage({ householdId });
+  if (logsFrom === null || logsFrom > start) {
+    const missing: NativeLog[] = [];
+    for (const l of medicineLogs) {
+      const date = toMillis(l.date);
+      if (date >= start && (logsFrom === null || date < logsFrom)) missing.push(toNativeLog(l, date));
+    }
+    await reportPlugin.backfillLogs({ householdId, from: start, logs: missing });
+  }
+
+  const listener = options.onProgress
+    ? await reportPlugin.addListener('reportProgress', (e) => {
+        if (e.reportId === reportId) options.onProgress!(e.progress, e.stage);
+      })
+    : null;
+  try {
+    return await reportPlugin.generate({
+      householdId,
+      period,
+      start,
+      end,
+      reportId,
+      subject: options.subject,
+      open: options.open,
+    });
+  } finally {
+    listener?.remove();
+  }
+};
+
+export const cancelNativeHealthReport = async (reportId: string) => {
+  if (!reportPlugin) return false;
+  const { cancelled } = await reportPlugin.cancel({ reportId });
+  return cancelled;
+};
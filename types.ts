@@ -305,7 +305,7 @@ export interface GeofenceEvent {
   id: string;
   geofenceId: string;
   geofenceName: string;
-  eventType: 'EXIT' | 'ENTRY';
+  eventType: 'EXIT' | 'ENTRY' | 'DWELL';
   timestamp: Date;
   location: {
     latitude: number;
@@ -22,6 +22,7 @@ interface CaregiverDashboardProps {
   onSignOut?: () => void;
   onJoinAnotherHousehold?: () => void;
   householdId?: string;
+  activeHouseholdId?: string; // household whose medicines/vitals are shown
   householdIds?: string[];
   onSwitchHousehold?: (householdId: string) => void;
   seniors?: { [householdId: string]: HouseholdMember };
@@ -53,6 +54,7 @@ export const CaregiverDashboard: React.FC<CaregiverDashboardProps> = ({
     onSignOut,
     onJoinAnotherHousehold,
     householdId,
+    activeHouseholdId,
     householdIds = [],
     onSwitchHousehold,
     seniors = {},
@@ -866,6 +868,7 @@ export const CaregiverDashboard: React.FC<CaregiverDashboardProps> = ({
       {/* CONTENT: COMPLIANCE ANALYTICS */}
       {activeTab === 'compliance' && (
           <ComplianceAnalytics 
+            householdId={activeHouseholdId || householdId}
             medicines={medicines}
             medicineLogs={medicineLogs}
             vitalReadings={vitalReadings || []}
@@ -1,16 +1,20 @@
-import React, { useMemo, useState } from 'react';
+import React, { useEffect, useMemo, useRef, useState } from 'react';
 import { TrendingUp, AlertCircle, CheckCircle, Activity, AlertTriangle, Heart, Droplet, Thermometer, Gauge, TrendingDown, BarChart3, FileText } from 'lucide-react';
 import { Medicine, MedicineLog, VitalReading } from '../types';
-import { analyzeHealthData } from '../services/healthPredictions';
+import { analyzeHealthData, analyzeHealthDataIncremental } from '../services/healthPredictions';
 import { VitalsChart } from '../components/VitalsChart';
+import { cancelNativeHealthReport, generateNativeHealthReport, isNativeReportAvailable } from '../services/reportGeneration';
+import { AdherenceSnapshot, adherenceFromLogs, backgroundReminders } from '../services/backgroundReminders';
 
 interface ComplianceAnalyticsProps {
+  householdId?: string; // household the data belongs to (keys the native analytics state)
   medicines: Medicine[];
   medicineLogs: MedicineLog[];
   vitalReadings: VitalReading[];
 }
 
 export const ComplianceAnalytics: React.FC<ComplianceAnalyticsProps> = ({
+  householdId = '',
   medicines,
   medicineLogs,
   vitalReadings,
@@ -18,6 +22,8 @@ export const ComplianceAnalytics: React.FC<ComplianceAnalyticsProps> = ({
   const [chartPeriod, setChartPeriod] = useState<7 | 30>(7);
   const [showAnalysis, setShowAnalysis] = useState(false);
   const [isGeneratingPdf, setIsGeneratingPdf] = useState(false);
+  const [reportProgress, setReportProgress] = useState<number | null>(null);
+  const nativeReportId = useRef<string | null>(null);
 
   // Helper to get vitals stats
   const getVitalsStats = (readings: VitalReading[], type: string) => {
@@ -76,8 +82,40 @@ export const ComplianceAnalytics: React.FC<ComplianceAnalyticsProps> = ({
     }
   };
 
+  // On Android the PDF is built natively from the household's readings and logs and opened in a viewer
+  const generateNativePdfReport = async () => {
+    const reportId = `report_${Date.now()}`;
+    nativeReportId.current = reportId;
+    setIsGeneratingPdf(true);
+    setReportProgress(0);
+    try {
+      await generateNativeHealthReport(householdId, chartPeriod === 30 ? 'monthly' : 'weekly', vitalReadings, medicineLogs, {
+        reportId,
+        open: true,
+        onProgress: (progress) => setReportProgress(progress),
+      });
+    } catch (error: any) {
+      if (error?.code !== 'CANCELLED') {
+        console.error('Error generating native report:', error);
+        alert('Failed to generate report. Please try again.');
+      }
+    } finally {
+      nativeReportId.current = null;
+      setReportProgress(null);
+      setIsGeneratingPdf(false);
+    }
+  };
+
+  const cancelNativePdfReport = () => {
+    if (nativeReportId.current) cancelNativeHealthReport(nativeReportId.current);
+  };
+
   // Generate and download PDF report
   const generatePdfReport = async () => {
+    if (isNativeReportAvailable()) {
+      await generateNativePdfReport();
+      return;
+    }
     setIsGeneratingPdf(true);
     try {
       const reportDate = new Date().toLocaleDateString('en-IN', {
@@ -680,10 +718,39 @@ export const ComplianceAnalytics: React.FC<ComplianceAnalyticsProps> = ({
     };
   }, [medicines, medicineLogs]);
 
+  // Rolling adherence from the native index where this device ran the reminders; elsewhere
+  // (a caregiver's phone) the same figures come from the household's synced logs
+  const [adherence, setAdherence] = useState<AdherenceSnapshot | null>(null);
+  useEffect(() => {
+    let cancelled = false;
+    backgroundReminders.getAdherence().then((snapshot) => {
+      if (cancelled) return;
+      setAdherence(snapshot?.household && snapshot.household.d90.doses > 0 ? snapshot : adherenceFromLogs(medicineLogs));
+    });
+    return () => {
+      cancelled = true;
+    };
+  }, [medicineLogs]);
+
+  const lateBinLabels = useMemo(() => {
+    const edges = adherence?.lateBinsMin ?? [];
+    return edges.map((edge, i) => (i === 0 ? `<${edge}m` : `${edges[i - 1]}-${edge}m`)).concat(
+      edges.length > 0 ? [`${edges[edges.length - 1]}m+`] : []
+    );
+  }, [adherence]);
+
   // Health analysis (NEW)
-  const healthAnalysis = useMemo(() => {
-    return analyzeHealthData(vitalReadings, medicineLogs);
-  }, [vitalReadings, medicineLogs]);
+  // Starts from an empty analysis; the native engine answers without re-scanning history
+  const [healthAnalysis, setHealthAnalysis] = useState(() => analyzeHealthData([], []));
+  useEffect(() => {
+    let cancelled = false;
+    analyzeHealthDataIncremental(householdId, vitalReadings, medicineLogs).then((result) => {
+      if (!cancelled) setHealthAnalysis(result);
+    });
+    return () => {
+      cancelled = true;
+    };
+  }, [householdId, vitalReadings, medicineLogs]);
 
   // Filter vital readings by type
   const getVitalsByType = (type: VitalReading['type']) => {
@@ -725,8 +792,8 @@ export const ComplianceAnalytics: React.FC<ComplianceAnalyticsProps> = ({
           <p className="text-sm text-gray-600 mt-1">Medication compliance & vitals insights</p>
         </div>
         <button
-          onClick={generatePdfReport}
-          disabled={isGeneratingPdf}
+          onClick={reportProgress !== null ? cancelNativePdfReport : generatePdfReport}
+          disabled={isGeneratingPdf && reportProgress === null}
           className={`flex items-center gap-2 px-4 py-2.5 rounded-xl font-semibold text-sm shadow-sm transition-all ${
             isGeneratingPdf 
               ? 'bg-gray-100 text-gray-400 cursor-wait' 
@@ -736,7 +803,7 @@ export const ComplianceAnalytics: React.FC<ComplianceAnalyticsProps> = ({
           {isGeneratingPdf ? (
             <>
               <div className="w-4 h-4 border-2 border-white border-t-transparent rounded-full animate-spin" />
-              Generating...
+              {reportProgress !== null ? `Generating ${Math.round(reportProgress * 100)}% · Cancel` : 'Generating...'}
             </>
           ) : (
             <>
@@ -900,6 +967,51 @@ export const ComplianceAnalytics: React.FC<ComplianceAnalyticsProps> = ({
         </div>
       </div>
 
+      {/* Streaks & dose timing from the adherence index (or the household logs) */}
+      {adherence?.household && adherence.household.d90.doses > 0 && (
+        <div className="bg-white rounded-2xl p-6 shadow-sm border border-gray-100 mb-4">
+          <div className="flex items-center justify-between mb-4">
+            <h3 className="font-bold text-gray-900">Streaks & Dose Timing</h3>
+            <CheckCircle size={22} className="text-green-600" />
+          </div>
+          <div className="grid grid-cols-4 gap-2 text-center mb-4">
+            <div>
+              <div className="text-2xl font-bold text-green-600">{adherence.household.currentStreak}</div>
+              <div className="text-xs text-gray-600">Day streak</div>
+            </div>
+            <div>
+              <div className="text-2xl font-bold text-blue-600">{adherence.household.bestStreak}</div>
+              <div className="text-xs text-gray-600">Best</div>
+            </div>
+            <div>
+              <div className="text-2xl font-bold text-gray-900">{adherence.household.d30.adherence ?? '–'}%</div>
+              <div className="text-xs text-gray-600">30 days</div>
+            </div>
+            <div>
+              <div className="text-2xl font-bold text-gray-900">{adherence.household.d90.adherence ?? '–'}%</div>
+              <div className="text-xs text-gray-600">90 days</div>
+            </div>
+          </div>
+          {adherence.household.d30.taken > 0 && (
+            <div className="space-y-1.5">
+              <p className="text-xs font-semibold text-gray-700">How late doses were taken (30 days)</p>
+              {adherence.household.d30.late.map((count, i) => (
+                <div key={i} className="flex items-center gap-2 text-xs">
+                  <span className="w-16 text-gray-600">{lateBinLabels[i]}</span>
+                  <div className="flex-1 h-2 rounded-full bg-gray-100 overflow-hidden">
+                    <div
+                      className={i === 0 ? 'h-full bg-green-500' : 'h-full bg-orange-400'}
+                      style={{ width: `${(count / adherence.household!.d30.taken) * 100}%` }}
+                    ></div>
+                  </div>
+                  <span className="w-6 text-right text-gray-700">{count}</span>
+                </div>
+              ))}
+            </div>
+          )}
+        </div>
+      )}
+
       {/* Insights */}
       {complianceStats.mostMissedTime && (
         <div className="bg-orange-50 rounded-2xl p-4 border-2 border-orange-200 flex gap-3 mb-4">
@@ -1,7 +1,8 @@
 import React, { useState, useEffect, useRef } from 'react';
-import { Settings, Phone, Navigation, Battery, Layers, Map as MapIcon, ChevronUp, ChevronDown } from 'lucide-react';
+import { Settings, Phone, Navigation, Battery, Layers, Map as MapIcon, ChevronUp, ChevronDown, Route, Download } from 'lucide-react';
 import { SeniorStatus, ActivityItem, HouseholdMember, UserRole } from '../types';
 import { sanitizeForLog, sanitizeForHTML, isValidImageUrl } from '../utils/sanitize';
+import { LocationTrail, getLocationTrail, exportLocationTrail, flushLocationTrail, isLocationTrailAvailable } from '../services/locationTrail';
 
 // Declare Leaflet globally
 declare var L: any;
@@ -16,10 +17,16 @@ interface LocationViewProps {
 export const LocationView: React.FC<LocationViewProps> = ({ status, seniorProfile, caregivers = [], onBack }) => {
   const [isPanelExpanded, setIsPanelExpanded] = useState(false);
   const [mapType, setMapType] = useState<'street' | 'satellite'>('street');
+  const [showTrail, setShowTrail] = useState(false);
+  const [trail, setTrail] = useState<LocationTrail | null>(null);
+  const [isExporting, setIsExporting] = useState(false);
+  const trailAvailable = isLocationTrailAvailable();
   
   const mapContainerRef = useRef<HTMLDivElement>(null);
   const mapInstanceRef = useRef<any>(null);
   const markerRef = useRef<any>(null);
+  const trailLayerRef = useRef<any>(null);
+  const trailRef = useRef<LocationTrail | null>(null);
   
   const isEmergency = status.status !== 'Normal';
   const primaryCaregiver = caregivers.find(c => c.role === UserRole.CAREGIVER);
@@ -37,6 +44,38 @@ export const LocationView: React.FC<LocationViewProps> = ({ status, seniorProfil
 
   const togglePanel = () => setIsPanelExpanded(!isPanelExpanded);
 
+  const startOfToday = () => {
+    const d = new Date();
+    d.setHours(0, 0, 0, 0);
+    return d.getTime();
+  };
+
+  // Today's path from the on-device trail, drawn under the marker
+  const drawTrail = () => {
+    const map = mapInstanceRef.current;
+    if (!map || typeof L === 'undefined') return;
+    if (trailLayerRef.current) {
+      map.removeLayer(trailLayerRef.current);
+      trailLayerRef.current = null;
+    }
+    const t = trailRef.current;
+    if (!t || t.lat.length < 2) return;
+    const latlngs = t.lat.map((lat, i) => [lat, t.lng[i]]);
+    trailLayerRef.current = L.polyline(latlngs, { color: '#3b82f6', weight: 4, opacity: 0.7 }).addTo(map);
+  };
+
+  const handleExportTrail = async () => {
+    setIsExporting(true);
+    try {
+      flushLocationTrail();
+      const result = await exportLocationTrail(startOfToday(), Date.now(), 'geojson');
+      if (result) alert(`Today's path saved (${result.points} points):\n${result.path}`);
+      else alert('Could not export the location history');
+    } finally {
+      setIsExporting(false);
+    }
+  };
+
   const handleCallCaregiver = () => {
     if (!primaryCaregiver) return;
     window.open(`tel:${primaryCaregiver.phone.replace(/\D/g,'')}`, '_self');
@@ -171,6 +210,7 @@ export const LocationView: React.FC<LocationViewProps> = ({ status, seniorProfil
         markerRef.current = L.marker([status.location.lat, status.location.lng], {
           icon: createIcon(isEmergency)
         }).addTo(map);
+        drawTrail();
 
         // Force resize after a bit longer to ensure full layout
         setTimeout(() => {
@@ -191,10 +231,30 @@ export const LocationView: React.FC<LocationViewProps> = ({ status, seniorProfil
         mapInstanceRef.current.remove();
         mapInstanceRef.current = null;
         markerRef.current = null;
+        trailLayerRef.current = null;
       }
     };
   }, [status.location.lat, status.location.lng, isEmergency, seniorProfile?.avatar]);
 
+  // Load today's trail when shown, and refresh it as the position moves
+  useEffect(() => {
+    if (!showTrail) {
+      setTrail(null);
+      return;
+    }
+    let cancelled = false;
+    flushLocationTrail();
+    getLocationTrail(startOfToday(), Date.now()).then((t) => {
+      if (!cancelled) setTrail(t);
+    });
+    return () => { cancelled = true; };
+  }, [showTrail, status.location.lat, status.location.lng]);
+
+  useEffect(() => {
+    trailRef.current = trail;
+    drawTrail();
+  }, [trail]);
+
   // Handle Map Type Toggle
   useEffect(() => {
       if (mapInstanceRef.current) {
@@ -252,6 +312,15 @@ export const LocationView: React.FC<LocationViewProps> = ({ status, seniorProfil
         </div>
 
         <div className="flex gap-2">
+          {trailAvailable && (
+            <button
+                onClick={() => setShowTrail(!showTrail)}
+                className={`p-2 rounded-full shadow-sm transition-colors ${showTrail ? 'bg-blue-500 text-white' : 'bg-gray-100 hover:bg-gray-200 text-gray-700'}`}
+                title="Today's Path"
+            >
+              <Route size={20} />
+            </button>
+          )}
           <button 
               onClick={() => setMapType('street')}
               className={`p-2 rounded-full shadow-sm transition-colors ${mapType === 'street' ? 'bg-blue-500 text-white' : 'bg-gray-100 hover:bg-gray-200 text-gray-700'}`}
@@ -333,6 +402,17 @@ export const LocationView: React.FC<LocationViewProps> = ({ status, seniorProfil
                          <Battery size={20} className={status.batteryLevel < 20 ? "text-red-500" : "text-green-500"} fill="currentColor" />
                          <span className="text-[10px] font-bold text-gray-600">{status.batteryLevel}%</span>
                     </div>
+                    {trailAvailable && (
+                      <button
+                          onClick={handleExportTrail}
+                          disabled={isExporting}
+                          className="flex flex-col items-center justify-center gap-1 bg-gray-50 px-4 rounded-xl border border-gray-100 hover:bg-gray-100 disabled:opacity-50"
+                          title="Export today's path"
+                      >
+                          <Download size={20} className="text-blue-600" />
+                          <span className="text-[10px] font-bold text-gray-600">{isExporting ? 'Saving' : 'Export'}</span>
+                      </button>
+                    )}
                 </div>
 
                 {/* Recent Activity */}
@@ -132,6 +132,14 @@ export const ProfileView: React.FC<ProfileViewProps> = ({ user, onBack, onSave,
                                         <button id="connectFitBtn" onClick={async () => {
                                             try {
                                                 setIsConnecting(true);
+                                                // Prefer Health Connect where it is installed; Google Fit otherwise
+                                                const hc = await googleFitService.requestHealthConnectPermissions();
+                                                if (hc.granted) {
+                                                    setIsFitConnected(true);
+                                                    alert('Health Connect access granted — syncing enabled');
+                                                    window.dispatchEvent(new Event('googleFitConnected'));
+                                                    return;
+                                                }
                                                 // Start permission flow
                                                 const started = await googleFitService.requestPermissions();
                                                 if (started) {
@@ -164,7 +172,7 @@ export const ProfileView: React.FC<ProfileViewProps> = ({ user, onBack, onSave,
                                         </button>
 
                                         <button onClick={async () => {
-                                            const ok = await googleFitService.hasPermissions();
+                                            const ok = (await googleFitService.getHealthConnectStatus()).granted || await googleFitService.hasPermissions();
                                             setIsFitConnected(ok);
                                             if (ok) alert('Google Fit connected'); else alert('Not connected');
                                         }} className="bg-gray-100 px-3 py-2 rounded-xl text-sm">Check Status</button>